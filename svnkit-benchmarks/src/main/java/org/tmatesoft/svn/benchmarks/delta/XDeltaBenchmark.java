@@ -0,0 +1,134 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.benchmarks.delta;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tmatesoft.svn.core.internal.delta.SVNXDeltaAlgorithm;
+
+/**
+ * Computes the delta of a changed window against its source window with
+ * {@link SVNXDeltaAlgorithm}. The <code>text</code> corpus is a source file
+ * with a few edited lines, the <code>binary</code> corpus is random data with
+ * overwritten, inserted and deleted spans. Run it on two commits to compare
+ * implementations of the algorithm.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class XDeltaBenchmark {
+
+    private static final long SEED = 0x5EED;
+
+    @Param({"text", "binary"})
+    public String corpus;
+
+    @Param({"102400"})
+    public int windowSize;
+
+    private byte[] mySource;
+    private byte[] myTarget;
+    private SVNXDeltaAlgorithm myAlgorithm;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(SEED);
+        if ("text".equals(corpus)) {
+            mySource = createText(random, windowSize);
+        } else {
+            mySource = new byte[windowSize];
+            random.nextBytes(mySource);
+        }
+        myTarget = change(random, mySource, "text".equals(corpus));
+        myAlgorithm = new SVNXDeltaAlgorithm();
+    }
+
+    @Benchmark
+    public int computeDelta() {
+        myAlgorithm.reset();
+        myAlgorithm.computeDelta(mySource, mySource.length, myTarget, myTarget.length);
+        return myAlgorithm.getData().remaining();
+    }
+
+    private static byte[] createText(Random random, int size) {
+        StringBuffer text = new StringBuffer(size);
+        String[] words = {"public", "void", "int", "return", "if", "else", "for", "myValue", "length", "(", ")", "{", "}", ";", "="};
+        while (text.length() < size) {
+            int indent = random.nextInt(4) * 4;
+            for (int i = 0; i < indent; i++) {
+                text.append(' ');
+            }
+            int wordsCount = 1 + random.nextInt(8);
+            for (int i = 0; i < wordsCount; i++) {
+                text.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            text.append('\n');
+        }
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) text.charAt(i);
+        }
+        return bytes;
+    }
+
+    private static byte[] change(Random random, byte[] source, boolean text) {
+        byte[] target = new byte[source.length];
+        int sourcePosition = 0;
+        int targetPosition = 0;
+        while (targetPosition < target.length) {
+            int unchanged = Math.min(random.nextInt(text ? 4096 : 16384), target.length - targetPosition);
+            unchanged = Math.min(unchanged, source.length - sourcePosition);
+            System.arraycopy(source, sourcePosition, target, targetPosition, unchanged);
+            sourcePosition += unchanged;
+            targetPosition += unchanged;
+
+            int changed = Math.min(1 + random.nextInt(text ? 64 : 512), target.length - targetPosition);
+            for (int i = 0; i < changed; i++) {
+                target[targetPosition + i] = text ? (byte) ('a' + random.nextInt(26)) : (byte) random.nextInt();
+            }
+            targetPosition += changed;
+            switch (random.nextInt(3)) {
+                case 0:
+                    sourcePosition += changed;
+                    break;
+                case 1:
+                    sourcePosition += changed + random.nextInt(changed + 1);
+                    break;
+                default:
+                    break;
+            }
+            if (sourcePosition >= source.length) {
+                sourcePosition = random.nextInt(source.length);
+            }
+        }
+        return target;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.benchmarks.fs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tmatesoft.svn.core.ISVNCanceller;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNPropertyValue;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+import org.tmatesoft.svn.core.internal.wc.ISVNLoadHandler;
+import org.tmatesoft.svn.core.internal.wc.SVNDumpStreamParser;
+import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.wc.SVNRevision;
+import org.tmatesoft.svn.core.wc.admin.SVNAdminClient;
+import org.tmatesoft.svn.util.SVNLogType;
+
+/**
+ * Parses a dump of a generated repository with a handler which only
+ * consumes the stream, so the score is the cost of the parser itself.
+ * Run it on two commits to compare parser implementations.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class DumpStreamParserBenchmark {
+
+    @Param({"500"})
+    public int revisions;
+
+    @Param({"1024"})
+    public int fileSize;
+
+    @Param({"false", "true"})
+    public boolean deltas;
+
+    private byte[] myDump;
+    private SVNDumpStreamParser myParser;
+    private ConsumingLoadHandler myHandler;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SVNException {
+        File repositoryRoot = SVNFileUtil.createTempDirectory("svnkit-benchmark");
+        try {
+            FSFSRepositoryGenerator generator = new FSFSRepositoryGenerator();
+            generator.setRevisions(revisions);
+            generator.setFileSize(fileSize);
+            generator.generate(repositoryRoot);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new SVNAdminClient((ISVNAuthenticationManager) null, null).doDump(repositoryRoot, out,
+                    SVNRevision.create(0), SVNRevision.HEAD, false, deltas);
+            myDump = out.toByteArray();
+        } finally {
+            SVNFileUtil.deleteAll(repositoryRoot, true);
+        }
+        myParser = new SVNDumpStreamParser(ISVNCanceller.NULL);
+        myHandler = new ConsumingLoadHandler();
+    }
+
+    @Benchmark
+    public long parse() throws SVNException {
+        myHandler.myCount = 0;
+        myParser.parseDumpStream(new ByteArrayInputStream(myDump), myHandler, Charset.forName("UTF-8").newDecoder());
+        return myHandler.myCount;
+    }
+
+    private static class ConsumingLoadHandler implements ISVNLoadHandler {
+
+        private final byte[] myBuffer = new byte[8192];
+        private long myCount;
+
+        public void closeRevision() {
+        }
+
+        public void openRevision(Map headers) {
+            myCount += headers.size();
+        }
+
+        public void openNode(Map headers) {
+            myCount += headers.size();
+        }
+
+        public void closeNode() {
+        }
+
+        public void parseUUID(String uuid) {
+        }
+
+        public void removeNodeProperties() {
+        }
+
+        public void setRevisionProperty(String propertyName, SVNPropertyValue propertyValue) {
+            myCount++;
+        }
+
+        public void applyTextDelta() {
+        }
+
+        public void setFullText() {
+        }
+
+        public void parseTextBlock(InputStream dumpStream, long contentLength, boolean isDelta) throws SVNException {
+            try {
+                while (contentLength > 0) {
+                    int read = dumpStream.read(myBuffer, 0, (int) Math.min(myBuffer.length, contentLength));
+                    if (read < 0) {
+                        break;
+                    }
+                    contentLength -= read;
+                    myCount += read;
+                }
+            } catch (IOException e) {
+                SVNErrorManager.error(SVNErrorMessage.create(SVNErrorCode.IO_ERROR, e.getMessage()), e, SVNLogType.DEFAULT);
+            }
+        }
+
+        public void deleteNodeProperty(String propertyName) {
+            myCount++;
+        }
+
+        public void setNodeProperty(String propertyName, SVNPropertyValue propertyValue) {
+            myCount++;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.benchmarks.fs;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.io.fs.FSFS;
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory;
+import org.tmatesoft.svn.core.internal.util.SVNPathUtil;
+import org.tmatesoft.svn.core.io.ISVNEditor;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.io.diff.SVNDeltaGenerator;
+
+/**
+ * Generates FSFS repositories of a configurable size for benchmarks. The
+ * first revision adds a balanced tree of directories under <code>/trunk</code>,
+ * every following revision modifies a few of its files. All contents and
+ * choices are derived from the seed, so the same parameters always produce
+ * the same repository.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public class FSFSRepositoryGenerator {
+
+    public static final long DEFAULT_SEED = 0x5EEDL;
+    public static final String UUID = "0c5ea0a6-6b5a-4f5c-9a6e-bf3e1d3c1f00";
+
+    private static final byte[] ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789 \n".getBytes();
+
+    private long mySeed = DEFAULT_SEED;
+    private int myDepth = 3;
+    private int myFanOut = 4;
+    private int myFilesPerDirectory = 8;
+    private int myFileSize = 4096;
+    private int myRevisions = 100;
+    private int myChangesPerRevision = 8;
+    private long myMaxFilesPerDirectory = 1000;
+
+    private List<String> myDirectoryPaths;
+    private List<String> myFilePaths;
+
+    public void setSeed(long seed) {
+        mySeed = seed;
+    }
+
+    public void setDepth(int depth) {
+        myDepth = depth;
+    }
+
+    public void setFanOut(int fanOut) {
+        myFanOut = fanOut;
+    }
+
+    public void setFilesPerDirectory(int filesPerDirectory) {
+        myFilesPerDirectory = filesPerDirectory;
+    }
+
+    public void setFileSize(int fileSize) {
+        myFileSize = fileSize;
+    }
+
+    public void setRevisions(int revisions) {
+        myRevisions = revisions;
+    }
+
+    public void setChangesPerRevision(int changesPerRevision) {
+        myChangesPerRevision = changesPerRevision;
+    }
+
+    /**
+     * Sets the shard size of the generated repository, small shards produce
+     * more shards to pack.
+     */
+    public void setMaxFilesPerDirectory(long maxFilesPerDirectory) {
+        myMaxFilesPerDirectory = maxFilesPerDirectory;
+    }
+
+    public List<String> getDirectoryPaths() {
+        return myDirectoryPaths;
+    }
+
+    public List<String> getFilePaths() {
+        return myFilePaths;
+    }
+
+    public SVNURL generate(File repositoryRoot) throws SVNException {
+        FSRepositoryFactory.setup();
+        SVNURL url = SVNRepositoryFactory.createLocalRepository(repositoryRoot, UUID, true, true);
+        if (myMaxFilesPerDirectory != 1000) {
+            FSFS fsfs = new FSFS(repositoryRoot);
+            fsfs.open();
+            try {
+                fsfs.writeDBFormat(fsfs.getDBFormat(), myMaxFilesPerDirectory, true);
+            } finally {
+                fsfs.close();
+            }
+        }
+
+        Random random = new Random(mySeed);
+        myDirectoryPaths = new ArrayList<String>();
+        myFilePaths = new ArrayList<String>();
+        collectPaths("/trunk", 0);
+
+        List<byte[]> contents = new ArrayList<byte[]>(myFilePaths.size());
+        for (int i = 0; i < myFilePaths.size(); i++) {
+            byte[] content = new byte[myFileSize];
+            fill(random, content, 0, content.length);
+            contents.add(content);
+        }
+
+        SVNRepository repository = SVNRepositoryFactory.create(url);
+        try {
+            SVNDeltaGenerator deltaGenerator = new SVNDeltaGenerator();
+            ISVNEditor editor = repository.getCommitEditor("initial import", null);
+            editor.openRoot(-1);
+            addDirectory(editor, deltaGenerator, "trunk", 0, contents);
+            editor.closeDir();
+            editor.closeEdit();
+
+            for (int revision = 2; revision <= myRevisions; revision++) {
+                editor = repository.getCommitEditor("revision " + revision, null);
+                editor.openRoot(-1);
+                String openedDirectory = "";
+                List<Integer> changed = new ArrayList<Integer>();
+                for (int i = 0; i < myChangesPerRevision && i < myFilePaths.size(); i++) {
+                    int index = random.nextInt(myFilePaths.size());
+                    if (!changed.contains(Integer.valueOf(index))) {
+                        changed.add(Integer.valueOf(index));
+                    }
+                }
+                Collections.sort(changed);
+                for (int i = 0; i < changed.size(); i++) {
+                    int index = changed.get(i).intValue();
+                    String path = myFilePaths.get(index).substring(1);
+                    openedDirectory = moveTo(editor, openedDirectory, SVNPathUtil.removeTail(path));
+                    byte[] content = contents.get(index);
+                    int length = Math.min(64, content.length);
+                    fill(random, content, random.nextInt(content.length - length + 1), length);
+
+                    editor.openFile(path, -1);
+                    editor.applyTextDelta(path, null);
+                    String checksum = deltaGenerator.sendDelta(path, new ByteArrayInputStream(content), editor, true);
+                    editor.closeFile(path, checksum);
+                }
+                moveTo(editor, openedDirectory, "");
+                editor.closeDir();
+                editor.closeEdit();
+            }
+        } finally {
+            repository.closeSession();
+        }
+        return url;
+    }
+
+    private void collectPaths(String path, int level) {
+        myDirectoryPaths.add(path);
+        for (int i = 0; i < myFilesPerDirectory; i++) {
+            myFilePaths.add(SVNPathUtil.append(path, "file" + i + ".txt"));
+        }
+        if (level < myDepth) {
+            for (int i = 0; i < myFanOut; i++) {
+                collectPaths(SVNPathUtil.append(path, "dir" + i), level + 1);
+            }
+        }
+    }
+
+    private void addDirectory(ISVNEditor editor, SVNDeltaGenerator deltaGenerator, String path, int level, List<byte[]> contents) throws SVNException {
+        editor.addDir(path, null, -1);
+        for (int i = 0; i < myFilesPerDirectory; i++) {
+            String filePath = SVNPathUtil.append(path, "file" + i + ".txt");
+            editor.addFile(filePath, null, -1);
+            editor.applyTextDelta(filePath, null);
+            byte[] content = contents.get(myFilePaths.indexOf("/" + filePath));
+            String checksum = deltaGenerator.sendDelta(filePath, new ByteArrayInputStream(content), editor, true);
+            editor.closeFile(filePath, checksum);
+        }
+        if (level < myDepth) {
+            for (int i = 0; i < myFanOut; i++) {
+                addDirectory(editor, deltaGenerator, SVNPathUtil.append(path, "dir" + i), level + 1, contents);
+                editor.closeDir();
+            }
+        }
+    }
+
+    /**
+     * Closes and opens directories of the edit to move from one directory to
+     * another, both paths are relative to the repository root.
+     */
+    private static String moveTo(ISVNEditor editor, String from, String to) throws SVNException {
+        String common = SVNPathUtil.getCommonPathAncestor(from, to);
+        while (!from.equals(common)) {
+            editor.closeDir();
+            from = SVNPathUtil.removeTail(from);
+        }
+        if (!to.equals(common)) {
+            String tail = common.length() == 0 ? to : to.substring(common.length() + 1);
+            String[] names = tail.split("/");
+            String path = common;
+            for (int i = 0; i < names.length; i++) {
+                path = SVNPathUtil.append(path, names[i]);
+                editor.openDir(path, -1);
+            }
+        }
+        return to;
+    }
+
+    private static void fill(Random random, byte[] content, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            content[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.benchmarks.fs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.internal.delta.SVNDeltaCombiner;
+import org.tmatesoft.svn.core.internal.io.fs.FSFS;
+import org.tmatesoft.svn.core.internal.io.fs.FSLog;
+import org.tmatesoft.svn.core.internal.io.fs.FSRevisionNode;
+import org.tmatesoft.svn.core.internal.io.fs.FSRevisionRoot;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+
+/**
+ * Read path benchmarks against a generated repository: path lookup, directory
+ * listing, file contents reconstruction and log. Every operation uses a new
+ * revision root, so only the repository wide caches are warm.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class FSReadBenchmark {
+
+    @Param({"3"})
+    public int depth;
+
+    @Param({"200"})
+    public int revisions;
+
+    @Param({"4096"})
+    public int fileSize;
+
+    private File myRepositoryRoot;
+    private FSFS myFSFS;
+    private long myYoungestRevision;
+    private String[] myFilePaths;
+    private String[] myDirectoryPaths;
+    private int myFileIndex;
+    private int myDirectoryIndex;
+    private byte[] myBuffer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SVNException {
+        myRepositoryRoot = SVNFileUtil.createTempDirectory("svnkit-benchmark");
+        FSFSRepositoryGenerator generator = new FSFSRepositoryGenerator();
+        generator.setDepth(depth);
+        generator.setRevisions(revisions);
+        generator.setFileSize(fileSize);
+        generator.generate(myRepositoryRoot);
+
+        myFilePaths = toArray(generator.getFilePaths());
+        myDirectoryPaths = toArray(generator.getDirectoryPaths());
+        myBuffer = new byte[8192];
+
+        myFSFS = new FSFS(myRepositoryRoot);
+        myFSFS.open();
+        myYoungestRevision = myFSFS.getYoungestRevision();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SVNException {
+        if (myFSFS != null) {
+            myFSFS.close();
+        }
+        SVNFileUtil.deleteAll(myRepositoryRoot, true);
+    }
+
+    @Benchmark
+    public Object openPath() throws SVNException {
+        FSRevisionRoot root = myFSFS.createRevisionRoot(myYoungestRevision);
+        return root.openPath(nextFilePath(), true, false);
+    }
+
+    @Benchmark
+    public Object openPathWithParents() throws SVNException {
+        FSRevisionRoot root = myFSFS.createRevisionRoot(myYoungestRevision);
+        return root.openPath(nextFilePath(), true, true);
+    }
+
+    @Benchmark
+    public Map getDirContents() throws SVNException {
+        FSRevisionRoot root = myFSFS.createRevisionRoot(myYoungestRevision);
+        FSRevisionNode node = root.getRevisionNode(nextDirectoryPath());
+        return myFSFS.getDirContents(node);
+    }
+
+    @Benchmark
+    public long readFile() throws SVNException, IOException {
+        FSRevisionRoot root = myFSFS.createRevisionRoot(myYoungestRevision);
+        InputStream stream = root.getFileStreamForPath(new SVNDeltaCombiner(), nextFilePath());
+        long total = 0;
+        try {
+            for (int read = stream.read(myBuffer); read >= 0; read = stream.read(myBuffer)) {
+                total += read;
+            }
+        } finally {
+            SVNFileUtil.closeFile(stream);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long log(final Blackhole blackhole) throws SVNException {
+        ISVNLogEntryHandler handler = new ISVNLogEntryHandler() {
+            public void handleLogEntry(SVNLogEntry logEntry) throws SVNException {
+                blackhole.consume(logEntry);
+            }
+        };
+        FSLog log = new FSLog(myFSFS, new String[] {"/trunk"}, 100, myYoungestRevision, 0, true, true, false, false, null, handler);
+        return log.runLog();
+    }
+
+    private String nextFilePath() {
+        myFileIndex = (myFileIndex + 1) % myFilePaths.length;
+        return myFilePaths[myFileIndex];
+    }
+
+    private String nextDirectoryPath() {
+        myDirectoryIndex = (myDirectoryIndex + 1) % myDirectoryPaths.length;
+        return myDirectoryPaths[myDirectoryIndex];
+    }
+
+    private static String[] toArray(List<String> paths) {
+        return paths.toArray(new String[paths.size()]);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.benchmarks.fs;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tmatesoft.svn.core.SVNCommitInfo;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.io.fs.FSFS;
+import org.tmatesoft.svn.core.internal.io.fs.FSPacker;
+import org.tmatesoft.svn.core.internal.util.SVNPathUtil;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.io.ISVNEditor;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.io.diff.SVNDeltaGenerator;
+
+/**
+ * Write path benchmarks: commit of a single file change through the local
+ * commit editor, which ends in <code>FSCommitter.commitTxn</code>, and packing
+ * of a freshly copied unpacked repository.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public class FSWriteBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class CommitState {
+
+        @Param({"100"})
+        public int revisions;
+
+        private File myRepositoryRoot;
+        private SVNRepository myRepository;
+        private List<String> myFilePaths;
+        private Random myRandom;
+        private byte[] myContent;
+        private SVNDeltaGenerator myDeltaGenerator;
+
+        @Setup(Level.Trial)
+        public void setUp() throws SVNException {
+            myRepositoryRoot = SVNFileUtil.createTempDirectory("svnkit-benchmark");
+            FSFSRepositoryGenerator generator = new FSFSRepositoryGenerator();
+            generator.setRevisions(revisions);
+            SVNURL url = generator.generate(myRepositoryRoot);
+
+            myFilePaths = generator.getFilePaths();
+            myRepository = SVNRepositoryFactory.create(url);
+            myRandom = new Random(FSFSRepositoryGenerator.DEFAULT_SEED);
+            myContent = new byte[1024];
+            myDeltaGenerator = new SVNDeltaGenerator();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (myRepository != null) {
+                myRepository.closeSession();
+            }
+            SVNFileUtil.deleteAll(myRepositoryRoot, true);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PackState {
+
+        @Param({"100"})
+        public int revisions;
+
+        @Param({"10"})
+        public int shardSize;
+
+        private File myPristineRoot;
+        private File myRepositoryRoot;
+        private FSFS myFSFS;
+
+        @Setup(Level.Trial)
+        public void setUp() throws SVNException {
+            myPristineRoot = SVNFileUtil.createTempDirectory("svnkit-benchmark");
+            FSFSRepositoryGenerator generator = new FSFSRepositoryGenerator();
+            generator.setRevisions(revisions);
+            generator.setMaxFilesPerDirectory(shardSize);
+            generator.generate(myPristineRoot);
+        }
+
+        @Setup(Level.Invocation)
+        public void copyRepository() throws SVNException {
+            myRepositoryRoot = SVNFileUtil.createTempDirectory("svnkit-benchmark");
+            SVNFileUtil.copyDirectory(myPristineRoot, myRepositoryRoot, true, null);
+            myFSFS = new FSFS(myRepositoryRoot);
+            myFSFS.open();
+        }
+
+        @TearDown(Level.Invocation)
+        public void deleteRepository() throws SVNException {
+            myFSFS.close();
+            SVNFileUtil.deleteAll(myRepositoryRoot, true);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            SVNFileUtil.deleteAll(myPristineRoot, true);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Fork(1)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 10, time = 1)
+    public SVNCommitInfo commit(CommitState state) throws SVNException {
+        String path = state.myFilePaths.get(state.myRandom.nextInt(state.myFilePaths.size())).substring(1);
+        state.myRandom.nextBytes(state.myContent);
+
+        ISVNEditor editor = state.myRepository.getCommitEditor("benchmark", null);
+        editor.openRoot(-1);
+        String[] directories = SVNPathUtil.removeTail(path).split("/");
+        String directory = "";
+        for (int i = 0; i < directories.length; i++) {
+            directory = SVNPathUtil.append(directory, directories[i]);
+            editor.openDir(directory, -1);
+        }
+        editor.openFile(path, -1);
+        editor.applyTextDelta(path, null);
+        String checksum = state.myDeltaGenerator.sendDelta(path, new ByteArrayInputStream(state.myContent), editor, true);
+        editor.closeFile(path, checksum);
+        for (int i = 0; i < directories.length; i++) {
+            editor.closeDir();
+        }
+        editor.closeDir();
+        return editor.closeEdit();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Fork(1)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public void pack(PackState state) throws SVNException {
+        new FSPacker(null).pack(state.myFSFS);
+    }
+}
@@ -64,6 +64,7 @@ public class SVNAdminCommandEnvironment extends AbstractSVNCommandEnvironment {
     private boolean myIsCleanLogs;
     private String myConfigDir;
     private boolean myIsWait;
+    private boolean myIsKeepGoing;
     private SVNRevision myStartRevision;
     private SVNRevision myEndRevision;
 
@@ -143,6 +144,8 @@ public class SVNAdminCommandEnvironment extends AbstractSVNCommandEnvironment {
             myConfigDir = optionValue.getValue();
         } else if (option == SVNAdminOption.WAIT) {
             myIsWait = true;
+        } else if (option == SVNAdminOption.KEEP_GOING) {
+            myIsKeepGoing = true;
         }
     }
 
@@ -271,6 +274,10 @@ public class SVNAdminCommandEnvironment extends AbstractSVNCommandEnvironment {
         return myIsWait;
     }
 
+    public boolean isKeepGoing() {
+        return myIsKeepGoing;
+    }
+
     public SVNRevision getStartRevision() {
         return myStartRevision;
     }
@@ -28,6 +28,7 @@ public class SVNAdminOption extends AbstractSVNOption {
     public static final SVNAdminOption DELTAS = new SVNAdminOption("deltas");
     public static final SVNAdminOption BYPASS_HOOKS = new SVNAdminOption("bypass-hooks");
     public static final SVNAdminOption QUIET = new SVNAdminOption("quiet", "q");
+    public static final SVNAdminOption KEEP_GOING = new SVNAdminOption("keep-going");
     public static final SVNAdminOption IGNORE_UUID = new SVNAdminOption("ignore-uuid");
     public static final SVNAdminOption FORCE_UUID = new SVNAdminOption("force-uuid");
     public static final SVNAdminOption PARENT_DIR = new SVNAdminOption("parent-dir", null, false);
@@ -45,6 +45,7 @@ public class SVNAdminVerifyCommand extends SVNAdminCommand implements ISVNAdminE
         Collection options = new LinkedList();
         options.add(SVNAdminOption.REVISION);
         options.add(SVNAdminOption.QUIET);
+        options.add(SVNAdminOption.KEEP_GOING);
         return options;
     }
 
@@ -68,14 +69,24 @@ public class SVNAdminVerifyCommand extends SVNAdminCommand implements ISVNAdminE
                     "First revision cannot be higher than second"), SVNLogType.CLIENT);
         }
         SVNAdminClient client = getEnvironment().getClientManager().getAdminClient();
-        if (!getSVNAdminEnvironment().isQuiet()) {
-            client.setEventHandler(this);
-        }
-        client.doVerify(getLocalRepository(), SVNRevision.create(startRev), SVNRevision.create(endRev));
+        client.setEventHandler(this);
+        client.doVerify(getLocalRepository(), SVNRevision.create(startRev), SVNRevision.create(endRev), 
+                !getSVNAdminEnvironment().isKeepGoing(), 0);
     }
 
     public void handleAdminEvent(SVNAdminEvent event, double progress) throws SVNException {
-        if (event != null && event.getAction() == SVNAdminEventAction.REVISION_DUMPED) {
+        if (event == null) {
+            return;
+        }
+        if (event.getAction() == SVNAdminEventAction.REVISION_VERIFY_FAILED) {
+            getEnvironment().getErr().println(event.getMessage());
+            if (event.getError() != null) {
+                getEnvironment().handleError(event.getError());
+            }
+        } else if (getSVNAdminEnvironment().isQuiet()) {
+            return;
+        } else if (event.getAction() == SVNAdminEventAction.REVISION_DUMPED || 
+                event.getAction() == SVNAdminEventAction.VERIFY_SUMMARY) {
             getEnvironment().getErr().println(event.getMessage());
         }
     }
@@ -11,13 +11,10 @@
  */
 package org.tmatesoft.svn.core.internal.delta;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.util.zip.InflaterInputStream;
 
 import org.tmatesoft.svn.core.SVNErrorCode;
 import org.tmatesoft.svn.core.SVNErrorMessage;
@@ -74,7 +71,7 @@ public class SVNDeltaReader {
                 return;
             }
             if (myBuffer.get(0) != 'S' || myBuffer.get(1) != 'V' || myBuffer.get(2) != 'N' ||
-                    (myBuffer.get(3) != '\0' && myBuffer.get(3) != '\1')) {
+                    (myBuffer.get(3) != '\0' && SVNDiffCodec.getCodec(myBuffer.get(3)) == null)) {
                 SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.SVNDIFF_CORRUPT_WINDOW, "Svndiff has invalid header");
                 SVNErrorManager.error(err, SVNLogType.DEFAULT);
             }
@@ -120,12 +117,17 @@ public class SVNDeltaReader {
             myLastSourceLength = sourceLength;
             SVNDiffWindow window = null;
             int allDataLength = newDataLength + instructionsLength;
-            if (myVersion == 1) {
+            if (myVersion != 0) {
+                SVNDiffCodec codec = SVNDiffCodec.getCodec(myVersion);
                 ByteArrayOutputStream out = new ByteArrayOutputStream();
                 int bufferPosition = myBuffer.position();
                 try {
-                    instructionsLength = deflate(instructionsLength, out);
-                    newDataLength = deflate(newDataLength, out);
+                    byte[] instructions = codec.decompress(myBuffer, instructionsLength);
+                    byte[] newData = newDataLength > 0 ? codec.decompress(myBuffer, newDataLength) : new byte[0];
+                    instructionsLength = instructions.length;
+                    newDataLength = newData.length;
+                    out.write(instructions);
+                    out.write(newData);
                 } catch (IOException e) {
                     SVNDebugLog.getDefaultLog().logSevere(SVNLogType.DEFAULT, e);
                 }
@@ -153,32 +155,6 @@ public class SVNDeltaReader {
         }
     }
     
-    private int deflate(int compressedLength, OutputStream out) throws IOException {
-        int originalPosition = myBuffer.position();
-        int uncompressedLength = readOffset();
-        // substract offset length from the total length.
-        if (uncompressedLength == (compressedLength - (myBuffer.position() - originalPosition))) {
-            int offset = myBuffer.arrayOffset() + myBuffer.position();
-            out.write(myBuffer.array(), offset, uncompressedLength);
-        } else {
-            byte[] uncompressedData = new byte[uncompressedLength];
-            byte[] compressed = myBuffer.array();
-            int offset = myBuffer.arrayOffset() + myBuffer.position();
-            InputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed, offset, compressedLength));
-            int read = 0;
-            while(read < uncompressedLength) {
-                int r = in.read(uncompressedData, read, uncompressedLength - read);
-                if (r < 0) {
-                    break;
-                }
-                read += r;
-            }
-            out.write(uncompressedData);
-        }
-        myBuffer.position(originalPosition + compressedLength);
-        return uncompressedLength;
-    }
-
     private void appendToBuffer(byte[] data, int offset, int length) {
         int limit = myBuffer.limit(); // amount of pending data?
         if (myBuffer.capacity() < limit + length) {
@@ -0,0 +1,160 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.delta;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.tmatesoft.svn.core.io.diff.SVNDiffInstruction;
+
+/**
+ * Compresses and decompresses instructions and new data sections of
+ * svndiff windows. Version 0 of the svndiff format stores sections as is,
+ * every later version prefixes a section with its original length and
+ * either stores it as is (when it is not worth compressing) or compressed
+ * with the codec of this version.
+ *
+ * <p>
+ * svndiff1 uses zlib, svndiff2 uses LZ4, which is much faster to compress
+ * and decompress at the cost of a somewhat lower ratio. svndiff2 is only
+ * offered over the wire when the <code>svnkit.svndiff2</code> system
+ * property is set to <span class="javakeyword">true</span>.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public abstract class SVNDiffCodec {
+
+    public static final SVNDiffCodec ZLIB = new SVNZlibDiffCodec();
+
+    public static final SVNDiffCodec LZ4 = new SVNLZ4DiffCodec();
+
+    private static final boolean ourIsSVNDiff2Enabled = Boolean.getBoolean("svnkit.svndiff2");
+
+    public static boolean isSVNDiff2Enabled() {
+        return ourIsSVNDiff2Enabled;
+    }
+
+    /**
+     * Returns the codec of the specified svndiff version.
+     *
+     * @param  version svndiff version
+     * @return         codec or <span class="javakeyword">null</span> for
+     *                 svndiff0 and unknown versions
+     */
+    public static SVNDiffCodec getCodec(int version) {
+        if (version == ZLIB.getVersion()) {
+            return ZLIB;
+        } else if (version == LZ4.getVersion()) {
+            return LZ4;
+        }
+        return null;
+    }
+
+    public abstract int getVersion();
+
+    public byte[] getHeader() {
+        return new byte[] {'S', 'V', 'N', (byte) getVersion()};
+    }
+
+    /**
+     * Encodes <code>length</code> bytes of <code>src</code> as a window
+     * section.
+     *
+     * @return a buffer with the encoded section, ready to be read
+     */
+    public ByteBuffer compress(byte[] src, int offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length + 5);
+        SVNDiffInstruction.writeInt(buffer, length);
+        int headerLength = buffer.position();
+        int compressedLength = -1;
+        if (length >= getMinimumCompressedLength()) {
+            compressedLength = compress(src, offset, length, buffer.array(), buffer.arrayOffset() + headerLength, getCompressedLengthLimit(length, headerLength));
+        }
+        if (compressedLength >= 0) {
+            buffer.position(headerLength + compressedLength);
+        } else {
+            buffer.put(src, offset, length);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decodes a window section of <code>length</code> bytes starting at
+     * the current position of <code>src</code> and moves the position past
+     * the section.
+     *
+     * @return decoded section bytes
+     */
+    public byte[] decompress(ByteBuffer src, int length) throws IOException {
+        int sectionEnd = src.position() + length;
+        int originalLength = readInt(src);
+        if (originalLength < 0 || src.position() > sectionEnd) {
+            throw new IOException("Decompression of svndiff data failed: invalid section header");
+        }
+        byte[] data = new byte[originalLength];
+        int compressedLength = sectionEnd - src.position();
+        if (compressedLength == originalLength) {
+            src.get(data);
+        } else {
+            decompress(src.array(), src.arrayOffset() + src.position(), compressedLength, data, 0, originalLength);
+            src.position(sectionEnd);
+        }
+        return data;
+    }
+
+    /**
+     * Sections shorter than this are always stored as is.
+     */
+    protected int getMinimumCompressedLength() {
+        return 0;
+    }
+
+    /**
+     * Returns the maximum compressed length worth storing, sections that
+     * do not compress to this length or better are stored as is. The result
+     * must be less than <code>length</code>, otherwise a reader will take
+     * the compressed section for the stored one.
+     */
+    protected int getCompressedLengthLimit(int length, int headerLength) {
+        return length - 1;
+    }
+
+    /**
+     * Compresses <code>srcLength</code> bytes into at most <code>dstLength</code>
+     * bytes of <code>dst</code>.
+     *
+     * @return compressed length or -1 if the data does not fit into <code>dstLength</code>
+     */
+    protected abstract int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset, int dstLength) throws IOException;
+
+    /**
+     * Decompresses <code>srcLength</code> bytes into exactly <code>dstLength</code>
+     * bytes of <code>dst</code>.
+     *
+     * @throws IOException if the data is corrupt or does not decompress to <code>dstLength</code> bytes
+     */
+    protected abstract void decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset, int dstLength) throws IOException;
+
+    private static int readInt(ByteBuffer buffer) {
+        int value = 0;
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            value = (value << 7) | (b & 0x7F);
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.delta;
+
+import java.io.IOException;
+
+/**
+ * svndiff2 codec, compresses window sections with the LZ4 block format
+ * (as used by Subversion 1.10). A section is a sequence of tokens, each
+ * followed by literal bytes and a match: 2 bytes little-endian offset back
+ * into the already decoded data and the match length. The last sequence
+ * has literals only.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public class SVNLZ4DiffCodec extends SVNDiffCodec {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_DISTANCE = 0xFFFF;
+    private static final int RUN_MASK = 0x0F;
+    private static final int HASH_LOG = 12;
+    private static final int SKIP_TRIGGER = 6;
+
+    public int getVersion() {
+        return 2;
+    }
+
+    protected int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset, int dstLength) {
+        int srcEnd = srcOffset + srcLength;
+        int matchLimit = srcEnd - LAST_LITERALS;
+        int mfLimit = srcEnd - MF_LIMIT;
+        int dstEnd = dstOffset + dstLength;
+        int dp = dstOffset;
+        int anchor = srcOffset;
+
+        if (srcLength > MF_LIMIT) {
+            int[] table = new int[1 << HASH_LOG];
+            int sp = srcOffset + 1;
+            int searchCount = 1 << SKIP_TRIGGER;
+            while (sp < mfLimit) {
+                int sequence = readInt(src, sp);
+                int hash = hash(sequence);
+                int ref = srcOffset + table[hash];
+                table[hash] = sp - srcOffset;
+                if (ref >= sp || sp - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+                    sp += searchCount++ >>> SKIP_TRIGGER;
+                    continue;
+                }
+                searchCount = 1 << SKIP_TRIGGER;
+                while (sp > anchor && ref > srcOffset && src[sp - 1] == src[ref - 1]) {
+                    sp--;
+                    ref--;
+                }
+                int matchLength = MIN_MATCH;
+                while (sp + matchLength < matchLimit && src[sp + matchLength] == src[ref + matchLength]) {
+                    matchLength++;
+                }
+
+                int literalsLength = sp - anchor;
+                if (dp + 1 + literalsLength + literalsLength / 255 + 1 + 2 + (matchLength - MIN_MATCH) / 255 + 1 > dstEnd) {
+                    return -1;
+                }
+                int tokenPosition = dp++;
+                int token;
+                if (literalsLength >= RUN_MASK) {
+                    token = RUN_MASK << 4;
+                    dp = writeLength(dst, dp, literalsLength - RUN_MASK);
+                } else {
+                    token = literalsLength << 4;
+                }
+                System.arraycopy(src, anchor, dst, dp, literalsLength);
+                dp += literalsLength;
+                int distance = sp - ref;
+                dst[dp++] = (byte) distance;
+                dst[dp++] = (byte) (distance >>> 8);
+                if (matchLength - MIN_MATCH >= RUN_MASK) {
+                    token |= RUN_MASK;
+                    dp = writeLength(dst, dp, matchLength - MIN_MATCH - RUN_MASK);
+                } else {
+                    token |= matchLength - MIN_MATCH;
+                }
+                dst[tokenPosition] = (byte) token;
+
+                sp += matchLength;
+                anchor = sp;
+                if (sp < mfLimit) {
+                    table[hash(readInt(src, sp - 2))] = sp - 2 - srcOffset;
+                }
+            }
+        }
+
+        int literalsLength = srcEnd - anchor;
+        if (dp + 1 + literalsLength + (literalsLength >= RUN_MASK ? (literalsLength - RUN_MASK) / 255 + 1 : 0) > dstEnd) {
+            return -1;
+        }
+        if (literalsLength >= RUN_MASK) {
+            dst[dp++] = (byte) (RUN_MASK << 4);
+            dp = writeLength(dst, dp, literalsLength - RUN_MASK);
+        } else {
+            dst[dp++] = (byte) (literalsLength << 4);
+        }
+        System.arraycopy(src, anchor, dst, dp, literalsLength);
+        dp += literalsLength;
+        return dp - dstOffset;
+    }
+
+    protected void decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset, int dstLength) throws IOException {
+        int sp = srcOffset;
+        int srcEnd = srcOffset + srcLength;
+        int dp = dstOffset;
+        int dstEnd = dstOffset + dstLength;
+        while (true) {
+            if (sp >= srcEnd) {
+                throw corrupt();
+            }
+            int token = src[sp++] & 0xFF;
+            int literalsLength = token >>> 4;
+            if (literalsLength == RUN_MASK) {
+                int b;
+                do {
+                    if (sp >= srcEnd) {
+                        throw corrupt();
+                    }
+                    b = src[sp++] & 0xFF;
+                    literalsLength += b;
+                } while (b == 255);
+            }
+            if (literalsLength > srcEnd - sp || literalsLength > dstEnd - dp) {
+                throw corrupt();
+            }
+            System.arraycopy(src, sp, dst, dp, literalsLength);
+            sp += literalsLength;
+            dp += literalsLength;
+            if (sp == srcEnd) {
+                break;
+            }
+
+            if (srcEnd - sp < 2) {
+                throw corrupt();
+            }
+            int distance = (src[sp] & 0xFF) | ((src[sp + 1] & 0xFF) << 8);
+            sp += 2;
+            int ref = dp - distance;
+            if (distance == 0 || ref < dstOffset) {
+                throw corrupt();
+            }
+            int matchLength = token & RUN_MASK;
+            if (matchLength == RUN_MASK) {
+                int b;
+                do {
+                    if (sp >= srcEnd) {
+                        throw corrupt();
+                    }
+                    b = src[sp++] & 0xFF;
+                    matchLength += b;
+                } while (b == 255);
+            }
+            matchLength += MIN_MATCH;
+            if (matchLength > dstEnd - dp) {
+                throw corrupt();
+            }
+            if (distance >= matchLength) {
+                System.arraycopy(dst, ref, dst, dp, matchLength);
+                dp += matchLength;
+            } else {
+                for (int i = 0; i < matchLength; i++) {
+                    dst[dp++] = dst[ref++];
+                }
+            }
+        }
+        if (dp != dstEnd) {
+            throw corrupt();
+        }
+    }
+
+    private static int writeLength(byte[] dst, int dp, int length) {
+        while (length >= 255) {
+            dst[dp++] = (byte) 255;
+            length -= 255;
+        }
+        dst[dp++] = (byte) length;
+        return dp;
+    }
+
+    private static int readInt(byte[] src, int offset) {
+        return (src[offset] & 0xFF) | ((src[offset + 1] & 0xFF) << 8) | ((src[offset + 2] & 0xFF) << 16) | ((src[offset + 3] & 0xFF) << 24);
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static IOException corrupt() {
+        return new IOException("Decompression of svndiff data failed: corrupt LZ4 data");
+    }
+}
@@ -11,131 +11,184 @@
  */
 package org.tmatesoft.svn.core.internal.delta;
 
-import java.util.Map;
-
-import org.tmatesoft.svn.core.internal.util.SVNHashMap;
+import java.util.Arrays;
 
 /**
+ * Matches 64 bytes long blocks of the target against the blocks of the source
+ * with the same checksum. The blocks of the source are indexed in an open
+ * addressing table of primitive arrays which is reused by later windows, so
+ * that computing a delta allocates nothing per block or per byte.
+ *
  * @version 1.3
  * @author  TMate Software Ltd.
  */
 public class SVNXDeltaAlgorithm extends SVNDeltaAlgorithm {
     
     private static final int MATCH_BLOCK_SIZE = 64;
-    
+    private static final int MIN_TABLE_SIZE = 64;
+
+    private final PseudoAdler32 mySourceAdler = new PseudoAdler32();
+    private final PseudoAdler32 myTargetAdler = new PseudoAdler32();
+
+    // checksum of a block and its position + 1, position 0 marks a free slot.
+    private int[] myChecksums = new int[MIN_TABLE_SIZE];
+    private int[] myPositions = new int[MIN_TABLE_SIZE];
+    private int myTableMask;
+
+    // the current match and the pending insertion of new data.
+    private int myMatchPosition;
+    private int myMatchLength;
+    private int myMatchAdvance;
+    private int myInsertionPosition;
+    private int myInsertionLength;
+
     public void computeDelta(byte[] a, int aLength, byte[] b, int bLength) {
         if (bLength < MATCH_BLOCK_SIZE) {
             copyFromNewData(b, 0, bLength);
             return;
         }
-        PseudoAdler32 bAdler = new PseudoAdler32();
-        Map aMatchesTable = createMatchesTable(a, aLength, MATCH_BLOCK_SIZE, bAdler);
+        createMatchesTable(a, aLength, MATCH_BLOCK_SIZE);
+        PseudoAdler32 bAdler = myTargetAdler;
         bAdler.reset();
         bAdler.add(b, 0, MATCH_BLOCK_SIZE);
 
         int lo = 0;
         int size = bLength;
-        Match previousInsertion = null;
+        myInsertionLength = 0;
         
         while(lo < size) {
-            Match match = findMatch(aMatchesTable, bAdler, a, aLength, b, bLength, lo, previousInsertion);
-            if (match == null) {
-                if (previousInsertion != null && previousInsertion.length > 0) {
-                    previousInsertion.length++;
+            boolean matched = findMatch(bAdler.getValue(), a, aLength, b, bLength, lo);
+            if (!matched) {
+                if (myInsertionLength > 0) {
+                    myInsertionLength++;
                 } else {
-                    previousInsertion = new Match(lo, 1);
+                    myInsertionPosition = lo;
+                    myInsertionLength = 1;
                 }
             } else {
-                if (previousInsertion != null && previousInsertion.length > 0) {
-                    copyFromNewData(b, previousInsertion.position, previousInsertion.length);
-                    previousInsertion = null;
+                if (myInsertionLength > 0) {
+                    copyFromNewData(b, myInsertionPosition, myInsertionLength);
+                    myInsertionLength = 0;
                 }
-                copyFromSource(match.position, match.length);                
+                copyFromSource(myMatchPosition, myMatchLength);
             }
-            int advance = match != null ? match.advance : 1;
-            for (int next = lo; next < lo + advance; next++) {
-                bAdler.remove(b[next]);
-                if (next + MATCH_BLOCK_SIZE < bLength) {
-                    bAdler.add(b[next + MATCH_BLOCK_SIZE]);
+            int advance = matched ? myMatchAdvance : 1;
+            if (advance > MATCH_BLOCK_SIZE) {
+                // cheaper to sum the next block than to roll over the whole match.
+                bAdler.reset();
+                bAdler.add(b, lo + advance, Math.min(MATCH_BLOCK_SIZE, bLength - lo - advance));
+            } else {
+                for (int next = lo; next < lo + advance; next++) {
+                    bAdler.remove(b[next]);
+                    if (next + MATCH_BLOCK_SIZE < bLength) {
+                        bAdler.add(b[next + MATCH_BLOCK_SIZE]);
+                    }
                 }
             }
             lo += advance;
         }
-        if (previousInsertion != null && previousInsertion.length > 0) {
-            copyFromNewData(b, previousInsertion.position, previousInsertion.length);
-            previousInsertion = null;
+        if (myInsertionLength > 0) {
+            copyFromNewData(b, myInsertionPosition, myInsertionLength);
+            myInsertionLength = 0;
         }
     }
     
-    private static Match findMatch(Map matchesTable, PseudoAdler32 checksum, byte[] a, int aLength, byte[] b, int bLength, int bPos, Match previousInsertion) {
-        Match existingMatch = (Match) matchesTable.get(new Integer(checksum.getValue()));
-        if (existingMatch == null) {
-            return null;
+    private boolean findMatch(int checksum, byte[] a, int aLength, byte[] b, int bLength, int bPos) {
+        int position = getMatchesTablePosition(checksum);
+        if (position < 0) {
+            return false;
         }
-        if (!equals(a, aLength, existingMatch.position, existingMatch.length, b, bLength, bPos)) {
-            return null;
+        int length = Math.min(MATCH_BLOCK_SIZE, aLength - position);
+        if (!equals(a, aLength, position, length, b, bLength, bPos)) {
+            return false;
         }
-        existingMatch = new Match(existingMatch.position, existingMatch.length);
-        existingMatch.advance = existingMatch.length;
+        int advance = length;
 
         // extend forward 
-        while(existingMatch.position + existingMatch.length < aLength &&
-                bPos + existingMatch.advance < bLength &&
-                a[existingMatch.position + existingMatch.length] == b[bPos + existingMatch.advance]) {
-            existingMatch.length++;
-            existingMatch.advance++;
+        while(position + length < aLength &&
+                bPos + advance < bLength &&
+                a[position + length] == b[bPos + advance]) {
+            length++;
+            advance++;
         }
         // extend backward
-        if (previousInsertion != null) {
-            while(existingMatch.position > 0 && bPos > 0 &&
-                    a[existingMatch.position - 1] == b[bPos -1] &&
-                    previousInsertion.length != 0) {
-                previousInsertion.length--;
-                bPos--;
-                existingMatch.position--;
-                existingMatch.length++;
-            }
-        }
-        return existingMatch;
+        while(position > 0 && bPos > 0 &&
+                a[position - 1] == b[bPos -1] &&
+                myInsertionLength != 0) {
+            myInsertionLength--;
+            bPos--;
+            position--;
+            length++;
+        }
+        myMatchPosition = position;
+        myMatchLength = length;
+        myMatchAdvance = advance;
+        return true;
     }
     
-    private static Map createMatchesTable(byte[] data, int dataLength, int blockLength, PseudoAdler32 adler32) {
-        Map matchesTable = new SVNHashMap();
+    private void createMatchesTable(byte[] data, int dataLength, int blockLength) {
+        int blocksCount = (dataLength + blockLength - 1) / blockLength;
+        int tableSize = MIN_TABLE_SIZE;
+        while (tableSize < blocksCount * 2) {
+            tableSize <<= 1;
+        }
+        if (myPositions.length < tableSize) {
+            myChecksums = new int[tableSize];
+            myPositions = new int[tableSize];
+        } else {
+            Arrays.fill(myPositions, 0, tableSize, 0);
+        }
+        myTableMask = tableSize - 1;
+
+        PseudoAdler32 adler32 = mySourceAdler;
+        adler32.reset();
         for(int i = 0; i < dataLength; i+= blockLength) {
             int length = i + blockLength >= dataLength ? dataLength - i : blockLength;
             adler32.add(data, i, length);
-            Integer checksum = new Integer(adler32.getValue());
-            if (!matchesTable.containsKey(checksum)) {
-                matchesTable.put(checksum, new Match(i, length));
+            int checksum = adler32.getValue();
+            // the first block with a checksum is the one to match.
+            int slot = hash(checksum) & myTableMask;
+            while (myPositions[slot] != 0 && myChecksums[slot] != checksum) {
+                slot = (slot + 1) & myTableMask;
+            }
+            if (myPositions[slot] == 0) {
+                myChecksums[slot] = checksum;
+                myPositions[slot] = i + 1;
             }
             adler32.reset();
         }
-        return matchesTable;
+    }
+
+    private int getMatchesTablePosition(int checksum) {
+        int slot = hash(checksum) & myTableMask;
+        while (myPositions[slot] != 0) {
+            if (myChecksums[slot] == checksum) {
+                return myPositions[slot] - 1;
+            }
+            slot = (slot + 1) & myTableMask;
+        }
+        return -1;
+    }
+
+    private static int hash(int checksum) {
+        int h = checksum * 0x9E3779B9;
+        return h ^ (h >>> 16);
     }
     
     private static boolean equals(byte[] a, int aLength, int aPos, int length, byte[] b, int bLength, int bPos) {
         if (aPos + length - 1 > aLength || bPos + length > bLength) {
             return false;
         }
-        for(int i = 0; i < length; i++) {
-            if (a[aPos + i] != b[bPos + i]) {
+        // Java 6 has no range compare of arrays (Arrays.equals over ranges is Java 9),
+        // so this is a plain counted loop over both arrays, which the JIT unrolls.
+        int delta = bPos - aPos;
+        for (int i = aPos, end = aPos + length; i < end; i++) {
+            if (a[i] != b[i + delta]) {
                 return false;
             }
         }
         return true;
     }
-    
-    private static class Match {
-        
-        public Match(int p, int l) {
-            position = p;
-            length = l;
-        }
-        
-        public int position;
-        public int length;
-        public int advance;
-    }
 
     private static int ADLER32_MASK = 0x0000FFFF;
 
@@ -0,0 +1,80 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.delta;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.tmatesoft.svn.core.internal.util.SVNZlibPool;
+
+/**
+ * svndiff1 codec, compresses window sections with zlib.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public class SVNZlibDiffCodec extends SVNDiffCodec {
+
+    private static final int MINIMUM_COMPRESSED_LENGTH = 512;
+
+    public int getVersion() {
+        return 1;
+    }
+
+    protected int getMinimumCompressedLength() {
+        return MINIMUM_COMPRESSED_LENGTH;
+    }
+
+    protected int getCompressedLengthLimit(int length, int headerLength) {
+        // sections that do not get shorter together with the length header are stored as is.
+        return length - headerLength - 1;
+    }
+
+    protected int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset, int dstLength) {
+        Deflater deflater = SVNZlibPool.getInstance().getDeflater();
+        try {
+            deflater.setInput(src, srcOffset, srcLength);
+            deflater.finish();
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                if (compressedLength >= dstLength) {
+                    return -1;
+                }
+                compressedLength += deflater.deflate(dst, dstOffset + compressedLength, dstLength - compressedLength);
+            }
+            return compressedLength;
+        } finally {
+            SVNZlibPool.getInstance().releaseDeflater(deflater);
+        }
+    }
+
+    protected void decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset, int dstLength) throws IOException {
+        Inflater inflater = SVNZlibPool.getInstance().getInflater();
+        try {
+            inflater.setInput(src, srcOffset, srcLength);
+            int length = 0;
+            while (length < dstLength) {
+                int inflated = inflater.inflate(dst, dstOffset + length, dstLength - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Decompression of svndiff data failed: size mismatch");
+                }
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Decompression of svndiff data failed: " + e.getMessage());
+        } finally {
+            SVNZlibPool.getInstance().releaseInflater(inflater);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.io.fs;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded least-recently-used cache which is safe to use from many threads.
+ * Entries are spread over independently locked segments, each segment keeps
+ * its entries in access order and evicts the eldest ones once the total weight
+ * of the segment exceeds its share of the cache budget.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public class FSCache<K, V> {
+
+    private static final int DEFAULT_SEGMENTS_COUNT = 16;
+
+    private final String myName;
+    private final long myMaxWeight;
+    private final Segment<K, V>[] mySegments;
+
+    private final AtomicLong myHitsCount = new AtomicLong();
+    private final AtomicLong myMissesCount = new AtomicLong();
+    private final AtomicLong myEvictionsCount = new AtomicLong();
+
+    public FSCache(String name, long maxWeight) {
+        this(name, maxWeight, DEFAULT_SEGMENTS_COUNT);
+    }
+
+    @SuppressWarnings("unchecked")
+    public FSCache(String name, long maxWeight, int segmentsCount) {
+        myName = name;
+        myMaxWeight = Math.max(0, maxWeight);
+        segmentsCount = (int) Math.max(1, Math.min(segmentsCount, myMaxWeight));
+        mySegments = new Segment[segmentsCount];
+        long segmentMaxWeight = Math.max(1, myMaxWeight / segmentsCount);
+        for (int i = 0; i < mySegments.length; i++) {
+            mySegments[i] = new Segment<K, V>(segmentMaxWeight);
+        }
+    }
+
+    public String getName() {
+        return myName;
+    }
+
+    public boolean isEnabled() {
+        return myMaxWeight > 0;
+    }
+
+    public V get(K key) {
+        if (!isEnabled() || key == null) {
+            return null;
+        }
+        final Segment<K, V> segment = getSegment(key);
+        V value;
+        synchronized (segment) {
+            value = segment.getValue(key);
+        }
+        if (value != null) {
+            myHitsCount.incrementAndGet();
+        } else {
+            myMissesCount.incrementAndGet();
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        if (!isEnabled() || key == null || value == null) {
+            return;
+        }
+        final Segment<K, V> segment = getSegment(key);
+        final long weight = Math.max(1, weigh(key, value));
+        if (weight > segment.myMaxWeight) {
+            remove(key);
+            return;
+        }
+        int evicted = 0;
+        synchronized (segment) {
+            final Entry<V> previous = segment.put(key, new Entry<V>(value, weight));
+            if (previous != null) {
+                segment.myWeight -= previous.myWeight;
+            }
+            segment.myWeight += weight;
+            for (Iterator<Map.Entry<K, Entry<V>>> entries = segment.entrySet().iterator();
+                 segment.myWeight > segment.myMaxWeight && entries.hasNext();) {
+                final Map.Entry<K, Entry<V>> eldest = entries.next();
+                if (eldest.getKey().equals(key)) {
+                    continue;
+                }
+                segment.myWeight -= eldest.getValue().myWeight;
+                entries.remove();
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            myEvictionsCount.addAndGet(evicted);
+        }
+    }
+
+    public V remove(K key) {
+        if (!isEnabled() || key == null) {
+            return null;
+        }
+        final Segment<K, V> segment = getSegment(key);
+        synchronized (segment) {
+            final Entry<V> removed = segment.remove(key);
+            if (removed == null) {
+                return null;
+            }
+            segment.myWeight -= removed.myWeight;
+            return removed.myValue;
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < mySegments.length; i++) {
+            synchronized (mySegments[i]) {
+                mySegments[i].clear();
+                mySegments[i].myWeight = 0;
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < mySegments.length; i++) {
+            synchronized (mySegments[i]) {
+                size += mySegments[i].size();
+            }
+        }
+        return size;
+    }
+
+    public long getWeight() {
+        long weight = 0;
+        for (int i = 0; i < mySegments.length; i++) {
+            synchronized (mySegments[i]) {
+                weight += mySegments[i].myWeight;
+            }
+        }
+        return weight;
+    }
+
+    public long getMaxWeight() {
+        return myMaxWeight;
+    }
+
+    public long getHitsCount() {
+        return myHitsCount.get();
+    }
+
+    public long getMissesCount() {
+        return myMissesCount.get();
+    }
+
+    public long getEvictionsCount() {
+        return myEvictionsCount.get();
+    }
+
+    public double getHitRate() {
+        final long hits = getHitsCount();
+        final long requests = hits + getMissesCount();
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    public void resetStatistics() {
+        myHitsCount.set(0);
+        myMissesCount.set(0);
+        myEvictionsCount.set(0);
+    }
+
+    public String toString() {
+        StringBuffer buffer = new StringBuffer();
+        buffer.append("{[");
+        buffer.append("Cache:");
+        buffer.append(myName);
+        buffer.append("][");
+        buffer.append("Size:");
+        buffer.append(size());
+        buffer.append("][");
+        buffer.append("Weight:");
+        buffer.append(getWeight());
+        buffer.append("/");
+        buffer.append(myMaxWeight);
+        buffer.append("][");
+        buffer.append("Hits:");
+        buffer.append(getHitsCount());
+        buffer.append("][");
+        buffer.append("Misses:");
+        buffer.append(getMissesCount());
+        buffer.append("][");
+        buffer.append("Evictions:");
+        buffer.append(getEvictionsCount());
+        buffer.append("]}");
+        return buffer.toString();
+    }
+
+    /**
+     * Returns the weight of the cached value, the total weight of all values
+     * is kept under the cache budget. Every entry weighs 1 by default, so that
+     * the budget is simply the maximal number of entries.
+     */
+    protected long weigh(K key, V value) {
+        return 1;
+    }
+
+    private Segment<K, V> getSegment(Object key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        hash ^= (hash >>> 7) ^ (hash >>> 4);
+        return mySegments[(hash & 0x7fffffff) % mySegments.length];
+    }
+
+    private static class Entry<V> {
+        private final V myValue;
+        private final long myWeight;
+
+        private Entry(V value, long weight) {
+            myValue = value;
+            myWeight = weight;
+        }
+    }
+
+    private static class Segment<K, V> extends LinkedHashMap<K, Entry<V>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long myMaxWeight;
+        private long myWeight;
+
+        private Segment(long maxWeight) {
+            super(16, 0.75f, true);
+            myMaxWeight = maxWeight;
+        }
+
+        private V getValue(K key) {
+            final Entry<V> entry = super.get(key);
+            return entry != null ? entry.myValue : null;
+        }
+    }
+}
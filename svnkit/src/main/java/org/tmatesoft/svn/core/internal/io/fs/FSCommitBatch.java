@@ -0,0 +1,186 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.io.fs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
+import org.tmatesoft.svn.util.SVNDebugLog;
+import org.tmatesoft.svn.util.SVNLogType;
+
+/**
+ * Commits a stream of transactions of one writer, like a repository load,
+ * under a single acquisition of the repository write lock. Revision files
+ * are written as usual, but the current file is written and the rep-cache
+ * records are inserted only once for every batch of revisions, so the
+ * revisions of a batch become visible to other readers together.
+ *
+ * <p/>
+ * While the batch is open, the owner <code>FSFS</code> reports the youngest
+ * revision committed within the batch and other writers can't get the
+ * write lock.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public class FSCommitBatch {
+
+    private static final int BATCH_SIZE = Integer.getInteger("svnkit.fsfs.bulkLoad.batchSize", 1000).intValue();
+
+    private final FSFS myFSFS;
+    private final int myBatchSize;
+    private final List<FSCommitter> myCommitters;
+    private final List<Long> myRevisions;
+    private final Map<String, FSRepresentation> myRepresentations;
+    private FSWriteLock myWriteLock;
+    private long myYoungestRevision;
+
+    public FSCommitBatch(FSFS owner) {
+        this(owner, BATCH_SIZE);
+    }
+
+    public FSCommitBatch(FSFS owner, int batchSize) {
+        myFSFS = owner;
+        myBatchSize = Math.max(1, batchSize);
+        myCommitters = new ArrayList<FSCommitter>();
+        myRevisions = new ArrayList<Long>();
+        myRepresentations = new LinkedHashMap<String, FSRepresentation>();
+    }
+
+    public static boolean isSupported(FSFS owner) {
+        return owner.getDBFormat() >= FSFS.MIN_NO_GLOBAL_IDS_FORMAT;
+    }
+
+    /**
+     * Takes the repository write lock and attaches the batch to its owner.
+     */
+    public void open() throws SVNException {
+        if (!isSupported(myFSFS)) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.UNSUPPORTED_FEATURE,
+                    "Batch commits are not supported by repository format ''{0}''", new Integer(myFSFS.getDBFormat()));
+            SVNErrorManager.error(err, SVNLogType.FSFS);
+        }
+        myWriteLock = FSWriteLock.getWriteLockForDB(myFSFS);
+        try {
+            myWriteLock.lock();
+        } catch (SVNException e) {
+            FSWriteLock.release(myWriteLock);
+            myWriteLock = null;
+            throw e;
+        }
+        myYoungestRevision = myFSFS.getYoungestRevision();
+        myFSFS.setCommitBatch(this);
+    }
+
+    /**
+     * Flushes revisions committed since the last flush, releases the write
+     * lock and detaches the batch from its owner.
+     */
+    public void close() throws SVNException {
+        if (myWriteLock == null) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            myFSFS.setCommitBatch(null);
+            try {
+                myWriteLock.unlock();
+            } finally {
+                FSWriteLock.release(myWriteLock);
+                myWriteLock = null;
+            }
+        }
+    }
+
+    public long getYoungestRevision() {
+        return myYoungestRevision;
+    }
+
+    /**
+     * Returns a representation with the given SHA1 checksum which was written
+     * within the batch but is not in the rep-cache yet.
+     */
+    public FSRepresentation getRepresentation(String sha1HexDigest) {
+        FSRepresentation representation = myRepresentations.get(sha1HexDigest);
+        return representation != null ? new FSRepresentation(representation) : null;
+    }
+
+    long commit(FSCommitter committer, StringBuffer conflictPath) throws SVNException {
+        Collection<FSRepresentation> representations = myFSFS.getRepositoryCacheManager() != null ?
+                new ArrayList<FSRepresentation>() : null;
+        long newRevision = committer.commitInGroup(myYoungestRevision, representations, conflictPath);
+        myYoungestRevision = newRevision;
+        myFSFS.setYoungestRevisionCache(newRevision);
+        myCommitters.add(committer);
+        myRevisions.add(new Long(newRevision));
+        if (representations != null) {
+            for (FSRepresentation representation : representations) {
+                if (!myRepresentations.containsKey(representation.getSHA1HexDigest())) {
+                    myRepresentations.put(representation.getSHA1HexDigest(), representation);
+                }
+            }
+        }
+        if (myCommitters.size() >= myBatchSize) {
+            flush();
+        }
+        return newRevision;
+    }
+
+    /**
+     * Makes the revisions committed since the last flush visible: writes the
+     * current file, inserts their representations into the rep-cache in one
+     * transaction and removes their transactions.
+     */
+    public void flush() throws SVNException {
+        if (myCommitters.isEmpty()) {
+            return;
+        }
+        try {
+            myFSFS.writeCurrentFile(myYoungestRevision, null, null);
+        } catch (IOException ioe) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, ioe.getLocalizedMessage());
+            SVNErrorManager.error(err, ioe, SVNLogType.FSFS);
+        }
+        if (!myRepresentations.isEmpty() && myFSFS.getRepositoryCacheManager() != null) {
+            try {
+                myFSFS.getRepositoryCacheManager().runWriteTransaction(new IFSSqlJetTransaction() {
+                    public void run() throws SVNException {
+                        for (FSRepresentation representation : myRepresentations.values()) {
+                            myFSFS.getRepositoryCacheManager().insert(representation, false);
+                        }
+                    }
+                });
+            } catch (SVNException e) {
+                // ignore
+                SVNDebugLog.getDefaultLog().logError(SVNLogType.FSFS, e);
+            }
+        }
+        myRepresentations.clear();
+        try {
+            for (int i = 0; i < myCommitters.size(); i++) {
+                myCommitters.get(i).completeCommitInGroup(myRevisions.get(i).longValue());
+            }
+        } finally {
+            myCommitters.clear();
+            myRevisions.clear();
+        }
+    }
+}
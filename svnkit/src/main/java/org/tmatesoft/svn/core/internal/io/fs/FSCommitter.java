@@ -54,6 +54,7 @@ import org.tmatesoft.svn.util.SVNLogType;
 public class FSCommitter {
 
     private static volatile boolean ourAutoUnlock;
+    private static volatile boolean ourGroupCommit = Boolean.getBoolean("svnkit.fsfs.groupCommit");
     
     private FSFS myFSFS;
     private FSTransactionRoot myTxnRoot;
@@ -70,6 +71,19 @@ public class FSCommitter {
         return ourAutoUnlock;
     }
 
+    /**
+     * Enables group commit: transactions waiting for the repository write
+     * lock in this JVM are committed in one critical section, which writes
+     * the current file once for all of them.
+     */
+    public static synchronized void setGroupCommit(boolean groupCommit) {
+        ourGroupCommit = groupCommit;
+    }
+
+    public static synchronized boolean isGroupCommit() {
+        return ourGroupCommit;
+    }
+
     public FSCommitter(FSFS fsfs, FSTransactionRoot txnRoot, FSTransactionInfo txn, Collection<String> lockTokens, String author) {
         myFSFS = fsfs;
         myTxnRoot = txnRoot;
@@ -303,13 +317,20 @@ public class FSCommitter {
             mergeChanges(myFSFS, getTxnRoot(), youngishRootNode, conflictPath);
             myTxn.setBaseRevision(youngishRev);
 
+            FSCommitBatch commitBatch = myFSFS.getCommitBatch();
+            if (commitBatch != null) {
+                // the batch holds the write lock and writes the current file on flush.
+                newRevision = commitBatch.commit(this, conflictPath);
+                break;
+            }
+
             FSWriteLock writeLock = FSWriteLock.getWriteLockForDB(myFSFS);
             final Collection<FSRepresentation> representations = myFSFS.getRepositoryCacheManager() != null ?
                     new ArrayList<FSRepresentation>() : null;
-            synchronized (writeLock) {
+            if (isGroupCommit() && myFSFS.getDBFormat() >= FSFS.MIN_NO_GLOBAL_IDS_FORMAT) {
+                FSGroupCommit groupCommit = FSGroupCommit.getGroupCommit(myFSFS);
                 try {
-                    writeLock.lock();
-                    newRevision = commit(representations);
+                    newRevision = groupCommit.commit(this, writeLock, representations, conflictPath);
                 } catch (SVNException svne) {
                     if (svne.getErrorMessage().getErrorCode() == SVNErrorCode.FS_TXN_OUT_OF_DATE) {
                         long youngestRev = myFSFS.getYoungestRevision();
@@ -320,9 +341,28 @@ public class FSCommitter {
                     }
                     throw svne;
                 } finally {
-                    writeLock.unlock();
+                    FSGroupCommit.release(groupCommit);
                     FSWriteLock.release(writeLock);
                 }
+            } else {
+                synchronized (writeLock) {
+                    try {
+                        writeLock.lock();
+                        newRevision = commit(myFSFS.getYoungestRevision(), representations, true);
+                    } catch (SVNException svne) {
+                        if (svne.getErrorMessage().getErrorCode() == SVNErrorCode.FS_TXN_OUT_OF_DATE) {
+                            long youngestRev = myFSFS.getYoungestRevision();
+                            if (youngishRev == youngestRev) {
+                                throw svne;
+                            }
+                            continue;
+                        }
+                        throw svne;
+                    } finally {
+                        writeLock.unlock();
+                        FSWriteLock.release(writeLock);
+                    }
+                }
             }
             // write representations here.
             if (representations != null && !representations.isEmpty()) {
@@ -479,9 +519,46 @@ public class FSCommitter {
         return id;
     }
 
-    private long commit(Collection<FSRepresentation> representations) throws SVNException {
-        long oldRev = myFSFS.getYoungestRevision();
+    /**
+     * Commits the transaction as the next revision after <code>youngestRevision</code>
+     * while the repository write lock is held by the caller's group commit.
+     * The transaction is merged with the revisions committed since its base
+     * revision first, the current file is left to the group commit.
+     */
+    long commitInGroup(long youngestRevision, Collection<FSRepresentation> representations, StringBuffer conflictPath) throws SVNException {
+        // revisions committed earlier in the group are not in the current file
+        // until the group is complete, let the repository read them anyway.
+        myFSFS.setYoungestRevisionCache(youngestRevision);
+        if (myTxn.getBaseRevision() != youngestRevision) {
+            FSRevisionNode youngestRootNode = new FSRevisionRoot(myFSFS, youngestRevision).getRevisionNode("/");
+            mergeChanges(myFSFS, getTxnRoot(), youngestRootNode, conflictPath);
+            myTxn.setBaseRevision(youngestRevision);
+        }
+        return commit(youngestRevision, representations, false);
+    }
+
+    /**
+     * Completes a commit of a group once the current file which makes its
+     * revision visible is written.
+     */
+    void completeCommitInGroup(long newRevision) throws SVNException {
+        myFSFS.setYoungestRevisionCache(newRevision);
+        myFSFS.purgeTxn(myTxn.getTxnId());
+    }
 
+    /**
+     * Forgets revisions of a group which failed before the current file was
+     * written, the youngest revision is read from the current file again.
+     */
+    void abortCommitInGroup() {
+        myFSFS.setYoungestRevisionCache(0);
+    }
+
+    FSFS getOwner() {
+        return myFSFS;
+    }
+
+    private long commit(long oldRev, Collection<FSRepresentation> representations, boolean writeCurrentFile) throws SVNException {
         if (myTxn.getBaseRevision() != oldRev) {
             SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.FS_TXN_OUT_OF_DATE, "Transaction out of date");
             SVNErrorManager.error(err, SVNLogType.FSFS);
@@ -535,6 +612,9 @@ public class FSCommitter {
             // TODO pack property?
         }
 
+        if (!writeCurrentFile) {
+            return newRevision;
+        }
         try {
             txnRoot.writeFinalCurrentFile(newRevision, startNodeId, startCopyId);
         } catch (IOException ioe) {
@@ -772,7 +852,7 @@ public class FSCommitter {
                 public void handleUnlock(String path, SVNLock lock, SVNErrorMessage error) throws SVNException {
                 }
             };
-            fsfs.walkDigestFiles(fsfs.getDigestFileFromRepositoryPath(path), handler, haveWriteLock);
+            fsfs.walkLocks(path, handler, haveWriteLock);
         } else {
             SVNLock lock = fsfs.getLockHelper(path, haveWriteLock);
             if (lock != null) {
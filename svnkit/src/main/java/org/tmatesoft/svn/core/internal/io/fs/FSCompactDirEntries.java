@@ -0,0 +1,99 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.io.fs;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.internal.util.SVNHashMap;
+
+/**
+ * Immutable, compact form of a parsed directory listing of a committed
+ * directory. Entry names are kept sorted in parallel with entry kinds and
+ * immutable entry ids, so that a listing costs a few arrays instead of a map
+ * of entry objects and may be safely shared between threads.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public class FSCompactDirEntries {
+
+    private static final byte KIND_FILE = 0;
+    private static final byte KIND_DIR = 1;
+
+    private final String[] myNames;
+    private final byte[] myKinds;
+    private final FSID[] myIDs;
+
+    private FSCompactDirEntries(int count) {
+        myNames = new String[count];
+        myKinds = new byte[count];
+        myIDs = new FSID[count];
+    }
+
+    /**
+     * Returns <code>null</code> if some of the entries refer to mutable node
+     * revisions, such listings are never shared.
+     */
+    public static FSCompactDirEntries fromEntries(Map entries) {
+        String[] names = (String[]) entries.keySet().toArray(new String[entries.size()]);
+        Arrays.sort(names);
+        FSCompactDirEntries compactEntries = new FSCompactDirEntries(names.length);
+        for (int i = 0; i < names.length; i++) {
+            FSEntry entry = (FSEntry) entries.get(names[i]);
+            FSID id = entry.getId();
+            if (id.isTxn()) {
+                return null;
+            }
+            compactEntries.myNames[i] = names[i];
+            compactEntries.myKinds[i] = entry.getType() == SVNNodeKind.DIR ? KIND_DIR : KIND_FILE;
+            compactEntries.myIDs[i] = id;
+        }
+        return compactEntries;
+    }
+
+    public int size() {
+        return myNames.length;
+    }
+
+    public FSEntry getEntry(String name) {
+        int index = Arrays.binarySearch(myNames, name);
+        return index >= 0 ? createEntry(index) : null;
+    }
+
+    public Map toEntries() {
+        Map entries = new SVNHashMap();
+        for (int i = 0; i < myNames.length; i++) {
+            entries.put(myNames[i], createEntry(i));
+        }
+        return entries;
+    }
+
+    /**
+     * Rough estimation of the heap occupied by the listing, used as the weight
+     * of the listing in the directories cache.
+     */
+    public long getEstimatedSize() {
+        long size = 64 + myNames.length * (1 + 2 * 4 + 56);
+        for (int i = 0; i < myNames.length; i++) {
+            size += 40 + 2 * myNames[i].length();
+        }
+        return size;
+    }
+
+    private FSEntry createEntry(int index) {
+        FSID id = myIDs[index];
+        SVNNodeKind kind = myKinds[index] == KIND_DIR ? SVNNodeKind.DIR : SVNNodeKind.FILE;
+        return new FSEntry(id, kind, myNames[index]);
+    }
+}
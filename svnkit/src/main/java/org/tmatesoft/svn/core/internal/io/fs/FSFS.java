@@ -91,6 +91,8 @@ public class FSFS {
     public static final String PACKED_REVPROPS_SECTION = "packed-revprops";
     public static final String COMPRESS_PACKED_REVPROPS_OPTION = "compress-packed-revprops";
     public static final String REVPROP_PACK_SIZE_OPTION = "revprop-pack-size";
+    public static final String LOCKS_SECTION = "locks";
+    public static final String ENABLE_LOCK_INDEX_OPTION = "enable-lock-index";
 
     public static final String PATH_CONFIG = "fsfs.conf";
     public static final String TXN_PATH_EXT = ".txn";
@@ -173,6 +175,8 @@ public class FSFS {
     private boolean myIsHooksEnabled;
     private boolean myCompressPackedRevprops;
     private long myRevpropPackSize;
+    private FSRepositoryCaches myCaches;
+    private volatile FSCommitBatch myCommitBatch;
 
     public FSFS(File repositoryRoot) {
         myRepositoryRoot = repositoryRoot;
@@ -520,6 +524,11 @@ public class FSFS {
     }
 
     public long getYoungestRevision() throws SVNException {
+        FSCommitBatch commitBatch = myCommitBatch;
+        if (commitBatch != null) {
+            myYoungestRevisionCache = commitBatch.getYoungestRevision();
+            return myYoungestRevisionCache;
+        }
         FSFile file = new FSFile(getCurrentFile());
         try {
             String line = file.readLine(180);
@@ -542,6 +551,9 @@ public class FSFS {
         FSFile file = new FSFile(getMinUnpackedRevFile());
         try {
             myMinUnpackedRevision = file.readLong();
+            if (myCaches != null) {
+                myCaches.setMinUnpackedRevision(myMinUnpackedRevision);
+            }
             return myMinUnpackedRevision;
         } catch (NumberFormatException nfe) {
             myMinUnpackedRevision = 0;
@@ -556,6 +568,10 @@ public class FSFS {
         synchronized (writeLock) {
             try {
                 writeLock.lock();
+                if (upgradeLockStore()) {
+                    // moving the locks is all this upgrade does, the next one upgrades the format.
+                    return;
+                }
                 if (myDBFormat == DB_FORMAT) {
                     return;
                 }
@@ -672,18 +688,17 @@ public class FSFS {
             SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.FS_NO_SUCH_REVISION, "No such packed revision {0}", (Long) revision);
             SVNErrorManager.error(err, SVNLogType.FSFS);
         }
-        final File packFile = getPackedRevPropFile(revision);
-        final SVNFSFSPackedRevProps packedRevProps = SVNFSFSPackedRevProps.fromPackFile(packFile);
-        final SVNProperties properties = packedRevProps.parseProperties(revision);
-        return properties == null ? new SVNProperties() : properties;
-    }
-
-    private File getPackedRevPropFile(long revision) throws SVNException {
-        final File packShardDirectory = getPackedRevPropsShardPath(revision);
-        final File manifestFile = new File(packShardDirectory, MANIFEST_FILE);
-
-        final SVNFSFSPackedRevPropsManifest manifest = SVNFSFSPackedRevPropsManifest.fromFile(manifestFile, revision, myMaxFilesPerDirectory);
-        return new File(packShardDirectory, manifest.getPackName(revision));
+        final FSRepositoryCaches caches = getCaches();
+        final long shard = revision / myMaxFilesPerDirectory;
+        final long generation = caches.getRevPropsGeneration();
+        FSRevPropsShard revPropsShard = caches.getRevPropsShard(shard);
+        SVNProperties properties = revPropsShard != null ? revPropsShard.getProperties(revision, generation) : null;
+        if (properties == null) {
+            revPropsShard = FSRevPropsShard.load(getPackedRevPropsShardPath(revision), revision, myMaxFilesPerDirectory, generation);
+            caches.putRevPropsShard(shard, revPropsShard);
+            properties = revPropsShard.getProperties(revision, generation);
+        }
+        return properties == null ? new SVNProperties() : new SVNProperties(properties);
     }
 
     private static long decodeUncompressedSize(InputStream inputStream, int lengthRecordSize, int[] outputBytesRead) throws SVNException {
@@ -808,6 +823,10 @@ public class FSFS {
             File file = new File(getTransactionDir(id.getTxnID()), PATH_PREFIX_NODE + id.getNodeID() + "." + id.getCopyID());
             revisionFile = new FSFile(file);
         } else {
+            FSRevisionNode cachedNode = getCaches().getRevisionNode(id);
+            if (cachedNode != null) {
+                return cachedNode;
+            }
             revisionFile = openAndSeekRevision(id.getRevision(), id.getOffset());
         }
 
@@ -822,6 +841,10 @@ public class FSFS {
         if (node.isFreshTxnRoot()) {
             node.setFreshRootPredecessorId(node.getPredecessorId());
         }
+        if (!id.isTxn()) {
+            node.internPaths(getCaches());
+            getCaches().putRevisionNode(id, node);
+        }
         return node;
     }
 
@@ -842,7 +865,17 @@ public class FSFS {
             }
             return entries;
         } else if (txtRep != null) {
-            return parsePlainRepresentation(parseProperties(txtRep), false);
+            FSRepositoryCaches caches = getCaches();
+            FSCompactDirEntries cachedEntries = caches.getDirEntries(txtRep);
+            if (cachedEntries != null) {
+                return cachedEntries.toEntries();
+            }
+            Map entries = parsePlainRepresentation(parseProperties(txtRep), false);
+            cachedEntries = FSCompactDirEntries.fromEntries(entries);
+            if (cachedEntries != null) {
+                caches.putDirEntries(txtRep, cachedEntries);
+            }
+            return entries;
         }
         return new SVNHashMap();// returns an empty map, must not be null!!
     }
@@ -1138,6 +1171,14 @@ public class FSFS {
         myYoungestRevisionCache = revision;
     }
 
+    public FSCommitBatch getCommitBatch() {
+        return myCommitBatch;
+    }
+
+    void setCommitBatch(FSCommitBatch commitBatch) {
+        myCommitBatch = commitBatch;
+    }
+
     public void setUUID(String uuid) throws SVNException {
         File uniqueFile = SVNFileUtil.createUniqueFile(getDBRoot(), UUID_FILE, ".tmp", false);
         uuid += '\n';
@@ -1215,10 +1256,14 @@ public class FSFS {
     public void setRevisionProperty(long revision, String propertyName, SVNPropertyValue propertyValue) throws SVNException {
         ensureRevisionsExists(revision);
 
+            // the write lock is already held by an open commit batch.
+            final boolean lock = myCommitBatch == null;
             FSWriteLock writeLock = FSWriteLock.getWriteLockForDB(this);
             synchronized (writeLock) {
                 try {
-                    writeLock.lock();
+                    if (lock) {
+                        writeLock.lock();
+                    }
 
                     if (!isPackedRevisionProperties(revision)) {
                         SVNWCProperties revProps = new SVNWCProperties(getRevisionPropertiesFile(revision, false), null);
@@ -1262,7 +1307,10 @@ public class FSFS {
                         }
                     }
                 } finally {
-                    writeLock.unlock();
+                    getCaches().invalidateRevisionProperties();
+                    if (lock) {
+                        writeLock.unlock();
+                    }
                     FSWriteLock.release(writeLock);
                 }
             }
@@ -1414,7 +1462,8 @@ public class FSFS {
     public SVNLock getLock(String repositoryPath, boolean haveWriteLock, boolean throwError) throws SVNException {
         repositoryPath = SVNPathUtil.canonicalizeAbsolutePath(repositoryPath);
 
-        SVNLock lock = fetchLockFromDigestFile(null, repositoryPath, null);
+        FSLockIndex lockIndex = getLockIndex();
+        SVNLock lock = lockIndex != null ? lockIndex.getLock(repositoryPath) : fetchLockFromDigestFile(null, repositoryPath, null);
 
         if (lock == null) {
             if (!throwError) {
@@ -1438,6 +1487,11 @@ public class FSFS {
     }
 
     public void deleteLock(SVNLock lock) throws SVNException {
+        FSLockIndex lockIndex = getLockIndex();
+        if (lockIndex != null) {
+            lockIndex.deleteLock(lock.getPath());
+            return;
+        }
         String reposPath = lock.getPath();
         String childToKill = null;
         Collection<String> children = new ArrayList<String>();
@@ -1469,6 +1523,44 @@ public class FSFS {
         }
     }
 
+    public boolean isLockIndexEnabled() {
+        return FSLockIndex.getIndexFile(this).isFile();
+    }
+
+    /**
+     * Returns the lock index if the upgrade has moved the locks into it. The
+     * index file is looked up on every call, since another instance may move
+     * the locks while this one is open.
+     */
+    private FSLockIndex getLockIndex() throws SVNException {
+        if (!isLockIndexEnabled()) {
+            return null;
+        }
+        return getCaches().getLockIndex(this);
+    }
+
+    /**
+     * Reports the lock of <code>repositoryPath</code> and the locks of all paths below it
+     * to <code>getLocksHandler</code>, expired locks are skipped (and removed if
+     * <code>haveWriteLock</code> is <span class="javakeyword">true</span>).
+     */
+    public void walkLocks(String repositoryPath, ISVNLockHandler getLocksHandler, boolean haveWriteLock) throws SVNException {
+        repositoryPath = SVNPathUtil.canonicalizeAbsolutePath(repositoryPath);
+        FSLockIndex lockIndex = getLockIndex();
+        if (lockIndex == null) {
+            walkDigestFiles(getDigestFileFromRepositoryPath(repositoryPath), getLocksHandler, haveWriteLock);
+            return;
+        }
+        Date current = new Date(System.currentTimeMillis());
+        for (SVNLock lock : lockIndex.getLocks(repositoryPath)) {
+            if (lock.getExpirationDate() == null || current.compareTo(lock.getExpirationDate()) < 0) {
+                getLocksHandler.handleLock(lock.getPath(), lock, null);
+            } else if (haveWriteLock) {
+                deleteLock(lock);
+            }
+        }
+    }
+
     public void walkDigestFiles(File digestFile, ISVNLockHandler getLocksHandler, boolean haveWriteLock) throws SVNException {
         Collection children = new LinkedList();
         SVNLock lock = fetchLockFromDigestFile(digestFile, null, children);
@@ -1874,6 +1966,22 @@ public class FSFS {
         return myReposCacheManager;
     }
 
+    /**
+     * Makes this instance read everything from disk instead of the caches
+     * shared by the instances of the same repository. Should be called
+     * before the instance is opened.
+     */
+    public void disableCaches() {
+        myCaches = FSRepositoryCaches.createUncachedCaches();
+    }
+
+    public FSRepositoryCaches getCaches() throws SVNException {
+        if (myCaches == null) {
+            myCaches = FSRepositoryCaches.getCaches(this);
+        }
+        return myCaches;
+    }
+
     public static File findRepositoryRoot(File path) {
         if (path == null) {
             path = new File("");
@@ -1960,6 +2068,10 @@ public class FSFS {
             SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.FS_NO_SUCH_REVISION, "No such revision {0}", String.valueOf(revision));
             SVNErrorManager.error(err, SVNLogType.FSFS);
         }
+        FSMappedFile mappedFile = getCaches().getMappedFile(file);
+        if (mappedFile != null) {
+            return new FSFile(mappedFile);
+        }
         return new FSFile(file);
     }
 
@@ -2069,23 +2181,38 @@ public class FSFS {
     }
 
     protected long getPackedOffset(long revision) throws SVNException {
-        //TODO: later on introduce invoking memcache here to fetch\store the requested data
-        //long shard = revision / myMaxFilesPerDirectory;
+        long shard = revision / myMaxFilesPerDirectory;
+        FSRepositoryCaches caches = getCaches();
+        long[] manifest = caches.getPackManifest(shard);
+        if (manifest == null) {
+            manifest = readPackManifest(revision);
+            caches.putPackManifest(shard, manifest);
+        }
+        int index = (int) (revision % myMaxFilesPerDirectory);
+        SVNErrorManager.assertionFailure(index < manifest.length, "offset for revision " + String.valueOf(revision) + " is null", SVNLogType.FSFS);
+        return manifest[index];
+    }
+
+    private long[] readPackManifest(long revision) throws SVNException {
         File manifestFile = getPackedRevPath(revision, PACK_KIND_MANIFEST);
         BufferedReader reader = null;
-        LinkedList manifest = new LinkedList();
+        long[] manifest = new long[(int) myMaxFilesPerDirectory];
+        int count = 0;
         try {
             reader = new BufferedReader(new InputStreamReader(SVNFileUtil.openFileForReading(manifestFile)));
             String line = null;
             while ((line = reader.readLine()) != null) {
-                Long offset = null;
+                if (count == manifest.length) {
+                    long[] grownManifest = new long[manifest.length * 2 + 1];
+                    System.arraycopy(manifest, 0, grownManifest, 0, count);
+                    manifest = grownManifest;
+                }
                 try {
-                    offset = Long.valueOf(line);
+                    manifest[count++] = Long.parseLong(line);
                 } catch (NumberFormatException nfe) {
                     SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.FS_CORRUPT);
                     SVNErrorManager.error(err, SVNLogType.FSFS);
                 }
-                manifest.add(offset);
             }
         } catch (IOException ioe) {
             SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, ioe.getMessage());
@@ -2093,10 +2220,12 @@ public class FSFS {
         } finally {
             SVNFileUtil.closeFile(reader);
         }
-
-        Long revOffsetLong = (Long) manifest.get((int) (revision % myMaxFilesPerDirectory));
-        SVNErrorManager.assertionFailure(revOffsetLong != null, "offset for revision " + String.valueOf(revision) + " is null", SVNLogType.FSFS);
-        return revOffsetLong.longValue();
+        if (count < manifest.length) {
+            long[] trimmedManifest = new long[count];
+            System.arraycopy(manifest, 0, trimmedManifest, 0, count);
+            manifest = trimmedManifest;
+        }
+        return manifest;
     }
 
     private SVNConfigFile loadConfig() {
@@ -2237,6 +2366,16 @@ public class FSFS {
             SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.UNKNOWN, "FATAL error: attempted to set a null lock");
             SVNErrorManager.error(err, SVNLogType.FSFS);
         }
+        FSLockIndex lockIndex = getLockIndex();
+        if (lockIndex != null) {
+            lockIndex.setLock(new FSLock(lock.getPath(), lock.getID(), lock.getOwner(), lock.getComment(),
+                    lock.getCreationDate(), lock.getExpirationDate(), isDAVComment));
+            return;
+        }
+        setDigestLock(lock, isDAVComment);
+    }
+
+    private void setDigestLock(SVNLock lock, boolean isDAVComment) throws SVNException {
         String lastChild = "";
         String path = lock.getPath();
         Collection children = new ArrayList();
@@ -2269,6 +2408,48 @@ public class FSFS {
         }
     }
 
+    private static boolean isLockIndexEnabled(SVNConfigFile config) {
+        return config != null && DefaultSVNOptions.getBooleanValue(config.getPropertyValue(LOCKS_SECTION, ENABLE_LOCK_INDEX_OPTION), false);
+    }
+
+    /**
+     * Moves the locks into the lock index file if it is enabled in the configuration,
+     * or back into the tree of digest files if it is not. Should be called under
+     * the write lock.
+     *
+     * @return <span class="javakeyword">true</span> if the locks were moved
+     */
+    private boolean upgradeLockStore() throws SVNException {
+        boolean enabled = isLockIndexEnabled(loadConfig());
+        File indexFile = FSLockIndex.getIndexFile(this);
+        if (enabled == indexFile.isFile()) {
+            return false;
+        }
+        if (enabled) {
+            final Collection<SVNLock> locks = new ArrayList<SVNLock>();
+            walkDigestFiles(getDigestFileFromRepositoryPath("/"), new ISVNLockHandler() {
+                public void handleLock(String path, SVNLock lock, SVNErrorMessage error) throws SVNException {
+                    locks.add(lock);
+                }
+                public void handleUnlock(String path, SVNLock lock, SVNErrorMessage error) throws SVNException {
+                }
+            }, false);
+            FSLockIndex.create(indexFile, locks);
+            File[] children = SVNFileListUtil.listFiles(getDBLocksDir());
+            for (int i = 0; children != null && i < children.length; i++) {
+                if (children[i].isDirectory() && children[i].getName().length() == DIGEST_SUBDIR_LEN) {
+                    SVNFileUtil.deleteAll(children[i], true);
+                }
+            }
+        } else {
+            for (SVNLock lock : getCaches().getLockIndex(this).getLocks("/")) {
+                setDigestLock(lock, ((FSLock) lock).isDAVComment());
+            }
+            SVNFileUtil.deleteFile(indexFile);
+        }
+        return true;
+    }
+
     private boolean ensureDirExists(File dir, boolean create) {
         if (!dir.exists() && create) {
             return dir.mkdirs();
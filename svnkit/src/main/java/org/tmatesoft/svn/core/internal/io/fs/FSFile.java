@@ -37,6 +37,7 @@ public class FSFile {
     
     private File myFile;
     private final byte[] myData;
+    private final FSMappedFile myMappedData;
     private int myOffset;
     private int myLength;
     private FileChannel myChannel;
@@ -53,6 +54,7 @@ public class FSFile {
     public FSFile(File file) {
         myFile = file;
         myData = null;
+        myMappedData = null;
         myPosition = 0;
         myBufferPosition = 0;
         myBuffer = ByteBuffer.allocate(1024);
@@ -68,6 +70,7 @@ public class FSFile {
     public FSFile(byte[] data, int offset, int length) {
         myFile = null;
         myData = data;
+        myMappedData = null;
         myOffset = offset;
         myLength = length;
         myPosition = 0;
@@ -78,6 +81,21 @@ public class FSFile {
         myDecoder = myDecoder.onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT);
     }
     
+    /**
+     * Reads the file through its memory mapping, positional reads are
+     * served straight from the mapping without opening the file.
+     */
+    public FSFile(FSMappedFile mappedData) {
+        myFile = mappedData.getFile();
+        myData = null;
+        myMappedData = mappedData;
+        myPosition = 0;
+        myBufferPosition = 0;
+        myReadLineBuffer = ByteBuffer.allocate(1024);
+        myDecoder = Charset.forName("UTF-8").newDecoder();
+        myDecoder = myDecoder.onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+
     public void seek(long position) {
         myPosition = position;
     }
@@ -87,6 +105,9 @@ public class FSFile {
     }
 
     public long size() {
+        if (myMappedData != null) {
+            return myMappedData.size();
+        }
         return myData == null ? myFile.length() : myLength;
     }
     
@@ -320,6 +341,17 @@ public class FSFile {
             }
             return myData[((int) (myOffset + myPosition - 1))] & 0xff;
         }
+        if (myMappedData != null) {
+            if (myPosition >= myMappedData.size()) {
+                return -1;
+            }
+            int r = myMappedData.get(myPosition);
+            if (myDigest != null) {
+                myDigest.update((byte) r);
+            }
+            myPosition++;
+            return r;
+        }
         if ((myChannel == null && myInputStream == null) || myPosition < myBufferPosition || myPosition >= myBufferPosition + myBuffer.limit()) {
             if (fill() <= 0) {
                 return -1;
@@ -345,6 +377,19 @@ public class FSFile {
             myPosition += couldRead;
             return couldRead > 0 ? couldRead : -1;
         }
+        if (myMappedData != null) {
+            int couldRead = (int) Math.max(0, Math.min(myMappedData.size() - myPosition, target.remaining()));
+            int targetPosition = target.position();
+            myMappedData.get(myPosition, target, couldRead);
+            if (myDigest != null) {
+                ByteBuffer readData = target.duplicate();
+                readData.flip();
+                readData.position(targetPosition);
+                myDigest.update(readData);
+            }
+            myPosition += couldRead;
+            return couldRead > 0 ? couldRead : -1;
+        }
         int read = 0;
         while(target.hasRemaining()) {
             if (fill() < 0) {
@@ -375,6 +420,15 @@ public class FSFile {
             myPosition += couldRead;
             return couldRead > 0 ? couldRead : -1;
         }
+        if (myMappedData != null) {
+            int couldRead = (int) Math.max(0, Math.min(myMappedData.size() - myPosition, length));
+            myMappedData.get(myPosition, buffer, offset, couldRead);
+            if (myDigest != null) {
+                myDigest.update(buffer, offset, couldRead);
+            }
+            myPosition += couldRead;
+            return couldRead > 0 ? couldRead : -1;
+        }
         int read = 0;
         int toRead = length;
         while(toRead > 0) {
@@ -0,0 +1,208 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.io.fs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.internal.util.SVNHashMap;
+import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.util.SVNLogType;
+
+/**
+ * Queue of transactions waiting for the write lock of a repository. The
+ * thread which gets the lock commits all queued transactions one after
+ * another, each one as its own revision merged with the revisions committed
+ * before it, and then writes the current file once for the whole group.
+ * Threads whose transactions were committed by another thread only collect
+ * the result. Groups are kept per repository location, copies of a repository
+ * share its UUID but not its revisions.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public class FSGroupCommit {
+
+    private static final int MAX_GROUP_SIZE = Integer.getInteger("svnkit.fsfs.groupCommit.maxSize", 32).intValue();
+
+    private static final Map<String, FSGroupCommit> ourGroupCommits = new SVNHashMap();
+
+    private final String myKey;
+    private final LinkedList<Request> myQueue;
+    private int myReferencesCount;
+
+    private FSGroupCommit(String key) {
+        myKey = key;
+        myQueue = new LinkedList<Request>();
+    }
+
+    public static synchronized FSGroupCommit getGroupCommit(FSFS owner) throws SVNException {
+        String key = owner.getRepositoryRoot().getAbsolutePath() + ":" + owner.getUUID();
+        FSGroupCommit groupCommit = ourGroupCommits.get(key);
+        if (groupCommit == null) {
+            groupCommit = new FSGroupCommit(key);
+            ourGroupCommits.put(key, groupCommit);
+        }
+        groupCommit.myReferencesCount++;
+        return groupCommit;
+    }
+
+    public static synchronized void release(FSGroupCommit groupCommit) {
+        if (groupCommit == null) {
+            return;
+        }
+        if ((--groupCommit.myReferencesCount) == 0) {
+            ourGroupCommits.remove(groupCommit.myKey);
+        }
+    }
+
+    /**
+     * Queues the transaction of the committer and returns its new revision
+     * once it is committed, either by this thread or by another thread which
+     * got the write lock first.
+     */
+    public long commit(FSCommitter committer, FSWriteLock writeLock, Collection<FSRepresentation> representations, StringBuffer conflictPath) throws SVNException {
+        Request request = new Request(committer, representations, conflictPath);
+        synchronized (myQueue) {
+            myQueue.add(request);
+        }
+        synchronized (writeLock) {
+            while (!request.isDone()) {
+                commitGroup(writeLock, request.getCommitter().getOwner());
+            }
+        }
+        return request.getRevision();
+    }
+
+    private void commitGroup(FSWriteLock writeLock, FSFS owner) throws SVNException {
+        List<Request> group = new ArrayList<Request>();
+        synchronized (myQueue) {
+            while (!myQueue.isEmpty() && group.size() < MAX_GROUP_SIZE) {
+                group.add(myQueue.removeFirst());
+            }
+        }
+        if (group.isEmpty()) {
+            return;
+        }
+        List<Request> committed = new ArrayList<Request>(group.size());
+        try {
+            writeLock.lock();
+            try {
+                long youngestRevision = owner.getYoungestRevision();
+                for (Request request : group) {
+                    try {
+                        youngestRevision = request.getCommitter().commitInGroup(youngestRevision,
+                                request.getRepresentations(), request.getConflictPath());
+                        request.setRevision(youngestRevision);
+                        committed.add(request);
+                    } catch (SVNException e) {
+                        request.setError(e);
+                    } catch (RuntimeException e) {
+                        request.setError(e);
+                    }
+                }
+                if (!committed.isEmpty()) {
+                    try {
+                        owner.writeCurrentFile(youngestRevision, null, null);
+                    } catch (IOException ioe) {
+                        SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, ioe.getLocalizedMessage());
+                        SVNErrorManager.error(err, ioe, SVNLogType.FSFS);
+                    }
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        } catch (SVNException e) {
+            failAll(owner, group, e);
+            return;
+        } catch (RuntimeException e) {
+            failAll(owner, group, e);
+            return;
+        }
+        for (Request request : committed) {
+            try {
+                request.getCommitter().completeCommitInGroup(request.getRevision());
+            } catch (SVNException e) {
+                request.setError(e);
+            }
+        }
+    }
+
+    private static void failAll(FSFS owner, List<Request> group, Exception error) throws SVNException {
+        for (Request request : group) {
+            request.getCommitter().abortCommitInGroup();
+            request.setError(error);
+        }
+        // nodes of the revisions left out of the current file may be cached.
+        owner.getCaches().clear();
+    }
+
+    private static class Request {
+
+        private final FSCommitter myCommitter;
+        private final Collection<FSRepresentation> myRepresentations;
+        private final StringBuffer myConflictPath;
+        private long myRevision = SVNRepository.INVALID_REVISION;
+        private Exception myError;
+        private boolean myIsDone;
+
+        public Request(FSCommitter committer, Collection<FSRepresentation> representations, StringBuffer conflictPath) {
+            myCommitter = committer;
+            myRepresentations = representations;
+            myConflictPath = conflictPath;
+        }
+
+        public FSCommitter getCommitter() {
+            return myCommitter;
+        }
+
+        public Collection<FSRepresentation> getRepresentations() {
+            return myRepresentations;
+        }
+
+        public StringBuffer getConflictPath() {
+            return myConflictPath;
+        }
+
+        public void setRevision(long revision) {
+            myRevision = revision;
+            myError = null;
+            myIsDone = true;
+        }
+
+        public void setError(Exception error) {
+            myError = error;
+            myIsDone = true;
+        }
+
+        public boolean isDone() {
+            return myIsDone;
+        }
+
+        public long getRevision() throws SVNException {
+            if (myError instanceof SVNException) {
+                throw (SVNException) myError;
+            } else if (myError instanceof RuntimeException) {
+                throw (RuntimeException) myError;
+            }
+            return myRevision;
+        }
+    }
+}
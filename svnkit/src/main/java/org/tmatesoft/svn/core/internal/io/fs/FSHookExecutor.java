@@ -0,0 +1,143 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.io.fs;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.util.SVNDebugLog;
+import org.tmatesoft.svn.util.SVNLogType;
+
+/**
+ * Bounded pool of daemon threads which runs post-commit and post-lock hooks
+ * after the operation has returned. When all workers are busy and the queue
+ * is full, the hook is run in the calling thread, which slows producers down
+ * instead of dropping hooks. Failures of hooks are logged, as there is no
+ * caller left to report them to.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public class FSHookExecutor {
+
+    private static final int THREADS_COUNT = Integer.getInteger("svnkit.hooks.async.threads", 2).intValue();
+    private static final int QUEUE_SIZE = Integer.getInteger("svnkit.hooks.async.queueSize", 64).intValue();
+
+    private static FSHookExecutor ourInstance;
+
+    private final ThreadPoolExecutor myExecutor;
+    private final AtomicLong mySubmittedCount = new AtomicLong();
+    private final AtomicLong myCompletedCount = new AtomicLong();
+    private final AtomicLong myFailedCount = new AtomicLong();
+    private final AtomicLong myCallerRunsCount = new AtomicLong();
+
+    private FSHookExecutor(int threadsCount, int queueSize) {
+        myExecutor = new ThreadPoolExecutor(threadsCount, threadsCount, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), new HookThreadFactory(), new CallerRunsHandler());
+        myExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    public static synchronized FSHookExecutor getInstance() {
+        if (ourInstance == null) {
+            ourInstance = new FSHookExecutor(Math.max(1, THREADS_COUNT), Math.max(1, QUEUE_SIZE));
+        }
+        return ourInstance;
+    }
+
+    public void execute(final String hookName, final HookRunnable hook) {
+        mySubmittedCount.incrementAndGet();
+        myExecutor.execute(new Runnable() {
+            public void run() {
+                try {
+                    hook.run();
+                    myCompletedCount.incrementAndGet();
+                } catch (SVNException e) {
+                    myFailedCount.incrementAndGet();
+                    SVNDebugLog.getDefaultLog().logError(SVNLogType.FSFS, "'" + hookName + "' hook failed: " + e.getMessage());
+                } catch (RuntimeException e) {
+                    myFailedCount.incrementAndGet();
+                    SVNDebugLog.getDefaultLog().logError(SVNLogType.FSFS, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits until all hooks submitted so far are run.
+     */
+    public boolean awaitIdle(long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (getPendingCount() > 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    public long getSubmittedCount() {
+        return mySubmittedCount.get();
+    }
+
+    public long getCompletedCount() {
+        return myCompletedCount.get();
+    }
+
+    public long getFailedCount() {
+        return myFailedCount.get();
+    }
+
+    public long getCallerRunsCount() {
+        return myCallerRunsCount.get();
+    }
+
+    public long getPendingCount() {
+        return mySubmittedCount.get() - myCompletedCount.get() - myFailedCount.get();
+    }
+
+    public int getQueueSize() {
+        return myExecutor.getQueue().size();
+    }
+
+    public String toString() {
+        return "hooks: submitted=" + getSubmittedCount() + ", completed=" + getCompletedCount() +
+                ", failed=" + getFailedCount() + ", callerRuns=" + getCallerRunsCount() + ", queued=" + getQueueSize();
+    }
+
+    public interface HookRunnable {
+        public void run() throws SVNException;
+    }
+
+    private class CallerRunsHandler implements RejectedExecutionHandler {
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            myCallerRunsCount.incrementAndGet();
+            r.run();
+        }
+    }
+
+    private static class HookThreadFactory implements ThreadFactory {
+        private final AtomicInteger myThreadNumber = new AtomicInteger(1);
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "svnkit-hook-" + myThreadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
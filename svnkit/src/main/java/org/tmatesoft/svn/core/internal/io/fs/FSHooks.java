@@ -16,10 +16,12 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.List;
+import java.util.Map;
 
 import org.tmatesoft.svn.core.SVNErrorCode;
 import org.tmatesoft.svn.core.SVNErrorMessage;
 import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.internal.util.SVNHashMap;
 import org.tmatesoft.svn.core.internal.util.SVNStreamGobbler;
 import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
 import org.tmatesoft.svn.core.internal.wc.SVNFileType;
@@ -53,6 +55,8 @@ public class FSHooks {
     };
     
     private static Boolean ourIsHooksEnabled;
+    private static volatile boolean ourIsAsyncPostHooks = Boolean.getBoolean("svnkit.hooks.async");
+    private static final Map<String, IFSHook> ourHooks = new SVNHashMap();
     
     public static void setHooksEnabled(boolean enabled) {
         ourIsHooksEnabled = enabled ? Boolean.TRUE : Boolean.FALSE;
@@ -65,6 +69,46 @@ public class FSHooks {
         return ourIsHooksEnabled.booleanValue();
     }
 
+    /**
+     * Makes post-commit and post-lock hooks run in {@link FSHookExecutor}
+     * threads. The operation then returns without waiting for the hook, and
+     * failures of the hook are logged instead of being reported to the caller.
+     */
+    public static void setAsyncPostHooks(boolean async) {
+        ourIsAsyncPostHooks = async;
+    }
+
+    public static boolean isAsyncPostHooks() {
+        return ourIsAsyncPostHooks;
+    }
+
+    /**
+     * Registers a hook which is called instead of the hook program of the
+     * same name for all repositories of this JVM.
+     */
+    public static void registerHook(String hookName, IFSHook hook) {
+        synchronized (ourHooks) {
+            if (hook == null) {
+                ourHooks.remove(hookName);
+            } else {
+                ourHooks.put(hookName, hook);
+            }
+        }
+    }
+
+    public static void unregisterHook(String hookName) {
+        registerHook(hookName, null);
+    }
+
+    private static IFSHook getHook(String hookName) {
+        if (!isHooksEnabled()) {
+            return null;
+        }
+        synchronized (ourHooks) {
+            return ourHooks.isEmpty() ? null : ourHooks.get(hookName);
+        }
+    }
+
     public static String runPreLockHook(File reposRootDir, String path, String username, String comment, boolean stealLock) throws SVNException {
         username = username == null ? "" : username;
         path = path == null ? "" : path;
@@ -77,6 +121,10 @@ public class FSHooks {
             pathsStr.append(paths[i]);
             pathsStr.append("\n");
         }
+        if (isAsyncPostHooks()) {
+            runAsyncLockHook(reposRootDir, SVN_REPOS_HOOK_POST_LOCK, username, pathsStr.toString());
+            return;
+        }
         runLockHook(reposRootDir, SVN_REPOS_HOOK_POST_LOCK, null, username, pathsStr.toString());
     }
 
@@ -105,6 +153,17 @@ public class FSHooks {
         runHook(reposRootDir, hookName, new String[] {path, username}, bytes);
     }
 
+    private static void runAsyncLockHook(final File reposRootDir, final String hookName, final String username, final String paths) throws SVNException {
+        if (getHook(hookName) == null && getHookFile(reposRootDir, hookName) == null) {
+            return;
+        }
+        FSHookExecutor.getInstance().execute(hookName, new FSHookExecutor.HookRunnable() {
+            public void run() throws SVNException {
+                runLockHook(reposRootDir, hookName, null, username, paths);
+            }
+        });
+    }
+
     public static void runPreRevPropChangeHook(File reposRootDir, String propName, byte[] propNewValue, String author, long revision, String action) throws SVNException {
         runChangeRevPropHook(reposRootDir, SVN_REPOS_HOOK_PRE_REVPROP_CHANGE, propName, propNewValue, author, revision, action, true);
     }
@@ -115,7 +174,7 @@ public class FSHooks {
     
     private static void runChangeRevPropHook(File reposRootDir, String hookName, String propName, byte[] propValue, String author, long revision, String action, boolean isPre) throws SVNException {
         File hookFile = getHookFile(reposRootDir, hookName);
-        if (hookFile == null) {
+        if (hookFile == null && getHook(hookName) == null) {
             if (isPre) {
                 SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.REPOS_DISABLED_FEATURE,
                         "Repository has not been enabled to accept revision propchanges;\nask the administrator to create a pre-revprop-change hook");
@@ -138,11 +197,26 @@ public class FSHooks {
         runHook(reposRootDir, SVN_REPOS_HOOK_PRE_COMMIT, new String[] {txnName}, null);
     }
 
-    public static void runPostCommitHook(File reposRootDir, long committedRevision) throws SVNException {
+    public static void runPostCommitHook(final File reposRootDir, final long committedRevision) throws SVNException {
+        if (isAsyncPostHooks()) {
+            if (getHook(SVN_REPOS_HOOK_POST_COMMIT) == null && getHookFile(reposRootDir, SVN_REPOS_HOOK_POST_COMMIT) == null) {
+                return;
+            }
+            FSHookExecutor.getInstance().execute(SVN_REPOS_HOOK_POST_COMMIT, new FSHookExecutor.HookRunnable() {
+                public void run() throws SVNException {
+                    runHook(reposRootDir, SVN_REPOS_HOOK_POST_COMMIT, new String[] {String.valueOf(committedRevision)}, null);
+                }
+            });
+            return;
+        }
         runHook(reposRootDir, SVN_REPOS_HOOK_POST_COMMIT, new String[] {String.valueOf(committedRevision)}, null);
     }
 
     private static String runHook(File reposRootDir, String hookName, String[] args, byte[] input) throws SVNException {
+        IFSHook hook = getHook(hookName);
+        if (hook != null) {
+            return hook.run(reposRootDir, hookName, args == null ? new String[0] : args, input);
+        }
         File hookFile = getHookFile(reposRootDir, hookName);
         if (hookFile == null) {
             return null;
@@ -14,6 +14,17 @@ package org.tmatesoft.svn.core.internal.io.fs;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.tmatesoft.sqljet.core.SqlJetException;
 import org.tmatesoft.sqljet.core.table.ISqlJetTransaction;
@@ -28,17 +39,61 @@ import org.tmatesoft.svn.util.SVNLogType;
 
 
 /**
+ * Copies a live repository. An incremental copy into an earlier hot copy of
+ * the same repository copies only revisions and packs the destination does
+ * not have yet, and revision properties, locks and node origins that differ
+ * in size or timestamp. Shards are copied by a pool of threads; the current
+ * file of the destination is written last, so an interrupted copy leaves
+ * the destination at its previous youngest revision.
+ *
  * @version 1.3
  * @author  TMate Software Ltd.
  */
 public class FSHotCopier {
 
+    private boolean myIsIncremental;
+    private boolean myIsUseHardLinks;
+    private int myThreadsCount = Integer.getInteger("svnkit.fsfs.hotcopy.threads", 1).intValue();
+
+    public void setIncremental(boolean incremental) {
+        myIsIncremental = incremental;
+    }
+
+    public boolean isIncremental() {
+        return myIsIncremental;
+    }
+
+    /**
+     * Makes pack files of revisions, which never change, hard links to the
+     * source files when the file system allows that.
+     */
+    public void setUseHardLinks(boolean useHardLinks) {
+        myIsUseHardLinks = useHardLinks;
+    }
+
+    public boolean isUseHardLinks() {
+        return myIsUseHardLinks;
+    }
+
+    public void setThreadsCount(int threadsCount) {
+        myThreadsCount = threadsCount;
+    }
+
+    public int getThreadsCount() {
+        return myThreadsCount;
+    }
+
     public void runHotCopy(FSFS srcOwner, File dstPath) throws SVNException {
         FSWriteLock dbLogsLock = FSWriteLock.getDBLogsLock(srcOwner, false);
         File srcPath = srcOwner.getRepositoryRoot();
         synchronized (dbLogsLock) {
             try {
                 dbLogsLock.lock();
+                FSFS existingOwner = new FSFS(dstPath);
+                if (myIsIncremental && existingOwner.getDBFormatFile().isFile()) {
+                    hotCopy(srcOwner, existingOwner, true);
+                    return;
+                }
                 createRepositoryLayout(srcPath, dstPath);
                 File dstReposLocksDir = new File(dstPath, FSFS.LOCKS_DIR);
                 try {
@@ -54,7 +109,7 @@ public class FSHotCopier {
                 SVNFileUtil.setSGID(dstDBDir);
                 FSFS dstOwner = new FSFS(dstPath);
                 String fsType = srcOwner.getFSType();
-                hotCopy(srcOwner, dstOwner);
+                hotCopy(srcOwner, dstOwner, false);
                 writeFSType(dstOwner, fsType);
                 SVNFileUtil.writeVersionFile(new File(dstPath, FSFS.REPOS_FORMAT_FILE),
                         srcOwner.getReposFormat());
@@ -132,47 +187,82 @@ public class FSHotCopier {
         }
     }
 
-    private void hotCopy(FSFS srcOwner, FSFS dstOwner) throws SVNException {
+    private void hotCopy(FSFS srcOwner, FSFS dstOwner, boolean incremental) throws SVNException {
         int format = srcOwner.readDBFormat();
         FSRepositoryUtil.checkReposDBFormat(format);
-        SVNFileUtil.copyFile(srcOwner.getCurrentFile(), dstOwner.getCurrentFile(), true);
-        SVNFileUtil.copyFile(srcOwner.getUUIDFile(), dstOwner.getUUIDFile(), true);
+        long maxFilesPerDirectory = srcOwner.getMaxFilesPerDirectory();
+
+        long dstYoungestRev = -1;
+        long dstMinUnpackedRevision = 0;
+        if (incremental) {
+            int dstFormat = dstOwner.readDBFormat();
+            if (dstFormat != format || dstOwner.getMaxFilesPerDirectory() != maxFilesPerDirectory ||
+                    !srcOwner.getUUID().equals(dstOwner.getUUID())) {
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.UNSUPPORTED_FEATURE,
+                        "The FSFS format, sharding or UUID of ''{0}'' does not match the source repository, " +
+                        "an incremental hotcopy is not possible", dstOwner.getRepositoryRoot());
+                SVNErrorManager.error(err, SVNLogType.FSFS);
+            }
+            dstYoungestRev = dstOwner.getYoungestRevision();
+            if (format >= FSFS.MIN_PACKED_FORMAT) {
+                dstMinUnpackedRevision = dstOwner.getMinUnpackedRev();
+            }
+        } else {
+            SVNFileUtil.copyFile(srcOwner.getUUIDFile(), dstOwner.getUUIDFile(), true);
+        }
+        if (srcOwner.getConfigFile().isFile()) {
+            SVNFileUtil.copyFile(srcOwner.getConfigFile(), dstOwner.getConfigFile(), true);
+        }
+
+        // the current file is read once and written last, so that it never names revisions not copied yet.
+        byte[] current = SVNFileUtil.readFully(srcOwner.getCurrentFile());
+        long youngestRev = parseYoungestRevision(current);
+        if (dstYoungestRev > youngestRev) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.UNSUPPORTED_FEATURE,
+                    "The youngest revision r{0} of ''{1}'' is newer than the youngest revision r{2} of the source repository",
+                    new Object[] {String.valueOf(dstYoungestRev), dstOwner.getRepositoryRoot(), String.valueOf(youngestRev)});
+            SVNErrorManager.error(err, SVNLogType.FSFS);
+        }
 
         long minUnpackedRevision = 0;
         if (format >= FSFS.MIN_PACKED_FORMAT) {
-            SVNFileUtil.copyFile(srcOwner.getMinUnpackedRevFile(), dstOwner.getMinUnpackedRevFile(), true);
             minUnpackedRevision = srcOwner.getMinUnpackedRev();
         }
-        long youngestRev = dstOwner.getYoungestRevision();
 
         File dstRevsDir = dstOwner.getDBRevsDir();
         dstRevsDir.mkdirs();
 
-        long maxFilesPerDirectory = srcOwner.getMaxFilesPerDirectory();
+        final boolean packedRevProps = format >= FSFS.MIN_PACKED_REVPROP_FORMAT;
+        long minUnpackedRevProp = 0;
+        if (packedRevProps) {
+            minUnpackedRevProp = srcOwner.getMinUnpackedRevProp();
+        }
+
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
         long rev = 0;
-        for (; rev < minUnpackedRevision; rev += srcOwner.getMaxFilesPerDirectory()) {
+        for (; rev < minUnpackedRevision; rev += maxFilesPerDirectory) {
             long packedShard = rev / maxFilesPerDirectory;
-            SVNFileUtil.copyDirectory(srcOwner.getPackDir(packedShard), dstOwner.getPackDir(packedShard), false, null);
+            boolean copyPack = rev + maxFilesPerDirectory > dstMinUnpackedRevision;
+            tasks.add(new PackedShardCopyTask(srcOwner, dstOwner, packedShard, copyPack, packedRevProps));
         }
 
         SVNErrorManager.assertionFailure(rev == minUnpackedRevision, "expected minimal unpacked revision " + String.valueOf(minUnpackedRevision) + ", but real revision is " +
                 String.valueOf(rev), SVNLogType.FSFS);
 
-        for (; rev <= youngestRev; rev++) {
-            File dstDir = dstRevsDir;
-            if (maxFilesPerDirectory > 0) {
-                String shard = String.valueOf(rev / maxFilesPerDirectory);
-                dstDir = new File(dstRevsDir, shard);
-            }
-            SVNFileUtil.copyFile(srcOwner.getRevisionFile(rev), new File(dstDir, String.valueOf(rev)), true);
+        long firstUnpackedRevProp = packedRevProps ? minUnpackedRevProp : 0;
+        long shardSize = maxFilesPerDirectory > 0 ? maxFilesPerDirectory : youngestRev + 1;
+        long firstRev = Math.min(minUnpackedRevision, firstUnpackedRevProp);
+        for (long shardStart = firstRev - (maxFilesPerDirectory > 0 ? firstRev % maxFilesPerDirectory : 0); 
+                shardStart <= youngestRev; shardStart += shardSize) {
+            long shardEnd = Math.min(youngestRev, shardStart + shardSize - 1);
+            tasks.add(new UnpackedShardCopyTask(srcOwner, dstOwner, Math.max(shardStart, minUnpackedRevision),
+                    Math.max(shardStart, firstUnpackedRevProp), shardEnd, dstYoungestRev));
         }
 
-        long min_unpacked_revprop = 0;
-        /* Copy the min unpacked revprop file, and read its value. */
+        runTasks(tasks);
+
         if (format >= FSFS.MIN_PACKED_REVPROP_FORMAT)
           {
-            min_unpacked_revprop = srcOwner.getMinUnpackedRevProp();
-            SVNFileUtil.copyFile(srcOwner.getMinUnpackedRevPropPath(), dstOwner.getMinUnpackedRevPropPath(),true);
             final File srcRevPropDb = srcOwner.getRevisionPropertiesDbPath();
             final File dstRevPropDb = dstOwner.getRevisionPropertiesDbPath();
             final SVNSqlJetDb revPropDb = SVNSqlJetDb.open(
@@ -200,35 +290,266 @@ public class FSHotCopier {
             }
           }
 
-        File dstRevPropsDir = dstOwner.getRevisionPropertiesRoot();
-        for (rev = min_unpacked_revprop; rev <= youngestRev; rev++) {
-            File dstDir = dstRevPropsDir;
-            if (maxFilesPerDirectory > 0) {
-                String shard = String.valueOf(rev / maxFilesPerDirectory);
-                dstDir = new File(dstRevPropsDir, shard);
-            }
-            SVNFileUtil.copyFile(srcOwner.getRevisionPropertiesFile(rev, false), new File(dstDir, String.valueOf(rev)),
-                    true);
-        }
-
         dstOwner.getTransactionsParentDir().mkdirs();
         if (format >= FSFS.MIN_PROTOREVS_DIR_FORMAT) {
             dstOwner.getTransactionProtoRevsDir().mkdirs();
         }
 
         File srcLocksDir = srcOwner.getDBLocksDir();
+        SVNFileUtil.deleteAll(dstOwner.getDBLocksDir(), true);
         if (srcLocksDir.exists()) {
             SVNFileUtil.copyDirectory(srcLocksDir, dstOwner.getDBLocksDir(), false, null);
         }
 
         File srcNodeOriginsDir = srcOwner.getNodeOriginsDir();
         if (srcNodeOriginsDir.exists()) {
-            SVNFileUtil.copyDirectory(srcNodeOriginsDir, dstOwner.getNodeOriginsDir(), false, null);
+            copyChangedFiles(srcNodeOriginsDir, dstOwner.getNodeOriginsDir());
         }
 
         if (format >= FSFS.MIN_CURRENT_TXN_FORMAT) {
             SVNFileUtil.copyFile(srcOwner.getTransactionCurrentFile(), dstOwner.getTransactionCurrentFile(), true);
         }
-        dstOwner.writeDBFormat(format, maxFilesPerDirectory, false);
+        if (packedRevProps) {
+            SVNFileUtil.copyFile(srcOwner.getMinUnpackedRevPropPath(), dstOwner.getMinUnpackedRevPropPath(), true);
+        }
+        if (format >= FSFS.MIN_PACKED_FORMAT) {
+            SVNFileUtil.copyFile(srcOwner.getMinUnpackedRevFile(), dstOwner.getMinUnpackedRevFile(), true);
+            // shards packed since the previous copy are in packs now.
+            for (rev = dstMinUnpackedRevision - dstMinUnpackedRevision % Math.max(1, maxFilesPerDirectory); 
+                    incremental && maxFilesPerDirectory > 0 && rev < minUnpackedRevision; rev += maxFilesPerDirectory) {
+                long shard = rev / maxFilesPerDirectory;
+                SVNFileUtil.deleteAll(new File(dstRevsDir, String.valueOf(shard)), true);
+                if (packedRevProps) {
+                    deleteRevPropShard(new File(dstOwner.getRevisionPropertiesRoot(), String.valueOf(shard)), shard, maxFilesPerDirectory);
+                }
+            }
+        }
+        File tmpCurrentFile = SVNFileUtil.createUniqueFile(dstOwner.getDBRoot(), "current", ".tmp", false);
+        SVNFileUtil.writeToFile(tmpCurrentFile, current);
+        SVNFileUtil.rename(tmpCurrentFile, dstOwner.getCurrentFile());
+        if (!incremental) {
+            // an incremental copy has checked that the format of the copy matches.
+            dstOwner.writeDBFormat(format, maxFilesPerDirectory, false);
+        }
+    }
+
+    private static long parseYoungestRevision(byte[] current) throws SVNException {
+        int length = 0;
+        while (length < current.length && current[length] >= '0' && current[length] <= '9') {
+            length++;
+        }
+        try {
+            return Long.parseLong(new String(current, 0, length, "US-ASCII"));
+        } catch (NumberFormatException nfe) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.FS_CORRUPT, "Corrupt 'current' file");
+            SVNErrorManager.error(err, nfe, SVNLogType.FSFS);
+        } catch (IOException ioe) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, ioe.getLocalizedMessage());
+            SVNErrorManager.error(err, ioe, SVNLogType.FSFS);
+        }
+        return -1;
+    }
+
+    private void runTasks(List<Callable<Object>> tasks) throws SVNException {
+        if (myThreadsCount <= 1 || tasks.size() <= 1) {
+            for (Callable<Object> task : tasks) {
+                try {
+                    task.call();
+                } catch (SVNException e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, e.getLocalizedMessage());
+                    SVNErrorManager.error(err, e, SVNLogType.FSFS);
+                }
+            }
+            return;
+        }
+        ExecutorService executor = new ThreadPoolExecutor(myThreadsCount, myThreadsCount, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new HotCopyThreadFactory());
+        List<Future<Object>> futures = new ArrayList<Future<Object>>(tasks.size());
+        try {
+            for (Callable<Object> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<Object> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    SVNErrorManager.cancel("Hot copy interrupted", SVNLogType.FSFS);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof SVNException) {
+                        throw (SVNException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, cause.getLocalizedMessage());
+                    SVNErrorManager.error(err, cause, SVNLogType.FSFS);
+                }
+            }
+        } finally {
+            for (Future<Object> future : futures) {
+                future.cancel(true);
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    private void copyPackedShard(FSFS srcOwner, FSFS dstOwner, long shard, boolean copyPack, boolean packedRevProps) throws SVNException {
+        if (copyPack) {
+            File srcPackDir = srcOwner.getPackDir(shard);
+            File dstPackDir = dstOwner.getPackDir(shard);
+            dstPackDir.mkdirs();
+            File[] children = srcPackDir.listFiles();
+            for (int i = 0; children != null && i < children.length; i++) {
+                File dstFile = new File(dstPackDir, children[i].getName());
+                if (isSameFile(children[i], dstFile)) {
+                    continue;
+                }
+                if (myIsUseHardLinks) {
+                    SVNFileUtil.deleteFile(dstFile);
+                    if (SVNFileUtil.createHardLink(dstFile, children[i])) {
+                        continue;
+                    }
+                }
+                SVNFileUtil.copyFile(children[i], dstFile, true);
+            }
+        }
+        if (packedRevProps) {
+            // packed revision properties change along with revision properties.
+            String packName = String.valueOf(shard) + FSFS.PACK_EXT;
+            File srcRevPropPackDir = new File(srcOwner.getRevisionPropertiesRoot(), packName);
+            if (srcRevPropPackDir.isDirectory()) {
+                copyChangedFiles(srcRevPropPackDir, new File(dstOwner.getRevisionPropertiesRoot(), packName));
+            }
+            if (shard == 0) {
+                // properties of revision 0 are never packed.
+                File srcFile = new File(new File(srcOwner.getRevisionPropertiesRoot(), "0"), "0");
+                File dstFile = new File(new File(dstOwner.getRevisionPropertiesRoot(), "0"), "0");
+                if (!isSameFile(srcFile, dstFile)) {
+                    SVNFileUtil.copyFile(srcFile, dstFile, true);
+                }
+            }
+        }
+    }
+
+    private void copyUnpackedShard(FSFS srcOwner, FSFS dstOwner, long firstRev, long firstRevProp, long lastRev, long dstYoungestRev) throws SVNException {
+        File dstRevsDir = dstOwner.getDBRevsDir();
+        File dstRevPropsDir = dstOwner.getRevisionPropertiesRoot();
+        long maxFilesPerDirectory = srcOwner.getMaxFilesPerDirectory();
+        for (long rev = firstRev; rev <= lastRev; rev++) {
+            File dstDir = dstRevsDir;
+            if (maxFilesPerDirectory > 0) {
+                dstDir = new File(dstRevsDir, String.valueOf(rev / maxFilesPerDirectory));
+            }
+            File dstFile = new File(dstDir, String.valueOf(rev));
+            if (rev <= dstYoungestRev && dstFile.isFile()) {
+                continue;
+            }
+            SVNFileUtil.copyFile(srcOwner.getRevisionFile(rev), dstFile, true);
+        }
+        for (long rev = firstRevProp; rev <= lastRev; rev++) {
+            File dstDir = dstRevPropsDir;
+            if (maxFilesPerDirectory > 0) {
+                dstDir = new File(dstRevPropsDir, String.valueOf(rev / maxFilesPerDirectory));
+            }
+            File srcFile = srcOwner.getRevisionPropertiesFile(rev, false);
+            File dstFile = new File(dstDir, String.valueOf(rev));
+            if (!isSameFile(srcFile, dstFile)) {
+                SVNFileUtil.copyFile(srcFile, dstFile, true);
+            }
+        }
+    }
+
+    private static void copyChangedFiles(File srcDir, File dstDir) throws SVNException {
+        File[] children = srcDir.listFiles();
+        if (children == null) {
+            return;
+        }
+        dstDir.mkdirs();
+        for (int i = 0; i < children.length; i++) {
+            File dstChild = new File(dstDir, children[i].getName());
+            if (children[i].isDirectory()) {
+                copyChangedFiles(children[i], dstChild);
+            } else if (!isSameFile(children[i], dstChild)) {
+                SVNFileUtil.copyFile(children[i], dstChild, true);
+            }
+        }
+    }
+
+    /**
+     * Files are copied with their timestamps, a file of the same size and
+     * timestamp is taken for one copied before.
+     */
+    private static boolean isSameFile(File srcFile, File dstFile) {
+        return dstFile.isFile() && dstFile.length() == srcFile.length() && dstFile.lastModified() == srcFile.lastModified();
+    }
+
+    private static void deleteRevPropShard(File revpropShardPath, long shard, long maxFilesPerDirectory) {
+        if (shard == 0) {
+            for (int i = 1; i < maxFilesPerDirectory; i++) {
+                new File(revpropShardPath, String.valueOf(i)).delete();
+            }
+        } else {
+            SVNFileUtil.deleteAll(revpropShardPath, true);
+        }
+    }
+
+    private class PackedShardCopyTask implements Callable<Object> {
+        private final FSFS mySrcOwner;
+        private final FSFS myDstOwner;
+        private final long myShard;
+        private final boolean myIsCopyPack;
+        private final boolean myIsPackedRevProps;
+
+        public PackedShardCopyTask(FSFS srcOwner, FSFS dstOwner, long shard, boolean copyPack, boolean packedRevProps) {
+            mySrcOwner = srcOwner;
+            myDstOwner = dstOwner;
+            myShard = shard;
+            myIsCopyPack = copyPack;
+            myIsPackedRevProps = packedRevProps;
+        }
+
+        public Object call() throws SVNException {
+            copyPackedShard(mySrcOwner, myDstOwner, myShard, myIsCopyPack, myIsPackedRevProps);
+            return null;
+        }
+    }
+
+    private class UnpackedShardCopyTask implements Callable<Object> {
+        private final FSFS mySrcOwner;
+        private final FSFS myDstOwner;
+        private final long myFirstRevision;
+        private final long myFirstRevPropRevision;
+        private final long myLastRevision;
+        private final long myDstYoungestRevision;
+
+        public UnpackedShardCopyTask(FSFS srcOwner, FSFS dstOwner, long firstRevision, long firstRevPropRevision, long lastRevision, long dstYoungestRevision) {
+            mySrcOwner = srcOwner;
+            myDstOwner = dstOwner;
+            myFirstRevision = firstRevision;
+            myFirstRevPropRevision = firstRevPropRevision;
+            myLastRevision = lastRevision;
+            myDstYoungestRevision = dstYoungestRevision;
+        }
+
+        public Object call() throws SVNException {
+            copyUnpackedShard(mySrcOwner, myDstOwner, myFirstRevision, myFirstRevPropRevision, myLastRevision, myDstYoungestRevision);
+            return null;
+        }
+    }
+
+    private static class HotCopyThreadFactory implements ThreadFactory {
+        private final AtomicInteger myThreadNumber = new AtomicInteger(1);
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "svnkit-hotcopy-" + myThreadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
     }
 }
@@ -16,24 +16,38 @@ import java.io.Serializable;
 import org.tmatesoft.svn.core.io.SVNRepository;
 
 /**
+ * Node-revision id. Node and copy ids are base-36 numbers, optionally
+ * prefixed with '_' for ids which are local to a transaction, so they are
+ * kept encoded into longs and only turned back into strings on request.
+ * Ids which are not in canonical form are kept as strings. Transaction ids
+ * are shared between all ids of a transaction.
+ *
  * @version 1.3
  * @author  TMate Software Ltd.
  */
 public class FSID implements Serializable {
 
     private static final long serialVersionUID = 4845L;
-    private String myNodeID;
-    private String myCopyID;
-    private String myTxnID;
-    private long myRevision;
-    private long myOffset;
+
+    private static final long NOT_ENCODED = -1;
+    private static final int MAX_ENCODED_DIGITS = 11;
+
+    private static final FSCache<String, String> ourTxnIDs = new FSCache<String, String>("transaction ids", 256, 4);
+
+    private final long myNodeKey;
+    private final long myCopyKey;
+    private final String myNodeID;
+    private final String myCopyID;
+    private final String myTxnID;
+    private final long myRevision;
+    private final long myOffset;
 
     public boolean isTxn() {
         return myTxnID != null;
     }
 
     public static FSID createTxnId(String nodeId, String copyId, String txnId) {
-        return new FSID(nodeId, txnId, copyId, SVNRepository.INVALID_REVISION, -1);
+        return new FSID(nodeId, internTxnID(txnId), copyId, SVNRepository.INVALID_REVISION, -1);
     }
 
     public static FSID createRevId(String nodeId, String copyId, long revision, long offset) {
@@ -41,19 +55,31 @@ public class FSID implements Serializable {
     }
 
     private FSID(String nodeId, String txnId, String copyId, long revision, long offset) {
-        myNodeID = nodeId;
-        myCopyID = copyId;
+        myNodeKey = encode(nodeId);
+        myNodeID = myNodeKey == NOT_ENCODED ? nodeId : null;
+        myCopyKey = encode(copyId);
+        myCopyID = myCopyKey == NOT_ENCODED ? copyId : null;
         myTxnID = txnId;
         myRevision = revision;
         myOffset = offset;
     }
 
+    private FSID(FSID id) {
+        myNodeKey = id.myNodeKey;
+        myNodeID = id.myNodeID;
+        myCopyKey = id.myCopyKey;
+        myCopyID = id.myCopyID;
+        myTxnID = id.myTxnID;
+        myRevision = id.myRevision;
+        myOffset = id.myOffset;
+    }
+
     public FSID copy() {
-        return new FSID(getNodeID(), getTxnID(), getCopyID(), getRevision(), getOffset());
+        return new FSID(this);
     }
 
     public String getNodeID() {
-        return myNodeID;
+        return myNodeKey == NOT_ENCODED ? myNodeID : decode(myNodeKey);
     }
 
     public String getTxnID() {
@@ -61,7 +87,7 @@ public class FSID implements Serializable {
     }
 
     public String getCopyID() {
-        return myCopyID;
+        return myCopyKey == NOT_ENCODED ? myCopyID : decode(myCopyKey);
     }
 
     public long getRevision() {
@@ -80,37 +106,16 @@ public class FSID implements Serializable {
         if (this == id) {
             return true;
         }
-
-        if (myNodeID != null && !myNodeID.equals(id.getNodeID())) {
-            return false;
-        } else if (myNodeID == null && id.getNodeID() != null) {
-            return false;
-        }
-
-        if (myCopyID != null && !myCopyID.equals(id.getCopyID())) {
-            return false;
-        } else if (myCopyID == null && id.getCopyID() != null) {
-            return false;
-        }
-
-        if (myTxnID != null && !myTxnID.equals(id.getTxnID())) {
-            return false;
-        } else if (myTxnID == null && id.getTxnID() != null) {
-            return false;
-        }
-
-        if (myRevision != id.getRevision() || myOffset != id.getOffset()) {
-            return false;
-        }
-
-        return true;
+        return myNodeKey == id.myNodeKey && myCopyKey == id.myCopyKey &&
+                myRevision == id.myRevision && myOffset == id.myOffset &&
+                equals(myNodeID, id.myNodeID) && equals(myCopyID, id.myCopyID) && equals(myTxnID, id.myTxnID);
     }
 
     public int hashCode() {
         final int PRIME = 31;
         int result = 1;
-        result = PRIME * result + ((myNodeID == null) ? 0 : myNodeID.hashCode());
-        result = PRIME * result + ((myCopyID == null) ? 0 : myCopyID.hashCode());
+        result = PRIME * result + (myNodeID == null ? (int) (myNodeKey ^ (myNodeKey >>> 32)) : myNodeID.hashCode());
+        result = PRIME * result + (myCopyID == null ? (int) (myCopyKey ^ (myCopyKey >>> 32)) : myCopyID.hashCode());
         result = PRIME * result + ((myTxnID == null) ? 0 : myTxnID.hashCode());
         result = PRIME * result + (int) (myRevision ^ (myRevision >>> 32));
         result = PRIME * result + (int) (myOffset ^ (myOffset >>> 32));
@@ -140,18 +145,18 @@ public class FSID implements Serializable {
             return true;
         }
 
-        if (myNodeID != null && myNodeID.startsWith("_")) {
+        if (isTxnLocalNodeID()) {
             if (myTxnID != null && !myTxnID.equals(otherID.getTxnID())) {
                 return false;
             } else if (myTxnID == null && otherID.getTxnID() != null) {
                 return false;
             }
         }
-        return myNodeID.equals(otherID.getNodeID());
+        return myNodeKey == otherID.myNodeKey && equals(myNodeID, otherID.myNodeID);
     }
 
     public String toString() {
-        return myNodeID + "." + myCopyID + "." + (isTxn() ? "t" + myTxnID : "r" + myRevision + "/" + myOffset);
+        return getNodeID() + "." + getCopyID() + "." + (isTxn() ? "t" + myTxnID : "r" + myRevision + "/" + myOffset);
     }
 
     public static FSID fromString(String revNodeId) {
@@ -188,4 +193,57 @@ public class FSID implements Serializable {
         }
         return null;
     }
+
+    private boolean isTxnLocalNodeID() {
+        if (myNodeKey == NOT_ENCODED) {
+            return myNodeID != null && myNodeID.startsWith("_");
+        }
+        return (myNodeKey & 1) != 0;
+    }
+
+    private static long encode(String id) {
+        if (id == null) {
+            return NOT_ENCODED;
+        }
+        int start = id.startsWith("_") ? 1 : 0;
+        int digits = id.length() - start;
+        if (digits == 0 || digits > MAX_ENCODED_DIGITS || (digits > 1 && id.charAt(start) == '0')) {
+            return NOT_ENCODED;
+        }
+        long value = 0;
+        for (int i = start; i < id.length(); i++) {
+            char ch = id.charAt(i);
+            int digit;
+            if (ch >= '0' && ch <= '9') {
+                digit = ch - '0';
+            } else if (ch >= 'a' && ch <= 'z') {
+                digit = ch - 'a' + 10;
+            } else {
+                return NOT_ENCODED;
+            }
+            value = value * 36 + digit;
+        }
+        return (value << 1) | start;
+    }
+
+    private static String decode(long key) {
+        String id = Long.toString(key >>> 1, 36);
+        return (key & 1) != 0 ? "_" + id : id;
+    }
+
+    private static String internTxnID(String txnId) {
+        if (txnId == null) {
+            return null;
+        }
+        String internedTxnId = ourTxnIDs.get(txnId);
+        if (internedTxnId == null) {
+            ourTxnIDs.put(txnId, txnId);
+            internedTxnId = txnId;
+        }
+        return internedTxnId;
+    }
+
+    private static boolean equals(String value1, String value2) {
+        return value1 == null ? value2 == null : value1.equals(value2);
+    }
 }
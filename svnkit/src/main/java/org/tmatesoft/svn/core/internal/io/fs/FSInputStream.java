@@ -11,6 +11,8 @@
  */
 package org.tmatesoft.svn.core.internal.io.fs;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
@@ -19,6 +21,8 @@ import java.security.NoSuchAlgorithmException;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.tmatesoft.svn.core.SVNErrorCode;
 import org.tmatesoft.svn.core.SVNErrorMessage;
@@ -46,8 +50,17 @@ public class FSInputStream extends InputStream {
     private ByteBuffer myBuffer;
     private SVNDeltaCombiner myCombiner;
 
-    private FSInputStream(SVNDeltaCombiner combiner, FSRepresentation representation, FSFS owner) throws SVNException {
+    private FSRepresentation myRepresentation;
+    private FSRepositoryCaches myCaches;
+    private ByteArrayOutputStream myFulltext;
+    private boolean myIsCachingWindows;
+    private Map<Integer, byte[]> myPendingWindows;
+    private long myPendingWindowsSize;
+    private long myReadLength;
+
+    private FSInputStream(SVNDeltaCombiner combiner, FSRepresentation representation, FSFS owner, FSRepositoryCaches caches) throws SVNException {
         myCombiner = combiner;
+        myRepresentation = representation;
         myChunkIndex = 0;
         isChecksumFinalized = false;
         myHexChecksum = representation.getMD5HexDigest();
@@ -70,6 +83,21 @@ public class FSInputStream extends InputStream {
             close();
             throw svne;
         }
+
+        if (caches != null) {
+            if (caches.isFulltextCacheable(representation)) {
+                myCaches = caches;
+                myFulltext = new ByteArrayOutputStream((int) myLength);
+            } else if (myRepStateList.size() > 1 && caches.isDeltaWindowCacheable(representation)) {
+                /*
+                 * Only windows combined from several deltas are worth keeping,
+                 * a single delta is applied as cheap as a cached window is copied.
+                 */
+                myCaches = caches;
+                myIsCachingWindows = true;
+                myPendingWindows = new TreeMap<Integer, byte[]>();
+            }
+        }
     }
 
     public static InputStream createDeltaStream(SVNDeltaCombiner combiner, FSRevisionNode fileNode, FSFS owner) throws SVNException {
@@ -83,14 +111,25 @@ public class FSInputStream extends InputStream {
         if (representation == null) {
             return SVNFileUtil.DUMMY_IN;
         }
-        return new FSInputStream(combiner, representation, owner);
+        return createStream(combiner, representation, owner);
     }
 
     public static InputStream createDeltaStream(SVNDeltaCombiner combiner, FSRepresentation fileRep, FSFS owner) throws SVNException {
         if (fileRep == null) {
             return SVNFileUtil.DUMMY_IN;
         }
-        return new FSInputStream(combiner, fileRep, owner);
+        return createStream(combiner, fileRep, owner);
+    }
+
+    private static InputStream createStream(SVNDeltaCombiner combiner, FSRepresentation representation, FSFS owner) throws SVNException {
+        FSRepositoryCaches caches = owner.getCaches();
+        if (caches.isFulltextCacheable(representation)) {
+            byte[] fulltext = caches.getFulltext(representation);
+            if (fulltext != null) {
+                return new ByteArrayInputStream(fulltext);
+            }
+        }
+        return new FSInputStream(combiner, representation, owner, caches);
     }
 
     public int read(byte[] buf, int offset, int length) throws IOException {
@@ -126,6 +165,19 @@ public class FSInputStream extends InputStream {
                     });
                     SVNErrorManager.error(err, SVNLogType.FSFS);
                 }
+                if (myFulltext != null) {
+                    myFulltext.write(buf, offset, length);
+                    myCaches.putFulltext(myRepresentation, myFulltext.toByteArray());
+                    myFulltext = null;
+                }
+                if (myPendingWindows != null) {
+                    for (Map.Entry<Integer, byte[]> window : myPendingWindows.entrySet()) {
+                        myCaches.putDeltaWindow(myRepresentation, window.getKey().intValue(), window.getValue());
+                    }
+                    myPendingWindows = null;
+                }
+            } else if (myFulltext != null) {
+                myFulltext.write(buf, offset, length);
             }
         }
 
@@ -146,14 +198,27 @@ public class FSInputStream extends InputStream {
                 targetPos += copyLength;
                 remaining -= copyLength;
                 read += copyLength;
+                myReadLength += copyLength;
             } else {
                 FSRepresentationState resultState = (FSRepresentationState) myRepStateList.getFirst();
-                if (resultState.myOffset == resultState.myEnd) {
+                /*
+                 * Windows served from the cache are not read from the files,
+                 * states catch up lazily, so the end is detected by length.
+                 */
+                if (resultState.myOffset == resultState.myEnd || (myIsCachingWindows && myReadLength >= myLength)) {
                     if (read == 0) {
                         read = -1;
                     }
                     break;
                 }
+                if (myIsCachingWindows) {
+                    byte[] cachedWindow = myCaches.getDeltaWindow(myRepresentation, myChunkIndex);
+                    if (cachedWindow != null) {
+                        myBuffer = ByteBuffer.wrap(cachedWindow);
+                        myChunkIndex++;
+                        continue;
+                    }
+                }
                 myCombiner.reset();
                 for (ListIterator states = myRepStateList.listIterator(); states.hasNext();) {
                     FSRepresentationState curState = (FSRepresentationState) states.next();
@@ -172,6 +237,9 @@ public class FSInputStream extends InputStream {
                     curState.myChunkIndex++;
                     curState.myOffset = curState.myFile.position();
                     if (target != null) {
+                        if (myPendingWindows != null) {
+                            addPendingWindow(myChunkIndex, target);
+                        }
                         myBuffer = target;
                         myChunkIndex++;
                         break;
@@ -182,6 +250,22 @@ public class FSInputStream extends InputStream {
         return read;
     }
 
+    /**
+     * Combined windows are kept aside until the whole representation matches
+     * its checksum, like fulltexts are, and given up once they would not fit
+     * into the windows cache anyway.
+     */
+    private void addPendingWindow(int chunkIndex, ByteBuffer target) {
+        myPendingWindowsSize += target.remaining();
+        if (myPendingWindowsSize > myCaches.getDeltaWindowsCache().getMaxWeight()) {
+            myPendingWindows = null;
+            return;
+        }
+        byte[] windowData = new byte[target.remaining()];
+        target.duplicate().get(windowData);
+        myPendingWindows.put(Integer.valueOf(chunkIndex), windowData);
+    }
+
     public void close() {
         for (Iterator states = myRepStateList.iterator(); states.hasNext();) {
             FSRepresentationState state = (FSRepresentationState) states.next();
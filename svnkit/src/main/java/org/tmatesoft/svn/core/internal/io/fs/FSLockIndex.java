@@ -0,0 +1,359 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.io.fs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLock;
+import org.tmatesoft.svn.core.internal.util.SVNDate;
+import org.tmatesoft.svn.core.internal.util.SVNUUIDGenerator;
+import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.util.SVNLogType;
+
+/**
+ * Lock store which keeps all locks of a repository in the single
+ * <code>db/locks/lock-index</code> file instead of the tree of digest files.
+ * The file is a journal of <code>K</code>/<code>V</code> (lock set) and
+ * <code>D</code> (lock removed) entries in the hash dump format, keyed by
+ * the locked path. The journal is replayed into a sorted in-memory index,
+ * so that locks under a path are found by a range query.
+ *
+ * <p/>
+ * Changes are appended to the journal under the repository write lock and
+ * the journal is rewritten once it holds more superseded entries than live
+ * ones. Every rewrite starts a new generation, readers which see another
+ * generation in the header reload the whole index, otherwise only entries
+ * appended since the last read are replayed.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public class FSLockIndex {
+
+    public static final String LOCK_INDEX_FILE = "lock-index";
+
+    private static final String HEADER_PREFIX = "lock-index 1 ";
+    private static final int MIN_GARBAGE_TO_COMPACT = 1024;
+
+    private final File myFile;
+    private final TreeMap<String, SVNLock> myLocks;
+    private String myGeneration;
+    private long myOffset;
+    private long myLastModified;
+    private int myGarbage;
+
+    public FSLockIndex(File file) {
+        myFile = file;
+        myLocks = new TreeMap<String, SVNLock>();
+    }
+
+    public static File getIndexFile(FSFS owner) {
+        return new File(owner.getDBLocksDir(), LOCK_INDEX_FILE);
+    }
+
+    /**
+     * Writes a new index file with the <code>locks</code>, replacing the
+     * existing one. Should be called under the repository write lock.
+     */
+    public static void create(File file, Collection<SVNLock> locks) throws SVNException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            buffer.write((HEADER_PREFIX + SVNUUIDGenerator.generateUUIDString() + "\n").getBytes("US-ASCII"));
+            for (Iterator<SVNLock> iterator = locks.iterator(); iterator.hasNext();) {
+                buffer.write(encodeSetEntry(iterator.next()));
+            }
+        } catch (IOException e) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, e.getLocalizedMessage());
+            SVNErrorManager.error(err, e, SVNLogType.FSFS);
+        }
+        SVNFileUtil.ensureDirectoryExists(file.getParentFile());
+        File tmpFile = SVNFileUtil.createUniqueFile(file.getParentFile(), file.getName(), ".tmp", false);
+        OutputStream os = null;
+        try {
+            os = SVNFileUtil.openFileForWriting(tmpFile);
+            buffer.writeTo(os);
+        } catch (IOException e) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "Cannot write lock index ''{0}'': {1}",
+                    new Object[] {tmpFile, e.getLocalizedMessage()});
+            SVNErrorManager.error(err, e, SVNLogType.FSFS);
+        } finally {
+            SVNFileUtil.closeFile(os);
+        }
+        SVNFileUtil.rename(tmpFile, file);
+    }
+
+    public synchronized SVNLock getLock(String path) throws SVNException {
+        refresh();
+        return myLocks.get(path);
+    }
+
+    /**
+     * Returns the lock of <code>path</code> and the locks of all paths
+     * under it, in the order of paths.
+     */
+    public synchronized List<SVNLock> getLocks(String path) throws SVNException {
+        refresh();
+        List<SVNLock> locks = new ArrayList<SVNLock>();
+        if ("/".equals(path)) {
+            locks.addAll(myLocks.values());
+            return locks;
+        }
+        SVNLock lock = myLocks.get(path);
+        if (lock != null) {
+            locks.add(lock);
+        }
+        // '0' follows '/', so the range holds exactly the paths below path.
+        SortedMap<String, SVNLock> children = myLocks.subMap(path + "/", path + "0");
+        locks.addAll(children.values());
+        return locks;
+    }
+
+    /**
+     * Should be called under the repository write lock.
+     */
+    public synchronized void setLock(SVNLock lock) throws SVNException {
+        refresh();
+        append(encodeSetEntry(lock));
+        if (myLocks.put(lock.getPath(), lock) != null) {
+            myGarbage++;
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Should be called under the repository write lock.
+     */
+    public synchronized void deleteLock(String path) throws SVNException {
+        refresh();
+        if (!myLocks.containsKey(path)) {
+            return;
+        }
+        append(encodeDeleteEntry(path));
+        myLocks.remove(path);
+        myGarbage += 2;
+        compactIfNeeded();
+    }
+
+    private void compactIfNeeded() throws SVNException {
+        if (myGarbage < MIN_GARBAGE_TO_COMPACT || myGarbage < myLocks.size()) {
+            return;
+        }
+        create(myFile, myLocks.values());
+        myGeneration = null;
+        refresh();
+    }
+
+    private void append(byte[] entry) throws SVNException {
+        if (myGeneration == null) {
+            // the index file was removed, start a new one rather than a journal without a header.
+            create(myFile, myLocks.values());
+            refresh();
+        }
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(myFile, "rw");
+            // under the write lock anything after the replayed entries was left by a writer which died.
+            if (file.length() > myOffset) {
+                file.setLength(myOffset);
+            }
+            file.seek(myOffset);
+            file.write(entry);
+        } catch (IOException e) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "Cannot write lock index ''{0}'': {1}",
+                    new Object[] {myFile, e.getLocalizedMessage()});
+            SVNErrorManager.error(err, e, SVNLogType.FSFS);
+        } finally {
+            SVNFileUtil.closeFile(file);
+        }
+        myOffset += entry.length;
+        myLastModified = myFile.lastModified();
+    }
+
+    private void refresh() throws SVNException {
+        long length = myFile.length();
+        long lastModified = myFile.lastModified();
+        if (myGeneration != null && length == myOffset && lastModified == myLastModified) {
+            return;
+        }
+        if (!myFile.isFile()) {
+            reset(null, 0);
+            return;
+        }
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(myFile, "r");
+            length = file.length();
+            String header = file.readLine();
+            if (header == null || !header.startsWith(HEADER_PREFIX)) {
+                SVNErrorManager.error(errorCorruptIndex(), SVNLogType.FSFS);
+            }
+            String generation = header.substring(HEADER_PREFIX.length());
+            if (!generation.equals(myGeneration) || length < myOffset) {
+                reset(generation, file.getFilePointer());
+            }
+            byte[] entries = new byte[(int) (length - myOffset)];
+            file.seek(myOffset);
+            file.readFully(entries);
+            myOffset += replay(entries);
+            myLastModified = lastModified;
+        } catch (IOException e) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "Cannot read lock index ''{0}'': {1}",
+                    new Object[] {myFile, e.getLocalizedMessage()});
+            SVNErrorManager.error(err, e, SVNLogType.FSFS);
+        } finally {
+            SVNFileUtil.closeFile(file);
+        }
+    }
+
+    private void reset(String generation, long offset) {
+        myLocks.clear();
+        myGeneration = generation;
+        myOffset = offset;
+        myLastModified = 0;
+        myGarbage = 0;
+    }
+
+    /**
+     * Replays complete entries and returns the number of bytes they take,
+     * an entry which is still being appended is left for the next refresh.
+     */
+    private int replay(byte[] entries) throws SVNException {
+        int offset = 0;
+        int[] position = new int[1];
+        while (offset < entries.length) {
+            position[0] = offset;
+            char kind = (char) entries[offset];
+            String path = readField(entries, position, kind == 'D' ? 'D' : 'K');
+            if (path == null) {
+                break;
+            }
+            if (kind == 'D') {
+                myLocks.remove(path);
+                myGarbage += 2;
+            } else {
+                String value = readField(entries, position, 'V');
+                if (value == null) {
+                    break;
+                }
+                if (myLocks.put(path, decodeLock(path, value)) != null) {
+                    myGarbage++;
+                }
+            }
+            offset = position[0];
+        }
+        return offset;
+    }
+
+    /**
+     * Reads a <code>"kind length\nbytes\n"</code> field at <code>position[0]</code>,
+     * returns <code>null</code> if the field is incomplete.
+     */
+    private String readField(byte[] entries, int[] position, char kind) throws SVNException {
+        int offset = position[0];
+        if (offset + 2 > entries.length) {
+            return null;
+        }
+        if (entries[offset] != kind || entries[offset + 1] != ' ') {
+            SVNErrorManager.error(errorCorruptIndex(), SVNLogType.FSFS);
+        }
+        int length = 0;
+        offset += 2;
+        while (offset < entries.length && entries[offset] != '\n') {
+            byte b = entries[offset++];
+            if (b < '0' || b > '9') {
+                SVNErrorManager.error(errorCorruptIndex(), SVNLogType.FSFS);
+            }
+            length = length * 10 + (b - '0');
+        }
+        offset++;
+        if (offset + length + 1 > entries.length) {
+            return null;
+        }
+        if (entries[offset + length] != '\n') {
+            SVNErrorManager.error(errorCorruptIndex(), SVNLogType.FSFS);
+        }
+        String field = null;
+        try {
+            field = new String(entries, offset, length, "UTF-8");
+        } catch (IOException e) {
+            SVNErrorManager.error(errorCorruptIndex(), e, SVNLogType.FSFS);
+        }
+        position[0] = offset + length + 1;
+        return field;
+    }
+
+    private SVNLock decodeLock(String path, String value) throws SVNException {
+        String[] fields = value.split("\n", 6);
+        if (fields.length < 5 || fields[0].length() == 0 || fields[3].length() == 0) {
+            SVNErrorManager.error(errorCorruptIndex(), SVNLogType.FSFS);
+        }
+        Date creationDate = SVNDate.parseDateString(fields[3]);
+        Date expirationDate = fields[4].length() > 0 ? SVNDate.parseDateString(fields[4]) : null;
+        String comment = fields.length > 5 ? fields[5] : null;
+        return new FSLock(path, fields[0], fields[1], comment, creationDate, expirationDate, "1".equals(fields[2]));
+    }
+
+    private static byte[] encodeSetEntry(SVNLock lock) throws SVNException {
+        StringBuffer value = new StringBuffer();
+        value.append(lock.getID()).append('\n');
+        value.append(lock.getOwner()).append('\n');
+        value.append(lock instanceof FSLock && ((FSLock) lock).isDAVComment() ? "1" : "0").append('\n');
+        value.append(SVNDate.formatDate(lock.getCreationDate())).append('\n');
+        if (lock.getExpirationDate() != null) {
+            value.append(SVNDate.formatDate(lock.getExpirationDate()));
+        }
+        if (lock.getComment() != null) {
+            value.append('\n').append(lock.getComment());
+        }
+        ByteArrayOutputStream entry = new ByteArrayOutputStream();
+        writeField(entry, 'K', lock.getPath());
+        writeField(entry, 'V', value.toString());
+        return entry.toByteArray();
+    }
+
+    private static byte[] encodeDeleteEntry(String path) throws SVNException {
+        ByteArrayOutputStream entry = new ByteArrayOutputStream();
+        writeField(entry, 'D', path);
+        return entry.toByteArray();
+    }
+
+    private static void writeField(ByteArrayOutputStream out, char kind, String field) throws SVNException {
+        try {
+            byte[] bytes = field.getBytes("UTF-8");
+            out.write((kind + " " + bytes.length + "\n").getBytes("US-ASCII"));
+            out.write(bytes);
+            out.write('\n');
+        } catch (IOException e) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, e.getLocalizedMessage());
+            SVNErrorManager.error(err, e, SVNLogType.FSFS);
+        }
+    }
+
+    private SVNErrorMessage errorCorruptIndex() {
+        return SVNErrorMessage.create(SVNErrorCode.FS_CORRUPT, "Corrupt lock index ''{0}''", myFile);
+    }
+}
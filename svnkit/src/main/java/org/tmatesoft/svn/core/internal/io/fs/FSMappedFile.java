@@ -0,0 +1,98 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.io.fs;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+
+/**
+ * Read-only memory mapping of an immutable revision or pack file. Files
+ * larger than a single mapping allows are mapped by segments. The channel is
+ * closed as soon as the file is mapped, so the mapping holds no file handle
+ * and is released by the garbage collector once it is not referenced any more.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public class FSMappedFile {
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final File myFile;
+    private final long mySize;
+    private final ByteBuffer[] mySegments;
+
+    private FSMappedFile(File file, long size, ByteBuffer[] segments) {
+        myFile = file;
+        mySize = size;
+        mySegments = segments;
+    }
+
+    public static FSMappedFile map(File file) throws IOException {
+        FileInputStream inputStream = SVNFileUtil.createFileInputStream(file);
+        try {
+            FileChannel channel = inputStream.getChannel();
+            long size = channel.size();
+            ByteBuffer[] segments = new ByteBuffer[(int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = ((long) i) << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+            }
+            return new FSMappedFile(file, size, segments);
+        } finally {
+            SVNFileUtil.closeFile(inputStream);
+        }
+    }
+
+    public File getFile() {
+        return myFile;
+    }
+
+    public long size() {
+        return mySize;
+    }
+
+    public int get(long position) {
+        return mySegments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & SEGMENT_MASK)) & 0xFF;
+    }
+
+    public void get(long position, byte[] target, int offset, int length) {
+        while (length > 0) {
+            ByteBuffer segment = mySegments[(int) (position >>> SEGMENT_SHIFT)].duplicate();
+            segment.position((int) (position & SEGMENT_MASK));
+            int count = Math.min(length, segment.remaining());
+            segment.get(target, offset, count);
+            position += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    public void get(long position, ByteBuffer target, int length) {
+        while (length > 0) {
+            ByteBuffer segment = mySegments[(int) (position >>> SEGMENT_SHIFT)].duplicate();
+            segment.position((int) (position & SEGMENT_MASK));
+            int count = Math.min(length, segment.remaining());
+            segment.limit(segment.position() + count);
+            target.put(segment);
+            position += count;
+            length -= count;
+        }
+    }
+}
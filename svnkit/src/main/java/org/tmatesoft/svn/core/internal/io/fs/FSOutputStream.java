@@ -241,17 +241,18 @@ public class FSOutputStream extends OutputStream implements ISVNDeltaConsumer {
             final IFSRepresentationCacheManager reposCacheManager = fsfs.getRepositoryCacheManager();
             if (reposCacheManager != null) {
                 try {
-                    reposCacheManager.runReadTransaction(new IFSSqlJetTransaction() {
-                        public void run() throws SVNException {
-                            final FSRepresentation oldRep = reposCacheManager.getRepresentationByHash(rep.getSHA1HexDigest());
-                            if (oldRep != null) {
-                                oldRep.setUniquifier(rep.getUniquifier());
-                                oldRep.setMD5HexDigest(rep.getMD5HexDigest());
-                                truncateToSize[0] = myRepOffset;
-                                myRevNode.setTextRepresentation(oldRep);
-                            }
-                        }
-                    });
+                    // the cache manager opens a read transaction only if its caches can't answer.
+                    final FSCommitBatch commitBatch = fsfs.getCommitBatch();
+                    FSRepresentation oldRep = commitBatch != null ? commitBatch.getRepresentation(rep.getSHA1HexDigest()) : null;
+                    if (oldRep == null) {
+                        oldRep = reposCacheManager.getRepresentationByHash(rep.getSHA1HexDigest());
+                    }
+                    if (oldRep != null) {
+                        oldRep.setUniquifier(rep.getUniquifier());
+                        oldRep.setMD5HexDigest(rep.getMD5HexDigest());
+                        truncateToSize[0] = myRepOffset;
+                        myRevNode.setTextRepresentation(oldRep);
+                    }
                 } catch (SVNException e) {
                     // explicitly ignore.
                     SVNDebugLog.getDefaultLog().logError(SVNLogType.FSFS, e);
@@ -15,6 +15,16 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.tmatesoft.svn.core.ISVNCanceller;
 import org.tmatesoft.svn.core.SVNErrorCode;
@@ -32,17 +42,39 @@ import org.tmatesoft.svn.util.SVNLogType;
 
 
 /**
+ * Packs complete shards of a repository. Pack files of a shard are written
+ * to temporary directories which are renamed into place once complete, so
+ * shards can be packed by several threads while <code>min-unpacked-rev</code>
+ * is advanced strictly in shard order by the calling thread. A pack left
+ * complete by an interrupted run is reused instead of being written again.
+ *
  * @version 1.3
  * @author  TMate Software Ltd.
  */
 public class FSPacker {
 
+    private static final String TMP_PACK_EXT = ".pack.tmp";
+
     private ISVNCanceller myCanceller;
     private ISVNAdminEventHandler myNotifyHandler;
+    private int myThreadsCount;
 
     public FSPacker(ISVNAdminEventHandler notifyHandler) {
         myCanceller = notifyHandler == null ? ISVNCanceller.NULL : notifyHandler;
         myNotifyHandler = notifyHandler;
+        myThreadsCount = Integer.getInteger("svnkit.fsfs.pack.threads", 1).intValue();
+    }
+
+    /**
+     * Sets the number of threads which write packs of shards. With one
+     * thread shards are packed one after another in the calling thread.
+     */
+    public void setThreadsCount(int threadsCount) {
+        myThreadsCount = threadsCount;
+    }
+
+    public int getThreadsCount() {
+        return myThreadsCount;
     }
 
     public void pack(FSFS fsfs) throws SVNException {
@@ -86,23 +118,128 @@ public class FSPacker {
             return;
         }
 
-        for (long i = minUnpackedRev / maxFilesPerDirectory; i < completedShards; i++) {
-            myCanceller.checkCancelled();
-            packShard(fsfs, i, packRevisionProperties);
+        long firstShard = minUnpackedRev / maxFilesPerDirectory;
+        ProgressInfo progress = new ProgressInfo(completedShards - firstShard);
+        if (myThreadsCount <= 1 || completedShards - firstShard <= 1) {
+            for (long i = firstShard; i < completedShards; i++) {
+                myCanceller.checkCancelled();
+                firePackStartEvents(i, packRevisionProperties);
+                long size = writeShardPack(fsfs, i, packRevisionProperties);
+                completeShard(fsfs, i, packRevisionProperties);
+                fireProgressEvent(i, progress, size);
+            }
+            return;
+        }
+
+        ExecutorService executor = new ThreadPoolExecutor(myThreadsCount, myThreadsCount, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new PackThreadFactory());
+        LinkedList<Future<Long>> pending = new LinkedList<Future<Long>>();
+        try {
+            long nextShard = firstShard;
+            for (long i = firstShard; i < completedShards; i++) {
+                while (nextShard < completedShards && pending.size() < 2 * myThreadsCount) {
+                    pending.add(executor.submit(new ShardPackTask(fsfs, nextShard, packRevisionProperties)));
+                    nextShard++;
+                }
+                myCanceller.checkCancelled();
+                firePackStartEvents(i, packRevisionProperties);
+                long size = waitFor(pending.removeFirst());
+                completeShard(fsfs, i, packRevisionProperties);
+                fireProgressEvent(i, progress, size);
+            }
+        } finally {
+            for (Future<Long> future : pending) {
+                future.cancel(true);
+            }
+            executor.shutdownNow();
         }
     }
 
-    private void packShard(FSFS fsfs, long shard, boolean packRevisionProperties) throws SVNException {
+    private long waitFor(Future<Long> future) throws SVNException {
+        try {
+            return future.get().longValue();
+        } catch (InterruptedException e) {
+            SVNErrorManager.cancel("Packing interrupted", SVNLogType.FSFS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SVNException) {
+                throw (SVNException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, cause.getMessage());
+            SVNErrorManager.error(err, cause, SVNLogType.FSFS);
+        }
+        return 0;
+    }
+
+    /**
+     * Writes packs of the shard, returns the size of the revision files of
+     * the shard. A revisions pack left complete by a previous run is kept, as
+     * revisions never change. Revision properties may have been changed since
+     * then in the unpacked shard, so their pack is always written anew.
+     */
+    private long writeShardPack(FSFS fsfs, long shard, boolean packRevisionProperties) throws SVNException {
         File revShardPath = new File(fsfs.getDBRevsDir(), String.valueOf(shard));
         File revpropShardPath = new File(fsfs.getRevisionPropertiesRoot(), String.valueOf(shard));
-        packRevShard(fsfs, shard, revShardPath);
+        File packDir = fsfs.getPackDir(shard);
+        File revpropPackDir = new File(fsfs.getRevisionPropertiesRoot(), String.valueOf(shard) + FSFS.PACK_EXT);
+
+        long size = getPackSize(fsfs, shard, revShardPath);
+        boolean isPackComplete = isPackComplete(fsfs, shard, packDir, size);
+
+        File tmpPackDir = new File(fsfs.getDBRevsDir(), String.valueOf(shard) + TMP_PACK_EXT);
+        File tmpRevpropPackDir = new File(fsfs.getRevisionPropertiesRoot(), String.valueOf(shard) + TMP_PACK_EXT);
+        if (!isPackComplete) {
+            packRevShard(fsfs, shard, revShardPath, tmpPackDir);
+        }
 
         if (packRevisionProperties) {
             myCanceller.checkCancelled();
-            packRevPropShard(fsfs, shard, revpropShardPath, (long)(0.9 * fsfs.getRevPropPackSize()));
+            packRevPropShard(fsfs, shard, revpropShardPath, tmpRevpropPackDir, (long)(0.9 * fsfs.getRevPropPackSize()));
+            SVNFileUtil.deleteAll(revpropPackDir, true, myCanceller);
+            SVNFileUtil.rename(tmpRevpropPackDir, revpropPackDir);
         }
+        if (!isPackComplete) {
+            SVNFileUtil.deleteAll(packDir, true, myCanceller);
+            SVNFileUtil.rename(tmpPackDir, packDir);
+        }
+        return size;
+    }
 
+    private static long getPackSize(FSFS fsfs, long shard, File shardPath) {
+        long size = 0;
+        long startRev = shard * fsfs.getMaxFilesPerDirectory();
+        long endRev = (shard + 1) * fsfs.getMaxFilesPerDirectory() - 1;
+        for (long rev = startRev; rev <= endRev; rev++) {
+            size += new File(shardPath, String.valueOf(rev)).length();
+        }
+        return size;
+    }
 
+    private static boolean isPackComplete(FSFS fsfs, long shard, File packDir, long packSize) {
+        File packFile = new File(packDir, FSFS.PACK_KIND_PACK);
+        File manifestFile = new File(packDir, FSFS.PACK_KIND_MANIFEST);
+        if (!packFile.isFile() || !manifestFile.isFile() || packFile.length() != packSize) {
+            return false;
+        }
+        File shardPath = new File(fsfs.getDBRevsDir(), String.valueOf(shard));
+        long manifestSize = 0;
+        long nextOffset = 0;
+        long startRev = shard * fsfs.getMaxFilesPerDirectory();
+        long endRev = (shard + 1) * fsfs.getMaxFilesPerDirectory() - 1;
+        for (long rev = startRev; rev <= endRev; rev++) {
+            manifestSize += String.valueOf(nextOffset).length() + 1;
+            nextOffset += new File(shardPath, String.valueOf(rev)).length();
+        }
+        return manifestFile.length() == manifestSize;
+    }
+
+    private void completeShard(FSFS fsfs, long shard, boolean packRevisionProperties) throws SVNException {
+        File revShardPath = new File(fsfs.getDBRevsDir(), String.valueOf(shard));
+        File revpropShardPath = new File(fsfs.getRevisionPropertiesRoot(), String.valueOf(shard));
         File finalPath = fsfs.getMinUnpackedRevFile();
         File tmpFile = SVNFileUtil.createUniqueFile(fsfs.getDBRoot(), "tempfile", ".tmp", false);
         String line = String.valueOf((shard + 1) * fsfs.getMaxFilesPerDirectory()) + '\n';
@@ -111,11 +248,31 @@ public class FSPacker {
         SVNFileUtil.deleteAll(revShardPath, true, myCanceller);
         if (packRevisionProperties) {
             deleteRevPropShard(revpropShardPath, shard, fsfs.getMaxFilesPerDirectory());
+            fsfs.getCaches().invalidateRevisionProperties();
         }
 
         firePackEvent(shard, false);
     }
 
+    private void firePackStartEvents(long shard, boolean packRevisionProperties) throws SVNException {
+        firePackEvent(shard, true);
+        if (packRevisionProperties) {
+            firePackEvent(shard, true);
+        }
+    }
+
+    private void fireProgressEvent(long shard, ProgressInfo progress, long packedSize) throws SVNException {
+        progress.myPackedShards++;
+        progress.myPackedBytes += packedSize;
+        if (myNotifyHandler != null) {
+            long elapsed = Math.max(1, System.currentTimeMillis() - progress.myStartTime);
+            String message = "Packed " + progress.myPackedShards + " of " + progress.myTotalShards + " shards (" +
+                    progress.myPackedBytes / 1024 + " KB, " + (progress.myPackedBytes * 1000 / 1024 / elapsed) + " KB/s)";
+            SVNAdminEvent event = new SVNAdminEvent(SVNAdminEventAction.PACK_PROGRESS, shard, message);
+            myNotifyHandler.handleAdminEvent(event, (double) progress.myPackedShards / progress.myTotalShards);
+        }
+    }
+
     private void deleteRevPropShard(File revpropShardPath, long shard, long maxFilesPerDirectory) throws SVNException {
         if (shard == 0) {
             for (int i = 1; i < maxFilesPerDirectory; i++) {
@@ -130,14 +287,12 @@ public class FSPacker {
         }
     }
 
-    private void packRevShard(FSFS fsfs, long shard, File shardPath) throws SVNException {
-        File packDir = fsfs.getPackDir(shard);
-        File packFile = fsfs.getPackFile(shard);
-        File manifestFile = fsfs.getManifestFile(shard);
-
-        firePackEvent(shard, true);
+    private void packRevShard(FSFS fsfs, long shard, File shardPath, File packDir) throws SVNException {
+        File packFile = new File(packDir, FSFS.PACK_KIND_PACK);
+        File manifestFile = new File(packDir, FSFS.PACK_KIND_MANIFEST);
 
-        SVNFileUtil.deleteAll(packDir, false, myCanceller);
+        SVNFileUtil.deleteAll(packDir, true, myCanceller);
+        packDir.mkdirs();
 
         long startRev = shard * fsfs.getMaxFilesPerDirectory();
         long endRev = (shard + 1) * fsfs.getMaxFilesPerDirectory() - 1;
@@ -177,10 +332,9 @@ public class FSPacker {
         }
     }
 
-    private void packRevPropShard(FSFS fsfs, long shard, File shardPath, long maxPackSize) throws SVNException {
-        File packPath = new File(fsfs.getRevisionPropertiesRoot(), String.valueOf(shard) + FSFS.PACK_EXT);
-
-        firePackEvent(shard, true);
+    private void packRevPropShard(FSFS fsfs, long shard, File shardPath, File packPath, long maxPackSize) throws SVNException {
+        SVNFileUtil.deleteAll(packPath, true, myCanceller);
+        packPath.mkdirs();
 
         long startRev = shard * fsfs.getMaxFilesPerDirectory();
         long endRev = (shard + 1) * fsfs.getMaxFilesPerDirectory() - 1;
@@ -238,4 +392,41 @@ public class FSPacker {
         packedRevProps.writeToFile(packFile, compressPackedRevprops);
     }
 
+    private static class ProgressInfo {
+        private final long myTotalShards;
+        private final long myStartTime;
+        private long myPackedShards;
+        private long myPackedBytes;
+
+        public ProgressInfo(long totalShards) {
+            myTotalShards = totalShards;
+            myStartTime = System.currentTimeMillis();
+        }
+    }
+
+    private class ShardPackTask implements Callable<Long> {
+        private final FSFS myFSFS;
+        private final long myShard;
+        private final boolean myPackRevisionProperties;
+
+        public ShardPackTask(FSFS fsfs, long shard, boolean packRevisionProperties) {
+            myFSFS = fsfs;
+            myShard = shard;
+            myPackRevisionProperties = packRevisionProperties;
+        }
+
+        public Long call() throws Exception {
+            return new Long(writeShardPack(myFSFS, myShard, myPackRevisionProperties));
+        }
+    }
+
+    private static class PackThreadFactory implements ThreadFactory {
+        private final AtomicInteger myThreadNumber = new AtomicInteger(1);
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "svnkit-pack-" + myThreadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
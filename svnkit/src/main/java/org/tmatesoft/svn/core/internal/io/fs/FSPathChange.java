@@ -47,6 +47,11 @@ public class FSPathChange extends SVNLogEntryPath {
         arePropertiesModified = propsModified;
     }
 
+    public FSPathChange(FSPathChange change) {
+        this(change.myPath, change.myRevNodeId, change.myChangeKind, change.isTextModified, change.arePropertiesModified,
+                change.getCopyPath(), change.getCopyRevision(), change.getKind());
+    }
+
     public String getPath(){
         return myPath;
     }
@@ -0,0 +1,559 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.io.fs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.util.SVNDebugLog;
+import org.tmatesoft.svn.util.SVNLogType;
+
+/**
+ * Caches of immutable repository data which are shared by all {@link FSFS}
+ * instances opened on the same repository. Instances are registered by the
+ * repository root and UUID, so that a repository recreated at the same location
+ * never sees the data of its predecessor.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public class FSRepositoryCaches {
+
+    private static final long REVISION_NODES_CACHE_SIZE = getLongProperty("svnkit.fsfs.cache.revisionNodes", 16 * 1024);
+    private static final long DIR_ENTRIES_CACHE_SIZE = getLongProperty("svnkit.fsfs.cache.dirEntries.bytes", 16 * 1024 * 1024);
+    private static final long FULLTEXTS_CACHE_SIZE = getLongProperty("svnkit.fsfs.cache.fulltexts.bytes", 8 * 1024 * 1024);
+    private static final long MAX_CACHED_FULLTEXT_SIZE = getLongProperty("svnkit.fsfs.cache.fulltexts.maxSize", 64 * 1024);
+    private static final long DELTA_WINDOWS_CACHE_SIZE = getLongProperty("svnkit.fsfs.cache.deltaWindows.bytes", 8 * 1024 * 1024);
+    private static final long PACK_MANIFESTS_CACHE_SIZE = getLongProperty("svnkit.fsfs.cache.packManifests.bytes", 4 * 1024 * 1024);
+    private static final long REVISION_PROPERTIES_CACHE_SIZE = getLongProperty("svnkit.fsfs.cache.revisionProperties", 64 * 1024);
+    private static final long CHANGED_PATHS_CACHE_SIZE = getLongProperty("svnkit.fsfs.cache.changedPaths", 64 * 1024);
+    private static final long PATHS_CACHE_SIZE = getLongProperty("svnkit.fsfs.cache.paths", 16 * 1024);
+    private static final long REPRESENTATIONS_CACHE_SIZE = getLongProperty("svnkit.fsfs.cache.representations", 64 * 1024);
+    private static final long REPRESENTATIONS_FILTER_SIZE = getLongProperty("svnkit.fsfs.cache.representations.filterBits", 8 * 1024 * 1024);
+    private static final boolean MAP_REVISION_FILES = Boolean.getBoolean("svnkit.fsfs.mmap");
+    private static final long MAPPED_FILES_CACHE_SIZE = getLongProperty("svnkit.fsfs.mmap.files", 64);
+    private static final long REPOSITORIES_CACHE_SIZE = getLongProperty("svnkit.fsfs.cache.repositories", 16);
+
+    private static final FSCache<String, FSRepositoryCaches> ourCaches = new FSCache<String, FSRepositoryCaches>("repositories", REPOSITORIES_CACHE_SIZE, 1);
+
+    private final FSCache<RevisionPath, FSRevisionNode> myRevisionNodesByPath;
+    private final FSCache<FSID, FSRevisionNode> myRevisionNodesByID;
+    private final FSCache<RepresentationKey, FSCompactDirEntries> myDirEntries;
+    private final FSCache<FulltextKey, byte[]> myFulltexts;
+    private final FSCache<WindowKey, byte[]> myDeltaWindows;
+    private final FSCache<File, FSMappedFile> myMappedFiles;
+    private final FSCache<Long, FSPathChange[]> myChangedPaths;
+    private final FSCache<String, String> myPaths;
+    private final FSCache<Long, long[]> myPackManifests;
+    private final FSCache<String, FSRepresentation> myRepresentations;
+    private volatile FSRepresentationsFilter myRepresentationsFilter;
+    private long myMinUnpackedRevision;
+    private final FSCache<Long, FSRevPropsShard> myRevPropsShards;
+    private final AtomicLong myRevPropsGeneration = new AtomicLong();
+    private FSLockIndex myLockIndex;
+
+    private FSRepositoryCaches(boolean isCaching) {
+        myRevisionNodesByPath = new FSCache<RevisionPath, FSRevisionNode>("revision nodes by path", isCaching ? REVISION_NODES_CACHE_SIZE : 0);
+        myRevisionNodesByID = new FSCache<FSID, FSRevisionNode>("revision nodes by id", isCaching ? REVISION_NODES_CACHE_SIZE : 0);
+        myDirEntries = new FSCache<RepresentationKey, FSCompactDirEntries>("directory entries", isCaching ? DIR_ENTRIES_CACHE_SIZE : 0, 4) {
+            protected long weigh(RepresentationKey key, FSCompactDirEntries value) {
+                return value.getEstimatedSize();
+            }
+        };
+        myFulltexts = new FSCache<FulltextKey, byte[]>("fulltexts", isCaching ? FULLTEXTS_CACHE_SIZE : 0, 4) {
+            protected long weigh(FulltextKey key, byte[] value) {
+                return value.length;
+            }
+        };
+        myDeltaWindows = new FSCache<WindowKey, byte[]>("delta windows", isCaching ? DELTA_WINDOWS_CACHE_SIZE : 0, 4) {
+            protected long weigh(WindowKey key, byte[] value) {
+                return value.length;
+            }
+        };
+        myPackManifests = new FSCache<Long, long[]>("pack manifests", isCaching ? PACK_MANIFESTS_CACHE_SIZE : 0, 4) {
+            protected long weigh(Long key, long[] value) {
+                return 16 + value.length * 8;
+            }
+        };
+        myRevPropsShards = new FSCache<Long, FSRevPropsShard>("revision properties", isCaching ? REVISION_PROPERTIES_CACHE_SIZE : 0, 4) {
+            protected long weigh(Long key, FSRevPropsShard value) {
+                return value.getRevisionsCount();
+            }
+        };
+        myChangedPaths = new FSCache<Long, FSPathChange[]>("changed paths", isCaching ? CHANGED_PATHS_CACHE_SIZE : 0) {
+            protected long weigh(Long key, FSPathChange[] value) {
+                return value.length;
+            }
+        };
+        myPaths = new FSCache<String, String>("paths", isCaching ? PATHS_CACHE_SIZE : 0);
+        myRepresentations = new FSCache<String, FSRepresentation>("representations", isCaching ? REPRESENTATIONS_CACHE_SIZE : 0, 4);
+        myMappedFiles = new FSCache<File, FSMappedFile>("mapped files", MAP_REVISION_FILES ? MAPPED_FILES_CACHE_SIZE : 0, 4);
+    }
+
+    public static FSRepositoryCaches getCaches(FSFS owner) throws SVNException {
+        final String key = owner.getRepositoryRoot().getAbsolutePath() + ":" + owner.getUUID();
+        synchronized (ourCaches) {
+            FSRepositoryCaches caches = ourCaches.get(key);
+            if (caches == null) {
+                caches = new FSRepositoryCaches(true);
+                ourCaches.put(key, caches);
+            }
+            return caches;
+        }
+    }
+
+    /**
+     * Creates caches which keep nothing read from revision files, for a
+     * repository instance that has to see what is actually on disk.
+     */
+    public static FSRepositoryCaches createUncachedCaches() {
+        return new FSRepositoryCaches(false);
+    }
+
+    /**
+     * Cached node revisions are shared snapshots and must never be changed,
+     * a transaction root copies a node before turning it into a successor.
+     */
+    public FSRevisionNode getRevisionNode(long revision, String path) {
+        return myRevisionNodesByPath.get(new RevisionPath(revision, path));
+    }
+
+    public void putRevisionNode(long revision, String path, FSRevisionNode node) {
+        myRevisionNodesByPath.put(new RevisionPath(revision, path), node);
+    }
+
+    public void removeRevisionNode(long revision, String path) {
+        myRevisionNodesByPath.remove(new RevisionPath(revision, path));
+    }
+
+    public FSRevisionNode getRevisionNode(FSID id) {
+        return myRevisionNodesByID.get(id);
+    }
+
+    public void putRevisionNode(FSID id, FSRevisionNode node) {
+        myRevisionNodesByID.put(id, node);
+    }
+
+    public FSCompactDirEntries getDirEntries(FSRepresentation textRepresentation) {
+        return myDirEntries.get(new RepresentationKey(textRepresentation));
+    }
+
+    public void putDirEntries(FSRepresentation textRepresentation, FSCompactDirEntries entries) {
+        myDirEntries.put(new RepresentationKey(textRepresentation), entries);
+    }
+
+    /**
+     * Returns <code>true</code> if fulltext of the representation is small
+     * enough to be kept in the fulltexts cache as a whole.
+     */
+    public boolean isFulltextCacheable(FSRepresentation representation) {
+        return myFulltexts.isEnabled() && !representation.isTxn() && representation.getRevision() >= 0 &&
+                representation.getExpandedSize() <= Math.min(MAX_CACHED_FULLTEXT_SIZE, Integer.MAX_VALUE);
+    }
+
+    public byte[] getFulltext(FSRepresentation representation) {
+        return myFulltexts.get(new FulltextKey(representation));
+    }
+
+    public void putFulltext(FSRepresentation representation, byte[] fulltext) {
+        myFulltexts.put(new FulltextKey(representation), fulltext);
+    }
+
+    public boolean isDeltaWindowCacheable(FSRepresentation representation) {
+        return myDeltaWindows.isEnabled() && !representation.isTxn() && representation.getRevision() >= 0;
+    }
+
+    public byte[] getDeltaWindow(FSRepresentation representation, int chunkIndex) {
+        return myDeltaWindows.get(new WindowKey(representation.getRevision(), representation.getOffset(), chunkIndex));
+    }
+
+    public void putDeltaWindow(FSRepresentation representation, int chunkIndex, byte[] window) {
+        myDeltaWindows.put(new WindowKey(representation.getRevision(), representation.getOffset(), chunkIndex), window);
+    }
+
+    /**
+     * Returns memory mapping of an immutable revision or pack file, or
+     * <code>null</code> if mapping is disabled or the file could not be mapped.
+     * Mappings are kept in a bounded pool, an evicted mapping is unmapped by
+     * the garbage collector once the last reader drops it.
+     */
+    public FSMappedFile getMappedFile(File file) {
+        if (!myMappedFiles.isEnabled()) {
+            return null;
+        }
+        FSMappedFile mappedFile = myMappedFiles.get(file);
+        if (mappedFile != null && mappedFile.size() == file.length()) {
+            return mappedFile;
+        }
+        try {
+            mappedFile = FSMappedFile.map(file);
+        } catch (IOException e) {
+            SVNDebugLog.getDefaultLog().logFine(SVNLogType.FSFS, e);
+            myMappedFiles.remove(file);
+            return null;
+        }
+        myMappedFiles.put(file, mappedFile);
+        return mappedFile;
+    }
+
+    public long[] getPackManifest(long shard) {
+        return myPackManifests.get(new Long(shard));
+    }
+
+    public void putPackManifest(long shard, long[] manifest) {
+        myPackManifests.put(new Long(shard), manifest);
+    }
+
+    /**
+     * Packed shards never change, but if min-unpacked-rev moved backwards the
+     * repository has been replaced by an older copy and all manifests are
+     * dropped.
+     */
+    public void setMinUnpackedRevision(long minUnpackedRevision) {
+        synchronized (myPackManifests) {
+            if (minUnpackedRevision < myMinUnpackedRevision) {
+                myPackManifests.clear();
+            }
+            myMinUnpackedRevision = minUnpackedRevision;
+        }
+    }
+
+    /**
+     * Returns the cached instance of the equal path, if there is one.
+     */
+    public String internPath(String path) {
+        if (path == null) {
+            return null;
+        }
+        String internedPath = myPaths.get(path);
+        if (internedPath == null) {
+            myPaths.put(path, path);
+            internedPath = path;
+        }
+        return internedPath;
+    }
+
+    /**
+     * Returns folded changes of the revision. Cached changes are shared and
+     * must be copied before they are handed out.
+     */
+    public FSPathChange[] getChangedPaths(long revision) {
+        return myChangedPaths.get(new Long(revision));
+    }
+
+    public void putChangedPaths(long revision, FSPathChange[] changes) {
+        myChangedPaths.put(new Long(revision), changes);
+    }
+
+    public FSRevPropsShard getRevPropsShard(long shard) {
+        return myRevPropsShards.get(new Long(shard));
+    }
+
+    public void putRevPropsShard(long shard, FSRevPropsShard revPropsShard) {
+        myRevPropsShards.put(new Long(shard), revPropsShard);
+    }
+
+    /**
+     * Shards loaded in an older generation are never served, the generation
+     * is read before a shard is loaded so that a shard which races with a
+     * change of revision properties is stale right away.
+     */
+    public long getRevPropsGeneration() {
+        return myRevPropsGeneration.get();
+    }
+
+    public void invalidateRevisionProperties() {
+        myRevPropsGeneration.incrementAndGet();
+        myRevPropsShards.clear();
+    }
+
+    /**
+     * Returns a copy of the cached rep-cache record of the checksum, only
+     * the location, sizes and SHA-1 checksum of the representation are set.
+     */
+    public FSRepresentation getRepresentation(String sha1HexDigest) {
+        FSRepresentation representation = myRepresentations.get(sha1HexDigest);
+        return representation != null ? new FSRepresentation(representation) : null;
+    }
+
+    /**
+     * Remembers the rep-cache record of the representation and adds its
+     * checksum to the representations filter, if the filter is loaded.
+     */
+    public void putRepresentation(FSRepresentation representation) {
+        FSRepresentation record = new FSRepresentation();
+        record.setRevision(representation.getRevision());
+        record.setOffset(representation.getOffset());
+        record.setSize(representation.getSize());
+        record.setExpandedSize(representation.getExpandedSize());
+        record.setSHA1HexDigest(representation.getSHA1HexDigest());
+        myRepresentations.put(record.getSHA1HexDigest(), record);
+
+        FSRepresentationsFilter filter = myRepresentationsFilter;
+        if (filter != null) {
+            filter.add(record.getSHA1HexDigest());
+        }
+    }
+
+    public boolean isRepresentationsFilterEnabled() {
+        return REPRESENTATIONS_FILTER_SIZE > 0;
+    }
+
+    public FSRepresentationsFilter createRepresentationsFilter() {
+        return new FSRepresentationsFilter(REPRESENTATIONS_FILTER_SIZE);
+    }
+
+    /**
+     * Returns the filter of all checksums in the rep-cache table, or
+     * <code>null</code> if it is not loaded yet.
+     */
+    public FSRepresentationsFilter getRepresentationsFilter() {
+        return myRepresentationsFilter;
+    }
+
+    public void setRepresentationsFilter(FSRepresentationsFilter filter) {
+        myRepresentationsFilter = filter;
+    }
+
+    /**
+     * Returns the in-memory index of the repository lock index file, the
+     * index is shared so that it is loaded once per repository.
+     */
+    public synchronized FSLockIndex getLockIndex(FSFS owner) {
+        if (myLockIndex == null) {
+            myLockIndex = new FSLockIndex(FSLockIndex.getIndexFile(owner));
+        }
+        return myLockIndex;
+    }
+
+    public FSCache<String, FSRepresentation> getRepresentationsCache() {
+        return myRepresentations;
+    }
+
+    public FSCache<RevisionPath, FSRevisionNode> getRevisionNodesByPathCache() {
+        return myRevisionNodesByPath;
+    }
+
+    public FSCache<FSID, FSRevisionNode> getRevisionNodesByIDCache() {
+        return myRevisionNodesByID;
+    }
+
+    public FSCache<RepresentationKey, FSCompactDirEntries> getDirEntriesCache() {
+        return myDirEntries;
+    }
+
+    public FSCache<FulltextKey, byte[]> getFulltextsCache() {
+        return myFulltexts;
+    }
+
+    public FSCache<WindowKey, byte[]> getDeltaWindowsCache() {
+        return myDeltaWindows;
+    }
+
+    public FSCache<Long, long[]> getPackManifestsCache() {
+        return myPackManifests;
+    }
+
+    public FSCache<Long, FSPathChange[]> getChangedPathsCache() {
+        return myChangedPaths;
+    }
+
+    public FSCache<Long, FSRevPropsShard> getRevPropsShardsCache() {
+        return myRevPropsShards;
+    }
+
+    public FSCache<File, FSMappedFile> getMappedFilesCache() {
+        return myMappedFiles;
+    }
+
+    public void clear() {
+        myRevisionNodesByPath.clear();
+        myRevisionNodesByID.clear();
+        myDirEntries.clear();
+        myFulltexts.clear();
+        myDeltaWindows.clear();
+        myMappedFiles.clear();
+        myPackManifests.clear();
+        myChangedPaths.clear();
+        myPaths.clear();
+        myRepresentations.clear();
+        myRepresentationsFilter = null;
+        invalidateRevisionProperties();
+    }
+
+    private static long getLongProperty(String name, long defaultValue) {
+        final String value = System.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public static class RevisionPath {
+
+        private final long myRevision;
+        private final String myPath;
+
+        public RevisionPath(long revision, String path) {
+            myRevision = revision;
+            myPath = path;
+        }
+
+        public long getRevision() {
+            return myRevision;
+        }
+
+        public String getPath() {
+            return myPath;
+        }
+
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != RevisionPath.class) {
+                return false;
+            }
+            final RevisionPath other = (RevisionPath) obj;
+            return myRevision == other.myRevision && myPath.equals(other.myPath);
+        }
+
+        public int hashCode() {
+            return 31 * myPath.hashCode() + (int) (myRevision ^ (myRevision >>> 32));
+        }
+
+        public String toString() {
+            return myPath + "@" + myRevision;
+        }
+    }
+
+    public static class RepresentationKey {
+
+        private final long myRevision;
+        private final long myOffset;
+        private final long myExpandedSize;
+
+        public RepresentationKey(FSRepresentation representation) {
+            this(representation.getRevision(), representation.getOffset(), representation.getExpandedSize());
+        }
+
+        public RepresentationKey(long revision, long offset, long expandedSize) {
+            myRevision = revision;
+            myOffset = offset;
+            myExpandedSize = expandedSize;
+        }
+
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != RepresentationKey.class) {
+                return false;
+            }
+            final RepresentationKey other = (RepresentationKey) obj;
+            return myRevision == other.myRevision && myOffset == other.myOffset && myExpandedSize == other.myExpandedSize;
+        }
+
+        public int hashCode() {
+            int result = (int) (myRevision ^ (myRevision >>> 32));
+            result = 31 * result + (int) (myOffset ^ (myOffset >>> 32));
+            result = 31 * result + (int) (myExpandedSize ^ (myExpandedSize >>> 32));
+            return result;
+        }
+
+        public String toString() {
+            return myRevision + " " + myOffset + " " + myExpandedSize;
+        }
+    }
+
+    public static class FulltextKey {
+
+        private final long myRevision;
+        private final long myOffset;
+        private final String myChecksum;
+
+        public FulltextKey(FSRepresentation representation) {
+            this(representation.getRevision(), representation.getOffset(),
+                    representation.getSHA1HexDigest() != null ? representation.getSHA1HexDigest() : representation.getMD5HexDigest());
+        }
+
+        public FulltextKey(long revision, long offset, String checksum) {
+            myRevision = revision;
+            myOffset = offset;
+            myChecksum = checksum;
+        }
+
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != FulltextKey.class) {
+                return false;
+            }
+            final FulltextKey other = (FulltextKey) obj;
+            return myRevision == other.myRevision && myOffset == other.myOffset &&
+                    (myChecksum == null ? other.myChecksum == null : myChecksum.equals(other.myChecksum));
+        }
+
+        public int hashCode() {
+            int result = (int) (myRevision ^ (myRevision >>> 32));
+            result = 31 * result + (int) (myOffset ^ (myOffset >>> 32));
+            result = 31 * result + (myChecksum != null ? myChecksum.hashCode() : 0);
+            return result;
+        }
+
+        public String toString() {
+            return myRevision + " " + myOffset + " " + myChecksum;
+        }
+    }
+
+    public static class WindowKey {
+
+        private final long myRevision;
+        private final long myOffset;
+        private final int myChunkIndex;
+
+        public WindowKey(long revision, long offset, int chunkIndex) {
+            myRevision = revision;
+            myOffset = offset;
+            myChunkIndex = chunkIndex;
+        }
+
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != WindowKey.class) {
+                return false;
+            }
+            final WindowKey other = (WindowKey) obj;
+            return myRevision == other.myRevision && myOffset == other.myOffset && myChunkIndex == other.myChunkIndex;
+        }
+
+        public int hashCode() {
+            int result = (int) (myRevision ^ (myRevision >>> 32));
+            result = 31 * result + (int) (myOffset ^ (myOffset >>> 32));
+            result = 31 * result + myChunkIndex;
+            return result;
+        }
+
+        public String toString() {
+            return myRevision + " " + myOffset + " #" + myChunkIndex;
+        }
+    }
+}
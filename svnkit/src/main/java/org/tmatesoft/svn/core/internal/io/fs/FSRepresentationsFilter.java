@@ -0,0 +1,98 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.io.fs;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of SHA-1 checksums stored in the rep-cache table. A checksum
+ * the filter does not contain is not in the table, so such lookups skip the
+ * database. Checksums are uniformly distributed already, bit positions are
+ * taken from the checksum digits directly.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public class FSRepresentationsFilter {
+
+    private static final int HASHES_COUNT = 4;
+
+    private final AtomicLongArray myBits;
+    private final long myBitsCount;
+    private final AtomicLong myRejectedCount = new AtomicLong();
+    private final AtomicLong myPassedCount = new AtomicLong();
+
+    public FSRepresentationsFilter(long bitsCount) {
+        int wordsCount = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (bitsCount + 63) / 64));
+        myBits = new AtomicLongArray(wordsCount);
+        myBitsCount = wordsCount * 64L;
+    }
+
+    public void add(String sha1HexDigest) {
+        long h1 = hash(sha1HexDigest, 0);
+        long h2 = hash(sha1HexDigest, 15) | 1;
+        for (int i = 0; i < HASHES_COUNT; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % myBitsCount;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << (bit & 63);
+            while (true) {
+                long value = myBits.get(word);
+                if ((value & mask) != 0 || myBits.compareAndSet(word, value, value | mask)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    public boolean mightContain(String sha1HexDigest) {
+        long h1 = hash(sha1HexDigest, 0);
+        long h2 = hash(sha1HexDigest, 15) | 1;
+        for (int i = 0; i < HASHES_COUNT; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % myBitsCount;
+            if ((myBits.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0) {
+                myRejectedCount.incrementAndGet();
+                return false;
+            }
+        }
+        myPassedCount.incrementAndGet();
+        return true;
+    }
+
+    public long getBitsCount() {
+        return myBitsCount;
+    }
+
+    public long getRejectedCount() {
+        return myRejectedCount.get();
+    }
+
+    public long getPassedCount() {
+        return myPassedCount.get();
+    }
+
+    public String toString() {
+        return "{[Filter:representations][Bits:" + myBitsCount + "][Rejected:" + getRejectedCount() + "][Passed:" + getPassedCount() + "]}";
+    }
+
+    private static long hash(String hexDigest, int offset) {
+        if (hexDigest.length() < offset + 15) {
+            return hexDigest.hashCode() * 0x9E3779B97F4A7C15L + offset;
+        }
+        long value = 0;
+        for (int i = offset; i < offset + 15; i++) {
+            int digit = Character.digit(hexDigest.charAt(i), 16);
+            value = (value << 4) | (digit < 0 ? hexDigest.charAt(i) & 0xF : digit);
+        }
+        return value;
+    }
+}
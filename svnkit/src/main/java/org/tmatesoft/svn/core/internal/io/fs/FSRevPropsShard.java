@@ -0,0 +1,115 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.io.fs;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNProperties;
+import org.tmatesoft.svn.core.internal.io.fs.revprop.SVNFSFSPackedRevProps;
+import org.tmatesoft.svn.core.internal.io.fs.revprop.SVNFSFSPackedRevPropsManifest;
+
+/**
+ * Decoded revision properties of a packed revprops shard. The shard is
+ * valid as long as the cache generation it was loaded in is current and
+ * neither the manifest nor the pack holding the requested revision have
+ * been changed on disk since.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public class FSRevPropsShard {
+
+    private final long myGeneration;
+    private final long myFirstRevision;
+    private final File myManifestFile;
+    private final long myManifestStamp;
+    private final File[] myPackFiles;
+    private final long[] myPackStamps;
+    private final int[] myRevisionPacks;
+    private final SVNProperties[] myProperties;
+
+    private FSRevPropsShard(long generation, long firstRevision, File manifestFile, long manifestStamp,
+                            File[] packFiles, long[] packStamps, int[] revisionPacks, SVNProperties[] properties) {
+        myGeneration = generation;
+        myFirstRevision = firstRevision;
+        myManifestFile = manifestFile;
+        myManifestStamp = manifestStamp;
+        myPackFiles = packFiles;
+        myPackStamps = packStamps;
+        myRevisionPacks = revisionPacks;
+        myProperties = properties;
+    }
+
+    public static FSRevPropsShard load(File shardDirectory, long revision, long maxFilesPerDirectory, long generation) throws SVNException {
+        final File manifestFile = new File(shardDirectory, FSFS.MANIFEST_FILE);
+        final long manifestStamp = getStamp(manifestFile);
+        final SVNFSFSPackedRevPropsManifest manifest = SVNFSFSPackedRevPropsManifest.fromFile(manifestFile, revision, maxFilesPerDirectory);
+
+        final int revisionsCount = manifest.getRevisionsCount();
+        final List<File> packFiles = new ArrayList<File>();
+        final int[] revisionPacks = new int[revisionsCount];
+        final SVNProperties[] properties = new SVNProperties[revisionsCount];
+
+        String packName = null;
+        SVNFSFSPackedRevProps packedRevProps = null;
+        for (int i = 0; i < revisionsCount; i++) {
+            final long currentRevision = manifest.getFirstRevision() + i;
+            final String currentPackName = manifest.getPackName(currentRevision);
+            if (!currentPackName.equals(packName)) {
+                packName = currentPackName;
+                final File packFile = new File(shardDirectory, packName);
+                packFiles.add(packFile);
+                packedRevProps = SVNFSFSPackedRevProps.fromPackFile(packFile);
+            }
+            revisionPacks[i] = packFiles.size() - 1;
+            properties[i] = packedRevProps.parseProperties(currentRevision);
+        }
+
+        final long[] packStamps = new long[packFiles.size()];
+        for (int i = 0; i < packStamps.length; i++) {
+            packStamps[i] = getStamp(packFiles.get(i));
+        }
+        return new FSRevPropsShard(generation, manifest.getFirstRevision(), manifestFile, manifestStamp,
+                packFiles.toArray(new File[packFiles.size()]), packStamps, revisionPacks, properties);
+    }
+
+    /**
+     * Returns properties of the revision or <code>null</code> if the shard
+     * is stale or does not contain the revision. Returned properties are
+     * shared and must not be modified.
+     */
+    public SVNProperties getProperties(long revision, long generation) {
+        final int index = (int) (revision - myFirstRevision);
+        if (generation != myGeneration || index < 0 || index >= myProperties.length) {
+            return null;
+        }
+        if (getStamp(myManifestFile) != myManifestStamp) {
+            return null;
+        }
+        final int pack = myRevisionPacks[index];
+        if (getStamp(myPackFiles[pack]) != myPackStamps[pack]) {
+            return null;
+        }
+        return myProperties[index];
+    }
+
+    public int getRevisionsCount() {
+        return myProperties.length;
+    }
+
+    private static long getStamp(File file) {
+        return file.lastModified() * 31 + file.length();
+    }
+}
@@ -76,9 +76,6 @@ public class FSRevisionNode {
     private long myCopyRootRevision;
     private String myCopyRootPath;
 
-    // for only node-revs representing dirs
-    private Map myDirContents;
-
     //in case of txn root: whether it wasn't 
     //changed yet (fresh) or was
     private boolean myIsFreshTxnRoot;
@@ -216,12 +213,15 @@ public class FSRevisionNode {
         return clone;
     }
 
-    protected Map getDirContents() {
-        return myDirContents;
-    }
-
-    public void setDirContents(Map dirContents) {
-        myDirContents = dirContents;
+    /**
+     * Makes node revisions of read-only revision roots share equal path
+     * strings, node revisions of the same path in different revisions
+     * usually have the same created and copy root paths.
+     */
+    void internPaths(FSRepositoryCaches caches) {
+        myCreatedPath = caches.internPath(myCreatedPath);
+        myCopyRootPath = caches.internPath(myCopyRootPath);
+        myCopyFromPath = caches.internPath(myCopyFromPath);
     }
 
     public boolean hasMergeInfo() {
@@ -601,13 +601,7 @@ public class FSRevisionNode {
             SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.FS_NOT_DIRECTORY, "Can't get entries of non-directory");
             SVNErrorManager.error(err, SVNLogType.FSFS);
         }
-        Map dirContents = getDirContents();
-
-        if (dirContents == null) {
-            dirContents = fsfsOwner.getDirContents(this);
-            setDirContents(dirContents);
-        }
-        return Collections.unmodifiableMap(dirContents);
+        return Collections.unmodifiableMap(fsfsOwner.getDirContents(this));
     }
 
     public SVNProperties getProperties(FSFS fsfsOwner) throws SVNException {
@@ -11,12 +11,14 @@
  */
 package org.tmatesoft.svn.core.internal.io.fs;
 
+import java.util.Iterator;
 import java.util.Map;
 
 import org.tmatesoft.svn.core.SVNErrorCode;
 import org.tmatesoft.svn.core.SVNErrorMessage;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.internal.util.SVNHashMap;
 import org.tmatesoft.svn.core.internal.util.SVNPathUtil;
 import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
 import org.tmatesoft.svn.core.io.SVNLocationEntry;
@@ -45,14 +47,31 @@ public class FSRevisionRoot extends FSRoot {
     }
 
     public Map getChangedPaths() throws SVNException {
+        FSRepositoryCaches caches = getOwner().getCaches();
+        FSPathChange[] cachedChanges = caches.getChangedPaths(getRevision());
+        if (cachedChanges != null) {
+            Map changedPaths = new SVNHashMap();
+            for (int i = 0; i < cachedChanges.length; i++) {
+                changedPaths.put(cachedChanges[i].getPath(), new FSPathChange(cachedChanges[i]));
+            }
+            return changedPaths;
+        }
+        Map changedPaths = null;
         FSFile file = getOwner().getPackOrRevisionFSFile(getRevision());
         try {
             loadOffsets(file);
             file.seek(myChangesOffset);
-            return fetchAllChanges(file, true);
+            changedPaths = fetchAllChanges(file, true);
         } finally {
             file.close();
         }
+        cachedChanges = new FSPathChange[changedPaths.size()];
+        int i = 0;
+        for (Iterator changes = changedPaths.values().iterator(); changes.hasNext();) {
+            cachedChanges[i++] = new FSPathChange((FSPathChange) changes.next());
+        }
+        caches.putChangedPaths(getRevision(), cachedChanges);
+        return changedPaths;
     }
 
     public FSCopyInheritance getCopyInheritance(FSParentPath child) throws SVNException{
@@ -97,6 +116,11 @@ public class FSRevisionRoot extends FSRoot {
 
     public FSRevisionNode getRootRevisionNode() throws SVNException {
         if (myRootRevisionNode == null) {
+            FSRepositoryCaches caches = getOwner().getCaches();
+            myRootRevisionNode = caches.getRevisionNode(getRevision(), "/");
+            if (myRootRevisionNode != null) {
+                return myRootRevisionNode;
+            }
             FSFile file = getOwner().getPackOrRevisionFSFile(getRevision());
             try {
                 loadOffsets(file);
@@ -106,10 +130,40 @@ public class FSRevisionRoot extends FSRoot {
             } finally {
                 file.close();
             }
+            myRootRevisionNode.internPaths(caches);
+            caches.putRevisionNode(getRevision(), "/", myRootRevisionNode);
         }
         return myRootRevisionNode;
     }
 
+    protected boolean isCachedPrefixLookupAllowed() {
+        return true;
+    }
+
+    public void putRevNodeToCache(String path, FSRevisionNode node) throws SVNException {
+        if (!path.startsWith("/")) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.UNKNOWN, "Invalid path ''{0}''", path);
+            SVNErrorManager.error(err, SVNLogType.FSFS);
+        }
+        getOwner().getCaches().putRevisionNode(getRevision(), path, node);
+    }
+
+    public void removeRevNodeFromCache(String path) throws SVNException {
+        if (!path.startsWith("/")) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.UNKNOWN, "Invalid path ''{0}''", path);
+            SVNErrorManager.error(err, SVNLogType.FSFS);
+        }
+        getOwner().getCaches().removeRevisionNode(getRevision(), path);
+    }
+
+    protected FSRevisionNode fetchRevNodeFromCache(String path) throws SVNException {
+        if (!path.startsWith("/")) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.UNKNOWN, "Invalid path ''{0}''", path);
+            SVNErrorManager.error(err, SVNLogType.FSFS);
+        }
+        return getOwner().getCaches().getRevisionNode(getRevision(), path);
+    }
+
     public SVNLocationEntry getPreviousLocation(String path, long[] appearedRevision) throws SVNException {
         if (appearedRevision != null && appearedRevision.length > 0) {
             appearedRevision[0] = SVNRepository.INVALID_REVISION;
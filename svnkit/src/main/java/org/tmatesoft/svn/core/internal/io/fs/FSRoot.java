@@ -13,9 +13,8 @@ package org.tmatesoft.svn.core.internal.io.fs;
 
 import java.io.InputStream;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.TreeMap;
 
 import org.tmatesoft.svn.core.SVNErrorCode;
 import org.tmatesoft.svn.core.SVNErrorMessage;
@@ -72,67 +71,112 @@ public abstract class FSRoot {
         
         String canonPath = SVNPathUtil.canonicalizeAbsolutePath(path);
         FSRevisionNode here = getRootRevisionNode();
-        String pathSoFar = "/";
 
         FSParentPath parentPath = new FSParentPath(here, null, null);
         parentPath.setCopyStyle(FSCopyInheritance.COPY_ID_INHERIT_SELF);
 
-        // skip the leading '/'
-        String rest = canonPath.substring(1);
+        // components are addressed by offsets, the path itself is never split
+        int[] ends = getComponentEnds(canonPath);
+        String[] prefixes = new String[ends.length];
+        int level = 0;
+        boolean prefixesFetched = false;
+
+        if (!storeParents && isCachedPrefixLookupAllowed()) {
+            // start from the longest prefix which is already in the cache
+            for (int i = ends.length - 1; i >= 0; i--) {
+                prefixes[i] = canonPath.substring(0, ends[i]);
+                FSRevisionNode cachedRevNode = fetchRevNodeFromCache(prefixes[i]);
+                if (cachedRevNode != null) {
+                    here = cachedRevNode;
+                    parentPath.setParentPath(here, canonPath.substring(getComponentStart(ends, i), ends[i]), null);
+                    level = i + 1;
+                    break;
+                }
+            }
+            prefixesFetched = true;
+        }
 
-        while (true) {
-            String entry = SVNPathUtil.head(rest);
-            String next = SVNPathUtil.removeHead(rest);
-            pathSoFar = SVNPathUtil.getAbsolutePath(SVNPathUtil.append(pathSoFar, entry));
+        for (; level < ends.length; level++) {
+            if (here.getType() != SVNNodeKind.DIR) {
+                SVNErrorMessage err = FSErrors.errorNotDirectory(prefixes[level - 1], getOwner());
+                SVNErrorManager.error(err.wrap("Failure opening ''{0}''", path), SVNLogType.FSFS);
+            }
+            String entry = canonPath.substring(getComponentStart(ends, level), ends[level]);
+            String pathSoFar = prefixes[level];
+            if (pathSoFar == null) {
+                pathSoFar = canonPath.substring(0, ends[level]);
+                prefixes[level] = pathSoFar;
+            }
             FSRevisionNode child = null;
-            if (entry == null || "".equals(entry)) {
-                child = here;
+            FSRevisionNode cachedRevNode = prefixesFetched ? null : fetchRevNodeFromCache(pathSoFar);
+            if (cachedRevNode != null) {
+                child = cachedRevNode;
             } else {
-                FSRevisionNode cachedRevNode = fetchRevNodeFromCache(pathSoFar);
-                if (cachedRevNode != null) {
-                    child = cachedRevNode;
-                } else {
-                    try {
-                        child = here.getChildDirNode(entry, getOwner());
-                    } catch (SVNException svne) {
-                        if (svne.getErrorMessage().getErrorCode() == SVNErrorCode.FS_NOT_FOUND) {
-                            if (!lastEntryMustExist && (next == null || "".equals(next))) {
-                                return new FSParentPath(null, entry, parentPath);
-                            }
-                            SVNErrorManager.error(FSErrors.errorNotFound(this, path), svne, SVNLogType.FSFS);
+                try {
+                    child = here.getChildDirNode(entry, getOwner());
+                } catch (SVNException svne) {
+                    if (svne.getErrorMessage().getErrorCode() == SVNErrorCode.FS_NOT_FOUND) {
+                        if (!lastEntryMustExist && level == ends.length - 1) {
+                            return new FSParentPath(null, entry, parentPath);
                         }
-                        throw svne;
+                        SVNErrorManager.error(FSErrors.errorNotFound(this, path), svne, SVNLogType.FSFS);
                     }
+                    throw svne;
                 }
+            }
 
-                parentPath.setParentPath(child, entry, storeParents ? new FSParentPath(parentPath) : null);
+            parentPath.setParentPath(child, entry, storeParents ? new FSParentPath(parentPath) : null);
 
-                if (storeParents) {
-                    FSCopyInheritance copyInheritance = getCopyInheritance(parentPath);
-                    if (copyInheritance != null) {
-                        parentPath.setCopyStyle(copyInheritance.getStyle());
-                        parentPath.setCopySourcePath(copyInheritance.getCopySourcePath());
-                    }
+            if (storeParents) {
+                FSCopyInheritance copyInheritance = getCopyInheritance(parentPath);
+                if (copyInheritance != null) {
+                    parentPath.setCopyStyle(copyInheritance.getStyle());
+                    parentPath.setCopySourcePath(copyInheritance.getCopySourcePath());
                 }
-
-                if (cachedRevNode == null) {
-                    putRevNodeToCache(pathSoFar, child);
-                }
-            }
-            if (next == null || "".equals(next)) {
-                break;
             }
 
-            if (child.getType() != SVNNodeKind.DIR) {
-                SVNErrorMessage err = FSErrors.errorNotDirectory(pathSoFar, getOwner());
-                SVNErrorManager.error(err.wrap("Failure opening ''{0}''", path), SVNLogType.FSFS);
+            if (cachedRevNode == null) {
+                putRevNodeToCache(pathSoFar, child);
             }
-            rest = next;
             here = child;
         }
         return parentPath;
     }
 
+    /**
+     * Returns <code>true</code> if a cached node of a path implies that all
+     * ancestors of the path are still resolved to the same directories, which
+     * only holds for immutable roots.
+     */
+    protected boolean isCachedPrefixLookupAllowed() {
+        return false;
+    }
+
+    private static int[] getComponentEnds(String canonPath) {
+        int count = 0;
+        for (int i = 1; i < canonPath.length(); i++) {
+            if (canonPath.charAt(i) == '/') {
+                count++;
+            }
+        }
+        if (canonPath.length() <= 1) {
+            return new int[0];
+        }
+        int[] ends = new int[count + 1];
+        int index = 0;
+        for (int i = 1; i < canonPath.length(); i++) {
+            if (canonPath.charAt(i) == '/') {
+                ends[index++] = i;
+            }
+        }
+        ends[index] = canonPath.length();
+        return ends;
+    }
+
+    private static int getComponentStart(int[] ends, int level) {
+        return level == 0 ? 1 : ends[level - 1] + 1;
+    }
+
     public SVNNodeKind checkNodeKind(String path) throws SVNException {
         FSRevisionNode revNode = null;
         try {
@@ -166,7 +210,7 @@ public abstract class FSRoot {
         if (myRevNodesCache == null) {
             return;
         }
-        myRevNodesCache.delete(path);
+        myRevNodesCache.remove(path);
     }
 
     protected FSRevisionNode fetchRevNodeFromCache(String path) throws SVNException {
@@ -177,7 +221,7 @@ public abstract class FSRoot {
             SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.UNKNOWN, "Invalid path ''{0}''", path);
             SVNErrorManager.error(err, SVNLogType.FSFS);
         }
-        return (FSRevisionNode) myRevNodesCache.fetch(path);
+        return (FSRevisionNode) myRevNodesCache.get(path);
     }
 
     private void foldChange(Map mapChanges, FSPathChange change) throws SVNException {
@@ -327,45 +371,19 @@ public abstract class FSRoot {
         return fileNode.getFileLength();
     }
 
-    private static final class RevisionCache {
+    private static final class RevisionCache extends LinkedHashMap {
+
+        private static final long serialVersionUID = 1L;
 
-        private LinkedList myKeys;
-        private Map myCache;
         private int mySizeLimit;
 
         public RevisionCache(int limit) {
+            super(16, 0.75f, true);
             mySizeLimit = limit;
-            myKeys = new LinkedList();
-            myCache = new TreeMap();
         }
 
-        public void put(Object key, Object value) {
-            if (mySizeLimit <= 0) {
-                return;
-            }
-            if (myKeys.size() == mySizeLimit) {
-                Object cachedKey = myKeys.removeLast();
-                myCache.remove(cachedKey);
-            }
-            myKeys.addFirst(key);
-            myCache.put(key, value);
-        }
-
-        public void delete(Object key) {
-            myKeys.remove(key);
-            myCache.remove(key);
-        }
-
-        public Object fetch(Object key) {
-            int ind = myKeys.indexOf(key);
-            if (ind != -1) {
-                if (ind != 0) {
-                    Object cachedKey = myKeys.remove(ind);
-                    myKeys.addFirst(cachedKey);
-                }
-                return myCache.get(key);
-            }
-            return null;
+        protected boolean removeEldestEntry(Map.Entry eldest) {
+            return size() > mySizeLimit;
         }
     }
 
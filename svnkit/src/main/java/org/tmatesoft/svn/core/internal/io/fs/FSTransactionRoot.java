@@ -401,17 +401,10 @@ public class FSTransactionRoot extends FSRoot {
             } else {
                 dst = SVNFileUtil.openFileForWriting(childrenFile, true);
             }
-            Map dirContents = parentRevNode.getDirContents();
             if (entryId != null) {
                 SVNWCProperties.appendProperty(entryName, SVNPropertyValue.create(kind + " " + entryId.toString()), dst);
-                if (dirContents != null) {
-                    dirContents.put(entryName, new FSEntry(entryId, kind, entryName));
-                }
             } else {
                 SVNWCProperties.appendPropertyDeleted(entryName, dst);
-                if (dirContents != null) {
-                    dirContents.remove(entryName);
-                }
             }
         } finally {
             SVNFileUtil.closeFile(dst);
@@ -631,6 +624,8 @@ public class FSTransactionRoot extends FSRoot {
         if (childNode.getId().isTxn()) {
             newNodeId = childNode.getId();
         } else {
+            // the node of a revision may be shared through the caches, the successor is a copy
+            childNode = FSRevisionNode.dumpRevisionNode(childNode);
             if (isParentCopyRoot) {
                 childNode.setCopyRootPath(parent.getCopyRootPath());
                 childNode.setCopyRootRevision(parent.getCopyRootRevision());
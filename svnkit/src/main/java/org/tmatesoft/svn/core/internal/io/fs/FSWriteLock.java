@@ -56,7 +56,7 @@ public class FSWriteLock {
     }
 
     public static synchronized FSWriteLock getWriteLockForDB(FSFS owner) throws SVNException {
-        String uuid = owner.getUUID();
+        String uuid = getLockKey(owner);
         FSWriteLock lock = (FSWriteLock) ourThreadDBLocksCache.get(uuid);
         if (lock == null) {
             lock = new FSWriteLock(uuid, owner.getWriteLockFile(), DB_LOCK, false);
@@ -70,7 +70,7 @@ public class FSWriteLock {
         if (token == null || token.length() == 0){
             SVNErrorManager.error(SVNErrorMessage.create(SVNErrorCode.FS_NO_LOCK_TOKEN, "Incorrect lock token for current transaction"), SVNLogType.FSFS);
         }
-        String uuid = owner.getUUID() + token;
+        String uuid = getLockKey(owner) + token;
         FSWriteLock lock = (FSWriteLock) ourThreadDBLocksCache.get(uuid);
         if (lock == null) {
             lock = new FSWriteLock(uuid, owner.getTransactionCurrentLockFile(), DB_LOCK, false);
@@ -84,7 +84,7 @@ public class FSWriteLock {
         if (txnID == null || txnID.length() == 0){
             SVNErrorManager.error(SVNErrorMessage.create(SVNErrorCode.FS_NO_LOCK_TOKEN, "Incorrect txn id while locking"), SVNLogType.FSFS);
         }
-        String uuid = owner.getUUID() + txnID;
+        String uuid = getLockKey(owner) + txnID;
         FSWriteLock lock = (FSWriteLock) ourThreadDBLocksCache.get(uuid);
         if (lock == null) {
             lock = new FSWriteLock(uuid, owner.getTransactionProtoRevLockFile(txnID), DB_LOCK, false);
@@ -95,7 +95,7 @@ public class FSWriteLock {
     }
 
     public static synchronized FSWriteLock getDBLogsLock(FSFS owner, boolean exclusive) throws SVNException {
-        String uuid = owner.getUUID();
+        String uuid = getLockKey(owner);
         FSWriteLock lock = (FSWriteLock) ourThreadLogLocksCache.get(uuid);
         if (lock == null) {
             lock = new FSWriteLock(uuid, owner.getDBLogsLockFile(), LOGS_LOCK, !exclusive);
@@ -105,6 +105,14 @@ public class FSWriteLock {
         return lock;
     }
 
+    /**
+     * Copies of a repository share its UUID, so locks are kept per repository
+     * location, as the repository caches are.
+     */
+    private static String getLockKey(FSFS owner) throws SVNException {
+        return owner.getRepositoryRoot().getAbsolutePath() + ":" + owner.getUUID();
+    }
+
     public synchronized void lock() throws SVNException {
         boolean errorOccured = false;
         Exception childError = null;
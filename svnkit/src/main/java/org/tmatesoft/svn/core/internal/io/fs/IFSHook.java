@@ -0,0 +1,41 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.io.fs;
+
+import java.io.File;
+
+import org.tmatesoft.svn.core.SVNException;
+
+/**
+ * Hook implemented in Java and called directly instead of the hook program
+ * in the repository hooks directory. Hooks are registered per hook name with
+ * {@link FSHooks#registerHook(String, IFSHook)}.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public interface IFSHook {
+
+    /**
+     * Runs the hook.
+     *
+     * @param  reposRootDir  root directory of the repository
+     * @param  hookName      name of the hook, one of the <code>FSHooks.SVN_REPOS_HOOK_*</code> constants
+     * @param  args          hook arguments, the same that are passed to a hook program
+     *                       after the repository path
+     * @param  input         data passed to the standard input of a hook program, or <code>null</code>
+     * @return               data a hook program would write to its standard output, or <code>null</code>
+     * @throws SVNException  to fail the hook; a failed pre-* hook blocks the operation
+     */
+    public String run(File reposRootDir, String hookName, String[] args, byte[] input) throws SVNException;
+
+}
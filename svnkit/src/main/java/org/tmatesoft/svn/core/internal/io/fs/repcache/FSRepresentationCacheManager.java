@@ -25,7 +25,9 @@ import org.tmatesoft.svn.core.SVNErrorCode;
 import org.tmatesoft.svn.core.SVNErrorMessage;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.internal.io.fs.FSFS;
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryCaches;
 import org.tmatesoft.svn.core.internal.io.fs.FSRepresentation;
+import org.tmatesoft.svn.core.internal.io.fs.FSRepresentationsFilter;
 import org.tmatesoft.svn.core.internal.io.fs.IFSRepresentationCacheManager;
 import org.tmatesoft.svn.core.internal.io.fs.IFSSqlJetTransaction;
 import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
@@ -34,6 +36,12 @@ import org.tmatesoft.svn.util.SVNLogType;
 
 
 /**
+ * Records found in or inserted into the table are kept in the repository
+ * caches, and a filter of all checksums in the table lets lookups of new
+ * checksums skip the database. The filter is loaded once per repository and
+ * is not aware of records inserted by other processes; a checksum it misses
+ * only means the representation is stored once more.
+ *
  * @version 1.3
  * @author  TMate Software Ltd.
  */
@@ -50,6 +58,8 @@ public class FSRepresentationCacheManager implements IFSRepresentationCacheManag
     private SqlJetDb myRepCacheDB;
     private ISqlJetTable myTable;
     private FSFS myFSFS;
+    private FSRepositoryCaches myCaches;
+    private int myTransactionsDepth;
     
     public static IFSRepresentationCacheManager openRepresentationCache(FSFS fsfs) throws SVNException {
         final FSRepresentationCacheManager cacheObj = new FSRepresentationCacheManager();
@@ -59,6 +69,8 @@ public class FSRepresentationCacheManager implements IFSRepresentationCacheManag
             
             checkFormat(cacheObj.myRepCacheDB);
             cacheObj.myTable = cacheObj.myRepCacheDB.getTable(REP_CACHE_TABLE);
+            cacheObj.myFSFS = fsfs;
+            cacheObj.myCaches = fsfs.getCaches();
         } catch (SqlJetException e) {
             SVNDebugLog.getDefaultLog().logError(SVNLogType.FSFS, e);
             return new FSEmptyRepresentationCacheManager();
@@ -112,7 +124,7 @@ public class FSRepresentationCacheManager implements IFSRepresentationCacheManag
                     "Only SHA1 checksums can be used as keys in the rep_cache table.\n");
             SVNErrorManager.error(err, SVNLogType.FSFS);
         }
-        FSRepresentation oldRep = getRepresentationByHash(representation.getSHA1HexDigest());
+        FSRepresentation oldRep = getRepresentationByHash(representation.getSHA1HexDigest(), false);
         if (oldRep != null) {
             if (rejectDup && (oldRep.getRevision() != representation.getRevision() || oldRep.getOffset() != representation.getOffset() ||
                     oldRep.getSize() != representation.getSize() || oldRep.getExpandedSize() != representation.getExpandedSize())) {
@@ -134,6 +146,7 @@ public class FSRepresentationCacheManager implements IFSRepresentationCacheManag
         } catch (SqlJetException e) {
             SVNErrorManager.error(convertError(e), SVNLogType.FSFS);
         }
+        myCaches.putRepresentation(representation);
     }
 
     public void close() throws SVNException {
@@ -146,24 +159,100 @@ public class FSRepresentationCacheManager implements IFSRepresentationCacheManag
                 myTable = null;
                 myRepCacheDB = null;
                 myFSFS = null;
+                myCaches = null;
             }
         }
     }
     
     public FSRepresentation getRepresentationByHash(String hash) throws SVNException {
-        FSRepresentationCacheRecord cache = getByHash(hash);
-        if (cache != null) {
-            FSRepresentation representation = new FSRepresentation();
-            representation.setExpandedSize(cache.getExpandedSize());
-            representation.setOffset(cache.getOffset());
-            representation.setRevision(cache.getRevision());
-            representation.setSize(cache.getSize());
-            representation.setSHA1HexDigest(cache.getHash());
+        return getRepresentationByHash(hash, true);
+    }
+
+    private FSRepresentation getRepresentationByHash(final String hash, boolean useFilter) throws SVNException {
+        FSRepresentation representation = myCaches.getRepresentation(hash);
+        if (representation != null) {
+            return representation;
+        }
+        if (useFilter) {
+            FSRepresentationsFilter filter = getRepresentationsFilter();
+            if (filter != null && !filter.mightContain(hash)) {
+                return null;
+            }
+        }
+        final FSRepresentationCacheRecord[] cache = new FSRepresentationCacheRecord[1];
+        if (myTransactionsDepth > 0) {
+            cache[0] = getByHash(hash);
+        } else {
+            runReadTransaction(new IFSSqlJetTransaction() {
+                public void run() throws SVNException {
+                    cache[0] = getByHash(hash);
+                }
+            });
+        }
+        if (cache[0] != null) {
+            representation = new FSRepresentation();
+            representation.setExpandedSize(cache[0].getExpandedSize());
+            representation.setOffset(cache[0].getOffset());
+            representation.setRevision(cache[0].getRevision());
+            representation.setSize(cache[0].getSize());
+            representation.setSHA1HexDigest(cache[0].getHash());
+            myCaches.putRepresentation(representation);
             return representation;
         }
         return null;
     }
 
+    private FSRepresentationsFilter getRepresentationsFilter() throws SVNException {
+        if (!myCaches.isRepresentationsFilterEnabled()) {
+            return null;
+        }
+        FSRepresentationsFilter filter = myCaches.getRepresentationsFilter();
+        if (filter != null) {
+            return filter;
+        }
+        synchronized (myCaches) {
+            filter = myCaches.getRepresentationsFilter();
+            if (filter != null) {
+                return filter;
+            }
+            final FSRepresentationsFilter newFilter = myCaches.createRepresentationsFilter();
+            if (myTransactionsDepth > 0) {
+                loadHashes(newFilter);
+            } else {
+                runReadTransaction(new IFSSqlJetTransaction() {
+                    public void run() throws SVNException {
+                        loadHashes(newFilter);
+                    }
+                });
+            }
+            myCaches.setRepresentationsFilter(newFilter);
+            return newFilter;
+        }
+    }
+
+    private void loadHashes(FSRepresentationsFilter filter) throws SVNException {
+        ISqlJetCursor cursor = null;
+        try {
+            cursor = myTable.open();
+            while (!cursor.eof()) {
+                if (!cursor.isNull(FSRepresentationCacheRecord.HASH_FIELD)) {
+                    filter.add(cursor.getString(FSRepresentationCacheRecord.HASH_FIELD));
+                }
+                cursor.next();
+            }
+        } catch (SqlJetException e) {
+            SVNErrorManager.error(convertError(e), SVNLogType.FSFS);
+        } finally {
+            if (cursor != null) {
+                try {
+                    cursor.close();
+                } catch (SqlJetException e) {
+                    SVNErrorManager.error(convertError(e), SVNLogType.FSFS);
+                }
+            }
+        }
+    }
+
     private FSRepresentationCacheRecord getByHash(final String hash) throws SVNException {
         ISqlJetCursor lookup = null;
         try {
@@ -203,10 +292,13 @@ public class FSRepresentationCacheManager implements IFSRepresentationCacheManag
             try {
                 myRepCacheDB.runWriteTransaction(new ISqlJetTransaction() {
                     public Object run(SqlJetDb db) throws SqlJetException {
+                        myTransactionsDepth++;
                         try {
                             transaction.run();
                         } catch (SVNException e) {
                             throw new SqlJetException(e);
+                        } finally {
+                            myTransactionsDepth--;
                         }
                         return null;
                     }
@@ -222,10 +314,13 @@ public class FSRepresentationCacheManager implements IFSRepresentationCacheManag
             try {
                 myRepCacheDB.runReadTransaction(new ISqlJetTransaction() {
                     public Object run(SqlJetDb db) throws SqlJetException {
+                        myTransactionsDepth++;
                         try {
                             transaction.run();
                         } catch (SVNException e) {
                             throw new SqlJetException(e);
+                        } finally {
+                            myTransactionsDepth--;
                         }
                         return null;
                     }
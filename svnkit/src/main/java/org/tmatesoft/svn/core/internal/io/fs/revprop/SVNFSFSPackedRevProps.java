@@ -5,6 +5,7 @@ import org.tmatesoft.svn.core.SVNErrorMessage;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNProperties;
 import org.tmatesoft.svn.core.internal.io.fs.FSFile;
+import org.tmatesoft.svn.core.internal.util.SVNZlibPool;
 import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
 import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
 import org.tmatesoft.svn.core.internal.wc.SVNWCProperties;
@@ -15,7 +16,9 @@ import java.io.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
 public class SVNFSFSPackedRevProps {
@@ -112,19 +115,22 @@ public class SVNFSFSPackedRevProps {
 
     public void writeToFile(File packFile, boolean compress) throws SVNException {
         OutputStream outputStream = SVNFileUtil.openFileForWriting(packFile);
+        Deflater deflater = null;
         try {
             if (compress) {
-               outputStream = writeCompressedLevelDefault(outputStream);
+               deflater = SVNZlibPool.getInstance().getDeflater();
+               outputStream = writeCompressedLevelDefault(outputStream, deflater);
             } else {
                outputStream = writeCompressedLevelNone(outputStream);
             }
         } finally {
             SVNFileUtil.closeFile(outputStream);
+            SVNZlibPool.getInstance().releaseDeflater(deflater);
         }
     }
 
-    private OutputStream writeCompressedLevelDefault(OutputStream outputStream) throws SVNException {
-        return compressLevelDefault(asUncompressedByteArray(), outputStream);
+    private OutputStream writeCompressedLevelDefault(OutputStream outputStream, Deflater deflater) throws SVNException {
+        return compressLevelDefault(asUncompressedByteArray(), outputStream, deflater);
     }
 
     private OutputStream writeCompressedLevelNone(OutputStream outputStream) throws SVNException {
@@ -218,6 +224,7 @@ public class SVNFSFSPackedRevProps {
         ByteArrayOutputStream outputStream = null;
         ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(compressedData);
         InputStream inputStream = byteArrayInputStream;
+        Inflater inflater = null;
         try {
             final long uncompressedSize = readEncodedUncompressedSize(byteArrayInputStream, 10);
             if (uncompressedSize == byteArrayInputStream.available()) {
@@ -226,7 +233,8 @@ public class SVNFSFSPackedRevProps {
 
             //otherwise pass the stream via inflater
             outputStream = new ByteArrayOutputStream();
-            inputStream = new InflaterInputStream(inputStream);
+            inflater = SVNZlibPool.getInstance().getInflater();
+            inputStream = new InflaterInputStream(inputStream, inflater);
 
             final byte[] buffer = new byte[2048];
 
@@ -246,6 +254,7 @@ public class SVNFSFSPackedRevProps {
         } finally {
             SVNFileUtil.closeFile(inputStream);
             SVNFileUtil.closeFile(outputStream);
+            SVNZlibPool.getInstance().releaseInflater(inflater);
         }
 
         return null;
@@ -264,9 +273,9 @@ public class SVNFSFSPackedRevProps {
         return outputStream;
     }
 
-    private OutputStream compressLevelDefault(byte[] uncompressedData, OutputStream outputStream) throws SVNException {
+    private OutputStream compressLevelDefault(byte[] uncompressedData, OutputStream outputStream, Deflater deflater) throws SVNException {
         writeEncodedUnCompressedSize(uncompressedData.length, outputStream);
-        outputStream = new DeflaterOutputStream(outputStream);
+        outputStream = new DeflaterOutputStream(outputStream, deflater);
         writeBody(uncompressedData, outputStream);
         return outputStream;
     }
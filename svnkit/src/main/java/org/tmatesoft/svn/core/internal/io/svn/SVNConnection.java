@@ -29,6 +29,7 @@ import org.tmatesoft.svn.core.auth.BasicAuthenticationManager;
 import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
 import org.tmatesoft.svn.core.auth.ISVNAuthenticationManagerExt;
 import org.tmatesoft.svn.core.auth.SVNAuthentication;
+import org.tmatesoft.svn.core.internal.delta.SVNDiffCodec;
 import org.tmatesoft.svn.core.internal.util.SVNHashSet;
 import org.tmatesoft.svn.core.internal.wc.SVNClassLoader;
 import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
@@ -47,6 +48,7 @@ public class SVNConnection {
     private InputStream myInputStream;
     private SVNRepositoryImpl myRepository;
     private boolean myIsSVNDiff1;
+    private boolean myIsSVNDiff2;
     private boolean myIsCommitRevprops;
     private boolean myIsReopening = false;
     private boolean myIsCredentialsReceived = false;
@@ -58,6 +60,7 @@ public class SVNConnection {
     
     private static final String EDIT_PIPELINE = "edit-pipeline";
     private static final String SVNDIFF1 = "svndiff1";
+    private static final String ACCEPTS_SVNDIFF2 = "accepts-svndiff2";
     private static final String ABSENT_ENTRIES = "absent-entries";
     private static final String COMMIT_REVPROPS = "commit-revprops";
     private static final String MERGE_INFO = "mergeinfo";
@@ -94,6 +97,10 @@ public class SVNConnection {
         return myIsSVNDiff1;
     }
 
+    public boolean isSVNDiff2() {
+        return myIsSVNDiff2;
+    }
+
     public boolean isCommitRevprops() {
         return myIsCommitRevprops;
     }
@@ -154,10 +161,13 @@ public class SVNConnection {
         
         
         myIsSVNDiff1 = SVNReader.hasValue(items, 3, SVNDIFF1);
+        myIsSVNDiff2 = SVNDiffCodec.isSVNDiff2Enabled() && SVNReader.hasValue(items, 3, ACCEPTS_SVNDIFF2);
         myIsCommitRevprops = SVNReader.hasValue(items, 3, COMMIT_REVPROPS);
 
-        write("(n(wwwwww)s)", new Object[]{"2", EDIT_PIPELINE, SVNDIFF1, ABSENT_ENTRIES, DEPTH, MERGE_INFO, LOG_REVPROPS, 
-                repository.getLocation().toString()});
+        Object[] clientCapabilities = SVNDiffCodec.isSVNDiff2Enabled() ?
+                new Object[] {EDIT_PIPELINE, SVNDIFF1, ACCEPTS_SVNDIFF2, ABSENT_ENTRIES, DEPTH, MERGE_INFO, LOG_REVPROPS} :
+                new Object[] {EDIT_PIPELINE, SVNDIFF1, ABSENT_ENTRIES, DEPTH, MERGE_INFO, LOG_REVPROPS};
+        write("(n(*w)s)", new Object[]{"2", clientCapabilities, repository.getLocation().toString()});
     }
 
     protected boolean hasCapability(String capability) {
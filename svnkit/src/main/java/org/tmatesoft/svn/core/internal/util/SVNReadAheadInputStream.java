@@ -0,0 +1,151 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+
+package org.tmatesoft.svn.core.internal.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads the source stream ahead of its consumer in a separate thread, so
+ * that reading (and decompressing) the source overlaps with processing of
+ * the data already read. At most <code>chunksCount</code> chunks are kept
+ * in memory. Closing this stream stops the reader thread but doesn't close
+ * the source stream.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public class SVNReadAheadInputStream extends InputStream {
+
+    private static final Chunk EOF = new Chunk(new byte[0], 0, null);
+
+    private final BlockingQueue<Chunk> myQueue;
+    private final Thread myReader;
+    private volatile boolean myIsClosed;
+    private Chunk myChunk;
+    private int myPosition;
+
+    public SVNReadAheadInputStream(final InputStream source, final int chunkSize, int chunksCount) {
+        myQueue = new ArrayBlockingQueue<Chunk>(Math.max(1, chunksCount));
+        myReader = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    while (!myIsClosed) {
+                        byte[] data = new byte[chunkSize];
+                        int length = 0;
+                        while (length < data.length) {
+                            int read = source.read(data, length, data.length - length);
+                            if (read < 0) {
+                                break;
+                            }
+                            length += read;
+                        }
+                        if (length > 0) {
+                            myQueue.put(new Chunk(data, length, null));
+                        }
+                        if (length < data.length) {
+                            myQueue.put(EOF);
+                            return;
+                        }
+                    }
+                } catch (IOException e) {
+                    putError(e);
+                } catch (InterruptedException e) {
+                    //
+                } catch (Throwable th) {
+                    // any other failure has to reach the consumer too, or it would wait forever.
+                    putError((IOException) new IOException(th.getMessage()).initCause(th));
+                }
+            }
+
+            private void putError(IOException error) {
+                try {
+                    myQueue.put(new Chunk(null, 0, error));
+                } catch (InterruptedException e) {
+                    //
+                }
+            }
+        }, "svnkit-read-ahead");
+        myReader.setDaemon(true);
+        myReader.start();
+    }
+
+    public int read() throws IOException {
+        if (!nextChunk()) {
+            return -1;
+        }
+        return myChunk.myData[myPosition++] & 0xFF;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextChunk()) {
+            return -1;
+        }
+        int read = Math.min(len, myChunk.myLength - myPosition);
+        System.arraycopy(myChunk.myData, myPosition, b, off, read);
+        myPosition += read;
+        return read;
+    }
+
+    public int available() throws IOException {
+        return myChunk != null ? myChunk.myLength - myPosition : 0;
+    }
+
+    public void close() throws IOException {
+        myIsClosed = true;
+        // lets a reader blocked on a full queue see that the stream is closed.
+        myQueue.clear();
+    }
+
+    private boolean nextChunk() throws IOException {
+        while (myChunk == null || myPosition >= myChunk.myLength) {
+            if (myChunk == EOF) {
+                return false;
+            }
+            if (myIsClosed) {
+                throw new IOException("Stream is closed");
+            }
+            try {
+                myChunk = myQueue.take();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            myPosition = 0;
+            if (myChunk.myError != null) {
+                IOException error = myChunk.myError;
+                myChunk = EOF;
+                throw error;
+            }
+        }
+        return true;
+    }
+
+    private static class Chunk {
+
+        private final byte[] myData;
+        private final int myLength;
+        private final IOException myError;
+
+        public Chunk(byte[] data, int length, IOException error) {
+            myData = data;
+            myLength = length;
+            myError = error;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.util;
+
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Bounded pool of zlib {@link Inflater} and {@link Deflater} instances which
+ * is safe to use from many threads. Each instance holds native memory that
+ * is only freed by <code>end()</code> or by a finalizer, so svndiff and packed
+ * revision properties code borrows instances from the pool instead of
+ * creating a new one per window or pack.
+ *
+ * <p>
+ * Every borrowed instance must be released back in a <code>finally</code>
+ * block. The pool keeps at most <code>svnkit.zlib.pool.size</code> (16 by
+ * default) idle inflaters and as many deflaters, extra instances are ended
+ * on release.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public class SVNZlibPool {
+
+    private static final int DEFAULT_POOL_SIZE = 16;
+
+    private static final SVNZlibPool ourInstance = new SVNZlibPool(Integer.getInteger("svnkit.zlib.pool.size", DEFAULT_POOL_SIZE).intValue());
+
+    public static SVNZlibPool getInstance() {
+        return ourInstance;
+    }
+
+    private final int myMaxSize;
+    private final LinkedList<Inflater> myInflaters = new LinkedList<Inflater>();
+    private final LinkedList<Deflater> myDeflaters = new LinkedList<Deflater>();
+
+    private final AtomicLong myCreatedCount = new AtomicLong();
+    private final AtomicLong myReusedCount = new AtomicLong();
+    private final AtomicLong myDiscardedCount = new AtomicLong();
+
+    public SVNZlibPool(int maxSize) {
+        myMaxSize = Math.max(0, maxSize);
+    }
+
+    /**
+     * Returns an inflater for zlib wrapped data.
+     */
+    public Inflater getInflater() {
+        synchronized (myInflaters) {
+            if (!myInflaters.isEmpty()) {
+                myReusedCount.incrementAndGet();
+                return myInflaters.removeLast();
+            }
+        }
+        myCreatedCount.incrementAndGet();
+        return new Inflater();
+    }
+
+    public void releaseInflater(Inflater inflater) {
+        if (inflater == null) {
+            return;
+        }
+        inflater.reset();
+        synchronized (myInflaters) {
+            if (myInflaters.size() < myMaxSize) {
+                myInflaters.addLast(inflater);
+                return;
+            }
+        }
+        myDiscardedCount.incrementAndGet();
+        inflater.end();
+    }
+
+    /**
+     * Returns a deflater with the default compression level and strategy
+     * producing zlib wrapped data.
+     */
+    public Deflater getDeflater() {
+        synchronized (myDeflaters) {
+            if (!myDeflaters.isEmpty()) {
+                myReusedCount.incrementAndGet();
+                return myDeflaters.removeLast();
+            }
+        }
+        myCreatedCount.incrementAndGet();
+        return new Deflater();
+    }
+
+    public void releaseDeflater(Deflater deflater) {
+        if (deflater == null) {
+            return;
+        }
+        deflater.reset();
+        deflater.setLevel(Deflater.DEFAULT_COMPRESSION);
+        deflater.setStrategy(Deflater.DEFAULT_STRATEGY);
+        synchronized (myDeflaters) {
+            if (myDeflaters.size() < myMaxSize) {
+                myDeflaters.addLast(deflater);
+                return;
+            }
+        }
+        myDiscardedCount.incrementAndGet();
+        deflater.end();
+    }
+
+    /**
+     * Ends all pooled instances, borrowed ones are ended when released
+     * unless the pool has free room again by then.
+     */
+    public void clear() {
+        synchronized (myInflaters) {
+            while (!myInflaters.isEmpty()) {
+                myInflaters.removeFirst().end();
+            }
+        }
+        synchronized (myDeflaters) {
+            while (!myDeflaters.isEmpty()) {
+                myDeflaters.removeFirst().end();
+            }
+        }
+    }
+
+    public int getMaxSize() {
+        return myMaxSize;
+    }
+
+    public int getInflatersCount() {
+        synchronized (myInflaters) {
+            return myInflaters.size();
+        }
+    }
+
+    public int getDeflatersCount() {
+        synchronized (myDeflaters) {
+            return myDeflaters.size();
+        }
+    }
+
+    public long getCreatedCount() {
+        return myCreatedCount.get();
+    }
+
+    public long getReusedCount() {
+        return myReusedCount.get();
+    }
+
+    public long getDiscardedCount() {
+        return myDiscardedCount.get();
+    }
+
+    public void resetStatistics() {
+        myCreatedCount.set(0);
+        myReusedCount.set(0);
+        myDiscardedCount.set(0);
+    }
+
+    public String toString() {
+        StringBuffer buffer = new StringBuffer();
+        buffer.append("{[");
+        buffer.append("Pool:zlib");
+        buffer.append("][");
+        buffer.append("Inflaters:");
+        buffer.append(getInflatersCount());
+        buffer.append("/");
+        buffer.append(myMaxSize);
+        buffer.append("][");
+        buffer.append("Deflaters:");
+        buffer.append(getDeflatersCount());
+        buffer.append("/");
+        buffer.append(myMaxSize);
+        buffer.append("][");
+        buffer.append("Created:");
+        buffer.append(getCreatedCount());
+        buffer.append("][");
+        buffer.append("Reused:");
+        buffer.append(getReusedCount());
+        buffer.append("][");
+        buffer.append("Discarded:");
+        buffer.append(getDiscardedCount());
+        buffer.append("]}");
+        return buffer.toString();
+    }
+}
@@ -265,6 +265,29 @@ public class DefaultLoadHandler implements ISVNLoadHandler {
                     // 
                     InputStream tgt = new FixedSizeInputStream(dumpStream, contentLength);
                     checksum = getDeltaGenerator().sendDelta(myCurrentNodeBaton.myPath, tgt, fsConsumer, true);
+                } else if (dumpStream instanceof SVNDumpInputStream) {
+                    SVNDumpInputStream dumpInputStream = (SVNDumpInputStream) dumpStream;
+                    SVNDeltaReader deltaReader = null;
+                    try {
+                        while (contentLength > 0) {
+                            // the delta reader copies what it needs, so the parser's buffer is passed as is.
+                            int read = dumpInputStream.readSlice(contentLength > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) contentLength);
+                            if (read < 0) {
+                                SVNAdminHelper.generateIncompleteDataError();
+                            }
+                            deltaReader = getDeltaReader();
+                            deltaReader.nextWindow(dumpInputStream.getSliceBuffer(), dumpInputStream.getSliceOffset(), read, myCurrentNodeBaton.myPath, fsConsumer);
+                            contentLength -= read;
+                        }
+                    } catch (IOException ioe) {
+                        SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, ioe.getMessage());
+                        SVNErrorManager.error(err, ioe, SVNLogType.FSFS);
+                    }
+                    if (deltaReader != null) {
+                        deltaReader.reset(myCurrentNodeBaton.myPath, fsConsumer);
+                    }
+                    fsConsumer.textDeltaEnd(myCurrentNodeBaton.myPath);
+                    checksum = fsConsumer.getChecksum();
                 } else {
                     buffer = new byte[SVNFileUtil.STREAM_CHUNK_SIZE];
                     SVNDeltaReader deltaReader = null;
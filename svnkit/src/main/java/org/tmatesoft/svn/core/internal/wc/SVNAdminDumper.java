@@ -0,0 +1,491 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html.
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.wc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.tmatesoft.svn.core.ISVNCanceller;
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNProperties;
+import org.tmatesoft.svn.core.SVNRevisionProperty;
+import org.tmatesoft.svn.core.internal.io.fs.FSFS;
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryUtil;
+import org.tmatesoft.svn.core.internal.io.fs.FSRevisionRoot;
+import org.tmatesoft.svn.core.internal.util.SVNDate;
+import org.tmatesoft.svn.core.wc.ISVNEventHandler;
+import org.tmatesoft.svn.core.wc.SVNRevision;
+import org.tmatesoft.svn.core.wc.admin.ISVNAdminEventHandler;
+import org.tmatesoft.svn.core.wc.admin.SVNAdminEvent;
+import org.tmatesoft.svn.core.wc.admin.SVNAdminEventAction;
+import org.tmatesoft.svn.util.SVNLogType;
+
+/**
+ * Writes revisions of a repository in the dump file format. With more than
+ * one thread revisions are rendered by a pool of workers, each with its own
+ * {@link FSFS} instance and dump editor, into buffers which spill to
+ * temporary files when large, while the calling thread writes the buffers
+ * to the dump stream in revision order. At most a few revisions per worker
+ * are rendered ahead of the one being written.
+ *
+ * <p/>
+ * Compressed dumps are written in the gzip format. Each revision is then
+ * compressed by the worker that rendered it into a gzip member of its own;
+ * a sequence of members is a valid gzip stream.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public class SVNAdminDumper {
+
+    private static final int BUFFER_SIZE = Integer.getInteger("svnkit.dump.buffer.size", 1024 * 1024).intValue();
+
+    private final ISVNCanceller myCanceller;
+    private final ISVNAdminEventHandler myEventHandler;
+    private int myThreadsCount;
+    private boolean myIsCompressed;
+
+    public SVNAdminDumper(ISVNCanceller canceller, ISVNAdminEventHandler eventHandler) {
+        myCanceller = canceller == null ? ISVNCanceller.NULL : canceller;
+        myEventHandler = eventHandler;
+        myThreadsCount = Integer.getInteger("svnkit.dump.threads", 1).intValue();
+    }
+
+    /**
+     * Sets the number of threads which render revisions. With one thread
+     * revisions are written one after another by the calling thread.
+     */
+    public void setThreadsCount(int threadsCount) {
+        myThreadsCount = threadsCount;
+    }
+
+    public int getThreadsCount() {
+        return myThreadsCount;
+    }
+
+    /**
+     * Sets whether the dump is written compressed in the gzip format.
+     */
+    public void setCompressed(boolean compressed) {
+        myIsCompressed = compressed;
+    }
+
+    public boolean isCompressed() {
+        return myIsCompressed;
+    }
+
+    public void dump(FSFS fsfs, OutputStream dumpStream, long start, long end, boolean isIncremental, boolean useDeltas) throws SVNException {
+        boolean isDumping = dumpStream != null && dumpStream != SVNFileUtil.DUMMY_OUT;
+        long youngestRevision = fsfs.getYoungestRevision();
+
+        if (!SVNRevision.isValidRevisionNumber(start)) {
+            start = 0;
+        }
+
+        if (!SVNRevision.isValidRevisionNumber(end)) {
+            end = youngestRevision;
+        }
+
+        if (dumpStream == null) {
+            dumpStream = SVNFileUtil.DUMMY_OUT;
+        }
+
+        if (start > end) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.REPOS_BAD_ARGS,
+                    "Start revision {0} is greater than end revision {1}", new Object[] { String.valueOf(start),
+                    String.valueOf(end) });
+            SVNErrorManager.error(err, SVNLogType.FSFS);
+        }
+
+        if (end > youngestRevision) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.REPOS_BAD_ARGS,
+                    "End revision {0} is invalid (youngest revision is {1})", new Object[] { String.valueOf(end),
+                    String.valueOf(youngestRevision) });
+            SVNErrorManager.error(err, SVNLogType.FSFS);
+        }
+
+        if (start == 0 && isIncremental) {
+            isIncremental = false;
+        }
+
+        String uuid = fsfs.getUUID();
+        int version = SVNAdminHelper.DUMPFILE_FORMAT_VERSION;
+
+        if (!useDeltas) {
+            //for compatibility with SVN 1.0.x
+            version--;
+        }
+
+        DumpOptions options = new DumpOptions(start, isIncremental, useDeltas);
+        OutputStream headerStream = myIsCompressed && isDumping ? createGzipStream(dumpStream) : dumpStream;
+        writeDumpData(headerStream, SVNAdminHelper.DUMPFILE_MAGIC_HEADER + ": " + version + "\n\n");
+        writeDumpData(headerStream, SVNAdminHelper.DUMPFILE_UUID + ": " + uuid + "\n\n");
+
+        if (myThreadsCount <= 1 || start == end) {
+            RenderContext context = new RenderContext(fsfs);
+            for (long i = start; i <= end; i++) {
+                myCanceller.checkCancelled();
+                context.renderRevision(headerStream, i, options);
+                fireRevisionDumped(i, isDumping);
+            }
+            finishGzipStream(headerStream);
+        } else {
+            finishGzipStream(headerStream);
+            dumpInParallel(fsfs, dumpStream, start, end, options, isDumping);
+        }
+    }
+
+    private void dumpInParallel(FSFS fsfs, OutputStream dumpStream, long start, long end, DumpOptions options, boolean isDumping) throws SVNException {
+        ExecutorService executor = new ThreadPoolExecutor(myThreadsCount, myThreadsCount, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DumpThreadFactory());
+        ConcurrentLinkedQueue<RenderContext> idleContexts = new ConcurrentLinkedQueue<RenderContext>();
+        List<RenderContext> contexts = new ArrayList<RenderContext>();
+        LinkedList<Future<RevisionBuffer>> pending = new LinkedList<Future<RevisionBuffer>>();
+        try {
+            long nextRev = start;
+            for (long i = start; i <= end; i++) {
+                while (nextRev <= end && pending.size() < 4 * myThreadsCount) {
+                    pending.add(executor.submit(new RenderTask(fsfs, nextRev, options, isDumping, idleContexts, contexts)));
+                    nextRev++;
+                }
+                myCanceller.checkCancelled();
+                RevisionBuffer buffer = waitFor(pending.removeFirst());
+                try {
+                    buffer.writeTo(dumpStream);
+                } finally {
+                    buffer.dispose();
+                }
+                fireRevisionDumped(i, isDumping);
+            }
+        } finally {
+            for (Future<RevisionBuffer> future : pending) {
+                future.cancel(true);
+            }
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (Future<RevisionBuffer> future : pending) {
+                disposeRendered(future);
+            }
+            synchronized (contexts) {
+                for (RenderContext context : contexts) {
+                    SVNAdminHelper.closeRepository(context.myFSFS);
+                }
+            }
+        }
+    }
+
+    private void fireRevisionDumped(long revision, boolean isDumping) throws SVNException {
+        String message = (isDumping ? "* Dumped" : "* Verified") + " revision " + revision + ".";
+        if (myEventHandler != null) {
+            SVNAdminEvent event = new SVNAdminEvent(revision, SVNAdminEventAction.REVISION_DUMPED, message);
+            myEventHandler.handleAdminEvent(event, ISVNEventHandler.UNKNOWN);
+        }
+    }
+
+    private RevisionBuffer waitFor(Future<RevisionBuffer> future) throws SVNException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            SVNErrorManager.cancel("Dump interrupted", SVNLogType.FSFS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SVNException) {
+                throw (SVNException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, cause.getMessage());
+            SVNErrorManager.error(err, cause, SVNLogType.FSFS);
+        }
+        return null;
+    }
+
+    private static void disposeRendered(Future<RevisionBuffer> future) {
+        if (future.isDone() && !future.isCancelled()) {
+            try {
+                future.get().dispose();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                //
+            }
+        }
+    }
+
+    private static OutputStream createGzipStream(OutputStream out) throws SVNException {
+        try {
+            return new GZIPOutputStream(out, 64 * 1024);
+        } catch (IOException e) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, e.getLocalizedMessage());
+            SVNErrorManager.error(err, e, SVNLogType.FSFS);
+        }
+        return null;
+    }
+
+    private static void finishGzipStream(OutputStream out) throws SVNException {
+        if (out instanceof GZIPOutputStream) {
+            try {
+                ((GZIPOutputStream) out).finish();
+            } catch (IOException e) {
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, e.getLocalizedMessage());
+                SVNErrorManager.error(err, e, SVNLogType.FSFS);
+            }
+        }
+    }
+
+    private static void writeRevisionRecord(OutputStream dumpStream, FSFS fsfs, long revision) throws SVNException {
+        SVNProperties revProps = fsfs.getRevisionProperties(revision);
+
+        String revisionDate = revProps.getStringValue(SVNRevisionProperty.DATE);
+        if (revisionDate != null) {
+            SVNDate date = SVNDate.parseDate(revisionDate);
+            revProps.put(SVNRevisionProperty.DATE, date.format());
+        }
+
+        ByteArrayOutputStream encodedProps = new ByteArrayOutputStream();
+        SVNAdminHelper.writeProperties(revProps, null, encodedProps);
+
+        writeDumpData(dumpStream, SVNAdminHelper.DUMPFILE_REVISION_NUMBER + ": " + revision + "\n");
+        String propContents = null;
+        try {
+            propContents = new String(encodedProps.toByteArray(), "UTF-8");
+        } catch (UnsupportedEncodingException uee) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, uee.getLocalizedMessage());
+            SVNErrorManager.error(err, uee, SVNLogType.FSFS);
+        }
+        writeDumpData(dumpStream, SVNAdminHelper.DUMPFILE_PROP_CONTENT_LENGTH + ": " + propContents.length() + "\n");
+        writeDumpData(dumpStream, SVNAdminHelper.DUMPFILE_CONTENT_LENGTH + ": " + propContents.length() + "\n\n");
+        writeDumpData(dumpStream, propContents);
+        writeDumpData(dumpStream, "\n");
+    }
+
+    private static void writeDumpData(OutputStream out, String data) throws SVNException {
+        try {
+            out.write(data.getBytes("UTF-8"));
+        } catch (IOException ioe) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, ioe.getLocalizedMessage());
+            SVNErrorManager.error(err, ioe, SVNLogType.FSFS);
+        }
+    }
+
+    private static class DumpOptions {
+        private final long myStartRevision;
+        private final boolean myIsIncremental;
+        private final boolean myUseDeltas;
+
+        public DumpOptions(long startRevision, boolean isIncremental, boolean useDeltas) {
+            myStartRevision = startRevision;
+            myIsIncremental = isIncremental;
+            myUseDeltas = useDeltas;
+        }
+    }
+
+    private static class RenderContext {
+        private final FSFS myFSFS;
+        private SVNDumpEditor myDumpEditor;
+        private SVNAdminDeltifier myDeltifier;
+
+        public RenderContext(FSFS fsfs) {
+            myFSFS = fsfs;
+        }
+
+        public void renderRevision(OutputStream dumpStream, long revision, DumpOptions options) throws SVNException {
+            long start = options.myStartRevision;
+            long fromRev;
+            if (revision == start && !options.myIsIncremental) {
+                if (revision == 0) {
+                    writeRevisionRecord(dumpStream, myFSFS, 0);
+                    return;
+                }
+                fromRev = 0;
+            } else {
+                fromRev = revision - 1;
+            }
+
+            writeRevisionRecord(dumpStream, myFSFS, revision);
+            boolean useDeltasForRevision = options.myUseDeltas && (options.myIsIncremental || revision != start);
+            FSRevisionRoot toRoot = myFSFS.createRevisionRoot(revision);
+            if (myDumpEditor == null) {
+                myDumpEditor = new SVNDumpEditor(myFSFS, toRoot, revision, start, "/", dumpStream, useDeltasForRevision, false);
+            } else {
+                myDumpEditor.reset(myFSFS, toRoot, revision, start, "/", dumpStream, useDeltasForRevision, false);
+            }
+
+            if (revision == start && !options.myIsIncremental) {
+                FSRevisionRoot fromRoot = myFSFS.createRevisionRoot(fromRev);
+                if (myDeltifier == null) {
+                    myDeltifier = new SVNAdminDeltifier(myFSFS, SVNDepth.INFINITY, false, false, false, null);
+                }
+                myDeltifier.setEditor(myDumpEditor);
+                myDeltifier.deltifyDir(fromRoot, "/", "", toRoot, "/");
+            } else {
+                FSRepositoryUtil.replay(myFSFS, toRoot, "", -1, false, myDumpEditor);
+            }
+        }
+    }
+
+    private class RenderTask implements Callable<RevisionBuffer> {
+        private final FSFS myFSFS;
+        private final long myRevision;
+        private final DumpOptions myOptions;
+        private final boolean myIsDumping;
+        private final ConcurrentLinkedQueue<RenderContext> myIdleContexts;
+        private final List<RenderContext> myContexts;
+
+        public RenderTask(FSFS fsfs, long revision, DumpOptions options, boolean isDumping,
+                ConcurrentLinkedQueue<RenderContext> idleContexts, List<RenderContext> contexts) {
+            myFSFS = fsfs;
+            myRevision = revision;
+            myOptions = options;
+            myIsDumping = isDumping;
+            myIdleContexts = idleContexts;
+            myContexts = contexts;
+        }
+
+        public RevisionBuffer call() throws Exception {
+            myCanceller.checkCancelled();
+            RenderContext context = myIdleContexts.poll();
+            if (context == null) {
+                context = new RenderContext(SVNAdminHelper.openRepository(myFSFS.getRepositoryRoot(), true));
+                synchronized (myContexts) {
+                    myContexts.add(context);
+                }
+            }
+            RevisionBuffer buffer = new RevisionBuffer();
+            try {
+                OutputStream out = myIsCompressed && myIsDumping ? createGzipStream(buffer) : buffer;
+                context.renderRevision(out, myRevision, myOptions);
+                finishGzipStream(out);
+                return buffer;
+            } catch (SVNException e) {
+                buffer.dispose();
+                throw e;
+            } catch (RuntimeException e) {
+                buffer.dispose();
+                throw e;
+            } finally {
+                myIdleContexts.add(context);
+            }
+        }
+    }
+
+    /**
+     * Rendered revision, kept in memory up to <code>svnkit.dump.buffer.size</code>
+     * bytes and in a temporary file beyond that.
+     */
+    private static class RevisionBuffer extends OutputStream {
+        private byte[] myBuffer = new byte[8192];
+        private int myLength;
+        private File myFile;
+        private OutputStream myFileStream;
+
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) (b & 0xFF)}, 0, 1);
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (myFileStream == null && myLength + len > BUFFER_SIZE) {
+                spill();
+            }
+            if (myFileStream != null) {
+                myFileStream.write(b, off, len);
+                return;
+            }
+            if (myLength + len > myBuffer.length) {
+                byte[] buffer = new byte[Math.max(myLength + len, Math.min(BUFFER_SIZE, myBuffer.length * 2))];
+                System.arraycopy(myBuffer, 0, buffer, 0, myLength);
+                myBuffer = buffer;
+            }
+            System.arraycopy(b, off, myBuffer, myLength, len);
+            myLength += len;
+        }
+
+        public void writeTo(OutputStream out) throws SVNException {
+            try {
+                out.write(myBuffer, 0, myLength);
+                if (myFile != null) {
+                    SVNFileUtil.closeFile(myFileStream);
+                    myFileStream = null;
+                    InputStream in = SVNFileUtil.openFileForReading(myFile, SVNLogType.FSFS);
+                    try {
+                        FSRepositoryUtil.copy(in, out, ISVNCanceller.NULL);
+                    } finally {
+                        SVNFileUtil.closeFile(in);
+                    }
+                }
+            } catch (IOException e) {
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, e.getLocalizedMessage());
+                SVNErrorManager.error(err, e, SVNLogType.FSFS);
+            }
+        }
+
+        public void dispose() {
+            myBuffer = null;
+            if (myFile != null) {
+                SVNFileUtil.closeFile(myFileStream);
+                myFileStream = null;
+                try {
+                    SVNFileUtil.deleteFile(myFile);
+                } catch (SVNException e) {
+                    //
+                }
+                myFile = null;
+            }
+        }
+
+        private void spill() throws IOException {
+            try {
+                myFile = SVNFileUtil.createTempFile("svnkit-dump", ".tmp");
+                myFileStream = SVNFileUtil.openFileForWriting(myFile);
+            } catch (SVNException e) {
+                throw new IOException(e.getMessage());
+            }
+        }
+    }
+
+    private static class DumpThreadFactory implements ThreadFactory {
+        private final AtomicInteger myThreadNumber = new AtomicInteger(1);
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "svnkit-dump-" + myThreadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html.
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.wc;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.tmatesoft.svn.core.ISVNCanceller;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.internal.io.fs.FSFS;
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryUtil;
+import org.tmatesoft.svn.core.internal.io.fs.FSRevisionRoot;
+import org.tmatesoft.svn.core.io.ISVNEditor;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.wc.ISVNEventHandler;
+import org.tmatesoft.svn.core.wc.admin.ISVNAdminEventHandler;
+import org.tmatesoft.svn.core.wc.admin.SVNAdminEvent;
+import org.tmatesoft.svn.core.wc.admin.SVNAdminEventAction;
+import org.tmatesoft.svn.util.ISVNDebugLog;
+import org.tmatesoft.svn.util.SVNLogType;
+
+/**
+ * Verifies a range of revisions by replaying each of them into a dump editor
+ * that discards its output. With more than one thread the range is split into
+ * chunks of consecutive revisions verified by a pool of workers, each of them
+ * with its own {@link FSFS} instance and dump editor, as neither is safe for
+ * concurrent use. Events are fired by the calling thread in revision order.
+ * Revisions are read with the repository caches disabled, so that verification
+ * checks what is on disk and not what was cached before.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public class SVNAdminVerifier {
+
+    private static final int CHUNK_SIZE = Integer.getInteger("svnkit.fsfs.verify.chunkSize", 16).intValue();
+
+    private final ISVNCanceller myCanceller;
+    private final ISVNDebugLog myDebugLog;
+    private final ISVNAdminEventHandler myEventHandler;
+    private int myThreadsCount;
+    private boolean myIsFailFast;
+
+    public SVNAdminVerifier(ISVNCanceller canceller, ISVNDebugLog debugLog, ISVNAdminEventHandler eventHandler) {
+        myCanceller = canceller == null ? ISVNCanceller.NULL : canceller;
+        myDebugLog = debugLog;
+        myEventHandler = eventHandler;
+        myThreadsCount = Integer.getInteger("svnkit.fsfs.verify.threads", 1).intValue();
+        myIsFailFast = true;
+    }
+
+    /**
+     * Sets the number of threads which verify revisions. With one thread
+     * revisions are verified one after another in the calling thread.
+     */
+    public void setThreadsCount(int threadsCount) {
+        myThreadsCount = threadsCount;
+    }
+
+    public int getThreadsCount() {
+        return myThreadsCount;
+    }
+
+    /**
+     * Sets whether verification stops at the first corrupted revision. When
+     * not failing fast, every corrupted revision is reported with a
+     * {@link SVNAdminEventAction#REVISION_VERIFY_FAILED} event and an error
+     * is thrown once the whole range is verified.
+     */
+    public void setFailFast(boolean failFast) {
+        myIsFailFast = failFast;
+    }
+
+    public boolean isFailFast() {
+        return myIsFailFast;
+    }
+
+    public void verify(FSFS fsfs, long startRev, long endRev) throws SVNException {
+        long startTime = System.currentTimeMillis();
+        Progress progress = new Progress();
+        try {
+            if (myThreadsCount <= 1 || endRev - startRev < CHUNK_SIZE) {
+                VerifyContext context = new VerifyContext(openRepository(fsfs));
+                try {
+                    for (long rev = startRev; rev <= endRev; rev++) {
+                        myCanceller.checkCancelled();
+                        SVNException error = null;
+                        try {
+                            context.verifyRevision(rev);
+                        } catch (SVNException e) {
+                            if (isCancellation(e)) {
+                                throw e;
+                            }
+                            error = e;
+                        }
+                        handleResult(rev, error, progress);
+                    }
+                } finally {
+                    SVNAdminHelper.closeRepository(context.myFSFS);
+                }
+            } else {
+                verifyInParallel(fsfs, startRev, endRev, progress);
+            }
+        } finally {
+            fireSummaryEvent(progress, System.currentTimeMillis() - startTime);
+        }
+
+        if (progress.myFailedCount > 0) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.FS_CORRUPT,
+                    "Failed to verify repository ''{0}'': {1} of {2} revisions are corrupted",
+                    new Object[] { fsfs.getRepositoryRoot(), String.valueOf(progress.myFailedCount),
+                    String.valueOf(progress.myFailedCount + progress.myVerifiedCount) });
+            err.setChildErrorMessage(progress.myFirstError.getErrorMessage());
+            SVNErrorManager.error(err, progress.myFirstError, SVNLogType.FSFS);
+        }
+    }
+
+    private void verifyInParallel(FSFS fsfs, long startRev, long endRev, Progress progress) throws SVNException {
+        ExecutorService executor = new ThreadPoolExecutor(myThreadsCount, myThreadsCount, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new VerifyThreadFactory());
+        ConcurrentLinkedQueue<VerifyContext> idleContexts = new ConcurrentLinkedQueue<VerifyContext>();
+        List<VerifyContext> contexts = new ArrayList<VerifyContext>();
+        AtomicLong stopRevision = new AtomicLong(Long.MAX_VALUE);
+        LinkedList<Future<ChunkResult>> pending = new LinkedList<Future<ChunkResult>>();
+        try {
+            long nextRev = startRev;
+            while (nextRev <= endRev || !pending.isEmpty()) {
+                while (nextRev <= endRev && pending.size() < 2 * myThreadsCount) {
+                    long chunkEnd = Math.min(endRev, nextRev + CHUNK_SIZE - 1);
+                    pending.add(executor.submit(new ChunkVerifyTask(fsfs, nextRev, chunkEnd, idleContexts, contexts, stopRevision)));
+                    nextRev = chunkEnd + 1;
+                }
+                myCanceller.checkCancelled();
+                ChunkResult result = waitFor(pending.removeFirst());
+                for (int i = 0; i < result.myErrors.length; i++) {
+                    handleResult(result.myStartRevision + i, result.myErrors[i], progress);
+                }
+            }
+        } finally {
+            stopRevision.set(-1);
+            for (Future<ChunkResult> future : pending) {
+                future.cancel(true);
+            }
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (contexts) {
+                for (Iterator<VerifyContext> iterator = contexts.iterator(); iterator.hasNext();) {
+                    SVNAdminHelper.closeRepository(iterator.next().myFSFS);
+                }
+            }
+        }
+    }
+
+    private void handleResult(long revision, SVNException error, Progress progress) throws SVNException {
+        if (error == null) {
+            progress.myVerifiedCount++;
+            if (myEventHandler != null) {
+                String message = "* Verified revision " + revision + ".";
+                SVNAdminEvent event = new SVNAdminEvent(revision, SVNAdminEventAction.REVISION_DUMPED, message);
+                myEventHandler.handleAdminEvent(event, ISVNEventHandler.UNKNOWN);
+            }
+            return;
+        }
+        if (myIsFailFast) {
+            throw error;
+        }
+        progress.myFailedCount++;
+        if (progress.myFirstError == null) {
+            progress.myFirstError = error;
+        }
+        if (myEventHandler != null) {
+            String message = "* Error verifying revision " + revision + ".";
+            SVNAdminEvent event = new SVNAdminEvent(revision, SVNAdminEventAction.REVISION_VERIFY_FAILED, error.getErrorMessage(), message);
+            myEventHandler.handleAdminEvent(event, ISVNEventHandler.UNKNOWN);
+        }
+    }
+
+    private void fireSummaryEvent(Progress progress, long elapsed) throws SVNException {
+        long total = progress.myVerifiedCount + progress.myFailedCount;
+        if (myEventHandler == null || total == 0) {
+            return;
+        }
+        elapsed = Math.max(1, elapsed);
+        String message = "* Verified " + total + " revisions in " + (elapsed / 1000) + "." + (elapsed % 1000 / 100) + " seconds (" +
+                (total * 1000 / elapsed) + " revisions/s, " + progress.myFailedCount + " failed).";
+        SVNAdminEvent event = new SVNAdminEvent(SVNAdminEventAction.VERIFY_SUMMARY, message);
+        myEventHandler.handleAdminEvent(event, ISVNEventHandler.UNKNOWN);
+    }
+
+    private ChunkResult waitFor(Future<ChunkResult> future) throws SVNException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            SVNErrorManager.cancel("Verification interrupted", SVNLogType.FSFS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SVNException) {
+                throw (SVNException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, cause.getMessage());
+            SVNErrorManager.error(err, cause, SVNLogType.FSFS);
+        }
+        return null;
+    }
+
+    private static FSFS openRepository(FSFS fsfs) throws SVNException {
+        FSFS uncachedFSFS = new FSFS(fsfs.getRepositoryRoot());
+        uncachedFSFS.disableCaches();
+        uncachedFSFS.open();
+        return uncachedFSFS;
+    }
+
+    private static boolean isCancellation(SVNException e) {
+        return e.getErrorMessage().getErrorCode() == SVNErrorCode.CANCELLED;
+    }
+
+    private class VerifyContext {
+        private final FSFS myFSFS;
+        private SVNDumpEditor myDumpEditor;
+
+        public VerifyContext(FSFS fsfs) {
+            myFSFS = fsfs;
+        }
+
+        public void verifyRevision(long revision) throws SVNException {
+            try {
+                FSRevisionRoot root = myFSFS.createRevisionRoot(revision);
+                if (myDumpEditor == null) {
+                    myDumpEditor = new SVNDumpEditor(myFSFS, root, revision, revision, "/", SVNFileUtil.DUMMY_OUT, false, true);
+                } else {
+                    myDumpEditor.reset(myFSFS, root, revision, revision, "/", SVNFileUtil.DUMMY_OUT, false, true);
+                }
+                ISVNEditor editor = SVNCancellableEditor.newInstance(myDumpEditor, myCanceller, myDebugLog);
+                FSRepositoryUtil.replay(myFSFS, root, "", SVNRepository.INVALID_REVISION, false, editor);
+                myFSFS.getRevisionProperties(revision);
+            } catch (RuntimeException e) {
+                // garbage in a revision file may fail anywhere in the parsing code.
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.FS_CORRUPT, "Revision {0} is corrupted: {1}",
+                        new Object[] { String.valueOf(revision), e.toString() });
+                SVNErrorManager.error(err, e, SVNLogType.FSFS);
+            }
+        }
+    }
+
+    private class ChunkVerifyTask implements Callable<ChunkResult> {
+        private final FSFS myFSFS;
+        private final long myStartRevision;
+        private final long myEndRevision;
+        private final ConcurrentLinkedQueue<VerifyContext> myIdleContexts;
+        private final List<VerifyContext> myContexts;
+        private final AtomicLong myStopRevision;
+
+        public ChunkVerifyTask(FSFS fsfs, long startRevision, long endRevision, ConcurrentLinkedQueue<VerifyContext> idleContexts,
+                List<VerifyContext> contexts, AtomicLong stopRevision) {
+            myFSFS = fsfs;
+            myStartRevision = startRevision;
+            myEndRevision = endRevision;
+            myIdleContexts = idleContexts;
+            myContexts = contexts;
+            myStopRevision = stopRevision;
+        }
+
+        public ChunkResult call() throws Exception {
+            VerifyContext context = myIdleContexts.poll();
+            if (context == null) {
+                context = new VerifyContext(openRepository(myFSFS));
+                synchronized (myContexts) {
+                    myContexts.add(context);
+                }
+            }
+            try {
+                List<SVNException> errors = new ArrayList<SVNException>();
+                for (long rev = myStartRevision; rev <= myEndRevision && rev <= myStopRevision.get(); rev++) {
+                    myCanceller.checkCancelled();
+                    SVNException error = null;
+                    try {
+                        context.verifyRevision(rev);
+                    } catch (SVNException e) {
+                        if (isCancellation(e)) {
+                            throw e;
+                        }
+                        error = e;
+                    }
+                    errors.add(error);
+                    if (error != null && myIsFailFast) {
+                        // chunks of earlier revisions are still verified, so the first corrupted revision is reported.
+                        long stopRevision = myStopRevision.get();
+                        while (rev < stopRevision && !myStopRevision.compareAndSet(stopRevision, rev)) {
+                            stopRevision = myStopRevision.get();
+                        }
+                        break;
+                    }
+                }
+                return new ChunkResult(myStartRevision, errors.toArray(new SVNException[errors.size()]));
+            } finally {
+                myIdleContexts.add(context);
+            }
+        }
+    }
+
+    private static class ChunkResult {
+        private final long myStartRevision;
+        private final SVNException[] myErrors;
+
+        public ChunkResult(long startRevision, SVNException[] errors) {
+            myStartRevision = startRevision;
+            myErrors = errors;
+        }
+    }
+
+    private static class Progress {
+        private long myVerifiedCount;
+        private long myFailedCount;
+        private SVNException myFirstError;
+    }
+
+    private static class VerifyThreadFactory implements ThreadFactory {
+        private final AtomicInteger myThreadNumber = new AtomicInteger(1);
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "svnkit-verify-" + myThreadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004-2012 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://svnkit.com/license.html.
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.wc;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Buffered view of a dump stream which lets the dump parser and load
+ * handlers work on slices of its buffer instead of copying the data.
+ * A slice returned by {@link #readLine()}, {@link #readBlock(int)} or
+ * {@link #readSlice(int)} is valid until the next read from the stream.
+ *
+ * <p/>
+ * Closing this stream doesn't close the source stream.
+ *
+ * @version 1.8
+ * @author  TMate Software Ltd.
+ */
+public class SVNDumpInputStream extends InputStream {
+
+    public static final int LINE_EOF = -1;
+    public static final int LINE_INCOMPLETE = -2;
+
+    private final byte[] myBuffer;
+    private InputStream mySource;
+    private int myPosition;
+    private int myLimit;
+
+    private byte[] myOverflow;
+    private byte[] mySliceBuffer;
+    private int mySliceOffset;
+
+    public SVNDumpInputStream(int bufferSize) {
+        myBuffer = new byte[bufferSize];
+        myOverflow = new byte[256];
+    }
+
+    public void setSource(InputStream source) {
+        mySource = source;
+        myPosition = 0;
+        myLimit = 0;
+        mySliceBuffer = null;
+    }
+
+    public byte[] getSliceBuffer() {
+        return mySliceBuffer;
+    }
+
+    public int getSliceOffset() {
+        return mySliceOffset;
+    }
+
+    /**
+     * Reads the next line and returns its length without the line feed,
+     * {@link #LINE_EOF} at the end of the stream or {@link #LINE_INCOMPLETE}
+     * if the stream ends within the line.
+     */
+    public int readLine() throws IOException {
+        int length = 0;
+        while (true) {
+            if (myPosition >= myLimit && fill() < 0) {
+                mySliceBuffer = myOverflow;
+                mySliceOffset = 0;
+                return length == 0 ? LINE_EOF : LINE_INCOMPLETE;
+            }
+            int start = myPosition;
+            int end = start;
+            while (end < myLimit && myBuffer[end] != '\n') {
+                end++;
+            }
+            if (end < myLimit) {
+                myPosition = end + 1;
+                if (length == 0) {
+                    mySliceBuffer = myBuffer;
+                    mySliceOffset = start;
+                    return end - start;
+                }
+                length = appendToOverflow(length, start, end - start);
+                mySliceBuffer = myOverflow;
+                mySliceOffset = 0;
+                return length;
+            }
+            length = appendToOverflow(length, start, end - start);
+            myPosition = myLimit;
+        }
+    }
+
+    /**
+     * Reads the next <code>length</code> bytes as one slice.
+     *
+     * @return <span class="javakeyword">false</span> if the stream ends before
+     */
+    public boolean readBlock(int length) throws IOException {
+        int available = myLimit - myPosition;
+        if (available >= length) {
+            mySliceBuffer = myBuffer;
+            mySliceOffset = myPosition;
+            myPosition += length;
+            return true;
+        }
+        if (length <= myBuffer.length) {
+            System.arraycopy(myBuffer, myPosition, myBuffer, 0, available);
+            myPosition = 0;
+            myLimit = available;
+            while (myLimit < length) {
+                int read = mySource.read(myBuffer, myLimit, myBuffer.length - myLimit);
+                if (read < 0) {
+                    return false;
+                }
+                myLimit += read;
+            }
+            mySliceBuffer = myBuffer;
+            mySliceOffset = 0;
+            myPosition = length;
+            return true;
+        }
+        if (myOverflow.length < length) {
+            myOverflow = new byte[length];
+        }
+        int read = appendToOverflow(0, myPosition, available);
+        myPosition = myLimit;
+        while (read < length) {
+            int r = mySource.read(myOverflow, read, length - read);
+            if (r < 0) {
+                return false;
+            }
+            read += r;
+        }
+        mySliceBuffer = myOverflow;
+        mySliceOffset = 0;
+        return true;
+    }
+
+    /**
+     * Reads up to <code>maxLength</code> bytes as one slice of the buffer.
+     *
+     * @return number of bytes in the slice or -1 at the end of the stream
+     */
+    public int readSlice(int maxLength) throws IOException {
+        if (myPosition >= myLimit && fill() < 0) {
+            return -1;
+        }
+        int length = Math.min(maxLength, myLimit - myPosition);
+        mySliceBuffer = myBuffer;
+        mySliceOffset = myPosition;
+        myPosition += length;
+        return length;
+    }
+
+    public int read() throws IOException {
+        if (myPosition >= myLimit && fill() < 0) {
+            return -1;
+        }
+        return myBuffer[myPosition++] & 0xFF;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (myPosition >= myLimit) {
+            if (len >= myBuffer.length) {
+                // no need to copy large reads through the buffer.
+                return mySource.read(b, off, len);
+            }
+            if (fill() < 0) {
+                return -1;
+            }
+        }
+        int read = Math.min(len, myLimit - myPosition);
+        System.arraycopy(myBuffer, myPosition, b, off, read);
+        myPosition += read;
+        return read;
+    }
+
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n) {
+            if (myPosition >= myLimit && fill() < 0) {
+                break;
+            }
+            int length = (int) Math.min(n - skipped, myLimit - myPosition);
+            myPosition += length;
+            skipped += length;
+        }
+        return skipped;
+    }
+
+    public int available() throws IOException {
+        return myLimit - myPosition;
+    }
+
+    public void close() throws IOException {
+    }
+
+    private int fill() throws IOException {
+        myPosition = 0;
+        myLimit = 0;
+        int read = 0;
+        while (read == 0) {
+            read = mySource.read(myBuffer, 0, myBuffer.length);
+        }
+        if (read > 0) {
+            myLimit = read;
+        }
+        return read;
+    }
+
+    private int appendToOverflow(int length, int offset, int count) {
+        if (length + count > myOverflow.length) {
+            byte[] overflow = new byte[Math.max(length + count, myOverflow.length * 2)];
+            System.arraycopy(myOverflow, 0, overflow, 0, length);
+            myOverflow = overflow;
+        }
+        System.arraycopy(myBuffer, offset, myOverflow, length, count);
+        return length + count;
+    }
+}
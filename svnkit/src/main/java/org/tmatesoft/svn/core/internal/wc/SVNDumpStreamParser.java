@@ -13,6 +13,8 @@ package org.tmatesoft.svn.core.internal.wc;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.CharsetDecoder;
 import java.util.Map;
 
@@ -31,21 +33,69 @@ import org.tmatesoft.svn.util.SVNLogType;
  * @author  TMate Software Ltd.
  */
 public class SVNDumpStreamParser {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final String[] HEADER_NAMES = {
+        SVNAdminHelper.DUMPFILE_MAGIC_HEADER,
+        SVNAdminHelper.DUMPFILE_CONTENT_LENGTH,
+        SVNAdminHelper.DUMPFILE_NODE_ACTION,
+        SVNAdminHelper.DUMPFILE_NODE_COPYFROM_PATH,
+        SVNAdminHelper.DUMPFILE_NODE_COPYFROM_REVISION,
+        SVNAdminHelper.DUMPFILE_NODE_KIND,
+        SVNAdminHelper.DUMPFILE_NODE_PATH,
+        SVNAdminHelper.DUMPFILE_PROP_CONTENT_LENGTH,
+        SVNAdminHelper.DUMPFILE_PROP_DELTA,
+        SVNAdminHelper.DUMPFILE_REVISION_NUMBER,
+        SVNAdminHelper.DUMPFILE_TEXT_CONTENT_LENGTH,
+        SVNAdminHelper.DUMPFILE_TEXT_DELTA,
+        SVNAdminHelper.DUMPFILE_UUID,
+        SVNAdminHelper.DUMPFILE_TEXT_CONTENT_MD5,
+        SVNAdminHelper.DUMPFILE_TEXT_CONTENT_SHA1,
+        SVNAdminHelper.DUMPFILE_TEXT_COPY_SOURCE_MD5,
+        SVNAdminHelper.DUMPFILE_TEXT_COPY_SOURCE_SHA1,
+        SVNAdminHelper.DUMPFILE_TEXT_DELTA_BASE_MD5,
+        SVNAdminHelper.DUMPFILE_TEXT_DELTA_BASE_SHA1,
+    };
+
+    private static final byte[] PROPS_END = {'P', 'R', 'O', 'P', 'S', '-', 'E', 'N', 'D'};
+
     private ISVNCanceller myCanceller;
+    private SVNDumpInputStream myDumpInputStream;
+    private char[] myChars;
     
     public SVNDumpStreamParser(ISVNCanceller canceller) {
         myCanceller = canceller;
+        myChars = new char[256];
     }
     
+    /**
+     * Parses the dump stream through a buffer which is reused by all parses
+     * of this parser. Lines, property keys and values are parsed in place
+     * in the buffer, text blocks are read by the handler from an
+     * {@link SVNDumpInputStream} over the same buffer.
+     */
     public void parseDumpStream(InputStream dumpStream, ISVNLoadHandler handler, CharsetDecoder decoder) throws SVNException {
+        if (myDumpInputStream == null) {
+            myDumpInputStream = new SVNDumpInputStream(BUFFER_SIZE);
+        }
+        myDumpInputStream.setSource(dumpStream);
+        try {
+            parseDumpStream(myDumpInputStream, handler, decoder);
+        } finally {
+            myDumpInputStream.setSource(null);
+        }
+    }
+
+    private void parseDumpStream(SVNDumpInputStream dumpStream, ISVNLoadHandler handler, CharsetDecoder decoder) throws SVNException {
         String line = null;
         int version = -1;
-        StringBuffer buffer = new StringBuffer();
         try {
-            line = SVNFileUtil.readLineFromStream(dumpStream, buffer, decoder);
-            if (line == null) {
+            int lineLength = dumpStream.readLine();
+            if (lineLength < 0) {
                 SVNAdminHelper.generateIncompleteDataError();
             }
+            line = decode(dumpStream.getSliceBuffer(), dumpStream.getSliceOffset(), lineLength, decoder);
 
             //parse format
             if (!line.startsWith(SVNAdminHelper.DUMPFILE_MAGIC_HEADER + ":")) {
@@ -74,21 +124,18 @@ public class SVNDumpStreamParser {
                 boolean foundNode = false;
             
                 //skip empty lines
-                buffer.setLength(0);
-                line = SVNFileUtil.readLineFromStream(dumpStream, buffer, decoder);
-                if (line == null) {
-                    if (buffer.length() > 0) {
-                        SVNAdminHelper.generateIncompleteDataError();
-                    } else {
-                        break;
-                    }
-                } 
+                lineLength = dumpStream.readLine();
+                if (lineLength == SVNDumpInputStream.LINE_INCOMPLETE) {
+                    SVNAdminHelper.generateIncompleteDataError();
+                } else if (lineLength == SVNDumpInputStream.LINE_EOF) {
+                    break;
+                }
 
-                if (line.length() == 0 || Character.isWhitespace(line.charAt(0))) {
+                if (lineLength == 0 || isWhitespace(dumpStream.getSliceBuffer()[dumpStream.getSliceOffset()])) {
                     continue;
                 }
             
-                Map headers = readHeaderBlock(dumpStream, line, decoder);
+                Map headers = readHeaderBlock(dumpStream, lineLength, decoder);
                 if (headers.containsKey(SVNAdminHelper.DUMPFILE_REVISION_NUMBER)) {
                     handler.closeRevision();
                     handler.openRevision(headers);
@@ -208,22 +255,8 @@ public class SVNDumpStreamParser {
                         SVNErrorManager.error(err, SVNLogType.FSFS);
                     }
                     
-                    byte buf[] = new byte[SVNFileUtil.STREAM_CHUNK_SIZE];
-
-                    long numRead = 0;
                     long numToRead = remaining;
-                    while (remaining > 0) {
-                        int readSize = remaining >= SVNFileUtil.STREAM_CHUNK_SIZE ? 
-                                SVNFileUtil.STREAM_CHUNK_SIZE : (int) remaining;
-
-                        int r = dumpStream.read(buf, 0, readSize);
-                        if (r < 0) {
-                            break;
-                        }
-                        
-                        numRead += r;
-                        remaining -= r;
-                    }
+                    long numRead = dumpStream.skip(remaining);
 
                     if (numRead != numToRead) {
                         SVNAdminHelper.generateIncompleteDataError();
@@ -245,61 +278,60 @@ public class SVNDumpStreamParser {
         }
     }
     
-    private long parsePropertyBlock(InputStream dumpStream, ISVNLoadHandler handler, CharsetDecoder decoder, 
+    private long parsePropertyBlock(SVNDumpInputStream dumpStream, ISVNLoadHandler handler, CharsetDecoder decoder, 
             long contentLength, boolean isNode) throws SVNException {
         long actualLength = 0;
-        StringBuffer buffer = new StringBuffer();
-        String line = null;
         
         try {
             while (contentLength != actualLength) {
-                buffer.setLength(0);
-                line = SVNFileUtil.readLineFromStream(dumpStream, buffer, decoder);
+                int lineLength = dumpStream.readLine();
                 
-                if (line == null) {
+                if (lineLength < 0) {
                     SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.STREAM_MALFORMED_DATA, 
                             "Incomplete or unterminated property block");
                     SVNErrorManager.error(err, SVNLogType.FSFS);
                 }
                 
                 //including '\n'
-                actualLength += line.length() + 1;
-                if ("PROPS-END".equals(line)) {
+                actualLength += lineLength + 1;
+                byte[] line = dumpStream.getSliceBuffer();
+                int offset = dumpStream.getSliceOffset();
+                if (isLine(line, offset, lineLength, PROPS_END)) {
                     break;
-                } else if (line.charAt(0) == 'K' && line.charAt(1) == ' ') {
+                } else if (lineLength >= 2 && line[offset] == 'K' && line[offset + 1] == ' ') {
                     int len = 0;
                     try {
-                        len = Integer.parseInt(line.substring(2));    
+                        len = parseLength(line, offset + 2, lineLength - 2);
                     } catch (NumberFormatException nfe) {
                         SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.STREAM_MALFORMED_DATA, 
                                 "Malformed dumpfile header: can't parse node property key length");
                         SVNErrorManager.error(err, nfe, SVNLogType.FSFS);
                     }
                     
-                    byte[] buff = new byte[len + 1];
-                    actualLength += SVNAdminHelper.readKeyOrValue(dumpStream, buff, len + 1);
-                    String propName = new String(buff, 0, len, "UTF-8");
+                    actualLength += readKeyOrValue(dumpStream, len);
+                    String propName = new String(dumpStream.getSliceBuffer(), dumpStream.getSliceOffset(), len, "UTF-8");
                     
-                    buffer.setLength(0);
-                    line = SVNFileUtil.readLineFromStream(dumpStream, buffer, decoder);
-                    if (line == null) {
+                    lineLength = dumpStream.readLine();
+                    if (lineLength < 0) {
                         SVNAdminHelper.generateIncompleteDataError();
                     }
                     
                     //including '\n'
-                    actualLength += line.length() + 1;
-                    if (line.charAt(0) == 'V' && line.charAt(1) == ' ') {
+                    actualLength += lineLength + 1;
+                    line = dumpStream.getSliceBuffer();
+                    offset = dumpStream.getSliceOffset();
+                    if (lineLength >= 2 && line[offset] == 'V' && line[offset + 1] == ' ') {
                         try {
-                            len = Integer.parseInt(line.substring(2));    
+                            len = parseLength(line, offset + 2, lineLength - 2);
                         } catch (NumberFormatException nfe) {
                             SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.STREAM_MALFORMED_DATA, 
                                     "Malformed dumpfile header: can't parse node property value length");
                             SVNErrorManager.error(err, nfe, SVNLogType.FSFS);
                         }
     
-                        buff = new byte[len + 1];
-                        actualLength += SVNAdminHelper.readKeyOrValue(dumpStream, buff, len + 1);
-                        SVNPropertyValue propValue = SVNPropertyValue.create(propName, buff, 0, len);
+                        actualLength += readKeyOrValue(dumpStream, len);
+                        SVNPropertyValue propValue = SVNPropertyValue.create(propName, dumpStream.getSliceBuffer(), 
+                                dumpStream.getSliceOffset(), len);
                         if (isNode) {
                             handler.setNodeProperty(propName, propValue);
                         } else {
@@ -308,24 +340,23 @@ public class SVNDumpStreamParser {
                     } else {
                         SVNAdminHelper.generateStreamMalformedError();
                     }
-                } else if (line.charAt(0) == 'D' && line.charAt(1) == ' ') {
+                } else if (lineLength >= 2 && line[offset] == 'D' && line[offset + 1] == ' ') {
                     int len = 0;
                     try {
-                        len = Integer.parseInt(line.substring(2));    
+                        len = parseLength(line, offset + 2, lineLength - 2);
                     } catch (NumberFormatException nfe) {
                         SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.STREAM_MALFORMED_DATA, 
                                 "Malformed dumpfile header: can't parse node property key length");
                         SVNErrorManager.error(err, nfe, SVNLogType.FSFS);
                     }
                     
-                    byte[] buff = new byte[len + 1];
-                    actualLength += SVNAdminHelper.readKeyOrValue(dumpStream, buff, len + 1);
+                    actualLength += readKeyOrValue(dumpStream, len);
                     
                     if (!isNode) {
                         SVNAdminHelper.generateStreamMalformedError();
                     }
                     
-                    String propName = new String(buff, 0, len, "UTF-8");
+                    String propName = new String(dumpStream.getSliceBuffer(), dumpStream.getSliceOffset(), len, "UTF-8");
                     handler.deleteNodeProperty(propName);
                 } else {
                     SVNAdminHelper.generateStreamMalformedError();
@@ -339,45 +370,126 @@ public class SVNDumpStreamParser {
         return actualLength;
     }
 
-    private Map readHeaderBlock(InputStream dumpStream, String firstHeader, CharsetDecoder decoder) throws SVNException, IOException {
+    private Map readHeaderBlock(SVNDumpInputStream dumpStream, int firstHeaderLength, CharsetDecoder decoder) throws SVNException, IOException {
         Map headers = new SVNHashMap();
-        StringBuffer buffer = new StringBuffer();
+        int headerLength = firstHeaderLength;
     
         while (true) {
-            String header = null;
-            buffer.setLength(0);
-            if (firstHeader != null) {
-                header = firstHeader;
-                firstHeader = null;
-            } else {
-                header = SVNFileUtil.readLineFromStream(dumpStream, buffer, decoder);
-                if (header == null && buffer.length() > 0) {
-                    SVNAdminHelper.generateIncompleteDataError();
-                } else if (buffer.length() == 0) {
+            if (headerLength == SVNDumpInputStream.LINE_INCOMPLETE) {
+                SVNAdminHelper.generateIncompleteDataError();
+            } else if (headerLength <= 0) {
+                break;
+            }
+            byte[] header = dumpStream.getSliceBuffer();
+            int offset = dumpStream.getSliceOffset();
+        
+            int colonInd = -1;
+            for (int i = 0; i < headerLength; i++) {
+                if (header[offset + i] == ':') {
+                    colonInd = i;
                     break;
                 }
             }
-        
-            int colonInd = header.indexOf(':');
             if (colonInd == -1) {
+                String headerString = decode(header, offset, headerLength, decoder);
                 SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.STREAM_MALFORMED_DATA, 
                         "Dump stream contains a malformed header (with no '':'') at ''{0}''", 
-                        header.length() > 20 ? header.substring(0, 19) : header);
+                        headerString.length() > 20 ? headerString.substring(0, 19) : headerString);
                 SVNErrorManager.error(err, SVNLogType.FSFS);
             }
         
-            String name = header.substring(0, colonInd);
-            if (colonInd + 2 > header.length()) {
+            if (colonInd + 2 > headerLength) {
+                String headerString = decode(header, offset, headerLength, decoder);
                 SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.STREAM_MALFORMED_DATA, 
                         "Dump stream contains a malformed header (with no value) at ''{0}''", 
-                        header.length() > 20 ? header.substring(0, 19) : header);
+                        headerString.length() > 20 ? headerString.substring(0, 19) : headerString);
                 SVNErrorManager.error(err, SVNLogType.FSFS);
             }
-            String value = header.substring(colonInd + 2);
+            String name = getHeaderName(header, offset, colonInd, decoder);
+            String value = decode(header, offset + colonInd + 2, headerLength - colonInd - 2, decoder);
             headers.put(name, value);
+            
+            headerLength = dumpStream.readLine();
         }
     
         return headers;
     }
+
+    private static int readKeyOrValue(SVNDumpInputStream dumpStream, int len) throws SVNException, IOException {
+        if (!dumpStream.readBlock(len + 1)) {
+            SVNAdminHelper.generateIncompleteDataError();
+        }
+        if (dumpStream.getSliceBuffer()[dumpStream.getSliceOffset() + len] != '\n') {
+            SVNAdminHelper.generateStreamMalformedError();
+        }
+        return len;
+    }
+
+    private String getHeaderName(byte[] bytes, int offset, int length, CharsetDecoder decoder) {
+        for (int i = 0; i < HEADER_NAMES.length; i++) {
+            String name = HEADER_NAMES[i];
+            if (name.length() != length) {
+                continue;
+            }
+            int j = 0;
+            while (j < length && bytes[offset + j] == name.charAt(j)) {
+                j++;
+            }
+            if (j == length) {
+                return name;
+            }
+        }
+        return decode(bytes, offset, length, decoder);
+    }
+
+    private String decode(byte[] bytes, int offset, int length, CharsetDecoder decoder) {
+        if (myChars.length < length) {
+            myChars = new char[Math.max(length, myChars.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            byte b = bytes[offset + i];
+            if (b < 0) {
+                ByteBuffer inBuf = ByteBuffer.wrap(bytes, offset, length);
+                CharBuffer outBuf = CharBuffer.allocate(length * Math.round(decoder.maxCharsPerByte() + 0.5f));
+                decoder.decode(inBuf, outBuf, true);
+                decoder.flush(outBuf);
+                decoder.reset();
+                return outBuf.flip().toString();
+            }
+            myChars[i] = (char) b;
+        }
+        return new String(myChars, 0, length);
+    }
+
+    private static int parseLength(byte[] bytes, int offset, int length) {
+        if (length <= 0 || length > 9) {
+            throw new NumberFormatException(new String(bytes, offset, Math.max(length, 0)));
+        }
+        int value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException(new String(bytes, offset, length));
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static boolean isLine(byte[] bytes, int offset, int length, byte[] expected) {
+        if (length != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b >= 0 && Character.isWhitespace((char) b);
+    }
     
 }
@@ -2352,6 +2352,45 @@ public class SVNFileUtil {
         }
     }
 
+    private static Method java7createLinkMethod = null;
+
+    static {
+        if (java7BasciFileAttributesClazz != null) {
+            try {
+                final ClassLoader loader = SVNFileUtil.class.getClassLoader();
+                final Class<?> pathClazz = loader.loadClass("java.nio.file.Path");
+                java7createLinkMethod = loader.loadClass("java.nio.file.Files").getMethod("createLink", pathClazz, pathClazz);
+            } catch (ClassNotFoundException e) {
+                java7createLinkMethod = null;
+            } catch (NoSuchMethodException e) {
+                java7createLinkMethod = null;
+            } catch (SecurityException e) {
+                java7createLinkMethod = null;
+            }
+        }
+    }
+
+    /**
+     * Creates a hard link to an existing file, returns <code>false</code> if
+     * links are not supported by the runtime or the file system.
+     */
+    public static boolean createHardLink(File link, File existing) {
+        if (java7createLinkMethod == null || link == null || existing == null) {
+            return false;
+        }
+        try {
+            final Object linkPath = java7toPathMethod.invoke(link);
+            final Object existingPath = java7toPathMethod.invoke(existing);
+            java7createLinkMethod.invoke(null, linkPath, existingPath);
+            return true;
+        } catch (SecurityException e) {
+        } catch (IllegalAccessException e) {
+        } catch (IllegalArgumentException e) {
+        } catch (InvocationTargetException e) {
+        }
+        return false;
+    }
+
     public static void setFileLastModifiedMicros(File file, long timeInMicros) {
         if (java7BasciFileAttributesClazz != null && timeInMicros >=0 && file != null) {
             try {
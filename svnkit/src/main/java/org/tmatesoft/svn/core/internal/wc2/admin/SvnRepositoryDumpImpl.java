@@ -19,7 +19,9 @@ public class SvnRepositoryDumpImpl extends SvnRepositoryOperationRunner<SVNAdmin
                 getOperation().getStartRevision(), 
                 getOperation().getEndRevision(), 
                 getOperation().isIncremental(), 
-                getOperation().isUseDelta());
+                getOperation().isUseDelta(),
+                getOperation().getThreadsCount(),
+                getOperation().isCompressed());
         
         return getOperation().first();
     }
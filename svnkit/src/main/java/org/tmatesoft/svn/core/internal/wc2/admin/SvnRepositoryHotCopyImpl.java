@@ -11,7 +11,7 @@ public class SvnRepositoryHotCopyImpl extends SvnRepositoryOperationRunner<Long,
         SVNAdminClient ac = new SVNAdminClient(getOperation().getAuthenticationManager(), getOperation().getOptions());
         ac.setEventHandler(this);
                 
-        ac.doHotCopy(getOperation().getSrcRepositoryRoot(), getOperation().getNewRepositoryRoot());
+        ac.doHotCopy(getOperation().getSrcRepositoryRoot(), getOperation().getNewRepositoryRoot(), getOperation().isIncremental());
         
         return 1l;
     }
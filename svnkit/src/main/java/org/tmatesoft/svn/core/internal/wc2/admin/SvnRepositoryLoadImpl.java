@@ -20,7 +20,8 @@ public class SvnRepositoryLoadImpl extends SvnRepositoryOperationRunner<SVNAdmin
         		getOperation().isUsePreCommitHook(),
         		getOperation().isUsePostCommitHook(),
         		getOperation().getUuidAction(),
-        		getOperation().getParentDir());
+        		getOperation().getParentDir(),
+        		getOperation().isBulk());
         
         return getOperation().first();
     }
@@ -16,6 +16,17 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.tmatesoft.svn.core.SVNErrorCode;
 import org.tmatesoft.svn.core.SVNErrorMessage;
@@ -38,17 +49,31 @@ import org.tmatesoft.svn.util.SVNLogType;
  * <p>
  * The generator uses X-Delta algorithm for generating all kinds of deltas.
  * 
+ * <p>
+ * Windows of a delta between streams are independent of each other, so with
+ * more than one {@link #setThreadsCount(int) thread} they are computed on a pool
+ * of worker threads while the following windows are read ahead. Windows are
+ * still sent to the consumer in order and from the calling thread. The default
+ * number of threads is taken from the <code>svnkit.delta.threads</code> system
+ * property and is 1. Worker threads are created once and shared by all deltas
+ * of the generator, idle threads exit after a minute and {@link #dispose()}
+ * stops them right away.
+ * 
  * @version 1.3
  * @author  TMate Software Ltd.
  * @since   1.2
  */
 public class SVNDeltaGenerator {
     
+    private static final int DEFAULT_THREADS_COUNT = Integer.getInteger("svnkit.delta.threads", 1).intValue();
+
     private SVNDeltaAlgorithm myXDelta = new SVNXDeltaAlgorithm();
     
     private byte[] mySourceBuffer;
     private byte[] myTargetBuffer;
     private int myMaximumBufferSize;
+    private int myThreadsCount;
+    private ThreadPoolExecutor myExecutor;
     
     /**
      * Creates a generator that will produce diff windows of 
@@ -74,6 +99,45 @@ public class SVNDeltaGenerator {
         int initialSize = Math.min(8192, myMaximumBufferSize);
         mySourceBuffer = new byte[initialSize];
         myTargetBuffer = new byte[initialSize];
+        myThreadsCount = DEFAULT_THREADS_COUNT;
+    }
+
+    /**
+     * Sets the number of threads which compute windows of deltas between streams.
+     * With one thread windows are computed one after another by the calling thread.
+     * At most twice as many windows as threads are read ahead.
+     *
+     * @param threadsCount number of threads
+     * @since 1.8
+     */
+    public void setThreadsCount(int threadsCount) {
+        if (threadsCount != myThreadsCount) {
+            dispose();
+        }
+        myThreadsCount = threadsCount;
+    }
+
+    /**
+     * Returns the number of threads which compute windows of deltas between streams.
+     *
+     * @return number of threads
+     * @since 1.8
+     */
+    public int getThreadsCount() {
+        return myThreadsCount;
+    }
+
+    /**
+     * Stops the worker threads of this generator. The generator may still be
+     * used afterwards, new threads are then created when needed.
+     *
+     * @since 1.8
+     */
+    public void dispose() {
+        if (myExecutor != null) {
+            myExecutor.shutdownNow();
+            myExecutor = null;
+        }
     }
     
     /**
@@ -146,6 +210,9 @@ public class SVNDeltaGenerator {
                 return null;
             }
         }
+        if (myThreadsCount > 1) {
+            return sendDeltaInParallel(path, source, sourceOffset, target, consumer, digest);
+        }
         boolean windowSent = false;
         while(true) {
             int targetLength;
@@ -275,6 +342,109 @@ public class SVNDeltaGenerator {
         algorithm.reset();
     }
     
+    private String sendDeltaInParallel(String path, InputStream source, long sourceOffset, InputStream target, ISVNDeltaConsumer consumer,
+            MessageDigest digest) throws SVNException {
+        boolean parallel = false;
+        ConcurrentLinkedQueue<SVNDeltaAlgorithm> idleAlgorithms = new ConcurrentLinkedQueue<SVNDeltaAlgorithm>();
+        LinkedList<byte[]> idleBuffers = new LinkedList<byte[]>();
+        LinkedList<Future<WindowTask>> pending = new LinkedList<Future<WindowTask>>();
+        boolean windowSent = false;
+        try {
+            boolean targetRead = false;
+            while (true) {
+                while (!targetRead && pending.size() < 2 * myThreadsCount) {
+                    byte[] targetBuffer = idleBuffers.isEmpty() ? new byte[myMaximumBufferSize] : idleBuffers.removeFirst();
+                    int targetLength = read(target, targetBuffer);
+                    if (targetLength <= 0) {
+                        idleBuffers.add(targetBuffer);
+                        targetRead = true;
+                        break;
+                    }
+                    byte[] sourceBuffer = idleBuffers.isEmpty() ? new byte[myMaximumBufferSize] : idleBuffers.removeFirst();
+                    int sourceLength = Math.max(0, read(source, sourceBuffer));
+                    if (digest != null) {
+                        digest.update(targetBuffer, 0, targetLength);
+                    }
+                    WindowTask task = new WindowTask(sourceOffset, sourceBuffer, sourceLength, targetBuffer, targetLength, idleAlgorithms);
+                    sourceOffset += sourceLength;
+                    if (!parallel && !windowSent && targetLength < myMaximumBufferSize) {
+                        // a single window, not worth a thread.
+                        sendDelta(path, task.mySourceOffset, sourceBuffer, sourceLength, targetBuffer, targetLength, consumer);
+                        windowSent = true;
+                        targetRead = true;
+                        break;
+                    }
+                    parallel = true;
+                    pending.add(getExecutor().submit(task));
+                }
+                if (pending.isEmpty()) {
+                    break;
+                }
+                WindowTask task = waitFor(pending.removeFirst());
+                try {
+                    task.sendWindow(path, consumer);
+                    windowSent = true;
+                } finally {
+                    task.myAlgorithm.reset();
+                    idleAlgorithms.add(task.myAlgorithm);
+                    idleBuffers.add(task.mySourceBuffer);
+                    idleBuffers.add(task.myTargetBuffer);
+                }
+            }
+        } finally {
+            for (Future<WindowTask> future : pending) {
+                future.cancel(true);
+            }
+        }
+        if (!windowSent && consumer != null) {
+            // send empty window, needed to create empty file.
+            consumer.textDeltaChunk(path, SVNDiffWindow.EMPTY);
+        }
+        if (consumer != null) {
+            consumer.textDeltaEnd(path);
+        }
+        return SVNFileUtil.toHexDigest(digest);
+    }
+
+    private ExecutorService getExecutor() {
+        if (myExecutor == null) {
+            myExecutor = new ThreadPoolExecutor(myThreadsCount, myThreadsCount, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new DeltaThreadFactory());
+            myExecutor.allowCoreThreadTimeOut(true);
+        }
+        return myExecutor;
+    }
+
+    private static int read(InputStream is, byte[] buffer) throws SVNException {
+        try {
+            return SVNFileUtil.readIntoBuffer(is, buffer, 0, buffer.length);
+        } catch (IOExceptionWrapper ioew) {
+            throw ioew.getOriginalException();
+        } catch (IOException e) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, e.getLocalizedMessage());
+            SVNErrorManager.error(err, e, SVNLogType.DEFAULT);
+        }
+        return -1;
+    }
+
+    private static WindowTask waitFor(Future<WindowTask> future) throws SVNException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            SVNErrorManager.cancel("Delta generation interrupted", SVNLogType.DEFAULT);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.UNKNOWN, cause.getMessage());
+            SVNErrorManager.error(err, cause, SVNLogType.DEFAULT);
+        }
+        return null;
+    }
+
     private int readToBuffer(InputStream is, byte[] buffer) throws IOException {
         int read = SVNFileUtil.readIntoBuffer(is, buffer, 0, buffer.length);
         if (read <= 0) {
@@ -298,4 +468,53 @@ public class SVNDeltaGenerator {
         }
         return read;
     }
+
+    private static class WindowTask implements Callable<WindowTask> {
+
+        private final long mySourceOffset;
+        private final byte[] mySourceBuffer;
+        private final int mySourceLength;
+        private final byte[] myTargetBuffer;
+        private final int myTargetLength;
+        private final ConcurrentLinkedQueue<SVNDeltaAlgorithm> myIdleAlgorithms;
+        private SVNDeltaAlgorithm myAlgorithm;
+
+        public WindowTask(long sourceOffset, byte[] sourceBuffer, int sourceLength, byte[] targetBuffer, int targetLength,
+                ConcurrentLinkedQueue<SVNDeltaAlgorithm> idleAlgorithms) {
+            mySourceOffset = sourceOffset;
+            mySourceBuffer = sourceBuffer;
+            mySourceLength = sourceLength;
+            myTargetBuffer = targetBuffer;
+            myTargetLength = targetLength;
+            myIdleAlgorithms = idleAlgorithms;
+        }
+
+        public WindowTask call() {
+            SVNDeltaAlgorithm algorithm = myIdleAlgorithms.poll();
+            myAlgorithm = algorithm != null ? algorithm : new SVNXDeltaAlgorithm();
+            myAlgorithm.computeDelta(mySourceBuffer, mySourceLength, myTargetBuffer, myTargetLength);
+            return this;
+        }
+
+        public void sendWindow(String path, ISVNDeltaConsumer consumer) throws SVNException {
+            if (consumer == null) {
+                return;
+            }
+            SVNDiffWindow window = new SVNDiffWindow(mySourceOffset, mySourceLength, myTargetLength,
+                    myAlgorithm.getInstructionsLength(), myAlgorithm.getNewDataLength());
+            window.setData(myAlgorithm.getData());
+            OutputStream os = consumer.textDeltaChunk(path, window);
+            SVNFileUtil.closeFile(os);
+        }
+    }
+
+    private static class DeltaThreadFactory implements ThreadFactory {
+        private final AtomicInteger myThreadNumber = new AtomicInteger(1);
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "svnkit-delta-" + myThreadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
@@ -62,13 +62,8 @@ public class SVNDeltaProcessor {
      */
     public void applyTextDelta(InputStream base, OutputStream target, boolean computeCheksum) {
         reset();
-        MessageDigest digest = null;
-        try {
-            digest = computeCheksum ? MessageDigest.getInstance("MD5") : null;
-        } catch (NoSuchAlgorithmException e1) {
-        }
         base = base == null ? SVNFileUtil.DUMMY_IN : base;
-        myApplyBaton = SVNDiffWindowApplyBaton.create(base, target, digest);
+        myApplyBaton = SVNDiffWindowApplyBaton.create(base, target, createDigest(computeCheksum));
     }
     
     /**
@@ -101,8 +96,8 @@ public class SVNDeltaProcessor {
         if (!targetFile.exists()) {
             SVNFileUtil.createEmptyFile(targetFile);
         }
-        InputStream base = baseFile != null && baseFile.exists() ? SVNFileUtil.openFileForReading(baseFile) : SVNFileUtil.DUMMY_IN;
-        applyTextDelta(base, SVNFileUtil.openFileForWriting(targetFile), computeCheksum);
+        reset();
+        myApplyBaton = SVNDiffWindowApplyBaton.create(baseFile, targetFile, false, createDigest(computeCheksum));
     }
 
     /**
@@ -153,6 +148,14 @@ public class SVNDeltaProcessor {
         return SVNFileUtil.DUMMY_OUT;
     }
     
+    private static MessageDigest createDigest(boolean computeCheksum) {
+        try {
+            return computeCheksum ? MessageDigest.getInstance("MD5") : null;
+        } catch (NoSuchAlgorithmException e) {
+        }
+        return null;
+    }
+
     private void reset() {
         if (myApplyBaton != null) {
             myApplyBaton.close();
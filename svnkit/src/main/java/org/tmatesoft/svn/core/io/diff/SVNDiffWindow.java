@@ -15,12 +15,14 @@ package org.tmatesoft.svn.core.io.diff;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.zip.DeflaterOutputStream;
 
 import org.tmatesoft.svn.core.SVNErrorCode;
 import org.tmatesoft.svn.core.SVNErrorMessage;
 import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.internal.delta.SVNDiffCodec;
 import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
 import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
 import org.tmatesoft.svn.util.SVNLogType;
@@ -44,6 +46,8 @@ import org.tmatesoft.svn.util.SVNLogType;
  * @see     SVNDiffInstruction
  */
 public class SVNDiffWindow {
+
+    private static final int TRANSFER_THRESHOLD = 8 * 1024;
     
     /**
      * Bytes of the delta header of an uncompressed diff window. 
@@ -55,6 +59,12 @@ public class SVNDiffWindow {
      * @since 1.1, new in Subversion 1.4 
      */
     public static final byte[] SVN1_HEADER = new byte[] {'S', 'V', 'N', '\1'};
+
+    /**
+     * Bytes of the delta header of a window compressed with LZ4.
+     * @since 1.8, new in Subversion 1.10
+     */
+    public static final byte[] SVN2_HEADER = new byte[] {'S', 'V', 'N', '\2'};
     
     /**
      * An empty window (in particular, its instructions length = 0). Corresponds 
@@ -233,6 +243,10 @@ public class SVNDiffWindow {
      * @see                  #apply(byte[], byte[])
      */
     public void apply(SVNDiffWindowApplyBaton applyBaton) throws SVNException {
+        if (applyBaton.myTargetChannel != null) {
+            applyToChannel(applyBaton);
+            return;
+        }
         // here we have streams and buffer from the previous calls (or nulls).
         
         // 1. buffer for target.
@@ -314,6 +328,108 @@ public class SVNDiffWindow {
         }
     }
 
+    private void applyToChannel(SVNDiffWindowApplyBaton applyBaton) throws SVNException {
+        int targetLength = getTargetViewLength();
+        if (applyBaton.myTargetBuffer == null || applyBaton.myTargetBuffer.length < targetLength) {
+            applyBaton.myTargetBuffer = new byte[targetLength];
+        }
+        applyBaton.myTargetViewSize = targetLength;
+        byte[] targetBuffer = applyBaton.myTargetBuffer;
+        FileChannel source = applyBaton.mySourceChannel;
+        FileChannel target = applyBaton.myTargetChannel;
+        // digest needs all target bytes and copies from target need earlier ones,
+        // otherwise long copies from source go from channel to channel. 
+        boolean transfer = applyBaton.myDigest == null && source != null && !hasCopyFromTargetInstructions();
+        
+        // apply instructions, target view bytes before 'written' are already in the target channel.
+        int tpos = 0;
+        int npos = myInstructionsLength;
+        int written = 0;
+        try {
+            for (Iterator instructions = instructions(true); instructions.hasNext();) {
+                SVNDiffInstruction instruction = (SVNDiffInstruction) instructions.next();
+                int iLength = instruction.length < targetLength - tpos ? (int) instruction.length : targetLength - tpos; 
+                switch (instruction.type) {
+                    case SVNDiffInstruction.COPY_FROM_NEW_DATA:
+                        System.arraycopy(myData, myDataOffset + npos, targetBuffer, tpos, iLength);
+                        npos += iLength;
+                        break;
+                    case SVNDiffInstruction.COPY_FROM_TARGET:
+                        int start = instruction.offset;
+                        int end = instruction.offset + iLength;
+                        int tIndex = tpos;
+                        for(int j = start; j < end; j++) {
+                            targetBuffer[tIndex] = targetBuffer[j];
+                            tIndex++;
+                        }
+                        break;
+                    case SVNDiffInstruction.COPY_FROM_SOURCE:
+                        long position = getSourceViewOffset() + instruction.offset;
+                        int transferred = 0;
+                        if (transfer && iLength >= TRANSFER_THRESHOLD) {
+                            write(target, targetBuffer, written, tpos - written);
+                            transferred = transfer(source, position, iLength, target);
+                            written = tpos + transferred;
+                        }
+                        read(source, position + transferred, targetBuffer, tpos + transferred, iLength - transferred);
+                        break;
+                    default:
+                }
+                tpos += instruction.length;
+                if (tpos >= targetLength) {
+                    break;
+                }
+            }
+            if (applyBaton.myDigest != null) {
+                applyBaton.myDigest.update(targetBuffer, 0, targetLength);
+            }
+            write(target, targetBuffer, written, targetLength - written);
+        } catch (IOException e) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, e.getLocalizedMessage());
+            SVNErrorManager.error(err, e, SVNLogType.DEFAULT);
+        }
+    }
+
+    private boolean hasCopyFromTargetInstructions() {
+        for(Iterator instrs = instructions(true); instrs.hasNext();) {
+            SVNDiffInstruction instruction = (SVNDiffInstruction) instrs.next();
+            if (instruction.type == SVNDiffInstruction.COPY_FROM_TARGET) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void read(FileChannel source, long position, byte[] buffer, int offset, int length) throws IOException {
+        ByteBuffer dst = ByteBuffer.wrap(buffer, offset, length);
+        while (source != null && dst.hasRemaining()) {
+            if (source.read(dst, position + dst.position() - offset) < 0) {
+                break;
+            }
+        }
+        // missing source bytes are read as zeros.
+        Arrays.fill(buffer, dst.position(), offset + length, (byte) 0);
+    }
+
+    private static int transfer(FileChannel source, long position, int length, FileChannel target) throws IOException {
+        int transferred = 0;
+        while (transferred < length) {
+            long count = source.transferTo(position + transferred, length - transferred, target);
+            if (count <= 0) {
+                break;
+            }
+            transferred += count;
+        }
+        return transferred;
+    }
+
+    private static void write(FileChannel target, byte[] buffer, int offset, int length) throws IOException {
+        ByteBuffer src = ByteBuffer.wrap(buffer, offset, length);
+        while (src.hasRemaining()) {
+            target.write(src);
+        }
+    }
+
     /**
      * Applies this window's instructions provided source and target view buffers. 
      * 
@@ -453,8 +569,32 @@ public class SVNDiffWindow {
      * @since                 1.1
      */
     public void writeTo(OutputStream os, boolean writeHeader, boolean compress) throws IOException {
+        writeTo(os, writeHeader, compress ? 1 : 0);
+    }
+
+    /**
+     * Formats and writes this window bytes to the specified output stream
+     * in the specified svndiff format version.
+     * 
+     * @param os              an output stream to write the window to
+     * @param writeHeader     if <span class="javakeyword">true</span> a window
+     *                        header will be also written
+     * @param version         0 to write non-compressed window bytes with {@link #SVN_HEADER},
+     *                        1 to compress them with zlib and use {@link #SVN1_HEADER},
+     *                        2 to compress them with LZ4 and use {@link #SVN2_HEADER}
+     * @throws IOException
+     * @since                 1.8
+     */
+    public void writeTo(OutputStream os, boolean writeHeader, int version) throws IOException {
+        SVNDiffCodec codec = null;
+        if (version != 0) {
+            codec = SVNDiffCodec.getCodec(version);
+            if (codec == null) {
+                throw new IOException("Unsupported svndiff version " + version);
+            }
+        }
         if (writeHeader) {
-            os.write(compress ? SVN1_HEADER : SVN_HEADER);
+            os.write(codec != null ? codec.getHeader() : SVN_HEADER);
         }
         if (!hasInstructions()) {
             return;
@@ -466,21 +606,17 @@ public class SVNDiffWindow {
 
         ByteBuffer instructions = null;
         ByteBuffer newData = null;
-        int instLength = 0;
-        int dataLength = 0;
-        if (compress) {
-            instructions = inflate(myData, myDataOffset, myInstructionsLength);
-            instLength = instructions.remaining();
-            newData = inflate(myData, myDataOffset + myInstructionsLength, myNewDataLength);
-            dataLength = newData.remaining();
-            SVNDiffInstruction.writeInt(offsets, instLength);
-            SVNDiffInstruction.writeInt(offsets, dataLength);
+        if (codec != null) {
+            instructions = codec.compress(myData, myDataOffset, myInstructionsLength);
+            newData = codec.compress(myData, myDataOffset + myInstructionsLength, myNewDataLength);
+            SVNDiffInstruction.writeInt(offsets, instructions.remaining());
+            SVNDiffInstruction.writeInt(offsets, newData.remaining());
         } else {
             SVNDiffInstruction.writeInt(offsets, myInstructionsLength);
             SVNDiffInstruction.writeInt(offsets, myNewDataLength);
         }
         os.write(offsets.array(), offsets.arrayOffset(), offsets.position());
-        if (compress) {
+        if (codec != null) {
             os.write(instructions.array(), instructions.arrayOffset(), instructions.remaining());
             os.write(newData.array(), newData.arrayOffset(), newData.remaining());
         } else {
@@ -541,35 +677,6 @@ public class SVNDiffWindow {
         return clone;
     }
     
-    private static ByteBuffer inflate(byte[] src, int offset, int length) throws IOException {
-        final ByteBuffer buffer = ByteBuffer.allocate(length*2 + 2);
-        SVNDiffInstruction.writeInt(buffer, length);
-        if (length < 512) {
-            buffer.put(src, offset, length);
-        } else {
-            DeflaterOutputStream out = new DeflaterOutputStream(new OutputStream() {
-                public void write(int b) throws IOException {
-                    buffer.put((byte) (b & 0xFF));
-                }
-                public void write(byte[] b, int off, int len) throws IOException {
-                    buffer.put(b, off, len);
-                }
-                public void write(byte[] b) throws IOException {
-                    write(b, 0, b.length);
-                }
-            });
-            out.write(src, offset, length);
-            out.finish();
-            if (buffer.position() >= length) {
-                buffer.clear();
-                SVNDiffInstruction.writeInt(buffer, length);
-                buffer.put(src, offset, length);
-            }
-        }
-        buffer.flip();
-        return buffer;
-    }
-    
     private class InstructionsIterator implements Iterator {
         
         private SVNDiffInstruction myNextInsruction;
@@ -12,12 +12,19 @@
 package org.tmatesoft.svn.core.io.diff;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
 import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
 import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.util.SVNLogType;
 
 /**
  * The <b>SVNDiffWindowApplyBaton</b> class is used to provide the source 
@@ -35,6 +42,8 @@ public class SVNDiffWindowApplyBaton {
 
     InputStream mySourceStream;
     OutputStream myTargetStream;
+    FileChannel mySourceChannel;
+    FileChannel myTargetChannel;
 
     long mySourceViewOffset;
     int mySourceViewLength;
@@ -57,14 +66,30 @@ public class SVNDiffWindowApplyBaton {
      * @throws SVNException
      */
     public static SVNDiffWindowApplyBaton create(File source, File target, MessageDigest digest) throws SVNException {
-        SVNDiffWindowApplyBaton baton = new SVNDiffWindowApplyBaton();
-        baton.mySourceStream = source.exists() ? SVNFileUtil.openFileForReading(source) : SVNFileUtil.DUMMY_IN;
-        baton.myTargetStream = SVNFileUtil.openFileForWriting(target, true);
-        baton.mySourceBuffer = new byte[0];
-        baton.mySourceViewLength = 0;
-        baton.mySourceViewOffset = 0;
-        baton.myDigest = digest;
-        return baton;
+        return create(source, target, true, digest);
+    }
+
+    static SVNDiffWindowApplyBaton create(File source, File target, boolean append, MessageDigest digest) throws SVNException {
+        RandomAccessFile sourceFile = source != null && source.exists() ? SVNFileUtil.openRAFileForReading(source) : null;
+        RandomAccessFile targetFile = null;
+        try {
+            if (target.isFile() && !target.canWrite()) {
+                SVNFileUtil.setReadonly(target, false);
+            }
+            targetFile = SVNFileUtil.openRAFileForWriting(target, append);
+            if (!append) {
+                targetFile.setLength(0);
+            }
+        } catch (IOException e) {
+            SVNFileUtil.closeFile(sourceFile);
+            SVNFileUtil.closeFile(targetFile);
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "Cannot write to ''{0}'': {1}", new Object[] {target, e.getMessage()});
+            SVNErrorManager.error(err, e, SVNLogType.DEFAULT);
+        } catch (SVNException e) {
+            SVNFileUtil.closeFile(sourceFile);
+            throw e;
+        }
+        return create(sourceFile != null ? sourceFile.getChannel() : null, targetFile.getChannel(), digest);
     }
 
     /**
@@ -88,6 +113,35 @@ public class SVNDiffWindowApplyBaton {
         return baton;
     }
 
+    /**
+     * Creates a diff window apply baton with source and target file channels.
+     * 
+     * <p>
+     * Source views are read with positional reads, so the position of the 
+     * source channel is not changed. The full text is written to the target 
+     * channel starting at its current position, copies from the source are 
+     * transferred from channel to channel when no digest is to be computed.  
+     * 
+     * @param  source           a source channel (from where the source 
+     *                          views would be taken), may be <span class="javakeyword">null</span> 
+     *                          if there is no source 
+     * @param  target           a target channel where the full text is written
+     * @param  digest           an MD5 checksum for the full text that would be
+     *                          updated after each instruction applying 
+     * @return                  a new <b>SVNDiffWindowApplyBaton</b> object
+     * @since                   1.8
+     */
+    public static SVNDiffWindowApplyBaton create(FileChannel source, FileChannel target, MessageDigest digest) {
+        SVNDiffWindowApplyBaton baton = new SVNDiffWindowApplyBaton();
+        baton.mySourceChannel = source;
+        baton.myTargetChannel = target;
+        baton.mySourceBuffer = new byte[0];
+        baton.mySourceViewLength = 0;
+        baton.mySourceViewOffset = 0;
+        baton.myDigest = digest;
+        return baton;
+    }
+
     private SVNDiffWindowApplyBaton() {
     }
     
@@ -102,6 +156,10 @@ public class SVNDiffWindowApplyBaton {
         mySourceStream = null;
         SVNFileUtil.closeFile(myTargetStream);
         myTargetStream = null;
+        closeChannel(mySourceChannel);
+        mySourceChannel = null;
+        closeChannel(myTargetChannel);
+        myTargetChannel = null;
         if (myDigest != null) {
             MessageDigest d = myDigest;
             myDigest = null;
@@ -110,4 +168,13 @@ public class SVNDiffWindowApplyBaton {
         return null;
     }
 
+    private static void closeChannel(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                //
+            }
+        }
+    }
 }
@@ -11,12 +11,10 @@
  */
 package org.tmatesoft.svn.core.wc.admin;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.charset.Charset;
@@ -28,7 +26,6 @@ import java.util.Iterator;
 import java.util.Map;
 
 import org.tmatesoft.svn.core.ISVNLogEntryHandler;
-import org.tmatesoft.svn.core.SVNDepth;
 import org.tmatesoft.svn.core.SVNErrorCode;
 import org.tmatesoft.svn.core.SVNErrorMessage;
 import org.tmatesoft.svn.core.SVNException;
@@ -39,29 +36,25 @@ import org.tmatesoft.svn.core.SVNPropertyValue;
 import org.tmatesoft.svn.core.SVNRevisionProperty;
 import org.tmatesoft.svn.core.SVNURL;
 import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+import org.tmatesoft.svn.core.internal.io.fs.FSCommitBatch;
 import org.tmatesoft.svn.core.internal.io.fs.FSFS;
 import org.tmatesoft.svn.core.internal.io.fs.FSHotCopier;
 import org.tmatesoft.svn.core.internal.io.fs.FSPacker;
 import org.tmatesoft.svn.core.internal.io.fs.FSRecoverer;
-import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryUtil;
-import org.tmatesoft.svn.core.internal.io.fs.FSRevisionRoot;
-import org.tmatesoft.svn.core.internal.io.fs.FSRoot;
-import org.tmatesoft.svn.core.internal.util.SVNDate;
 import org.tmatesoft.svn.core.internal.util.SVNPathUtil;
+import org.tmatesoft.svn.core.internal.util.SVNReadAheadInputStream;
 import org.tmatesoft.svn.core.internal.util.SVNUUIDGenerator;
 import org.tmatesoft.svn.core.internal.wc.DefaultDumpFilterHandler;
 import org.tmatesoft.svn.core.internal.wc.DefaultLoadHandler;
 import org.tmatesoft.svn.core.internal.wc.ISVNLoadHandler;
-import org.tmatesoft.svn.core.internal.wc.SVNAdminDeltifier;
+import org.tmatesoft.svn.core.internal.wc.SVNAdminDumper;
 import org.tmatesoft.svn.core.internal.wc.SVNAdminHelper;
-import org.tmatesoft.svn.core.internal.wc.SVNCancellableEditor;
-import org.tmatesoft.svn.core.internal.wc.SVNDumpEditor;
+import org.tmatesoft.svn.core.internal.wc.SVNAdminVerifier;
 import org.tmatesoft.svn.core.internal.wc.SVNDumpStreamParser;
 import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
 import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
 import org.tmatesoft.svn.core.internal.wc.SVNPropertiesManager;
 import org.tmatesoft.svn.core.internal.wc.admin.SVNTranslator;
-import org.tmatesoft.svn.core.io.ISVNEditor;
 import org.tmatesoft.svn.core.io.ISVNLockHandler;
 import org.tmatesoft.svn.core.io.SVNCapability;
 import org.tmatesoft.svn.core.io.SVNRepository;
@@ -136,9 +129,10 @@ public class SVNAdminClient extends SVNAdminBasicClient {
     private ISVNAdminEventHandler myEventHandler;
     private FSHotCopier myHotCopier;
     private SVNDumpStreamParser myDumpStreamParser;
-    private SVNDumpEditor myDumpEditor;
 
     private static final int LOCK_RETRY_COUNT = 10;
+    private static final int LOAD_READ_AHEAD_CHUNK_SIZE = 256 * 1024;
+    private static final int LOAD_READ_AHEAD_CHUNKS_COUNT = 16;
 
     /**
      * Creates a new admin client.
@@ -752,7 +746,6 @@ public class SVNAdminClient extends SVNAdminBasicClient {
     public void doListLocks(File repositoryRoot) throws SVNException {
         FSFS fsfs = SVNAdminHelper.openRepository(repositoryRoot, true);
         try {
-            File digestFile = fsfs.getDigestFileFromRepositoryPath("/");
             ISVNLockHandler handler = new ISVNLockHandler() {
                 public void handleLock(String path, SVNLock lock, SVNErrorMessage error) throws SVNException {
                     checkCancelled();
@@ -765,7 +758,7 @@ public class SVNAdminClient extends SVNAdminBasicClient {
                 public void handleUnlock(String path, SVNLock lock, SVNErrorMessage error) throws SVNException {
                 }
             };
-            fsfs.walkDigestFiles(digestFile, handler, false);
+            fsfs.walkLocks("/", handler, false);
         } finally {
             SVNAdminHelper.closeRepository(fsfs);
         }
@@ -943,6 +936,30 @@ public class SVNAdminClient extends SVNAdminBasicClient {
      * @since                   1.2.0, SVN 1.5.0
      */
     public void doVerify(File repositoryRoot, SVNRevision startRevision, SVNRevision endRevision) throws SVNException {
+        doVerify(repositoryRoot, startRevision, endRevision, true, 0);
+    }
+
+    /**
+     * Verifies repository contents found under <code>repositoryRoot</code> starting at <code>startRevision</code>
+     * and up to <code>endRevision</code> using <code>threadsCount</code> threads. Revisions are still reported
+     * to the event handler in order.
+     *
+     * <p/>
+     * If <code>failFast</code> is <span class="javakeyword">false</span>, verification continues after a corrupted
+     * revision, which is reported with an {@link SVNAdminEventAction#REVISION_VERIFY_FAILED} event, and an
+     * exception is thrown once all revisions are verified. An {@link SVNAdminEventAction#VERIFY_SUMMARY} event
+     * with the number of verified revisions and the verification rate is fired at the end.
+     *
+     * @param  repositoryRoot   a repository root directory path
+     * @param  startRevision    revision to start verification at
+     * @param  endRevision      revision to stop verification at
+     * @param  failFast         whether to stop at the first corrupted revision
+     * @param  threadsCount     number of threads to verify revisions with, if not positive the
+     *                          <code>svnkit.fsfs.verify.threads</code> system property is used
+     * @throws SVNException     verification failed - a repository may be corrupted
+     * @since                   1.8
+     */
+    public void doVerify(File repositoryRoot, SVNRevision startRevision, SVNRevision endRevision, boolean failFast, int threadsCount) throws SVNException {
         FSFS fsfs = SVNAdminHelper.openRepository(repositoryRoot, true);
         try {
             long youngestRevision = fsfs.getYoungestRevision();
@@ -954,7 +971,7 @@ public class SVNAdminClient extends SVNAdminBasicClient {
                 upperRev = lowerRev;
             }
 
-            verify(fsfs, lowerRev, upperRev);
+            verify(fsfs, lowerRev, upperRev, failFast, threadsCount);
         } finally {
             SVNAdminHelper.closeRepository(fsfs);
         }
@@ -988,6 +1005,37 @@ public class SVNAdminClient extends SVNAdminBasicClient {
      * @since                   1.1.1
      */
     public void doDump(File repositoryRoot, OutputStream dumpStream, SVNRevision startRevision, SVNRevision endRevision, boolean isIncremental, boolean useDeltas) throws SVNException {
+        doDump(repositoryRoot, dumpStream, startRevision, endRevision, isIncremental, useDeltas, 0, false);
+    }
+
+    /**
+     * Dumps contents of the repository to the provided output stream in a
+     * 'dumpfile' portable format rendering up to <code>threadsCount</code> revisions
+     * at once. Revisions are still written to <code>dumpStream</code> and reported
+     * to the event handler in order.
+     *
+     * <p/>
+     * If <code>compressed</code> is <span class="javakeyword">true</span>, the dump is
+     * written in the gzip format.
+     *
+     * @param  repositoryRoot   a repository root directory path
+     * @param  dumpStream       an output stream to write dumped contents to
+     * @param  startRevision    the first revision to start dumping from
+     * @param  endRevision      the last revision to end dumping at
+     * @param  isIncremental    if <span class="javakeyword">true</span>
+     *                          then the first revision dumped will be a
+     *                          diff against the previous revision; otherwise
+     *                          the first revision is a fulltext.
+     * @param  useDeltas        if <span class="javakeyword">true</span>
+     *                          deltas will be written instead of fulltexts
+     * @param  threadsCount     number of threads to render revisions with, if not positive the
+     *                          <code>svnkit.dump.threads</code> system property is used
+     * @param  compressed       whether to compress the dump with gzip
+     * @throws SVNException
+     * @since                   1.8
+     */
+    public void doDump(File repositoryRoot, OutputStream dumpStream, SVNRevision startRevision, SVNRevision endRevision, boolean isIncremental,
+            boolean useDeltas, int threadsCount, boolean compressed) throws SVNException {
         FSFS fsfs = SVNAdminHelper.openRepository(repositoryRoot, true);
         try {
             long youngestRevision = fsfs.getYoungestRevision();
@@ -1007,7 +1055,12 @@ public class SVNAdminClient extends SVNAdminBasicClient {
                 SVNErrorManager.error(err, SVNLogType.FSFS);
             }
 
-            dump(fsfs, dumpStream, lowerR, upperR, isIncremental, useDeltas);
+            SVNAdminDumper dumper = new SVNAdminDumper(getEventDispatcher(), myEventHandler);
+            if (threadsCount > 0) {
+                dumper.setThreadsCount(threadsCount);
+            }
+            dumper.setCompressed(compressed);
+            dumper.dump(fsfs, dumpStream, lowerR, upperR, isIncremental, useDeltas);
         } finally {
             SVNAdminHelper.closeRepository(fsfs);
         }
@@ -1071,15 +1124,69 @@ public class SVNAdminClient extends SVNAdminBasicClient {
      */
     public void doLoad(File repositoryRoot, InputStream dumpStream, boolean usePreCommitHook,
             boolean usePostCommitHook, SVNUUIDAction uuidAction, String parentDir) throws SVNException {
+        doLoad(repositoryRoot, dumpStream, usePreCommitHook, usePostCommitHook, uuidAction, parentDir, false);
+    }
+
+    /**
+     * Reads the provided dump stream committing new revisions to a repository.
+     *
+     * <p>
+     * If <code>bulk</code> is <span class="javakeyword">true</span>, the dump stream is
+     * read ahead in a separate thread and the repository write lock is held for the whole
+     * load. The current file is written and the rep-cache is updated once for every
+     * <code>svnkit.fsfs.bulkLoad.batchSize</code> revisions (1000 by default) instead of
+     * once for every revision, so readers of the repository see the loaded revisions in
+     * batches. Post-commit hooks can't be run by a bulk load. Repositories of formats which
+     * keep global node ids in the current file are loaded revision by revision.
+     *
+     * @param  repositoryRoot    the root directory path of the repository where
+     *                           new revisions will be committed
+     * @param  dumpStream        stream with dumped contents of a repository
+     * @param  usePreCommitHook  if <span class="javakeyword">true</span>
+     *                           then calls a pre-commit hook before committing
+     * @param  usePostCommitHook if <span class="javakeyword">true</span>
+     *                           then calls a post-commit hook after committing
+     * @param  uuidAction        one of the three possible ways to treat uuids
+     * @param  parentDir         if not <span class="javakeyword">null</span>
+     *                           then loads at this directory in the repository
+     * @param  bulk              whether to load revisions in batches
+     * @throws SVNException
+     * @since                    1.8
+     */
+    public void doLoad(File repositoryRoot, InputStream dumpStream, boolean usePreCommitHook,
+            boolean usePostCommitHook, SVNUUIDAction uuidAction, String parentDir, boolean bulk) throws SVNException {
+        if (bulk && usePostCommitHook) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.CL_MUTUALLY_EXCLUSIVE_ARGS,
+                    "Post-commit hooks can''t be run by a bulk load");
+            SVNErrorManager.error(err, SVNLogType.FSFS);
+        }
         CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder();
         FSFS fsfs = null;
+        FSCommitBatch commitBatch = null;
+        InputStream stream = dumpStream;
         try {
             fsfs = SVNAdminHelper.openRepository(repositoryRoot, true);
             ISVNLoadHandler handler = createLoadHandler(fsfs, usePreCommitHook, usePostCommitHook,
                     uuidAction, parentDir);
+            if (bulk) {
+                stream = new SVNReadAheadInputStream(dumpStream, LOAD_READ_AHEAD_CHUNK_SIZE, LOAD_READ_AHEAD_CHUNKS_COUNT);
+                if (FSCommitBatch.isSupported(fsfs)) {
+                    commitBatch = new FSCommitBatch(fsfs);
+                    commitBatch.open();
+                }
+            }
             SVNDumpStreamParser parser = getDumpStreamParser();
-            parser.parseDumpStream(dumpStream, handler, decoder);
+            try {
+                parser.parseDumpStream(stream, handler, decoder);
+            } finally {
+                if (commitBatch != null) {
+                    commitBatch.close();
+                }
+            }
         } finally {
+            if (stream != dumpStream) {
+                SVNFileUtil.closeFile(stream);
+            }
             SVNAdminHelper.closeRepository(fsfs);
         }
     }
@@ -1197,9 +1304,27 @@ public class SVNAdminClient extends SVNAdminBasicClient {
      * @since                       1.2.0, SVN 1.5.0
      */
     public void doHotCopy(File srcRepositoryRoot, File newRepositoryRoot) throws SVNException {
+        doHotCopy(srcRepositoryRoot, newRepositoryRoot, false);
+    }
+
+    /**
+     * Makes a hot copy of a repository located at <code>srcRepositoryRoot</code> to one located at
+     * <code>newRepositoryRoot</code>. If <code>incremental</code> is <span class="javakeyword">true</span>
+     * and <code>newRepositoryRoot</code> is an earlier hot copy of the same repository, only data
+     * the copy does not have yet is copied. This method is identical to the
+     * <code>'svnadmin hotcopy --incremental'</code> command.
+     *
+     * @param  srcRepositoryRoot   repository to copy data from
+     * @param  newRepositoryRoot   repository to copy data to
+     * @param  incremental         whether to copy only data missing in <code>newRepositoryRoot</code>
+     * @throws SVNException
+     * @since                      1.8, SVN 1.8
+     */
+    public void doHotCopy(File srcRepositoryRoot, File newRepositoryRoot, boolean incremental) throws SVNException {
         FSFS fsfs = SVNAdminHelper.openRepository(srcRepositoryRoot, false);
         try {
             FSHotCopier copier = getHotCopier();
+            copier.setIncremental(incremental);
             copier.runHotCopy(fsfs, newRepositoryRoot);
         } finally {
             SVNAdminHelper.closeRepository(fsfs);
@@ -1370,7 +1495,7 @@ public class SVNAdminClient extends SVNAdminBasicClient {
         return myHotCopier;
     }
 
-    private void verify(FSFS fsfs, long startRev, long endRev) throws SVNException {
+    private void verify(FSFS fsfs, long startRev, long endRev, boolean failFast, int threadsCount) throws SVNException {
         long youngestRev = fsfs.getYoungestRevision();
         if (!SVNRevision.isValidRevisionNumber(startRev)) {
             startRev = 0;
@@ -1392,136 +1517,12 @@ public class SVNAdminClient extends SVNAdminBasicClient {
             SVNErrorManager.error(err, SVNLogType.FSFS);
         }
 
-        for (long rev = startRev; rev <= endRev; rev++) {
-            FSRevisionRoot toRoot = fsfs.createRevisionRoot(rev);
-            ISVNEditor editor = getDumpEditor(fsfs, toRoot, rev, startRev, "/", SVNFileUtil.DUMMY_OUT, false, true);
-            editor = SVNCancellableEditor.newInstance(editor, getEventDispatcher(), getDebugLog());
-            FSRepositoryUtil.replay(fsfs, toRoot, "", SVNRepository.INVALID_REVISION, false, editor);
-            fsfs.getRevisionProperties(rev);
-            String message = "* Verified revision " + rev + ".";
-
-            if (myEventHandler != null) {
-                SVNAdminEvent event = new SVNAdminEvent(rev, SVNAdminEventAction.REVISION_DUMPED, message);
-                myEventHandler.handleAdminEvent(event, ISVNEventHandler.UNKNOWN);
-            }
+        SVNAdminVerifier verifier = new SVNAdminVerifier(getEventDispatcher(), getDebugLog(), myEventHandler);
+        verifier.setFailFast(failFast);
+        if (threadsCount > 0) {
+            verifier.setThreadsCount(threadsCount);
         }
-    }
-
-    private void dump(FSFS fsfs, OutputStream dumpStream, long start, long end, boolean isIncremental, boolean useDeltas) throws SVNException {
-        boolean isDumping = dumpStream != null && dumpStream != SVNFileUtil.DUMMY_OUT;
-        long youngestRevision = fsfs.getYoungestRevision();
-        SVNAdminDeltifier deltifier = new SVNAdminDeltifier(fsfs, SVNDepth.INFINITY,
-                false, false, false, null);
-
-        if (!SVNRevision.isValidRevisionNumber(start)) {
-            start = 0;
-        }
-
-        if (!SVNRevision.isValidRevisionNumber(end)) {
-            end = youngestRevision;
-        }
-
-        if (dumpStream == null) {
-            dumpStream = SVNFileUtil.DUMMY_OUT;
-        }
-
-        if (start > end) {
-            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.REPOS_BAD_ARGS,
-                    "Start revision {0} is greater than end revision {1}", new Object[] { String.valueOf(start),
-                    String.valueOf(end) });
-            SVNErrorManager.error(err, SVNLogType.FSFS);
-        }
-
-        if (end > youngestRevision) {
-            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.REPOS_BAD_ARGS,
-                    "End revision {0} is invalid (youngest revision is {1})", new Object[] { String.valueOf(end),
-                    String.valueOf(youngestRevision) });
-            SVNErrorManager.error(err, SVNLogType.FSFS);
-        }
-
-        if (start == 0 && isIncremental) {
-            isIncremental = false;
-        }
-
-        String uuid = fsfs.getUUID();
-        int version = SVNAdminHelper.DUMPFILE_FORMAT_VERSION;
-
-        if (!useDeltas) {
-            //for compatibility with SVN 1.0.x
-            version--;
-        }
-
-        writeDumpData(dumpStream, SVNAdminHelper.DUMPFILE_MAGIC_HEADER + ": " + version + "\n\n");
-        writeDumpData(dumpStream, SVNAdminHelper.DUMPFILE_UUID + ": " + uuid + "\n\n");
-
-        for (long i = start; i <= end; i++) {
-            long fromRev, toRev;
-
-            checkCancelled();
-
-            if (i == start && !isIncremental) {
-                if (i == 0) {
-                    writeRevisionRecord(dumpStream, fsfs, 0);
-                    toRev = 0;
-                    String message = (isDumping ? "* Dumped" : "* Verified") + " revision " + toRev + ".";
-                    if (myEventHandler != null) {
-                        SVNAdminEvent event = new SVNAdminEvent(toRev, SVNAdminEventAction.REVISION_DUMPED, message);
-                        myEventHandler.handleAdminEvent(event, ISVNEventHandler.UNKNOWN);
-                    }
-                    continue;
-                }
-
-                fromRev = 0;
-                toRev = i;
-            } else {
-                fromRev = i - 1;
-                toRev = i;
-            }
-
-            writeRevisionRecord(dumpStream, fsfs, toRev);
-            boolean useDeltasForRevision = useDeltas && (isIncremental || i != start);
-            FSRevisionRoot toRoot = fsfs.createRevisionRoot(toRev);
-            ISVNEditor dumpEditor = getDumpEditor(fsfs, toRoot, toRev, start, "/", dumpStream, useDeltasForRevision, false);
-
-            if (i == start && !isIncremental) {
-                FSRevisionRoot fromRoot = fsfs.createRevisionRoot(fromRev);
-                deltifier.setEditor(dumpEditor);
-                deltifier.deltifyDir(fromRoot, "/", "", toRoot, "/");
-            } else {
-                FSRepositoryUtil.replay(fsfs, toRoot, "", -1, false, dumpEditor);
-            }
-            String message = (isDumping ? "* Dumped" : "* Verified") + " revision " + toRev + ".";
-            if (myEventHandler != null) {
-                SVNAdminEvent event = new SVNAdminEvent(toRev, SVNAdminEventAction.REVISION_DUMPED, message);
-                myEventHandler.handleAdminEvent(event, ISVNEventHandler.UNKNOWN);
-            }
-        }
-    }
-
-    private void writeRevisionRecord(OutputStream dumpStream, FSFS fsfs, long revision) throws SVNException {
-        SVNProperties revProps = fsfs.getRevisionProperties(revision);
-
-        String revisionDate = revProps.getStringValue(SVNRevisionProperty.DATE);
-        if (revisionDate != null) {
-            SVNDate date = SVNDate.parseDate(revisionDate);
-            revProps.put(SVNRevisionProperty.DATE, date.format());
-        }
-
-        ByteArrayOutputStream encodedProps = new ByteArrayOutputStream();
-        SVNAdminHelper.writeProperties(revProps, null, encodedProps);
-
-        writeDumpData(dumpStream, SVNAdminHelper.DUMPFILE_REVISION_NUMBER + ": " + revision + "\n");
-        String propContents = null;
-        try {
-            propContents = new String(encodedProps.toByteArray(), "UTF-8");
-        } catch (UnsupportedEncodingException uee) {
-            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, uee.getLocalizedMessage());
-            SVNErrorManager.error(err, uee, SVNLogType.FSFS);
-        }
-        writeDumpData(dumpStream, SVNAdminHelper.DUMPFILE_PROP_CONTENT_LENGTH + ": " + propContents.length() + "\n");
-        writeDumpData(dumpStream, SVNAdminHelper.DUMPFILE_CONTENT_LENGTH + ": " + propContents.length() + "\n\n");
-        writeDumpData(dumpStream, propContents);
-        writeDumpData(dumpStream, "\n");
+        verifier.verify(fsfs, startRev, endRev);
     }
 
     private void writeDumpData(OutputStream out, String data) throws SVNException {
@@ -1565,16 +1566,6 @@ public class SVNAdminClient extends SVNAdminBasicClient {
         return myDumpStreamParser;
     }
 
-    private SVNDumpEditor getDumpEditor(FSFS fsfs, FSRoot root, long toRevision, long oldestDumpedRevision, String rootPath, OutputStream dumpStream,
-            boolean useDeltas, boolean isVerify) {
-        if (myDumpEditor == null) {
-            myDumpEditor = new SVNDumpEditor(fsfs, root, toRevision, oldestDumpedRevision, rootPath, dumpStream, useDeltas, isVerify);
-        } else {
-            myDumpEditor.reset(fsfs, root, toRevision, oldestDumpedRevision, rootPath, dumpStream, useDeltas, isVerify);
-        }
-        return myDumpEditor;
-    }
-
     private SVNProperties copyRevisionProperties(SVNRepository fromRepository, SVNRepository toRepository,
             long revision, boolean sync) throws SVNException {
         int filteredCount = 0;
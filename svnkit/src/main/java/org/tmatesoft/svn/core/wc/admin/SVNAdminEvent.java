@@ -83,6 +83,20 @@ public class SVNAdminEvent {
         myAction = action;
         myShard = shard;
     }
+
+    /**
+     * Creates a new event to notify about packing progress.
+     * 
+     * @param action   pack progress action
+     * @param shard    number of the last shard packed
+     * @param message  an event description message
+     * @since 1.8
+     */
+    public SVNAdminEvent(SVNAdminEventAction action, long shard, String message) {
+        myAction = action;
+        myShard = shard;
+        myMessage = message;
+    }
     
     /**
      * Creates a new event.
@@ -105,6 +119,20 @@ public class SVNAdminEvent {
         myAction = action;
     }
 
+    /**
+     * Creates a new event.
+     * 
+     * @param revision    a revision number
+     * @param action      an event action
+     * @param error       an error message
+     * @param message     an event description message
+     * @since             1.8
+     */
+    public SVNAdminEvent(long revision, SVNAdminEventAction action, SVNErrorMessage error, String message) {
+        this(revision, action, message);
+        myError = error;
+    }
+
     /**
      * Creates a new event.
      * 
@@ -206,4 +206,26 @@ public class SVNAdminEventAction {
     
     public static final SVNAdminEventAction NORMALIZED_PROPERTIES = new SVNAdminEventAction(25);
 
+    /**
+     * Informs of the number of shards and bytes packed so far and of the packing rate.
+     * 
+     * @since 1.8
+     */
+    public static final SVNAdminEventAction PACK_PROGRESS = new SVNAdminEventAction(26);
+
+    /**
+     * Informs that verification of a revision failed, the error is available
+     * from {@link SVNAdminEvent#getError()}.
+     * 
+     * @since 1.8
+     */
+    public static final SVNAdminEventAction REVISION_VERIFY_FAILED = new SVNAdminEventAction(27);
+
+    /**
+     * Informs of the number of revisions verified and of the verification rate.
+     * 
+     * @since 1.8
+     */
+    public static final SVNAdminEventAction VERIFY_SUMMARY = new SVNAdminEventAction(28);
+
 }
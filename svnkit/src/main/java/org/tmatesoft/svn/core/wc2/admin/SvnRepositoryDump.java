@@ -15,6 +15,8 @@ public class SvnRepositoryDump extends SvnRepositoryReceivingOperation<SVNAdminE
     private SVNRevision endRevision;
     private boolean useDelta;
     private boolean incremental;
+    private int threadsCount;
+    private boolean compressed;
 
     public SvnRepositoryDump(SvnOperationFactory factory) {
         super(factory);
@@ -60,6 +62,22 @@ public class SvnRepositoryDump extends SvnRepositoryReceivingOperation<SVNAdminE
         this.incremental = incremental;
     }
 
+    public int getThreadsCount() {
+        return threadsCount;
+    }
+
+    public void setThreadsCount(int threadsCount) {
+        this.threadsCount = threadsCount;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    public void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
     @Override
     protected void ensureArgumentsAreValid() throws SVNException {
         if (getStartRevision() == null) {
@@ -7,6 +7,7 @@ import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
 public class SvnRepositoryHotCopy extends SvnRepositoryOperation<Long> {
     
     private File srcRepositoryRoot;
+    private boolean incremental;
 
     public SvnRepositoryHotCopy(SvnOperationFactory factory) {
         super(factory);
@@ -20,6 +21,14 @@ public class SvnRepositoryHotCopy extends SvnRepositoryOperation<Long> {
 		this.srcRepositoryRoot = srcRepositoryRoot;
 	}
 
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
 	public File getNewRepositoryRoot() {
 		return getRepositoryRoot();
 	}
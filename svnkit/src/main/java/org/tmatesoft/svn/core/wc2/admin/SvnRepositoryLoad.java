@@ -13,6 +13,7 @@ public class SvnRepositoryLoad extends SvnRepositoryReceivingOperation<SVNAdminE
     private boolean usePostCommitHook;
     private SVNUUIDAction uuidAction;
     private String parentDir;
+    private boolean bulk;
     
     
     public SvnRepositoryLoad(SvnOperationFactory factory) {
@@ -64,4 +65,12 @@ public class SvnRepositoryLoad extends SvnRepositoryReceivingOperation<SVNAdminE
 	public void setParentDir(String parentDir) {
 		this.parentDir = parentDir;
 	}
+
+	public boolean isBulk() {
+		return bulk;
+	}
+
+	public void setBulk(boolean bulk) {
+		this.bulk = bulk;
+	}
 }
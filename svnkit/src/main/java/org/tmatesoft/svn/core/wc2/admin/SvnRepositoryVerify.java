@@ -8,6 +8,8 @@ public class SvnRepositoryVerify extends SvnRepositoryReceivingOperation<SVNAdmi
 
     private SVNRevision startRevision;
     private SVNRevision endRevision;
+    private boolean failFast;
+    private int threadsCount;
     
     public SvnRepositoryVerify(SvnOperationFactory factory) {
         super(factory);
@@ -18,6 +20,8 @@ public class SvnRepositoryVerify extends SvnRepositoryReceivingOperation<SVNAdmi
     	super.initDefaults();
     	startRevision = SVNRevision.create(0);
         endRevision = SVNRevision.HEAD;
+        failFast = true;
+        threadsCount = 0;
     }
 	
 	public SVNRevision getStartRevision() {
@@ -35,4 +39,20 @@ public class SvnRepositoryVerify extends SvnRepositoryReceivingOperation<SVNAdmi
     public void setEndRevision(SVNRevision endRevision) {
         this.endRevision = endRevision;
     }
+
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    public int getThreadsCount() {
+        return threadsCount;
+    }
+
+    public void setThreadsCount(int threadsCount) {
+        this.threadsCount = threadsCount;
+    }
 }
@@ -1,7 +1,14 @@
 package org.tmatesoft.svn.test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.Assert;
 import org.junit.Assume;
@@ -14,12 +21,15 @@ import org.tmatesoft.svn.core.SVNLogEntryPath;
 import org.tmatesoft.svn.core.SVNProperty;
 import org.tmatesoft.svn.core.SVNPropertyValue;
 import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.io.fs.FSCommitter;
 import org.tmatesoft.svn.core.internal.wc.SVNExternal;
 import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
 import org.tmatesoft.svn.core.internal.wc17.SVNWCContext;
 import org.tmatesoft.svn.core.internal.wc17.db.Structure;
 import org.tmatesoft.svn.core.internal.wc17.db.StructureFields;
 import org.tmatesoft.svn.core.internal.wc2.SvnWcGeneration;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
 import org.tmatesoft.svn.core.wc.DefaultSVNCommitHandler;
 import org.tmatesoft.svn.core.wc.SVNClientManager;
 import org.tmatesoft.svn.core.wc.SVNCommitClient;
@@ -441,6 +451,137 @@ public class CommitTest {
         }
     }
 
+    @Test
+    public void testGroupCommitOfConcurrentTransactions() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final Sandbox sandbox = Sandbox.createWithCleanup(getTestName() + ".testGroupCommitOfConcurrentTransactions", options);
+        final boolean groupCommit = FSCommitter.isGroupCommit();
+        try {
+            final SVNURL url = sandbox.createSvnRepository();
+            final int count = 8;
+
+            final CommitBuilder commitBuilder = new CommitBuilder(url);
+            for (int i = 0; i < count; i++) {
+                commitBuilder.addFile("file" + i, "original".getBytes());
+            }
+            commitBuilder.commit();
+
+            FSCommitter.setGroupCommit(true);
+
+            final CountDownLatch start = new CountDownLatch(1);
+            final Set<Long> revisions = Collections.synchronizedSet(new HashSet<Long>());
+            final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+            final Thread[] threads = new Thread[count];
+            for (int i = 0; i < count; i++) {
+                final String path = "file" + i;
+                threads[i] = new Thread() {
+                    public void run() {
+                        try {
+                            start.await();
+                            final CommitBuilder builder = new CommitBuilder(url);
+                            builder.changeFile(path, ("changed " + path).getBytes());
+                            revisions.add(builder.commit().getNewRevision());
+                        } catch (Throwable th) {
+                            errors.add(th);
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            start.countDown();
+            for (int i = 0; i < count; i++) {
+                threads[i].join();
+            }
+
+            Assert.assertTrue(errors.toString(), errors.isEmpty());
+            Assert.assertEquals(count, revisions.size());
+
+            final SVNRepository svnRepository = SVNRepositoryFactory.create(url);
+            try {
+                Assert.assertEquals(count + 1, svnRepository.getLatestRevision());
+                for (int i = 0; i < count; i++) {
+                    final ByteArrayOutputStream contents = new ByteArrayOutputStream();
+                    svnRepository.getFile("file" + i, -1, null, contents);
+                    Assert.assertEquals("changed file" + i, contents.toString());
+                }
+            } finally {
+                svnRepository.closeSession();
+            }
+        } finally {
+            FSCommitter.setGroupCommit(groupCommit);
+            sandbox.dispose();
+        }
+    }
+
+    @Test
+    public void testGroupCommitsToRepositoriesWithSameUUID() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final Sandbox sandbox = Sandbox.createWithCleanup(getTestName() + ".testGroupCommitsToRepositoriesWithSameUUID", options);
+        final boolean groupCommit = FSCommitter.isGroupCommit();
+        try {
+            final File repositoryRoot = sandbox.createDirectory("svn.repo");
+            final SVNURL url = SVNRepositoryFactory.createLocalRepository(repositoryRoot, true, false);
+            final int count = 8;
+
+            final CommitBuilder commitBuilder = new CommitBuilder(url);
+            for (int i = 0; i < count; i++) {
+                commitBuilder.addFile("file" + i, "original".getBytes());
+            }
+            commitBuilder.commit();
+
+            final File copyRoot = sandbox.createDirectory("svn.repo.copy");
+            SVNFileUtil.copyDirectory(repositoryRoot, copyRoot, false, null);
+            final SVNURL copyUrl = SVNURL.fromFile(copyRoot);
+
+            FSCommitter.setGroupCommit(true);
+
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+            final Thread[] threads = new Thread[count];
+            for (int i = 0; i < count; i++) {
+                final String path = "file" + i;
+                final SVNURL targetUrl = i % 2 == 0 ? url : copyUrl;
+                threads[i] = new Thread() {
+                    public void run() {
+                        try {
+                            start.await();
+                            final CommitBuilder builder = new CommitBuilder(targetUrl);
+                            builder.changeFile(path, ("changed " + path).getBytes());
+                            builder.commit();
+                        } catch (Throwable th) {
+                            errors.add(th);
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            start.countDown();
+            for (int i = 0; i < count; i++) {
+                threads[i].join();
+            }
+
+            Assert.assertTrue(errors.toString(), errors.isEmpty());
+            for (int r = 0; r < 2; r++) {
+                final SVNRepository svnRepository = SVNRepositoryFactory.create(r == 0 ? url : copyUrl);
+                try {
+                    Assert.assertEquals(1 + count / 2, svnRepository.getLatestRevision());
+                    for (int i = 0; i < count; i++) {
+                        final ByteArrayOutputStream contents = new ByteArrayOutputStream();
+                        svnRepository.getFile("file" + i, -1, null, contents);
+                        Assert.assertEquals(i % 2 == r ? "changed file" + i : "original", contents.toString());
+                    }
+                } finally {
+                    svnRepository.closeSession();
+                }
+            }
+        } finally {
+            FSCommitter.setGroupCommit(groupCommit);
+            sandbox.dispose();
+        }
+    }
+
     private void setIncomplete(SvnOperationFactory svnOperationFactory, File path, long revision, File reposRelpath) throws SVNException {
         SVNWCContext context = new SVNWCContext(svnOperationFactory.getOptions(), svnOperationFactory.getEventHandler());
         try {
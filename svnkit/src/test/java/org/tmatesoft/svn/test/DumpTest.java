@@ -0,0 +1,96 @@
+package org.tmatesoft.svn.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.admin.SvnRepositoryDump;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+public class DumpTest {
+
+    @Test
+    public void testParallelDumpIsIdenticalToSerialDump() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final SvnOperationFactory svnOperationFactory = new SvnOperationFactory();
+        final Sandbox sandbox = Sandbox.createWithCleanup(getTestName() + ".testParallelDumpIsIdenticalToSerialDump", options);
+        try {
+            final File repositoryRoot = sandbox.createDirectory("svn.repo");
+            final SVNURL url = SVNRepositoryFactory.createLocalRepository(repositoryRoot, true, false);
+
+            final byte[] largeContents = new byte[3 * 1024 * 1024];
+            for (int i = 0; i < largeContents.length; i++) {
+                largeContents[i] = (byte) ('a' + i % 26);
+            }
+            final CommitBuilder largeCommitBuilder = new CommitBuilder(url);
+            largeCommitBuilder.addFile("large", largeContents);
+            largeCommitBuilder.commit();
+
+            for (int i = 0; i < 30; i++) {
+                final CommitBuilder commitBuilder = new CommitBuilder(url);
+                commitBuilder.addFile("file" + i, ("contents" + i).getBytes());
+                if (i % 3 == 0) {
+                    commitBuilder.changeFile("large", ("changed" + i).getBytes());
+                }
+                commitBuilder.commit();
+            }
+
+            final byte[] serialDump = dump(svnOperationFactory, repositoryRoot, 1, false, false);
+            final byte[] parallelDump = dump(svnOperationFactory, repositoryRoot, 4, false, false);
+            Assert.assertTrue(Arrays.equals(serialDump, parallelDump));
+
+            final byte[] serialDeltasDump = dump(svnOperationFactory, repositoryRoot, 1, true, false);
+            final byte[] parallelDeltasDump = dump(svnOperationFactory, repositoryRoot, 4, true, false);
+            Assert.assertTrue(Arrays.equals(serialDeltasDump, parallelDeltasDump));
+
+            final byte[] serialCompressedDump = dump(svnOperationFactory, repositoryRoot, 1, false, true);
+            final byte[] parallelCompressedDump = dump(svnOperationFactory, repositoryRoot, 4, false, true);
+            Assert.assertTrue(Arrays.equals(serialDump, gunzip(serialCompressedDump)));
+            Assert.assertTrue(Arrays.equals(serialDump, gunzip(parallelCompressedDump)));
+        } finally {
+            svnOperationFactory.dispose();
+            sandbox.dispose();
+        }
+    }
+
+    private byte[] dump(SvnOperationFactory svnOperationFactory, File repositoryRoot, int threadsCount, boolean useDeltas, boolean compressed) throws SVNException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final SvnRepositoryDump dump = svnOperationFactory.createRepositoryDump();
+        dump.setRepositoryRoot(repositoryRoot);
+        dump.setOut(out);
+        dump.setUseDelta(useDeltas);
+        dump.setThreadsCount(threadsCount);
+        dump.setCompressed(compressed);
+        dump.run();
+        return out.toByteArray();
+    }
+
+    private byte[] gunzip(byte[] compressed) throws IOException {
+        final InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private String getTestName() {
+        return getClass().getSimpleName();
+    }
+}
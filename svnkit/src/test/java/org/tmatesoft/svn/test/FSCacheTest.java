@@ -0,0 +1,416 @@
+package org.tmatesoft.svn.test;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.delta.SVNDeltaCombiner;
+import org.tmatesoft.svn.core.internal.io.fs.FSCache;
+import org.tmatesoft.svn.core.internal.io.fs.FSFS;
+import org.tmatesoft.svn.core.internal.io.fs.FSPacker;
+import org.tmatesoft.svn.core.internal.io.fs.FSPathChange;
+import org.tmatesoft.svn.core.internal.io.fs.FSRevisionNode;
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryCaches;
+import org.tmatesoft.svn.core.internal.io.fs.FSRepresentationsFilter;
+import org.tmatesoft.svn.core.internal.io.fs.FSRevisionRoot;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Map;
+
+public class FSCacheTest {
+
+    @Test
+    public void testEvictsLeastRecentlyUsedEntries() throws Exception {
+        final FSCache<String, String> cache = new FSCache<String, String>("test", 2, 1);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        Assert.assertEquals("1", cache.get("a"));
+
+        cache.put("c", "3");
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals("1", cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals("3", cache.get("c"));
+        Assert.assertEquals(1, cache.getEvictionsCount());
+        Assert.assertEquals(3, cache.getHitsCount());
+        Assert.assertEquals(1, cache.getMissesCount());
+    }
+
+    @Test
+    public void testWeightBudget() throws Exception {
+        final FSCache<String, byte[]> cache = new FSCache<String, byte[]>("test", 10, 1) {
+            protected long weigh(String key, byte[] value) {
+                return value.length;
+            }
+        };
+        cache.put("a", new byte[4]);
+        cache.put("b", new byte[4]);
+        cache.put("c", new byte[4]);
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals(8, cache.getWeight());
+
+        cache.put("huge", new byte[11]);
+        Assert.assertNull(cache.get("huge"));
+        Assert.assertEquals(8, cache.getWeight());
+
+        cache.remove("b");
+        Assert.assertEquals(4, cache.getWeight());
+    }
+
+    @Test
+    public void testRevisionRootsShareNodes() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final Sandbox sandbox = Sandbox.createWithCleanup(getClass().getSimpleName() + ".testRevisionRootsShareNodes", options);
+        try {
+            final File repositoryRoot = sandbox.createDirectory("svn.repo");
+            final SVNURL url = SVNRepositoryFactory.createLocalRepository(repositoryRoot, true, false);
+
+            final CommitBuilder commitBuilder = new CommitBuilder(url);
+            commitBuilder.addFile("directory/file");
+            commitBuilder.commit();
+
+            final FSFS fsfs1 = new FSFS(repositoryRoot);
+            final FSFS fsfs2 = new FSFS(repositoryRoot);
+            fsfs1.open();
+            fsfs2.open();
+            try {
+                final FSRevisionRoot root1 = fsfs1.createRevisionRoot(1);
+                final FSRevisionNode node1 = root1.getRevisionNode("/directory/file");
+                Assert.assertEquals(SVNNodeKind.FILE, node1.getType());
+
+                final long hitsCount = fsfs1.getCaches().getRevisionNodesByPathCache().getHitsCount();
+                final FSRevisionRoot root2 = fsfs2.createRevisionRoot(1);
+                final FSRevisionNode node2 = root2.getRevisionNode("/directory/file");
+                Assert.assertSame(node1, node2);
+                Assert.assertSame(fsfs1.getCaches(), fsfs2.getCaches());
+                Assert.assertTrue(fsfs1.getCaches().getRevisionNodesByPathCache().getHitsCount() > hitsCount);
+            } finally {
+                fsfs1.close();
+                fsfs2.close();
+            }
+        } finally {
+            sandbox.dispose();
+        }
+    }
+
+    @Test
+    public void testCommitsDoNotChangeCachedNodes() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final Sandbox sandbox = Sandbox.createWithCleanup(getClass().getSimpleName() + ".testCommitsDoNotChangeCachedNodes", options);
+        try {
+            final File repositoryRoot = sandbox.createDirectory("svn.repo");
+            final SVNURL url = SVNRepositoryFactory.createLocalRepository(repositoryRoot, true, false);
+
+            final CommitBuilder commitBuilder = new CommitBuilder(url);
+            commitBuilder.addFile("directory/file", "1".getBytes());
+            commitBuilder.commit();
+            for (int i = 2; i <= 4; i++) {
+                final CommitBuilder changeBuilder = new CommitBuilder(url);
+                changeBuilder.changeFile("directory/file", String.valueOf(i).getBytes());
+                changeBuilder.commit();
+            }
+
+            final SVNRepository svnRepository = SVNRepositoryFactory.create(url);
+            try {
+                final Collection logEntries = svnRepository.log(new String[] {"directory/file"}, null, 1, 4, false, false);
+                Assert.assertEquals(4, logEntries.size());
+            } finally {
+                svnRepository.closeSession();
+            }
+
+            final FSFS fsfs = new FSFS(repositoryRoot);
+            fsfs.open();
+            try {
+                final FSRevisionNode node = fsfs.createRevisionRoot(2).getRevisionNode("/directory/file");
+                Assert.assertFalse(node.getId().isTxn());
+                Assert.assertEquals(1, node.getCount());
+                Assert.assertEquals(1, node.getPredecessorId().getRevision());
+                Assert.assertEquals("/directory/file", node.getCreatedPath());
+            } finally {
+                fsfs.close();
+            }
+        } finally {
+            sandbox.dispose();
+        }
+    }
+
+    @Test
+    public void testCachedDirEntriesAreNotShared() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final Sandbox sandbox = Sandbox.createWithCleanup(getClass().getSimpleName() + ".testCachedDirEntriesAreNotShared", options);
+        try {
+            final File repositoryRoot = sandbox.createDirectory("svn.repo");
+            final SVNURL url = SVNRepositoryFactory.createLocalRepository(repositoryRoot, true, false);
+
+            final CommitBuilder commitBuilder = new CommitBuilder(url);
+            commitBuilder.addFile("directory/file1");
+            commitBuilder.addFile("directory/file2");
+            commitBuilder.commit();
+
+            final FSFS fsfs = new FSFS(repositoryRoot);
+            fsfs.open();
+            try {
+                final FSRevisionNode directoryNode = fsfs.createRevisionRoot(1).getRevisionNode("/directory");
+                final Map entries1 = fsfs.getDirContents(directoryNode);
+                final Map entries2 = fsfs.getDirContents(directoryNode);
+
+                Assert.assertNotSame(entries1, entries2);
+                Assert.assertEquals(entries1.keySet(), entries2.keySet());
+                Assert.assertEquals(2, entries2.size());
+                Assert.assertTrue(fsfs.getCaches().getDirEntriesCache().getHitsCount() > 0);
+
+                entries1.remove("file1");
+                Assert.assertEquals(2, fsfs.getDirContents(directoryNode).size());
+            } finally {
+                fsfs.close();
+            }
+        } finally {
+            sandbox.dispose();
+        }
+    }
+
+    @Test
+    public void testCachedContentsMatchRepository() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final Sandbox sandbox = Sandbox.createWithCleanup(getClass().getSimpleName() + ".testCachedContentsMatchRepository", options);
+        try {
+            final File repositoryRoot = sandbox.createDirectory("svn.repo");
+            final SVNURL url = SVNRepositoryFactory.createLocalRepository(repositoryRoot, true, false);
+
+            final byte[] smallContents = "small file contents".getBytes();
+            final byte[] largeContents1 = createContents(512 * 1024, 1);
+            final byte[] largeContents2 = createContents(512 * 1024, 2);
+
+            final CommitBuilder commitBuilder1 = new CommitBuilder(url);
+            commitBuilder1.addFile("small", smallContents);
+            commitBuilder1.addFile("large", largeContents1);
+            commitBuilder1.commit();
+
+            final CommitBuilder commitBuilder2 = new CommitBuilder(url);
+            commitBuilder2.changeFile("large", largeContents2);
+            commitBuilder2.commit();
+
+            final FSFS fsfs = new FSFS(repositoryRoot);
+            fsfs.open();
+            try {
+                final FSRepositoryCaches caches = fsfs.getCaches();
+                final FSRevisionRoot root = fsfs.createRevisionRoot(2);
+                for (int i = 0; i < 2; i++) {
+                    Assert.assertArrayEquals(smallContents, readContents(root, "/small"));
+                    Assert.assertArrayEquals(largeContents2, readContents(root, "/large"));
+                }
+                Assert.assertTrue(caches.getFulltextsCache().getHitsCount() > 0);
+                Assert.assertTrue(caches.getDeltaWindowsCache().getHitsCount() > 0);
+            } finally {
+                fsfs.close();
+            }
+        } finally {
+            sandbox.dispose();
+        }
+    }
+
+    @Test
+    public void testDeltaWindowsAreCachedOnceChecksumMatches() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final Sandbox sandbox = Sandbox.createWithCleanup(getClass().getSimpleName() + ".testDeltaWindowsAreCachedOnceChecksumMatches", options);
+        try {
+            final File repositoryRoot = sandbox.createDirectory("svn.repo");
+            final SVNURL url = SVNRepositoryFactory.createLocalRepository(repositoryRoot, true, false);
+
+            final CommitBuilder commitBuilder1 = new CommitBuilder(url);
+            commitBuilder1.addFile("large", createContents(512 * 1024, 1));
+            commitBuilder1.commit();
+
+            final byte[] largeContents2 = createContents(512 * 1024, 2);
+            final CommitBuilder commitBuilder2 = new CommitBuilder(url);
+            commitBuilder2.changeFile("large", largeContents2);
+            commitBuilder2.commit();
+
+            final FSFS fsfs = new FSFS(repositoryRoot);
+            fsfs.open();
+            try {
+                final FSRepositoryCaches caches = fsfs.getCaches();
+                final FSRevisionRoot root = fsfs.createRevisionRoot(2);
+
+                final InputStream inputStream = root.getFileStreamForPath(new SVNDeltaCombiner(), "/large");
+                try {
+                    Assert.assertTrue(inputStream.read(new byte[200 * 1024]) > 0);
+                } finally {
+                    SVNFileUtil.closeFile(inputStream);
+                }
+                Assert.assertEquals(0, caches.getDeltaWindowsCache().size());
+
+                Assert.assertArrayEquals(largeContents2, readContents(root, "/large"));
+                Assert.assertTrue(caches.getDeltaWindowsCache().size() > 0);
+            } finally {
+                fsfs.close();
+            }
+        } finally {
+            sandbox.dispose();
+        }
+    }
+
+    @Test
+    public void testPackedRevisionsAfterManifestsAreCached() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final Sandbox sandbox = Sandbox.createWithCleanup(getClass().getSimpleName() + ".testPackedRevisionsAfterManifestsAreCached", options);
+        try {
+            final File repositoryRoot = sandbox.createDirectory("svn.repo");
+            final SVNURL url = SVNRepositoryFactory.createLocalRepository(repositoryRoot, null, true,
+                    false, false, false, false, false, true);
+
+            final FSFS formatFsfs = new FSFS(repositoryRoot);
+            formatFsfs.open();
+            formatFsfs.writeDBFormat(formatFsfs.getDBFormat(), 10, true);
+            formatFsfs.close();
+
+            for (int i = 0; i < 25; i++) {
+                final CommitBuilder commitBuilder = new CommitBuilder(url);
+                commitBuilder.addFile("file" + i, ("contents" + i).getBytes());
+                commitBuilder.commit();
+            }
+
+            final FSFS fsfs = new FSFS(repositoryRoot);
+            fsfs.open();
+            try {
+                new FSPacker(null).pack(fsfs);
+                fsfs.getMinUnpackedRev();
+
+                for (int pass = 0; pass < 2; pass++) {
+                    for (int i = 0; i < 25; i++) {
+                        final FSRevisionRoot root = fsfs.createRevisionRoot(i + 1);
+                        Assert.assertArrayEquals(("contents" + i).getBytes(), readContents(root, "/file" + i));
+                    }
+                }
+                Assert.assertEquals(2, fsfs.getCaches().getPackManifestsCache().size());
+            } finally {
+                fsfs.close();
+            }
+        } finally {
+            sandbox.dispose();
+        }
+    }
+
+    @Test
+    public void testCachedChangedPathsAreNotShared() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final Sandbox sandbox = Sandbox.createWithCleanup(getClass().getSimpleName() + ".testCachedChangedPathsAreNotShared", options);
+        try {
+            final File repositoryRoot = sandbox.createDirectory("svn.repo");
+            final SVNURL url = SVNRepositoryFactory.createLocalRepository(repositoryRoot, true, false);
+
+            final CommitBuilder commitBuilder = new CommitBuilder(url);
+            commitBuilder.addFile("directory/file", "contents".getBytes());
+            commitBuilder.commit();
+
+            final FSFS fsfs = new FSFS(repositoryRoot);
+            fsfs.open();
+            try {
+                final Map changes1 = fsfs.createRevisionRoot(1).getChangedPaths();
+                Assert.assertEquals(2, changes1.size());
+                ((FSPathChange) changes1.get("/directory/file")).setTextModified(false);
+                changes1.clear();
+
+                final Map changes2 = fsfs.createRevisionRoot(1).getChangedPaths();
+                Assert.assertEquals(2, changes2.size());
+                Assert.assertTrue(((FSPathChange) changes2.get("/directory/file")).isTextModified());
+                Assert.assertEquals('A', ((FSPathChange) changes2.get("/directory")).getType());
+                Assert.assertTrue(fsfs.getCaches().getChangedPathsCache().getHitsCount() > 0);
+            } finally {
+                fsfs.close();
+            }
+        } finally {
+            sandbox.dispose();
+        }
+    }
+
+    @Test
+    public void testRepresentationsFilter() throws Exception {
+        final FSRepresentationsFilter filter = new FSRepresentationsFilter(1024);
+        filter.add("da39a3ee5e6b4b0d3255bfef95601890afd80709");
+        filter.add("2fd4e1c67a2d28fced849ee1bb76e7391b93eb12");
+
+        Assert.assertTrue(filter.mightContain("da39a3ee5e6b4b0d3255bfef95601890afd80709"));
+        Assert.assertTrue(filter.mightContain("2fd4e1c67a2d28fced849ee1bb76e7391b93eb12"));
+        Assert.assertFalse(filter.mightContain("de9f2c7fd25e1b3afad3e85a0bd17d9b100db4b3"));
+        Assert.assertEquals(1, filter.getRejectedCount());
+        Assert.assertEquals(2, filter.getPassedCount());
+    }
+
+    @Test
+    public void testSharedRepresentationsAreCached() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final Sandbox sandbox = Sandbox.createWithCleanup(getClass().getSimpleName() + ".testSharedRepresentationsAreCached", options);
+        try {
+            final File repositoryRoot = sandbox.createDirectory("svn.repo");
+            final SVNURL url = SVNRepositoryFactory.createLocalRepository(repositoryRoot, true, false);
+
+            final CommitBuilder commitBuilder1 = new CommitBuilder(url);
+            commitBuilder1.addFile("file1", "shared contents".getBytes());
+            commitBuilder1.commit();
+
+            final CommitBuilder commitBuilder2 = new CommitBuilder(url);
+            commitBuilder2.addFile("file2", "shared contents".getBytes());
+            commitBuilder2.addFile("file3", "other contents".getBytes());
+            commitBuilder2.commit();
+
+            final FSFS fsfs = new FSFS(repositoryRoot);
+            fsfs.open();
+            try {
+                Assume.assumeTrue(fsfs.getRepositoryCacheManager() != null);
+
+                final FSRevisionRoot root = fsfs.createRevisionRoot(2);
+                Assert.assertEquals(1, root.getRevisionNode("/file2").getTextRepresentation().getRevision());
+                Assert.assertEquals(2, root.getRevisionNode("/file3").getTextRepresentation().getRevision());
+                Assert.assertArrayEquals("shared contents".getBytes(), readContents(root, "/file2"));
+                Assert.assertTrue(fsfs.getCaches().getRepresentationsCache().size() > 0);
+            } finally {
+                fsfs.close();
+            }
+        } finally {
+            sandbox.dispose();
+        }
+    }
+
+    private static byte[] createContents(int length, int seed) {
+        final byte[] contents = new byte[length];
+        for (int i = 0; i < length; i++) {
+            contents[i] = (byte) ('a' + (i * seed + i / 1024) % 26);
+        }
+        return contents;
+    }
+
+    private static byte[] readContents(FSRevisionRoot root, String path) throws Exception {
+        final InputStream inputStream = root.getFileStreamForPath(new SVNDeltaCombiner(), path);
+        try {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            while (true) {
+                final int read = inputStream.read(buffer);
+                if (read < 0) {
+                    break;
+                }
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            SVNFileUtil.closeFile(inputStream);
+        }
+    }
+}
@@ -5,8 +5,10 @@ import org.junit.Test;
 import org.tmatesoft.svn.core.SVNProperties;
 import org.tmatesoft.svn.core.SVNRevisionProperty;
 import org.tmatesoft.svn.core.internal.io.fs.FSFile;
+import org.tmatesoft.svn.core.internal.io.fs.FSMappedFile;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 
 public class FSFileTest {
 
@@ -83,4 +85,46 @@ public class FSFileTest {
             file.close();
         }
     }
+
+    @Test
+    public void testParseMappedFile() throws Exception {
+        final String content =
+                "K 10\n" +
+                        "svn:author\n" +
+                        "V 8\n" +
+                        "username\n" +
+                        "K 7\n" +
+                        "svn:log\n" +
+                        "V 7\n" +
+                        "Trunk.\n" +
+                        "\n" +
+                        "END";
+
+        final TestOptions options = TestOptions.getInstance();
+
+        final Sandbox sandbox = Sandbox.createWithCleanup(getClass().getSimpleName() + ".testParseMappedFile", options);
+        try {
+            final File directory = sandbox.createDirectory("directory");
+            final File fsFile = new File(directory, "fsfile");
+            TestUtil.writeFileContentsString(fsFile, content);
+
+            final FSFile file = new FSFile(FSMappedFile.map(fsFile));
+            try {
+                Assert.assertEquals(content.length(), file.size());
+                final SVNProperties properties = file.readProperties(true, true);
+                Assert.assertEquals("Trunk.\n", properties.getStringValue(SVNRevisionProperty.LOG));
+                Assert.assertEquals("username", properties.getStringValue(SVNRevisionProperty.AUTHOR));
+
+                file.seek(content.length() - 3);
+                final ByteBuffer buffer = ByteBuffer.allocate(10);
+                Assert.assertEquals(3, file.read(buffer));
+                Assert.assertEquals("END", new String(buffer.array(), 0, buffer.position()));
+                Assert.assertEquals(-1, file.read());
+            } finally {
+                file.close();
+            }
+        } finally {
+            sandbox.dispose();
+        }
+    }
 }
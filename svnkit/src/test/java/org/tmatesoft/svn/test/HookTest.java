@@ -5,18 +5,27 @@ import org.junit.Assume;
 import org.junit.Test;
 import org.tmatesoft.svn.core.SVNCommitInfo;
 import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNURL;
 import org.tmatesoft.svn.core.auth.BasicAuthenticationManager;
 import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+import org.tmatesoft.svn.core.internal.io.fs.FSHookExecutor;
+import org.tmatesoft.svn.core.internal.io.fs.FSHooks;
+import org.tmatesoft.svn.core.internal.io.fs.IFSHook;
+import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
 import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
 import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
 import org.tmatesoft.svn.core.wc2.SvnSetLock;
 import org.tmatesoft.svn.core.wc2.SvnTarget;
 import org.tmatesoft.svn.core.wc2.admin.SvnRepositoryCreate;
+import org.tmatesoft.svn.util.SVNLogType;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class HookTest {
@@ -111,6 +120,57 @@ public class HookTest {
         }
     }
 
+    @Test
+    public void testJavaHooks() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final Sandbox sandbox = Sandbox.createWithCleanup(getTestName() + ".testJavaHooks", options);
+        final boolean asyncPostHooks = FSHooks.isAsyncPostHooks();
+        try {
+            final SVNURL url = sandbox.createSvnRepository();
+            final List<String> postCommitRevisions = Collections.synchronizedList(new ArrayList<String>());
+
+            FSHooks.setAsyncPostHooks(true);
+            FSHooks.registerHook(FSHooks.SVN_REPOS_HOOK_PRE_COMMIT, new IFSHook() {
+                public String run(File reposRootDir, String hookName, String[] args, byte[] input) throws SVNException {
+                    SVNErrorManager.error(SVNErrorMessage.create(SVNErrorCode.REPOS_HOOK_FAILURE, "blocked"), SVNLogType.FSFS);
+                    return null;
+                }
+            });
+            FSHooks.registerHook(FSHooks.SVN_REPOS_HOOK_POST_COMMIT, new IFSHook() {
+                public String run(File reposRootDir, String hookName, String[] args, byte[] input) {
+                    postCommitRevisions.add(args[0]);
+                    return null;
+                }
+            });
+
+            final CommitBuilder failingCommitBuilder = new CommitBuilder(url);
+            failingCommitBuilder.addFile("file");
+            try {
+                failingCommitBuilder.commit();
+                Assert.fail("An exception should be thrown");
+            } catch (SVNException e) {
+                //expected
+                Assert.assertEquals(SVNErrorCode.REPOS_HOOK_FAILURE, e.getErrorMessage().getErrorCode());
+            }
+
+            FSHooks.unregisterHook(FSHooks.SVN_REPOS_HOOK_PRE_COMMIT);
+
+            final CommitBuilder succeedingCommitBuilder = new CommitBuilder(url);
+            succeedingCommitBuilder.addFile("file");
+            final SVNCommitInfo commitInfo = succeedingCommitBuilder.commit();
+            Assert.assertEquals(1, commitInfo.getNewRevision());
+
+            Assert.assertTrue(FSHookExecutor.getInstance().awaitIdle(10000));
+            Assert.assertEquals(Collections.singletonList("1"), postCommitRevisions);
+        } finally {
+            FSHooks.unregisterHook(FSHooks.SVN_REPOS_HOOK_PRE_COMMIT);
+            FSHooks.unregisterHook(FSHooks.SVN_REPOS_HOOK_POST_COMMIT);
+            FSHooks.setAsyncPostHooks(asyncPostHooks);
+            sandbox.dispose();
+        }
+    }
+
     private String getTestName() {
         return "HookTest";
     }
@@ -0,0 +1,104 @@
+package org.tmatesoft.svn.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.SVNPropertyValue;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.io.fs.FSFS;
+import org.tmatesoft.svn.core.internal.io.fs.FSPacker;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.admin.SvnRepositoryHotCopy;
+
+import java.io.File;
+
+public class HotCopyTest {
+
+    @Test
+    public void testIncrementalHotCopy() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final SvnOperationFactory svnOperationFactory = new SvnOperationFactory();
+        final Sandbox sandbox = Sandbox.createWithCleanup(getTestName() + ".testIncrementalHotCopy", options);
+        try {
+            final File repositoryRoot = sandbox.createDirectory("svn.repo");
+            final File copyRoot = new File(sandbox.createDirectory("copy"), "svn.repo");
+            final SVNURL url = SVNRepositoryFactory.createLocalRepository(repositoryRoot, null, true,
+                    false, false, false, false, false, true);
+
+            final FSFS formatFsfs = new FSFS(repositoryRoot);
+            formatFsfs.open();
+            formatFsfs.writeDBFormat(formatFsfs.getDBFormat(), 10, true);
+            formatFsfs.close();
+
+            for (int i = 0; i < 15; i++) {
+                final CommitBuilder commitBuilder = new CommitBuilder(url);
+                commitBuilder.addFile("file" + i);
+                commitBuilder.commit();
+            }
+            pack(repositoryRoot);
+            hotCopy(svnOperationFactory, repositoryRoot, copyRoot, false);
+
+            for (int i = 15; i < 25; i++) {
+                final CommitBuilder commitBuilder = new CommitBuilder(url);
+                commitBuilder.addFile("file" + i);
+                commitBuilder.commit();
+            }
+            pack(repositoryRoot);
+            final SVNRepository svnRepository = SVNRepositoryFactory.create(url);
+            try {
+                svnRepository.setRevisionPropertyValue(3, "test", SVNPropertyValue.create("value"));
+                svnRepository.setRevisionPropertyValue(22, "test", SVNPropertyValue.create("value"));
+            } finally {
+                svnRepository.closeSession();
+            }
+
+            final File unchangedPackFile = new File(copyRoot, "db/revs/0.pack/pack");
+            final long unchangedPackTimestamp = unchangedPackFile.lastModified();
+
+            hotCopy(svnOperationFactory, repositoryRoot, copyRoot, true);
+
+            Assert.assertEquals(unchangedPackTimestamp, unchangedPackFile.lastModified());
+            Assert.assertFalse(new File(copyRoot, "db/revs/1").exists());
+
+            final SVNRepository copyRepository = SVNRepositoryFactory.create(SVNURL.fromFile(copyRoot));
+            try {
+                Assert.assertEquals(25, copyRepository.getLatestRevision());
+                for (int i = 1; i <= 25; i++) {
+                    Assert.assertEquals(SVNNodeKind.FILE, copyRepository.checkPath("file" + (i - 1), i));
+                }
+                Assert.assertEquals("value", SVNPropertyValue.getPropertyAsString(copyRepository.getRevisionPropertyValue(3, "test")));
+                Assert.assertEquals("value", SVNPropertyValue.getPropertyAsString(copyRepository.getRevisionPropertyValue(22, "test")));
+            } finally {
+                copyRepository.closeSession();
+            }
+        } finally {
+            svnOperationFactory.dispose();
+            sandbox.dispose();
+        }
+    }
+
+    private void pack(File repositoryRoot) throws Exception {
+        final FSFS fsfs = new FSFS(repositoryRoot);
+        fsfs.open();
+        try {
+            new FSPacker(null).pack(fsfs);
+        } finally {
+            fsfs.close();
+        }
+    }
+
+    private void hotCopy(SvnOperationFactory svnOperationFactory, File srcRepositoryRoot, File newRepositoryRoot, boolean incremental) throws Exception {
+        final SvnRepositoryHotCopy hotCopy = svnOperationFactory.createRepositoryHotCopy();
+        hotCopy.setSrcRepositoryRoot(srcRepositoryRoot);
+        hotCopy.setNewRepositoryRoot(newRepositoryRoot);
+        hotCopy.setIncremental(incremental);
+        hotCopy.run();
+    }
+
+    private String getTestName() {
+        return getClass().getSimpleName();
+    }
+}
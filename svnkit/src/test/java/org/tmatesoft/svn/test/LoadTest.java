@@ -0,0 +1,84 @@
+package org.tmatesoft.svn.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.admin.SvnRepositoryDump;
+import org.tmatesoft.svn.core.wc2.admin.SvnRepositoryLoad;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Arrays;
+
+public class LoadTest {
+
+    @Test
+    public void testBulkLoadIsIdenticalToLoad() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final SvnOperationFactory svnOperationFactory = new SvnOperationFactory();
+        final Sandbox sandbox = Sandbox.createWithCleanup(getTestName() + ".testBulkLoadIsIdenticalToLoad", options);
+        try {
+            final File repositoryRoot = sandbox.createDirectory("svn.repo");
+            final SVNURL url = SVNRepositoryFactory.createLocalRepository(repositoryRoot, true, false);
+            for (int i = 0; i < 30; i++) {
+                final CommitBuilder commitBuilder = new CommitBuilder(url);
+                commitBuilder.addFile("file" + i, ("contents" + i).getBytes());
+                if (i > 0) {
+                    commitBuilder.changeFile("file0", ("changed" + i).getBytes());
+                }
+                if (i % 5 == 0) {
+                    // the same contents in the same batch should be stored once
+                    commitBuilder.addFile("copy" + i, ("contents" + i).getBytes());
+                }
+                commitBuilder.commit();
+            }
+            final byte[] dump = dump(svnOperationFactory, repositoryRoot);
+
+            final File loadedRoot = sandbox.createDirectory("loaded.repo");
+            SVNRepositoryFactory.createLocalRepository(loadedRoot, true, false);
+            load(svnOperationFactory, loadedRoot, dump, false);
+
+            final File bulkLoadedRoot = sandbox.createDirectory("bulk.repo");
+            final SVNURL bulkLoadedUrl = SVNRepositoryFactory.createLocalRepository(bulkLoadedRoot, true, false);
+            load(svnOperationFactory, bulkLoadedRoot, dump, true);
+
+            final SVNRepository svnRepository = SVNRepositoryFactory.create(bulkLoadedUrl);
+            try {
+                Assert.assertEquals(30, svnRepository.getLatestRevision());
+            } finally {
+                svnRepository.closeSession();
+            }
+            Assert.assertTrue(Arrays.equals(dump(svnOperationFactory, loadedRoot), dump(svnOperationFactory, bulkLoadedRoot)));
+        } finally {
+            svnOperationFactory.dispose();
+            sandbox.dispose();
+        }
+    }
+
+    private void load(SvnOperationFactory svnOperationFactory, File repositoryRoot, byte[] dump, boolean bulk) throws SVNException {
+        final SvnRepositoryLoad load = svnOperationFactory.createRepositoryLoad();
+        load.setRepositoryRoot(repositoryRoot);
+        load.setDumpStream(new ByteArrayInputStream(dump));
+        load.setBulk(bulk);
+        load.run();
+    }
+
+    private byte[] dump(SvnOperationFactory svnOperationFactory, File repositoryRoot) throws SVNException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final SvnRepositoryDump dump = svnOperationFactory.createRepositoryDump();
+        dump.setRepositoryRoot(repositoryRoot);
+        dump.setOut(out);
+        dump.run();
+        return out.toByteArray();
+    }
+
+    private String getTestName() {
+        return getClass().getSimpleName();
+    }
+}
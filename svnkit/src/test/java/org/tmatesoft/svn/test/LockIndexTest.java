@@ -0,0 +1,149 @@
+package org.tmatesoft.svn.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLock;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.auth.BasicAuthenticationManager;
+import org.tmatesoft.svn.core.internal.io.fs.FSFS;
+import org.tmatesoft.svn.core.internal.io.fs.FSLock;
+import org.tmatesoft.svn.core.internal.io.fs.FSLockIndex;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.admin.SvnRepositoryUpgrade;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+public class LockIndexTest {
+
+    @Test
+    public void testUpgradeMovesLocksIntoIndexAndBack() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final SvnOperationFactory svnOperationFactory = new SvnOperationFactory();
+        final Sandbox sandbox = Sandbox.createWithCleanup(getTestName() + ".testUpgradeMovesLocksIntoIndexAndBack", options);
+        try {
+            final File repositoryRoot = sandbox.createDirectory("svn.repo");
+            final SVNURL url = SVNRepositoryFactory.createLocalRepository(repositoryRoot, true, false);
+
+            final CommitBuilder commitBuilder = new CommitBuilder(url);
+            commitBuilder.addFile("directory/file1");
+            commitBuilder.addFile("directory/file2");
+            commitBuilder.addFile("directory2/file");
+            commitBuilder.commit();
+
+            final SVNRepository svnRepository = SVNRepositoryFactory.create(url);
+            svnRepository.setAuthenticationManager(new BasicAuthenticationManager("user", "password"));
+            try {
+                lock(svnRepository, "directory/file1");
+                lock(svnRepository, "directory2/file");
+
+                final File configFile = new File(repositoryRoot, "db/" + FSFS.PATH_CONFIG);
+                final String config = configFile.isFile() ? SVNFileUtil.readFile(configFile) : "";
+                SVNFileUtil.writeToFile(configFile, config + "\n[" + FSFS.LOCKS_SECTION + "]\n" + FSFS.ENABLE_LOCK_INDEX_OPTION + " = true\n", "UTF-8");
+                upgrade(svnOperationFactory, repositoryRoot);
+
+                final File indexFile = new File(repositoryRoot, "db/locks/" + FSLockIndex.LOCK_INDEX_FILE);
+                Assert.assertTrue(indexFile.isFile());
+                Assert.assertEquals(1, svnRepository.getLocks("directory").length);
+                Assert.assertEquals(2, svnRepository.getLocks("").length);
+
+                // the session was opened before the upgrade and must not write digest files any more.
+                final SVNLock lock = lock(svnRepository, "directory/file2");
+                Assert.assertEquals(1, indexFile.getParentFile().list().length);
+                Assert.assertEquals(2, svnRepository.getLocks("directory").length);
+                Assert.assertEquals(lock.getID(), svnRepository.getLock("directory/file2").getID());
+
+                svnRepository.unlock(Collections.singletonMap("directory/file1", svnRepository.getLock("directory/file1").getID()), false, null);
+                Assert.assertNull(svnRepository.getLock("directory/file1"));
+
+                try {
+                    final CommitBuilder lockedCommitBuilder = new CommitBuilder(url);
+                    lockedCommitBuilder.changeFile("directory/file2", "changed".getBytes());
+                    lockedCommitBuilder.commit();
+                    Assert.fail("A commit of a file locked by another user should fail");
+                } catch (SVNException e) {
+                    //expected
+                }
+
+                SVNFileUtil.writeToFile(configFile, config, "UTF-8");
+                upgrade(svnOperationFactory, repositoryRoot);
+
+                Assert.assertFalse(indexFile.exists());
+                Assert.assertEquals(1, svnRepository.getLocks("directory").length);
+                Assert.assertEquals(lock.getID(), svnRepository.getLock("directory/file2").getID());
+                Assert.assertEquals(2, svnRepository.getLocks("").length);
+            } finally {
+                svnRepository.closeSession();
+            }
+        } finally {
+            svnOperationFactory.dispose();
+            sandbox.dispose();
+        }
+    }
+
+    private SVNLock lock(SVNRepository svnRepository, String path) throws SVNException {
+        final Map<String, Long> pathsToRevisions = new HashMap<String, Long>();
+        pathsToRevisions.put(path, 1l);
+        svnRepository.lock(pathsToRevisions, null, false, null);
+        return svnRepository.getLock(path);
+    }
+
+    private void upgrade(SvnOperationFactory svnOperationFactory, File repositoryRoot) throws SVNException {
+        final SvnRepositoryUpgrade upgrade = svnOperationFactory.createRepositoryUpgrade();
+        upgrade.setRepositoryRoot(repositoryRoot);
+        upgrade.run();
+    }
+
+    @Test
+    public void testAppendAfterTornEntry() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final Sandbox sandbox = Sandbox.createWithCleanup(getTestName() + ".testAppendAfterTornEntry", options);
+        try {
+            final File indexFile = new File(sandbox.createDirectory("locks"), FSLockIndex.LOCK_INDEX_FILE);
+            FSLockIndex.create(indexFile, Collections.<SVNLock>emptyList());
+
+            final FSLockIndex index = new FSLockIndex(indexFile);
+            index.setLock(createLock("/file1", "token1"));
+            // a writer died in the middle of an entry.
+            final RandomAccessFile file = new RandomAccessFile(indexFile, "rw");
+            try {
+                file.seek(file.length());
+                file.write("K 6\n/fi".getBytes("US-ASCII"));
+            } finally {
+                file.close();
+            }
+
+            final FSLockIndex otherIndex = new FSLockIndex(indexFile);
+            Assert.assertEquals(1, otherIndex.getLocks("/").size());
+            otherIndex.setLock(createLock("/file2", "token2"));
+            otherIndex.deleteLock("/file1");
+
+            final FSLockIndex replayedIndex = new FSLockIndex(indexFile);
+            Assert.assertNull(replayedIndex.getLock("/file1"));
+            Assert.assertEquals("token2", replayedIndex.getLock("/file2").getID());
+            Assert.assertEquals(1, replayedIndex.getLocks("/").size());
+            Assert.assertNull(index.getLock("/file1"));
+            Assert.assertEquals("token2", index.getLock("/file2").getID());
+        } finally {
+            sandbox.dispose();
+        }
+    }
+
+    private static SVNLock createLock(String path, String token) {
+        return new FSLock(path, token, "owner", "comment", new Date(), null, false);
+    }
+
+    private String getTestName() {
+        return getClass().getSimpleName();
+    }
+}
@@ -4,8 +4,10 @@ import org.junit.Assert;
 import org.junit.Assume;
 import org.junit.Test;
 import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
 import org.tmatesoft.svn.core.SVNProperties;
 import org.tmatesoft.svn.core.SVNPropertyValue;
+import org.tmatesoft.svn.core.SVNRevisionProperty;
 import org.tmatesoft.svn.core.SVNURL;
 import org.tmatesoft.svn.core.internal.io.fs.FSFS;
 import org.tmatesoft.svn.core.internal.io.fs.FSFile;
@@ -215,6 +217,154 @@ public class PackedRevPropsTest {
         fsfs.close();
     }
 
+    @Test
+    public void testChangePackedRevisionPropertiesAfterRead() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final Sandbox sandbox = Sandbox.createWithCleanup(getTestName() + ".testChangePackedRevisionPropertiesAfterRead", options);
+        try {
+            final File repositoryRoot = sandbox.createDirectory("svn.repo");
+            SVNURL url = SVNRepositoryFactory.createLocalRepository(repositoryRoot, null, true,
+                    false, false, false, false, false, true);
+
+            updateMaxFilesPerDirectory(repositoryRoot);
+
+            for (int i = 0; i < 20; i++) {
+                createCommitThatAddsFile(url, "file" + i);
+            }
+            final FSFS fsfs = new FSFS(repositoryRoot);
+            fsfs.open();
+            try {
+                new FSPacker(null).pack(fsfs);
+
+                for (int i = 1; i <= 10; i++) {
+                    Assert.assertNull(fsfs.getRevisionProperties(i).getStringValue("test"));
+                }
+                fsfs.setRevisionProperty(5, "test", SVNPropertyValue.create("value"));
+                for (int i = 1; i <= 10; i++) {
+                    Assert.assertEquals(i == 5 ? "value" : null, fsfs.getRevisionProperties(i).getStringValue("test"));
+                }
+            } finally {
+                fsfs.close();
+            }
+        } finally {
+            sandbox.dispose();
+        }
+    }
+
+    @Test
+    public void testParallelPackResumesInterruptedPack() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final Sandbox sandbox = Sandbox.createWithCleanup(getTestName() + ".testParallelPackResumesInterruptedPack", options);
+        try {
+            final File repositoryRoot = sandbox.createDirectory("svn.repo");
+            SVNURL url = SVNRepositoryFactory.createLocalRepository(repositoryRoot, null, true,
+                    false, false, false, false, false, true);
+
+            updateMaxFilesPerDirectory(repositoryRoot);
+
+            for (int i = 0; i < 45; i++) {
+                createCommitThatAddsFile(url, "file" + i);
+            }
+
+            final FSFS fsfs = new FSFS(repositoryRoot);
+            fsfs.open();
+            try {
+                // leftovers of an interrupted pack: a partial pack and a temporary pack directory.
+                final File partialPackDir = new File(fsfs.getDBRevsDir(), "1" + FSFS.PACK_EXT);
+                partialPackDir.mkdirs();
+                SVNFileUtil.writeToFile(new File(partialPackDir, FSFS.PACK_KIND_PACK), "partial", "UTF-8");
+                SVNFileUtil.writeToFile(new File(partialPackDir, FSFS.PACK_KIND_MANIFEST), "0\n", "UTF-8");
+                final File tmpPackDir = new File(fsfs.getDBRevsDir(), "2.pack.tmp");
+                tmpPackDir.mkdirs();
+                SVNFileUtil.writeToFile(new File(tmpPackDir, FSFS.PACK_KIND_PACK), "partial", "UTF-8");
+
+                final FSPacker packer = new FSPacker(null);
+                packer.setThreadsCount(3);
+                packer.pack(fsfs);
+
+                Assert.assertEquals(40, fsfs.getMinUnpackedRev());
+                Assert.assertFalse(tmpPackDir.exists());
+                for (int i = 0; i < 4; i++) {
+                    Assert.assertFalse(new File(fsfs.getDBRevsDir(), String.valueOf(i)).exists());
+                }
+            } finally {
+                fsfs.close();
+            }
+
+            final SVNRepository svnRepository = SVNRepositoryFactory.create(url);
+            try {
+                Assert.assertEquals(45, svnRepository.getLatestRevision());
+                for (int i = 1; i <= 45; i++) {
+                    Assert.assertNotNull(svnRepository.getRevisionPropertyValue(i, "svn:date"));
+                    Assert.assertEquals(SVNNodeKind.FILE, svnRepository.checkPath("file" + (i - 1), i));
+                }
+            } finally {
+                svnRepository.closeSession();
+            }
+        } finally {
+            sandbox.dispose();
+        }
+    }
+
+    @Test
+    public void testResumedPackKeepsChangedRevisionProperties() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final Sandbox sandbox = Sandbox.createWithCleanup(getTestName() + ".testResumedPackKeepsChangedRevisionProperties", options);
+        try {
+            final File repositoryRoot = sandbox.createDirectory("svn.repo");
+            SVNURL url = SVNRepositoryFactory.createLocalRepository(repositoryRoot, null, true,
+                    false, false, false, false, false, true);
+
+            updateMaxFilesPerDirectory(repositoryRoot);
+
+            for (int i = 0; i < 25; i++) {
+                createCommitThatAddsFile(url, "file" + i);
+            }
+
+            // an interrupted pack: packs of shard 1 are in place, min-unpacked-rev is not advanced.
+            final File packedRoot = sandbox.createDirectory("svn.repo.packed");
+            SVNFileUtil.copyDirectory(repositoryRoot, packedRoot, false, null);
+            final FSFS packedFSFS = new FSFS(packedRoot);
+            packedFSFS.open();
+            try {
+                new FSPacker(null).pack(packedFSFS);
+            } finally {
+                packedFSFS.close();
+            }
+            final FSFS fsfs = new FSFS(repositoryRoot);
+            fsfs.open();
+            try {
+                SVNFileUtil.copyDirectory(new File(packedRoot, "db/revs/1" + FSFS.PACK_EXT), new File(fsfs.getDBRevsDir(), "1" + FSFS.PACK_EXT), false, null);
+                SVNFileUtil.copyDirectory(new File(packedRoot, "db/revprops/1" + FSFS.PACK_EXT),
+                        new File(fsfs.getRevisionPropertiesRoot(), "1" + FSFS.PACK_EXT), false, null);
+                Assert.assertEquals(0, fsfs.getMinUnpackedRev());
+
+                fsfs.setRevisionProperty(15, SVNRevisionProperty.LOG, SVNPropertyValue.create("changed log message"));
+
+                new FSPacker(null).pack(fsfs);
+                Assert.assertEquals(20, fsfs.getMinUnpackedRev());
+            } finally {
+                fsfs.close();
+            }
+
+            final SVNRepository svnRepository = SVNRepositoryFactory.create(url);
+            try {
+                final SVNPropertyValue log = svnRepository.getRevisionPropertyValue(15, SVNRevisionProperty.LOG);
+                Assert.assertEquals("changed log message", SVNPropertyValue.getPropertyAsString(log));
+                for (int i = 1; i <= 25; i++) {
+                    Assert.assertEquals(SVNNodeKind.FILE, svnRepository.checkPath("file" + (i - 1), i));
+                }
+            } finally {
+                svnRepository.closeSession();
+            }
+        } finally {
+            sandbox.dispose();
+        }
+    }
+
     private void updateMaxFilesPerDirectory(File repositoryRoot) throws SVNException {
         final FSFS fsfs = new FSFS(repositoryRoot);
         fsfs.open();
@@ -0,0 +1,118 @@
+package org.tmatesoft.svn.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.io.ISVNDeltaConsumer;
+import org.tmatesoft.svn.core.io.diff.SVNDeltaGenerator;
+import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class SVNDeltaGeneratorTest {
+
+    @Test
+    public void testParallelDeltaIsIdenticalToSequential() throws Exception {
+        final Random random = new Random(0);
+        final byte[] source = new byte[1024 * 1024];
+        random.nextBytes(source);
+        final byte[] target = new byte[source.length + 12345];
+        for (int i = 0; i < target.length; i++) {
+            target[i] = i < source.length && random.nextInt(100) != 0 ? source[i] : (byte) random.nextInt();
+        }
+
+        final List<String> windows = sendDelta(source, target, 1);
+        Assert.assertTrue(windows.size() > 10);
+        Assert.assertEquals(windows, sendDelta(source, target, 4));
+        Assert.assertEquals(sendDelta(source, new byte[100], 1), sendDelta(source, new byte[100], 4));
+        Assert.assertEquals(sendDelta(source, new byte[0], 1), sendDelta(source, new byte[0], 4));
+    }
+
+    @Test
+    public void testGeneratorThreadsAreReused() throws Exception {
+        final Random random = new Random(1);
+        final byte[] source = new byte[256 * 1024];
+        random.nextBytes(source);
+        final byte[] target = new byte[source.length];
+        random.nextBytes(target);
+
+        // threads of other generators, which are still idle.
+        final Set<Thread> otherThreads = getDeltaThreads();
+        final SVNDeltaGenerator deltaGenerator = new SVNDeltaGenerator(16 * 1024);
+        try {
+            deltaGenerator.setThreadsCount(4);
+            final List<String> windows = sendDelta(deltaGenerator, source, target);
+            final Set<Thread> threads = getDeltaThreads();
+            threads.removeAll(otherThreads);
+            Assert.assertFalse(threads.isEmpty());
+            for (int i = 0; i < 3; i++) {
+                Assert.assertEquals(windows, sendDelta(deltaGenerator, source, target));
+            }
+            final Set<Thread> laterThreads = getDeltaThreads();
+            laterThreads.removeAll(otherThreads);
+            Assert.assertEquals(threads, laterThreads);
+
+            deltaGenerator.dispose();
+            for (Thread thread : threads) {
+                thread.join(10000);
+                Assert.assertFalse(thread.isAlive());
+            }
+            Assert.assertEquals(windows, sendDelta(deltaGenerator, source, target));
+        } finally {
+            deltaGenerator.dispose();
+        }
+    }
+
+    private static Set<Thread> getDeltaThreads() {
+        final Set<Thread> threads = new HashSet<Thread>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("svnkit-delta-") && thread.isAlive()) {
+                threads.add(thread);
+            }
+        }
+        return threads;
+    }
+
+    private List<String> sendDelta(byte[] source, byte[] target, int threadsCount) throws SVNException {
+        final SVNDeltaGenerator deltaGenerator = new SVNDeltaGenerator(16 * 1024);
+        try {
+            deltaGenerator.setThreadsCount(threadsCount);
+            return sendDelta(deltaGenerator, source, target);
+        } finally {
+            deltaGenerator.dispose();
+        }
+    }
+
+    private List<String> sendDelta(SVNDeltaGenerator deltaGenerator, byte[] source, byte[] target) throws SVNException {
+        final List<String> windows = new ArrayList<String>();
+        final String checksum = deltaGenerator.sendDelta("file", new ByteArrayInputStream(source), 0, new ByteArrayInputStream(target), new ISVNDeltaConsumer() {
+            public void applyTextDelta(String path, String baseChecksum) {
+            }
+
+            public OutputStream textDeltaChunk(String path, SVNDiffWindow diffWindow) {
+                final ByteArrayOutputStream data = new ByteArrayOutputStream();
+                try {
+                    diffWindow.writeTo(data, false);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                windows.add(diffWindow + " " + new String(data.toByteArray()));
+                return null;
+            }
+
+            public void textDeltaEnd(String path) {
+                windows.add("end");
+            }
+        }, true);
+        windows.add(checksum);
+        return windows;
+    }
+}
@@ -0,0 +1,88 @@
+package org.tmatesoft.svn.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.io.ISVNDeltaConsumer;
+import org.tmatesoft.svn.core.io.diff.SVNDeltaGenerator;
+import org.tmatesoft.svn.core.io.diff.SVNDeltaProcessor;
+import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+public class SVNDeltaProcessorTest {
+
+    @Test
+    public void testFileDeltaApplicationMatchesStreamApplication() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final Sandbox sandbox = Sandbox.createWithCleanup(getTestName() + ".testFileDeltaApplicationMatchesStreamApplication", options);
+        try {
+            final File directory = sandbox.createDirectory("files");
+            final Random random = new Random(0);
+            final byte[] source = new byte[1024 * 1024];
+            random.nextBytes(source);
+            final byte[] target = new byte[source.length + 12345];
+            for (int i = 0; i < target.length; i++) {
+                target[i] = i < source.length && random.nextInt(1000) != 0 ? source[i] : (byte) random.nextInt();
+            }
+            final File sourceFile = new File(directory, "source");
+            final File targetFile = new File(directory, "target");
+            final File addedFile = new File(directory, "added");
+            SVNFileUtil.writeToFile(sourceFile, source);
+            SVNFileUtil.writeToFile(targetFile, "previous contents".getBytes());
+
+            for (int i = 0; i < 2; i++) {
+                final boolean computeChecksum = i == 0;
+                final ByteArrayOutputStream streamTarget = new ByteArrayOutputStream();
+                final SVNDeltaProcessor streamProcessor = new SVNDeltaProcessor();
+                streamProcessor.applyTextDelta(new ByteArrayInputStream(source), streamTarget, computeChecksum);
+                final SVNDeltaProcessor fileProcessor = new SVNDeltaProcessor();
+                fileProcessor.applyTextDelta(sourceFile, targetFile, computeChecksum);
+
+                final String checksum = sendDelta(source, target, streamProcessor, fileProcessor);
+
+                Assert.assertEquals(computeChecksum ? checksum : null, streamProcessor.textDeltaEnd());
+                Assert.assertEquals(computeChecksum ? checksum : null, fileProcessor.textDeltaEnd());
+                Assert.assertTrue(Arrays.equals(target, streamTarget.toByteArray()));
+                Assert.assertTrue(Arrays.equals(target, SVNFileUtil.readFully(targetFile)));
+            }
+
+            final SVNDeltaProcessor addedProcessor = new SVNDeltaProcessor();
+            addedProcessor.applyTextDelta((File) null, addedFile, true);
+            final String checksum = sendDelta(new byte[0], target, addedProcessor);
+            Assert.assertEquals(checksum, addedProcessor.textDeltaEnd());
+            Assert.assertTrue(Arrays.equals(target, SVNFileUtil.readFully(addedFile)));
+        } finally {
+            sandbox.dispose();
+        }
+    }
+
+    private String sendDelta(byte[] source, byte[] target, final SVNDeltaProcessor... processors) throws SVNException {
+        final SVNDeltaGenerator deltaGenerator = new SVNDeltaGenerator();
+        return deltaGenerator.sendDelta("file", new ByteArrayInputStream(source), 0, new ByteArrayInputStream(target), new ISVNDeltaConsumer() {
+            public void applyTextDelta(String path, String baseChecksum) {
+            }
+
+            public OutputStream textDeltaChunk(String path, SVNDiffWindow diffWindow) throws SVNException {
+                for (SVNDeltaProcessor processor : processors) {
+                    processor.textDeltaChunk(diffWindow);
+                }
+                return null;
+            }
+
+            public void textDeltaEnd(String path) {
+            }
+        }, true);
+    }
+
+    private String getTestName() {
+        return getClass().getSimpleName();
+    }
+}
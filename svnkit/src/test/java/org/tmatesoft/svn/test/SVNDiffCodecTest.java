@@ -0,0 +1,78 @@
+package org.tmatesoft.svn.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.tmatesoft.svn.core.internal.delta.SVNDeltaReader;
+import org.tmatesoft.svn.core.io.ISVNDeltaConsumer;
+import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class SVNDiffCodecTest {
+
+    @Test
+    public void testWindowsReadBackInAllSvndiffVersions() throws Exception {
+        final Random random = new Random(0);
+        final List<SVNDiffWindow> windows = new ArrayList<SVNDiffWindow>();
+        final List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 10; i++) {
+            final SVNDiffWindow window = createWindow(random, i * 1000, 1 + random.nextInt(1000), i % 3 == 0 ? 0 : random.nextInt(100000));
+            windows.add(window);
+            expected.add(toString(window));
+        }
+
+        for (int version = 0; version <= 2; version++) {
+            final ByteArrayOutputStream delta = new ByteArrayOutputStream();
+            for (int i = 0; i < windows.size(); i++) {
+                windows.get(i).writeTo(delta, i == 0, version);
+            }
+            final byte[] bytes = delta.toByteArray();
+            Assert.assertEquals(version, bytes[3]);
+
+            final List<String> actual = new ArrayList<String>();
+            final SVNDeltaReader deltaReader = new SVNDeltaReader();
+            for (int offset = 0; offset < bytes.length; offset += 777) {
+                deltaReader.nextWindow(bytes, offset, Math.min(777, bytes.length - offset), "file", new ISVNDeltaConsumer() {
+                    public void applyTextDelta(String path, String baseChecksum) {
+                    }
+
+                    public OutputStream textDeltaChunk(String path, SVNDiffWindow diffWindow) {
+                        actual.add(SVNDiffCodecTest.toString(diffWindow));
+                        return null;
+                    }
+
+                    public void textDeltaEnd(String path) {
+                    }
+                });
+            }
+            Assert.assertEquals("svndiff" + version, expected, actual);
+        }
+    }
+
+    private static SVNDiffWindow createWindow(Random random, long sourceOffset, int instructionsLength, int newDataLength) {
+        final ByteBuffer data = ByteBuffer.allocate(instructionsLength + newDataLength);
+        while (data.hasRemaining()) {
+            data.put(random.nextInt(4) == 0 ? (byte) random.nextInt() : (byte) ('a' + data.position() % 13));
+        }
+        data.flip();
+        final SVNDiffWindow window = new SVNDiffWindow(sourceOffset, 1000, newDataLength + 1000, instructionsLength, newDataLength);
+        window.setData(data);
+        return window;
+    }
+
+    private static String toString(SVNDiffWindow window) {
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try {
+            window.writeTo(data, false);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return new String(data.toByteArray());
+    }
+}
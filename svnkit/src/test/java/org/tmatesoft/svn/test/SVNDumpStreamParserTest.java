@@ -0,0 +1,211 @@
+package org.tmatesoft.svn.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.tmatesoft.svn.core.ISVNCanceller;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNPropertyValue;
+import org.tmatesoft.svn.core.internal.wc.ISVNLoadHandler;
+import org.tmatesoft.svn.core.internal.wc.SVNDumpStreamParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class SVNDumpStreamParserTest {
+
+    @Test
+    public void testParseIsIndependentOfReadSizes() throws Exception {
+        final byte[] dump = createDump(20, 100 * 1024);
+
+        final List<String> events = parse(new ByteArrayInputStream(dump));
+        Assert.assertEquals("uuid 0a3a2fb4-2c65-4d5f-a8a2-6e73b7e2a9b0", events.get(0));
+        Assert.assertEquals("open revision {Revision-number=0}", events.get(1));
+        Assert.assertTrue(events.contains("node property файл=value 19"));
+        Assert.assertTrue(events.contains("delete node property removed"));
+
+        final List<String> byteByByteEvents = parse(new ByteArrayInputStream(dump) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        });
+        Assert.assertEquals(events, byteByByteEvents);
+    }
+
+    @Test
+    public void testSkippedTextsAreConsumed() throws Exception {
+        final byte[] dump = createDump(20, 100 * 1024);
+
+        final NullLoadHandler handler = new NullLoadHandler();
+        new SVNDumpStreamParser(ISVNCanceller.NULL).parseDumpStream(new ByteArrayInputStream(dump) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        }, handler, decoder());
+        Assert.assertEquals(20, handler.skippedTextsCount);
+    }
+
+    private List<String> parse(InputStream in) throws SVNException {
+        final RecordingLoadHandler handler = new RecordingLoadHandler();
+        new SVNDumpStreamParser(ISVNCanceller.NULL).parseDumpStream(in, handler, decoder());
+        return handler.events;
+    }
+
+    private static CharsetDecoder decoder() {
+        return Charset.forName("UTF-8").newDecoder();
+    }
+
+    private static byte[] createDump(int revisionsCount, int textSize) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out, "SVN-fs-dump-format-version: 2\n\nUUID: 0a3a2fb4-2c65-4d5f-a8a2-6e73b7e2a9b0\n\n");
+        write(out, "Revision-number: 0\n\n");
+        for (int i = 1; i <= revisionsCount; i++) {
+            final byte[] revisionProperties = properties("svn:log", "log message " + i, null);
+            write(out, "Revision-number: " + i + "\nProp-content-length: " + revisionProperties.length +
+                    "\nContent-length: " + revisionProperties.length + "\n\n");
+            out.write(revisionProperties);
+            write(out, "\n");
+
+            final byte[] nodeProperties = properties("файл", "value " + i, "removed");
+            final byte[] text = new byte[textSize + i];
+            for (int j = 0; j < text.length; j++) {
+                text[j] = (byte) ('a' + (i + j) % 26);
+            }
+            write(out, "Node-path: file" + i + "\nNode-kind: file\nNode-action: add\nProp-delta: true\nProp-content-length: " + nodeProperties.length +
+                    "\nText-content-length: " + text.length + "\nContent-length: " + (nodeProperties.length + text.length) + "\n\n");
+            out.write(nodeProperties);
+            out.write(text);
+            write(out, "\n\n");
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] properties(String name, String value, String deletedName) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] nameBytes = name.getBytes("UTF-8");
+        final byte[] valueBytes = value.getBytes("UTF-8");
+        write(out, "K " + nameBytes.length + "\n");
+        out.write(nameBytes);
+        write(out, "\nV " + valueBytes.length + "\n");
+        out.write(valueBytes);
+        write(out, "\n");
+        if (deletedName != null) {
+            write(out, "D " + deletedName.length() + "\n" + deletedName + "\n");
+        }
+        write(out, "PROPS-END\n");
+        return out.toByteArray();
+    }
+
+    private static void write(ByteArrayOutputStream out, String string) throws IOException {
+        out.write(string.getBytes("UTF-8"));
+    }
+
+    private static class NullLoadHandler implements ISVNLoadHandler {
+
+        private int skippedTextsCount;
+
+        public void closeRevision() throws SVNException {
+        }
+
+        public void openRevision(Map headers) throws SVNException {
+        }
+
+        public void openNode(Map headers) throws SVNException {
+        }
+
+        public void closeNode() throws SVNException {
+        }
+
+        public void parseUUID(String uuid) throws SVNException {
+        }
+
+        public void removeNodeProperties() throws SVNException {
+        }
+
+        public void setRevisionProperty(String propertyName, SVNPropertyValue propertyValue) throws SVNException {
+        }
+
+        public void applyTextDelta() throws SVNException {
+        }
+
+        public void setFullText() throws SVNException {
+        }
+
+        public void parseTextBlock(InputStream dumpStream, long contentLength, boolean isDelta) throws SVNException {
+            try {
+                long skipped = 0;
+                while (skipped < contentLength) {
+                    final long count = dumpStream.skip(contentLength - skipped);
+                    Assert.assertTrue(count > 0);
+                    skipped += count;
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            skippedTextsCount++;
+        }
+
+        public void deleteNodeProperty(String propertyName) throws SVNException {
+        }
+
+        public void setNodeProperty(String propertyName, SVNPropertyValue propertyValue) throws SVNException {
+        }
+    }
+
+    private static class RecordingLoadHandler extends NullLoadHandler {
+
+        private final List<String> events = new ArrayList<String>();
+
+        public void openRevision(Map headers) throws SVNException {
+            events.add("open revision " + new TreeMap(headers));
+        }
+
+        public void openNode(Map headers) throws SVNException {
+            events.add("open node " + new TreeMap(headers));
+        }
+
+        public void closeNode() throws SVNException {
+            events.add("close node");
+        }
+
+        public void parseUUID(String uuid) throws SVNException {
+            events.add("uuid " + uuid);
+        }
+
+        public void setRevisionProperty(String propertyName, SVNPropertyValue propertyValue) throws SVNException {
+            events.add("revision property " + propertyName + "=" + SVNPropertyValue.getPropertyAsString(propertyValue));
+        }
+
+        public void parseTextBlock(InputStream dumpStream, long contentLength, boolean isDelta) throws SVNException {
+            final byte[] text = new byte[(int) contentLength];
+            try {
+                int read = 0;
+                while (read < text.length) {
+                    final int r = dumpStream.read(text, read, text.length - read);
+                    Assert.assertTrue(r > 0);
+                    read += r;
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            events.add("text " + new String(text));
+        }
+
+        public void deleteNodeProperty(String propertyName) throws SVNException {
+            events.add("delete node property " + propertyName);
+        }
+
+        public void setNodeProperty(String propertyName, SVNPropertyValue propertyValue) throws SVNException {
+            events.add("node property " + propertyName + "=" + SVNPropertyValue.getPropertyAsString(propertyValue));
+        }
+    }
+}
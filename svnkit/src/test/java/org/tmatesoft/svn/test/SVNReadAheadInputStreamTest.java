@@ -0,0 +1,63 @@
+package org.tmatesoft.svn.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.tmatesoft.svn.core.internal.util.SVNReadAheadInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+public class SVNReadAheadInputStreamTest {
+
+    @Test
+    public void testReadsWholeSource() throws Exception {
+        final byte[] data = new byte[10000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        final InputStream inputStream = new SVNReadAheadInputStream(new ByteArrayInputStream(data), 1024, 2);
+        try {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[777];
+            int read;
+            while ((read = inputStream.read(buffer)) >= 0) {
+                outputStream.write(buffer, 0, read);
+            }
+            Assert.assertTrue(Arrays.equals(data, outputStream.toByteArray()));
+            Assert.assertEquals(-1, inputStream.read());
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testRuntimeExceptionOfSourceFailsRead() throws Exception {
+        final RuntimeException failure = new IllegalStateException("source failure");
+        final InputStream source = new InputStream() {
+            private int myCount;
+
+            public int read() throws IOException {
+                if (myCount++ >= 1500) {
+                    throw failure;
+                }
+                return 'a';
+            }
+        };
+        final InputStream inputStream = new SVNReadAheadInputStream(source, 1024, 2);
+        try {
+            final byte[] buffer = new byte[1024];
+            Assert.assertEquals(1024, inputStream.read(buffer));
+            try {
+                inputStream.read(buffer);
+                Assert.fail("The failure of the source stream is not reported");
+            } catch (IOException e) {
+                Assert.assertSame(failure, e.getCause());
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+}
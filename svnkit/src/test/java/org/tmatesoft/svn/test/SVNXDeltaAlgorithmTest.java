@@ -0,0 +1,291 @@
+package org.tmatesoft.svn.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.tmatesoft.svn.core.internal.delta.SVNDeltaAlgorithm;
+import org.tmatesoft.svn.core.internal.delta.SVNXDeltaAlgorithm;
+import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class SVNXDeltaAlgorithmTest {
+
+    private static final int WINDOW_SIZE = 100 * 1024;
+
+    @Test
+    public void testTextDelta() throws Exception {
+        final StringBuilder source = new StringBuilder();
+        final StringBuilder target = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            final String line = "line " + i + " of the file, with some text to match\n";
+            source.append(line);
+            if (i % 17 == 0) {
+                target.append("inserted line ").append(i).append('\n');
+            }
+            if (i % 23 != 0) {
+                target.append(line);
+            }
+        }
+        final byte[] sourceBytes = source.toString().getBytes("UTF-8");
+        final byte[] targetBytes = target.toString().getBytes("UTF-8");
+        assertSameDelta(Arrays.copyOf(sourceBytes, WINDOW_SIZE / 2), Arrays.copyOf(targetBytes, WINDOW_SIZE / 2));
+        assertSameDelta(Arrays.copyOf(targetBytes, WINDOW_SIZE / 2), Arrays.copyOf(sourceBytes, WINDOW_SIZE / 2));
+    }
+
+    @Test
+    public void testBinaryDelta() throws Exception {
+        final Random random = new Random(0);
+        final byte[] source = new byte[WINDOW_SIZE];
+        random.nextBytes(source);
+        final byte[] target = new byte[WINDOW_SIZE];
+        for (int i = 0; i < target.length; i++) {
+            target[i] = random.nextInt(200) != 0 ? source[(i + 1000) % source.length] : (byte) random.nextInt();
+        }
+        assertSameDelta(source, target);
+
+        final byte[] unrelated = new byte[WINDOW_SIZE];
+        random.nextBytes(unrelated);
+        assertSameDelta(source, unrelated);
+    }
+
+    @Test
+    public void testEmptyDelta() throws Exception {
+        final byte[] data = new byte[1000];
+        new Random(1).nextBytes(data);
+        assertSameDelta(new byte[0], new byte[0]);
+        assertSameDelta(data, new byte[0]);
+        assertSameDelta(new byte[0], data);
+        assertSameDelta(data, Arrays.copyOf(data, 63));
+        assertSameDelta(Arrays.copyOf(data, 63), data);
+    }
+
+    @Test
+    public void testRepetitiveDelta() throws Exception {
+        final byte[] zeros = new byte[WINDOW_SIZE];
+        final byte[] pattern = new byte[WINDOW_SIZE];
+        for (int i = 0; i < pattern.length; i++) {
+            pattern[i] = (byte) "abc".charAt(i % 3);
+        }
+        final byte[] shiftedPattern = Arrays.copyOfRange(pattern, 1, pattern.length);
+        assertSameDelta(zeros, zeros);
+        assertSameDelta(zeros, Arrays.copyOf(zeros, 1000));
+        assertSameDelta(pattern, shiftedPattern);
+        assertSameDelta(shiftedPattern, pattern);
+        assertSameDelta(zeros, pattern);
+    }
+
+    @Test
+    public void testDeltaOfSeveralWindows() throws Exception {
+        final Random random = new Random(2);
+        final byte[] source = new byte[WINDOW_SIZE * 3 + 12345];
+        random.nextBytes(source);
+        final byte[] target = new byte[source.length + 54321];
+        for (int i = 0; i < target.length; i++) {
+            target[i] = i < source.length && random.nextInt(100) != 0 ? source[i] : (byte) random.nextInt();
+        }
+
+        // one instance for all windows, as the generator uses it, so that reused tables are covered.
+        final SVNXDeltaAlgorithm algorithm = new SVNXDeltaAlgorithm();
+        for (int offset = 0; offset < target.length; offset += WINDOW_SIZE) {
+            final byte[] sourceView = Arrays.copyOfRange(source, Math.min(offset, source.length), Math.min(offset + WINDOW_SIZE, source.length));
+            final byte[] targetView = Arrays.copyOfRange(target, offset, Math.min(offset + WINDOW_SIZE, target.length));
+            assertSameDelta(algorithm, sourceView, targetView);
+        }
+        assertSameDelta(algorithm, source, Arrays.copyOf(target, 100));
+        assertSameDelta(algorithm, Arrays.copyOf(source, 1000), Arrays.copyOf(source, 2000));
+    }
+
+    private static void assertSameDelta(byte[] source, byte[] target) {
+        assertSameDelta(new SVNXDeltaAlgorithm(), source, target);
+    }
+
+    private static void assertSameDelta(SVNDeltaAlgorithm algorithm, byte[] source, byte[] target) {
+        final SVNDeltaAlgorithm referenceAlgorithm = new ReferenceXDeltaAlgorithm();
+        referenceAlgorithm.computeDelta(source, source.length, target, target.length);
+        final byte[] expectedData = toByteArray(referenceAlgorithm.getData());
+
+        algorithm.reset();
+        algorithm.computeDelta(source, source.length, target, target.length);
+        final byte[] data = toByteArray(algorithm.getData());
+
+        Assert.assertArrayEquals(expectedData, data);
+        Assert.assertEquals(referenceAlgorithm.getInstructionsLength(), algorithm.getInstructionsLength());
+        Assert.assertEquals(referenceAlgorithm.getNewDataLength(), algorithm.getNewDataLength());
+
+        final SVNDiffWindow window = new SVNDiffWindow(0, source.length, target.length, algorithm.getInstructionsLength(), algorithm.getNewDataLength());
+        window.setData(ByteBuffer.wrap(data));
+        final byte[] appliedTarget = new byte[target.length];
+        Assert.assertEquals(target.length, window.apply(source, appliedTarget));
+        Assert.assertArrayEquals(target, appliedTarget);
+    }
+
+    private static byte[] toByteArray(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * The xdelta implementation with a hash map of boxed checksums that the
+     * primitive table replaced, the deltas of both have to be the same.
+     */
+    private static class ReferenceXDeltaAlgorithm extends SVNDeltaAlgorithm {
+
+        private static final int MATCH_BLOCK_SIZE = 64;
+
+        public void computeDelta(byte[] a, int aLength, byte[] b, int bLength) {
+            if (bLength < MATCH_BLOCK_SIZE) {
+                copyFromNewData(b, 0, bLength);
+                return;
+            }
+            PseudoAdler32 bAdler = new PseudoAdler32();
+            Map<Integer, Match> aMatchesTable = createMatchesTable(a, aLength, MATCH_BLOCK_SIZE, bAdler);
+            bAdler.reset();
+            bAdler.add(b, 0, MATCH_BLOCK_SIZE);
+
+            int lo = 0;
+            Match previousInsertion = null;
+            while (lo < bLength) {
+                Match match = findMatch(aMatchesTable, bAdler, a, aLength, b, bLength, lo, previousInsertion);
+                if (match == null) {
+                    if (previousInsertion != null && previousInsertion.length > 0) {
+                        previousInsertion.length++;
+                    } else {
+                        previousInsertion = new Match(lo, 1);
+                    }
+                } else {
+                    if (previousInsertion != null && previousInsertion.length > 0) {
+                        copyFromNewData(b, previousInsertion.position, previousInsertion.length);
+                        previousInsertion = null;
+                    }
+                    copyFromSource(match.position, match.length);
+                }
+                int advance = match != null ? match.advance : 1;
+                for (int next = lo; next < lo + advance; next++) {
+                    bAdler.remove(b[next]);
+                    if (next + MATCH_BLOCK_SIZE < bLength) {
+                        bAdler.add(b[next + MATCH_BLOCK_SIZE]);
+                    }
+                }
+                lo += advance;
+            }
+            if (previousInsertion != null && previousInsertion.length > 0) {
+                copyFromNewData(b, previousInsertion.position, previousInsertion.length);
+            }
+        }
+
+        private static Match findMatch(Map<Integer, Match> matchesTable, PseudoAdler32 checksum, byte[] a, int aLength, byte[] b, int bLength, int bPos, Match previousInsertion) {
+            Match existingMatch = matchesTable.get(Integer.valueOf(checksum.getValue()));
+            if (existingMatch == null) {
+                return null;
+            }
+            if (!equals(a, aLength, existingMatch.position, existingMatch.length, b, bLength, bPos)) {
+                return null;
+            }
+            existingMatch = new Match(existingMatch.position, existingMatch.length);
+            existingMatch.advance = existingMatch.length;
+            while (existingMatch.position + existingMatch.length < aLength &&
+                    bPos + existingMatch.advance < bLength &&
+                    a[existingMatch.position + existingMatch.length] == b[bPos + existingMatch.advance]) {
+                existingMatch.length++;
+                existingMatch.advance++;
+            }
+            if (previousInsertion != null) {
+                while (existingMatch.position > 0 && bPos > 0 &&
+                        a[existingMatch.position - 1] == b[bPos - 1] &&
+                        previousInsertion.length != 0) {
+                    previousInsertion.length--;
+                    bPos--;
+                    existingMatch.position--;
+                    existingMatch.length++;
+                }
+            }
+            return existingMatch;
+        }
+
+        private static Map<Integer, Match> createMatchesTable(byte[] data, int dataLength, int blockLength, PseudoAdler32 adler32) {
+            Map<Integer, Match> matchesTable = new HashMap<Integer, Match>();
+            for (int i = 0; i < dataLength; i += blockLength) {
+                int length = i + blockLength >= dataLength ? dataLength - i : blockLength;
+                adler32.add(data, i, length);
+                Integer checksum = Integer.valueOf(adler32.getValue());
+                if (!matchesTable.containsKey(checksum)) {
+                    matchesTable.put(checksum, new Match(i, length));
+                }
+                adler32.reset();
+            }
+            return matchesTable;
+        }
+
+        private static boolean equals(byte[] a, int aLength, int aPos, int length, byte[] b, int bLength, int bPos) {
+            if (aPos + length - 1 > aLength || bPos + length > bLength) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (a[aPos + i] != b[bPos + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class Match {
+
+        private int position;
+        private int length;
+        private int advance;
+
+        public Match(int position, int length) {
+            this.position = position;
+            this.length = length;
+        }
+    }
+
+    private static class PseudoAdler32 {
+
+        private static final int ADLER32_MASK = 0x0000FFFF;
+
+        private int myS1;
+        private int myS2;
+        private int myLength;
+
+        public PseudoAdler32() {
+            reset();
+        }
+
+        public void add(byte b) {
+            int z = b & 0x000000FF;
+            myS1 = (myS1 + z) & ADLER32_MASK;
+            myS2 = (myS2 + myS1) & ADLER32_MASK;
+            myLength++;
+        }
+
+        public void remove(byte b) {
+            int z = b & 0x000000FF;
+            myS1 = (myS1 - z) & ADLER32_MASK;
+            myS2 = (myS2 - (myLength * z + 1)) & ADLER32_MASK;
+            myLength--;
+        }
+
+        public void add(byte[] data, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                add(data[i]);
+            }
+        }
+
+        public int getValue() {
+            return (myS2 << 16) | myS1;
+        }
+
+        public void reset() {
+            myS1 = 1;
+            myS2 = 0;
+            myLength = 0;
+        }
+    }
+}
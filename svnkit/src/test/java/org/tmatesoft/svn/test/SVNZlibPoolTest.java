@@ -0,0 +1,52 @@
+package org.tmatesoft.svn.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.tmatesoft.svn.core.internal.util.SVNZlibPool;
+
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class SVNZlibPoolTest {
+
+    @Test
+    public void testReleasedInstancesAreResetAndReused() throws Exception {
+        final SVNZlibPool pool = new SVNZlibPool(1);
+        final byte[] data = "svndiff window data, svndiff window data, svndiff window data".getBytes();
+
+        for (int i = 0; i < 3; i++) {
+            final Deflater deflater = pool.getDeflater();
+            final Inflater inflater = pool.getInflater();
+            try {
+                deflater.setInput(data);
+                deflater.finish();
+                final byte[] compressed = new byte[1024];
+                final int compressedLength = deflater.deflate(compressed);
+                Assert.assertTrue(deflater.finished());
+
+                inflater.setInput(compressed, 0, compressedLength);
+                final byte[] decompressed = new byte[data.length];
+                Assert.assertEquals(data.length, inflater.inflate(decompressed));
+                Assert.assertTrue(Arrays.equals(data, decompressed));
+            } finally {
+                pool.releaseDeflater(deflater);
+                pool.releaseInflater(inflater);
+            }
+        }
+        Assert.assertEquals(2, pool.getCreatedCount());
+        Assert.assertEquals(4, pool.getReusedCount());
+        Assert.assertEquals(0, pool.getDiscardedCount());
+
+        final Inflater first = pool.getInflater();
+        final Inflater second = pool.getInflater();
+        pool.releaseInflater(first);
+        pool.releaseInflater(second);
+        Assert.assertEquals(1, pool.getInflatersCount());
+        Assert.assertEquals(1, pool.getDiscardedCount());
+
+        pool.clear();
+        Assert.assertEquals(0, pool.getInflatersCount());
+        Assert.assertEquals(0, pool.getDeflatersCount());
+    }
+}
@@ -0,0 +1,129 @@
+package org.tmatesoft.svn.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.wc.admin.SVNAdminEvent;
+import org.tmatesoft.svn.core.wc.admin.SVNAdminEventAction;
+import org.tmatesoft.svn.core.wc2.ISvnObjectReceiver;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.SvnTarget;
+import org.tmatesoft.svn.core.wc2.admin.SvnRepositoryVerify;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class VerifyTest {
+
+    @Test
+    public void testParallelVerifyReportsRevisionsInOrder() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final SvnOperationFactory svnOperationFactory = new SvnOperationFactory();
+        final Sandbox sandbox = Sandbox.createWithCleanup(getTestName() + ".testParallelVerifyReportsRevisionsInOrder", options);
+        try {
+            final File repositoryRoot = sandbox.createDirectory("svn.repo");
+            final SVNURL url = SVNRepositoryFactory.createLocalRepository(repositoryRoot, true, false);
+            for (int i = 0; i < 60; i++) {
+                final CommitBuilder commitBuilder = new CommitBuilder(url);
+                commitBuilder.addFile("file" + i, ("contents" + i).getBytes());
+                commitBuilder.commit();
+            }
+
+            final List<SVNAdminEvent> events = verify(svnOperationFactory, repositoryRoot, true, 4);
+            Assert.assertEquals(62, events.size());
+            for (int i = 0; i <= 60; i++) {
+                Assert.assertEquals(SVNAdminEventAction.REVISION_DUMPED, events.get(i).getAction());
+                Assert.assertEquals(i, events.get(i).getRevision());
+            }
+            Assert.assertEquals(SVNAdminEventAction.VERIFY_SUMMARY, events.get(61).getAction());
+        } finally {
+            svnOperationFactory.dispose();
+            sandbox.dispose();
+        }
+    }
+
+    @Test
+    public void testParallelVerifyOfCorruptedRevision() throws Exception {
+        final TestOptions options = TestOptions.getInstance();
+
+        final SvnOperationFactory svnOperationFactory = new SvnOperationFactory();
+        final Sandbox sandbox = Sandbox.createWithCleanup(getTestName() + ".testParallelVerifyOfCorruptedRevision", options);
+        try {
+            final File repositoryRoot = sandbox.createDirectory("svn.repo");
+            final SVNURL url = SVNRepositoryFactory.createLocalRepository(repositoryRoot, true, false);
+            for (int i = 0; i < 60; i++) {
+                final CommitBuilder commitBuilder = new CommitBuilder(url);
+                commitBuilder.addFile("file" + i, ("contents" + i).getBytes());
+                commitBuilder.commit();
+            }
+
+            SVNFileUtil.writeToFile(new File(repositoryRoot, "db/revs/0/25"), "corrupted\n", "UTF-8");
+
+            final List<SVNAdminEvent> failFastEvents = new ArrayList<SVNAdminEvent>();
+            try {
+                verify(svnOperationFactory, repositoryRoot, true, 4, failFastEvents);
+                Assert.fail("An exception should be thrown");
+            } catch (SVNException e) {
+                //expected
+            }
+            for (int i = 0; i < 25; i++) {
+                Assert.assertEquals(SVNAdminEventAction.REVISION_DUMPED, failFastEvents.get(i).getAction());
+                Assert.assertEquals(i, failFastEvents.get(i).getRevision());
+            }
+            Assert.assertEquals(SVNAdminEventAction.VERIFY_SUMMARY, failFastEvents.get(failFastEvents.size() - 1).getAction());
+            Assert.assertEquals(26, failFastEvents.size());
+
+            final List<SVNAdminEvent> keepGoingEvents = new ArrayList<SVNAdminEvent>();
+            try {
+                verify(svnOperationFactory, repositoryRoot, false, 4, keepGoingEvents);
+                Assert.fail("An exception should be thrown");
+            } catch (SVNException e) {
+                //expected
+                Assert.assertEquals(SVNErrorCode.FS_CORRUPT, e.getErrorMessage().getErrorCode());
+            }
+            Assert.assertEquals(62, keepGoingEvents.size());
+            for (int i = 0; i <= 60; i++) {
+                // later revisions still refer to the node of file25 stored in revision 25
+                final SVNAdminEventAction expectedAction = i >= 25 ? SVNAdminEventAction.REVISION_VERIFY_FAILED : SVNAdminEventAction.REVISION_DUMPED;
+                Assert.assertEquals(expectedAction, keepGoingEvents.get(i).getAction());
+                Assert.assertEquals(i, keepGoingEvents.get(i).getRevision());
+            }
+            Assert.assertEquals(SVNErrorCode.FS_CORRUPT, keepGoingEvents.get(25).getError().getErrorCode());
+            for (int i = 26; i <= 60; i++) {
+                Assert.assertNotNull(keepGoingEvents.get(i).getError());
+            }
+        } finally {
+            svnOperationFactory.dispose();
+            sandbox.dispose();
+        }
+    }
+
+    private List<SVNAdminEvent> verify(SvnOperationFactory svnOperationFactory, File repositoryRoot, boolean failFast, int threadsCount) throws SVNException {
+        final List<SVNAdminEvent> events = new ArrayList<SVNAdminEvent>();
+        verify(svnOperationFactory, repositoryRoot, failFast, threadsCount, events);
+        return events;
+    }
+
+    private void verify(SvnOperationFactory svnOperationFactory, File repositoryRoot, boolean failFast, int threadsCount, final List<SVNAdminEvent> events) throws SVNException {
+        final SvnRepositoryVerify verify = svnOperationFactory.createRepositoryVerify();
+        verify.setRepositoryRoot(repositoryRoot);
+        verify.setFailFast(failFast);
+        verify.setThreadsCount(threadsCount);
+        verify.setReceiver(new ISvnObjectReceiver<SVNAdminEvent>() {
+            public void receive(SvnTarget target, SVNAdminEvent event) throws SVNException {
+                events.add(event);
+            }
+        });
+        verify.run();
+    }
+
+    private String getTestName() {
+        return getClass().getSimpleName();
+    }
+}